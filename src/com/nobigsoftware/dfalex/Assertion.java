@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+/**
+ * Zero-width assertions about the characters around a position:  line anchors and
+ * word boundaries.
+ * <P>
+ * An assertion is a {@link Matchable} that matches the empty string, but only in positions
+ * where the condition holds.  Conditions only depend on the character immediately before
+ * the position and the one immediately after it, so DFAs can check them in a single pass:
+ * the DFA states remember the class of the last character matched, and matches that depend
+ * on the next character are resolved by {@link DfaState#getMatchBefore(int)}.
+ * <P>
+ * Lines are separated by '\n'.  Word characters are [a-zA-Z0-9_].  The start and end of
+ * the input are not word characters.
+ */
+public enum Assertion implements Matchable
+{
+    /**
+     * Matches at the start of the input, or just after a '\n'.  Regex syntax is ^
+     */
+    START_OF_LINE,
+    /**
+     * Matches at the end of the input, or just before a '\n'.  Regex syntax is $
+     */
+    END_OF_LINE,
+    /**
+     * Matches only at the start of the input.  Regex syntax is \A
+     */
+    START_OF_INPUT,
+    /**
+     * Matches only at the end of the input.  Regex syntax is \z
+     */
+    END_OF_INPUT,
+    /**
+     * Matches between a word character and a non-word character.  Regex syntax is \b
+     */
+    WORD_BOUNDARY,
+    /**
+     * Matches where {@link #WORD_BOUNDARY} doesn't.  Regex syntax is \B
+     */
+    NOT_WORD_BOUNDARY;
+    
+    //Character classes that assertions can distinguish.  Every DFA state built from an NFA
+    //with assertions remembers the class of the last character it consumed
+    static final int CONTEXT_NONE = 0; //start or end of input
+    static final int CONTEXT_NEWLINE = 1;
+    static final int CONTEXT_WORD = 2;
+    static final int CONTEXT_OTHER = 3;
+    static final int NUM_CONTEXTS = 4;
+    
+    //a character in each context, for probing DFA states
+    static final int[] CONTEXT_EXAMPLES = {DfaState.NO_CHAR, '\n', 'a', ' '};
+    
+    //sorted (first, last) character ranges in each context
+    private static final char[][] CONTEXT_RANGES = {
+        {},
+        {'\n', '\n'},
+        {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'},
+        {'\0', '\t', '\u000b', '/', ':', '@', '[', '^', '`', '`', '{', Character.MAX_VALUE}
+    };
+    
+    /**
+     * Get the context class of a character
+     * 
+     * @param c a character, or {@link DfaState#NO_CHAR} for the start or end of the input
+     * @return the context of c
+     */
+    static int contextOf(int c)
+    {
+        if (c < 0)
+        {
+            return CONTEXT_NONE;
+        }
+        if (c == '\n')
+        {
+            return CONTEXT_NEWLINE;
+        }
+        if (c <= 'z' && (c >= 'a' || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || c == '_'))
+        {
+            return CONTEXT_WORD;
+        }
+        return CONTEXT_OTHER;
+    }
+    
+    /**
+     * Get the characters in a context, as sorted (first, last) pairs
+     */
+    static char[] getContextRanges(int context)
+    {
+        return CONTEXT_RANGES[context];
+    }
+    
+    /**
+     * Check whether this assertion holds at a position
+     * 
+     * @param prevContext context of the character before the position
+     * @param nextContext context of the character after the position
+     * @return true if the assertion holds
+     */
+    boolean holds(int prevContext, int nextContext)
+    {
+        switch(this)
+        {
+            case START_OF_LINE:
+                return prevContext == CONTEXT_NONE || prevContext == CONTEXT_NEWLINE;
+            case END_OF_LINE:
+                return nextContext == CONTEXT_NONE || nextContext == CONTEXT_NEWLINE;
+            case START_OF_INPUT:
+                return prevContext == CONTEXT_NONE;
+            case END_OF_INPUT:
+                return nextContext == CONTEXT_NONE;
+            case WORD_BOUNDARY:
+                return (prevContext == CONTEXT_WORD) != (nextContext == CONTEXT_WORD);
+            default:
+                return (prevContext == CONTEXT_WORD) == (nextContext == CONTEXT_WORD);
+        }
+    }
+    
+    /**
+     * Check whether this assertion holds after a character, no matter what comes next
+     * 
+     * @param prevContext context of the character before the position
+     * @return true if the assertion holds in every next context
+     */
+    boolean holdsAfter(int prevContext)
+    {
+        for (int next = 0; next < NUM_CONTEXTS; ++next)
+        {
+            if (!holds(prevContext, next))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int addToNFA(Nfa<?> nfa, int targetState)
+    {
+        int state = nfa.addState(null);
+        nfa.addAssertion(state, targetState, this);
+        return state;
+    }
+
+    /**
+     * @return false.  Assertions only match the empty string in some positions
+     */
+    @Override
+    public boolean matchesEmpty()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean matchesNonEmpty()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean matchesSomething()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isUnbounded()
+    {
+        return false;
+    }
+
+    /**
+     * The reverse of an assertion checks the same condition with the characters before and
+     * after swapped, so line and input anchors trade places, and word boundaries reverse
+     * to themselves.
+     */
+    @Override
+    public Matchable getReversed()
+    {
+        switch(this)
+        {
+            case START_OF_LINE:
+                return END_OF_LINE;
+            case END_OF_LINE:
+                return START_OF_LINE;
+            case START_OF_INPUT:
+                return END_OF_INPUT;
+            case END_OF_INPUT:
+                return START_OF_INPUT;
+            default:
+                return this;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The serializable, cacheable result of building a DFA
+ * <P>
+ * Implementations hold a complete DFA in some compact form, and produce DFA states from it
+ * on demand.
+ */
+interface BuiltDfa<RESULT> extends Serializable
+{
+    /**
+     * Get the start states, creating all the states that they need
+     * <P>
+     * Multiple calls return the same list.  This method is thread-safe.
+     * 
+     * @return the start states, in the order given when the DFA was built
+     */
+    List<DfaState<RESULT>> getStartStates();
+    
+    /**
+     * Get the start states, creating other states only as they are reached, if
+     * this representation supports it
+     * <P>
+     * If the start states have already been created, those are returned.
+     * 
+     * @return the start states, in the order given when the DFA was built
+     */
+    default List<DfaState<RESULT>> getLazyStartStates()
+    {
+        return getStartStates();
+    }
+    
+    /**
+     * Create all the states that haven't been created yet
+     */
+    default void prewarm()
+    {
+        getLazyStartStates();
+    }
+}
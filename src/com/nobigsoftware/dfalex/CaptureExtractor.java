@@ -0,0 +1,528 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Matches a pattern and finds the positions of its capture groups in a single pass over
+ * the input
+ * <P>
+ * Capture groups are added to patterns with {@link Pattern#capture(int, Matchable)}, or with
+ * parentheses in regular expressions.  Like {@link StringMatcher#matchAt(DfaState, int)}, the
+ * extractor finds the longest match at a given position.  If there's more than one way for
+ * the pattern to match that string, then groups are assigned the way a backtracking matcher
+ * like java.util.regex would assign them:  earlier alternatives are preferred to later ones,
+ * and repetitions match as many times as they can.  A group inside a repetition reports its
+ * last match.  Like java.util.regex, a repetition whose pattern can match the empty string
+ * tries one more iteration after its last non-empty one, so for (a*)+ matching "aa", group 1
+ * is the empty string at the end.
+ * <P>
+ * The extractor is a tagged DFA.  Each state is an ordered set of NFA states, like a DFA state,
+ * but each NFA state in the set also records which registers hold the positions of its groups,
+ * and each transition says how to update the registers.  There's no backtracking, and the
+ * cost per character is a transition lookup and, in states where groups can start or end,
+ * a few register copies.
+ * <P>
+ * There are many more possible tagged DFA states than DFA states, so they are created lazily,
+ * the first time the input reaches them, and then reused.
+ * <P>
+ * Instances of this class are thread-safe.
+ */
+public class CaptureExtractor
+{
+    //tag sources in closures.  Non-negative sources are registers
+    private static final int UNSET = -1;
+    private static final int CUR = -2;
+
+    private static final Transition DEAD = new Transition(null, null);
+
+    private final Nfa<Boolean> m_nfa;
+    private final int m_nfaStart;
+    private final int m_numGroups;
+    //tags 0 and 1 are for the whole match, so tag t is at index t-2 in tag arrays
+    private final int m_numTags;
+    private final boolean m_hasAssertions;
+    //NFA states that start the pattern of a loop.  See Nfa#setLoop
+    private final BitSet m_loopBodies = new BitSet();
+    //first character in each character class.  The first one is 0
+    private final char[] m_classStarts;
+
+    private final Object m_lock = new Object();
+    private final HashMap<IntListKey, State> m_stateMap = new HashMap<>();
+    private final State[] m_startStates;
+
+    /**
+     * Create a new CaptureExtractor
+     *
+     * @param pattern the pattern to match
+     */
+    public CaptureExtractor(Matchable pattern)
+    {
+        m_nfa = new Nfa<>();
+        final int acceptState = m_nfa.addState(Boolean.TRUE);
+        m_nfaStart = pattern.addToNFA(m_nfa, acceptState);
+        m_numGroups = Math.max((m_nfa.numTags()+1)/2, 1);
+        m_numTags = m_numGroups*2-2;
+        m_hasAssertions = m_nfa.hasAssertions();
+        for (int st = 0; st < m_nfa.numStates(); ++st)
+        {
+            final int body = m_nfa.getLoopBody(st);
+            if (body >= 0)
+            {
+                m_loopBodies.set(body);
+            }
+        }
+        m_classStarts = _getClassStarts();
+        m_startStates = new State[m_hasAssertions ? Assertion.NUM_CONTEXTS : 1];
+        synchronized(m_lock)
+        {
+            final int[] startItems = {m_nfaStart};
+            final int[] startTags = new int[m_numTags];
+            Arrays.fill(startTags, UNSET);
+            for (int i=0; i<m_startStates.length; ++i)
+            {
+                m_startStates[i] = _getState(i, startItems, startTags, 0);
+            }
+        }
+    }
+
+    /**
+     * Get the number of capture groups
+     *
+     * @return one more than the largest group number in the pattern, since group 0 is the
+     *      whole match
+     */
+    public int getGroupCount()
+    {
+        return m_numGroups;
+    }
+
+    /**
+     * Find the longest match at a position, and the positions of its capture groups
+     *
+     * @param src the string to match
+     * @param pos the position at which the match must start
+     * @param groups if there's a match, then groups[2g] is set to the start of group g,
+     *      and groups[2g+1] is set to its end.  They are -1 for groups that don't participate
+     *      in the match.  This array must have at least 2*{@link #getGroupCount()} elements
+     * @return the end of the match, or -1 if there is no match at pos.  If there's no match,
+     *      then groups is not modified
+     */
+    public int matchAt(CharSequence src, int pos, int[] groups)
+    {
+        return matchAt(src, pos, src.length(), groups);
+    }
+
+    /**
+     * Find the longest match at a position that ends before a limit, and the positions of its
+     * capture groups
+     * <P>
+     * Assertions in the pattern see the characters before pos, and treat the limit as the
+     * end of the input.
+     *
+     * @param src the string to match
+     * @param pos the position at which the match must start
+     * @param limit no characters at or after this position will be included in the match
+     * @param groups if there's a match, then groups[2g] is set to the start of group g,
+     *      and groups[2g+1] is set to its end.  They are -1 for groups that don't participate
+     *      in the match.  This array must have at least 2*{@link #getGroupCount()} elements
+     * @return the end of the match, or -1 if there is no match at pos.  If there's no match,
+     *      then groups is not modified
+     */
+    public int matchAt(CharSequence src, int pos, int limit, int[] groups)
+    {
+        if (groups.length < m_numGroups*2)
+        {
+            throw new IllegalArgumentException("The groups array needs room for " + m_numGroups + " groups");
+        }
+        State state = m_startStates[pos > 0 ? _contextOf(src.charAt(pos-1)) : 0];
+        int[] regs = new int[Math.max(m_numTags, 8)];
+        int[] newRegs = new int[regs.length];
+        int matchEnd = -1;
+        for (int i = pos;; ++i)
+        {
+            final int c = (i < limit ? src.charAt(i) : DfaState.NO_CHAR);
+            final int[] accept = state.m_closures[_contextOf(c)].m_accept;
+            if (accept != null)
+            {
+                matchEnd = i;
+                groups[0] = pos;
+                groups[1] = i;
+                for (int t=0; t<accept.length; ++t)
+                {
+                    final int from = accept[t];
+                    groups[t+2] = (from >= 0 ? regs[from] : (from == CUR ? i : -1));
+                }
+            }
+            if (c < 0)
+            {
+                break;
+            }
+            final int cls = _classOf((char)c);
+            Transition trans = state.m_transitions[cls];
+            if (trans == null)
+            {
+                trans = _getTransition(state, cls);
+            }
+            if (trans == DEAD)
+            {
+                break;
+            }
+            final int[] copies = trans.m_copies;
+            if (copies != null)
+            {
+                if (newRegs.length < copies.length)
+                {
+                    newRegs = new int[copies.length*2];
+                }
+                for (int r=0; r<copies.length; ++r)
+                {
+                    final int from = copies[r];
+                    newRegs[r] = (from >= 0 ? regs[from] : i);
+                }
+                final int[] t = regs;
+                regs = newRegs;
+                newRegs = t;
+            }
+            state = trans.m_target;
+        }
+        return matchEnd;
+    }
+
+    private int _contextOf(int c)
+    {
+        return (m_hasAssertions ? Assertion.contextOf(c) : 0);
+    }
+
+    private int _classOf(char c)
+    {
+        int lo = 0, hi = m_classStarts.length - 1;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (m_classStarts[mid] <= c)
+            {
+                lo = mid;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    //split the characters into classes that all the NFA transitions and assertions treat the same way
+    private char[] _getClassStarts()
+    {
+        final ArrayList<Character> bounds = new ArrayList<>();
+        bounds.add('\0');
+        for (int st = 0; st < m_nfa.numStates(); ++st)
+        {
+            for (NfaTransition trans : m_nfa.getStateTransitions(st))
+            {
+                bounds.add(trans.m_firstChar);
+                if (trans.m_lastChar != Character.MAX_VALUE)
+                {
+                    bounds.add((char)(trans.m_lastChar+1));
+                }
+            }
+        }
+        if (m_hasAssertions)
+        {
+            for (int ctx = 0; ctx < Assertion.NUM_CONTEXTS; ++ctx)
+            {
+                final char[] ranges = Assertion.getContextRanges(ctx);
+                for (int i=0; i<ranges.length; i+=2)
+                {
+                    bounds.add(ranges[i]);
+                    if (ranges[i+1] != Character.MAX_VALUE)
+                    {
+                        bounds.add((char)(ranges[i+1]+1));
+                    }
+                }
+            }
+        }
+        bounds.sort(null);
+        final char[] ret = new char[bounds.size()];
+        int len = 0;
+        for (char c : bounds)
+        {
+            if (len == 0 || ret[len-1] != c)
+            {
+                ret[len++] = c;
+            }
+        }
+        return Arrays.copyOf(ret, len);
+    }
+
+    private Transition _getTransition(State state, int cls)
+    {
+        synchronized(m_lock)
+        {
+            Transition ret = state.m_transitions[cls];
+            if (ret != null)
+            {
+                return ret;
+            }
+            final char c = m_classStarts[cls];
+            final int context = _contextOf(c);
+            final Closure closure = state.m_closures[context];
+
+            //follow the transitions on c, in priority order.  Only the first path to each
+            //NFA state counts
+            final boolean[] seen = new boolean[m_nfa.numStates()];
+            final IntListKey itemList = new IntListKey();
+            final ArrayList<int[]> itemSources = new ArrayList<>();
+            for (int i=0; i<closure.m_items.length; ++i)
+            {
+                for (NfaTransition trans : m_nfa.getStateTransitions(closure.m_items[i]))
+                {
+                    if (c >= trans.m_firstChar && c <= trans.m_lastChar && !seen[trans.m_stateNum])
+                    {
+                        seen[trans.m_stateNum] = true;
+                        itemList.add(trans.m_stateNum);
+                        itemSources.add(closure.m_sources[i]);
+                    }
+                }
+            }
+            if (itemSources.isEmpty())
+            {
+                ret = DEAD;
+            }
+            else
+            {
+                //allocate registers in the target state, in order of first use, so that
+                //equivalent states get the same numbering
+                final int nitems = itemSources.size();
+                final int[] items = new int[nitems];
+                itemList.forData((buf, size) -> System.arraycopy(buf, 0, items, 0, size));
+                final int[] tags = new int[nitems*m_numTags];
+                final int[] regMap = new int[state.m_numRegs];
+                Arrays.fill(regMap, -1);
+                int curReg = -1;
+                final IntListKey copyList = new IntListKey();
+                int nregs = 0;
+                boolean identity = true;
+                for (int i=0; i<nitems; ++i)
+                {
+                    final int[] sources = itemSources.get(i);
+                    for (int t=0; t<m_numTags; ++t)
+                    {
+                        final int src = sources[t];
+                        int reg;
+                        if (src == UNSET)
+                        {
+                            reg = UNSET;
+                        }
+                        else if (src == CUR)
+                        {
+                            if (curReg < 0)
+                            {
+                                curReg = nregs++;
+                                copyList.add(CUR);
+                                identity = false;
+                            }
+                            reg = curReg;
+                        }
+                        else
+                        {
+                            if (regMap[src] < 0)
+                            {
+                                regMap[src] = nregs++;
+                                copyList.add(src);
+                                identity &= (src == regMap[src]);
+                            }
+                            reg = regMap[src];
+                        }
+                        tags[i*m_numTags+t] = reg;
+                    }
+                }
+                int[] copies = null;
+                if (!identity)
+                {
+                    final int[] a = new int[nregs];
+                    copyList.forData((buf, size) -> System.arraycopy(buf, 0, a, 0, size));
+                    copies = a;
+                }
+                ret = new Transition(_getState(context, items, tags, nregs), copies);
+            }
+            state.m_transitions[cls] = ret;
+            return ret;
+        }
+    }
+
+    //get or create the state for the given items before their epsilon closure.  Call with m_lock held
+    private State _getState(int prevContext, int[] items, int[] tags, int nregs)
+    {
+        final IntListKey key = new IntListKey();
+        key.add(prevContext);
+        for (int item : items)
+        {
+            key.add(item);
+        }
+        for (int tag : tags)
+        {
+            key.add(tag);
+        }
+        State ret = m_stateMap.get(key);
+        if (ret == null)
+        {
+            final Closure[] closures = new Closure[m_hasAssertions ? Assertion.NUM_CONTEXTS : 1];
+            for (int i=0; i<closures.length; ++i)
+            {
+                closures[i] = _closure(prevContext, i, items, tags);
+            }
+            ret = new State(nregs, closures, m_classStarts.length);
+            m_stateMap.put(key, ret);
+        }
+        return ret;
+    }
+
+    //Follow epsilon and assertion transitions from the given items, depth first in priority
+    //order, to find the NFA states that have character transitions, and whether we accept.
+    //A path that starts an iteration of a loop at this position can't repeat that loop
+    //again, so paths are distinguished by the loops they entered, as well as their states
+    private Closure _closure(int prevContext, int nextContext, int[] items, int[] tags)
+    {
+        final HashMap<BitSet, boolean[]> visitedByLoops = new HashMap<>();
+        final boolean[] isOutItem = new boolean[m_nfa.numStates()];
+        final IntListKey outItems = new IntListKey();
+        final ArrayList<int[]> outSources = new ArrayList<>();
+        int[] accept = null;
+
+        final ArrayList<Integer> stackStates = new ArrayList<>();
+        final ArrayList<int[]> stackSources = new ArrayList<>();
+        final ArrayList<BitSet> stackLoops = new ArrayList<>();
+        final BitSet noLoops = new BitSet();
+        for (int i=items.length-1; i>=0; --i)
+        {
+            stackStates.add(items[i]);
+            stackSources.add(Arrays.copyOfRange(tags, i*m_numTags, (i+1)*m_numTags));
+            stackLoops.add(noLoops);
+        }
+        final ArrayList<Integer> children = new ArrayList<>();
+        while (!stackStates.isEmpty())
+        {
+            final int st = stackStates.remove(stackStates.size()-1);
+            int[] sources = stackSources.remove(stackSources.size()-1);
+            BitSet loops = stackLoops.remove(stackLoops.size()-1);
+            if (m_loopBodies.get(st) && !loops.get(st))
+            {
+                loops = (BitSet)loops.clone();
+                loops.set(st);
+            }
+            final boolean[] visited = visitedByLoops.computeIfAbsent(loops, k -> new boolean[m_nfa.numStates()]);
+            if (visited[st])
+            {
+                continue;
+            }
+            visited[st] = true;
+            final int tag = m_nfa.getStateTag(st);
+            if (tag >= 2 && sources[tag-2] != CUR)
+            {
+                sources = sources.clone();
+                sources[tag-2] = CUR;
+            }
+            if (accept == null && m_nfa.getAccept(st) != null)
+            {
+                accept = sources;
+            }
+            if (!isOutItem[st] && m_nfa.getStateTransitions(st).iterator().hasNext())
+            {
+                isOutItem[st] = true;
+                outItems.add(st);
+                outSources.add(sources);
+            }
+            children.clear();
+            final int loopBody = m_nfa.getLoopBody(st);
+            final boolean emptyIteration = (loopBody >= 0 && loops.get(loopBody));
+            m_nfa.forStateEpsilons(st, target -> {
+                //after an empty iteration, the loop stops
+                if (!emptyIteration || target != loopBody)
+                {
+                    children.add(target);
+                }
+            });
+            m_nfa.forStateAssertions(st, (assertion, target) -> {
+                if (assertion.holds(prevContext, nextContext))
+                {
+                    children.add(target);
+                }
+            });
+            for (int i=children.size()-1; i>=0; --i)
+            {
+                stackStates.add(children.get(i));
+                stackSources.add(sources);
+                stackLoops.add(loops);
+            }
+        }
+        final int[] outArray = new int[outSources.size()];
+        outItems.forData((buf, size) -> System.arraycopy(buf, 0, outArray, 0, size));
+        return new Closure(outArray, outSources.toArray(new int[outSources.size()][]), accept);
+    }
+
+    private static class State
+    {
+        final int m_numRegs;
+        //closures for each next character context
+        final Closure[] m_closures;
+        //transitions for each character class.  Filled in lazily
+        final Transition[] m_transitions;
+
+        State(int numRegs, Closure[] closures, int numClasses)
+        {
+            m_numRegs = numRegs;
+            m_closures = closures;
+            m_transitions = new Transition[numClasses];
+        }
+    }
+
+    private static class Closure
+    {
+        //NFA states with character transitions, in priority order
+        final int[] m_items;
+        //tag sources for each item
+        final int[][] m_sources;
+        //tag sources for the highest priority accepting path, or null if we don't accept
+        final int[] m_accept;
+
+        Closure(int[] items, int[][] sources, int[] accept)
+        {
+            m_items = items;
+            m_sources = sources;
+            m_accept = accept;
+        }
+    }
+
+    private static class Transition
+    {
+        final State m_target;
+        //source register for each target register, or CUR for the current position.
+        //null if the registers don't change
+        final int[] m_copies;
+
+        Transition(State target, int[] copies)
+        {
+            m_target = target;
+            m_copies = copies;
+        }
+    }
+}
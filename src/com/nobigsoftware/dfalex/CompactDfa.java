@@ -0,0 +1,445 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A built DFA stored in a few flat arrays, for DFAs with very many states
+ * <P>
+ * Each state's transitions are stored as a "row":  a default target, and a sorted list of
+ * character ranges with targets that differ from the default.  The default is the target
+ * that would need the most ranges, so it is usually the "no transition" or "back to the
+ * start" case that covers most of the character set.  Identical rows are stored only once, so
+ * states that differ only in their match results share them.  Targets are stored as chars
+ * when the state numbers fit, and as ints otherwise.
+ * <P>
+ * The only per-state objects are the {@link DfaState}s themselves, which just hold a state
+ * number and a row index.
+ */
+class CompactDfa<RESULT> implements BuiltDfa<RESULT>
+{
+    private static final long serialVersionUID = 1L;
+    
+    //transition ranges for row r are at [m_rowStarts[r], m_rowStarts[r+1])
+    private final int[] m_rowStarts;
+    private final char[] m_rangeFirsts;
+    private final char[] m_rangeLasts;
+    //target state numbers for each range, +1, so 0 means no transition.
+    //Exactly one of these is non-null
+    private final char[] m_narrowTargets;
+    private final int[] m_wideTargets;
+    //default target for each row, +1
+    private final int[] m_rowDefaults;
+    
+    private final int[] m_stateRows;
+    private final int[] m_stateAcceptSets;
+    //accept sets for each (state, next character context), or null if no accepts depend on
+    //the next character
+    private final int[] m_stateLookaheadAcceptSets;
+    private final ArrayList<RESULT> m_acceptSets;
+    private final int[] m_startStateNumbers;
+    
+    private transient volatile List<DfaState<RESULT>> m_startStatesMemo;
+    private transient DfaState<RESULT>[] m_states;
+    
+    CompactDfa(RawDfa<RESULT> rawDfa)
+    {
+        final List<DfaStateInfo> states = rawDfa.getStates();
+        final int nstates = states.size();
+        m_acceptSets = new ArrayList<>(rawDfa.getAcceptSets());
+        m_startStateNumbers = rawDfa.getStartStates();
+        m_stateRows = new int[nstates];
+        m_stateAcceptSets = new int[nstates];
+        int[] lookaheadAcceptSets = null;
+        
+        HashMap<IntListKey, Integer> rowMap = new HashMap<>();
+        //rows as (default, (first, last, target)*), with targets +1
+        IntListKey row = new IntListKey();
+        List<int[]> rows = new ArrayList<>();
+        int rangeCount = 0;
+        int[] partition = new int[16];
+        int[] targetCounts = new int[nstates+1];
+        for (int statenum = 0; statenum < nstates; ++statenum)
+        {
+            DfaStateInfo info = states.get(statenum);
+            m_stateAcceptSets[statenum] = info.getAcceptSetIndex();
+            if (info.getLookaheadAcceptSetIndexes() != null)
+            {
+                if (lookaheadAcceptSets == null)
+                {
+                    lookaheadAcceptSets = new int[nstates*Assertion.NUM_CONTEXTS];
+                }
+                System.arraycopy(info.getLookaheadAcceptSetIndexes(), 0, lookaheadAcceptSets,
+                        statenum*Assertion.NUM_CONTEXTS, Assertion.NUM_CONTEXTS);
+            }
+            
+            //partition the whole character set into maximal ranges as (first, target) pairs
+            int plen = 0;
+            int nextc = 0;
+            for (int i=0; i < info.getTransitionCount(); ++i)
+            {
+                NfaTransition trans = info.getTransition(i);
+                if (plen+4 > partition.length)
+                {
+                    partition = Arrays.copyOf(partition, partition.length*2);
+                }
+                if (trans.m_firstChar > nextc)
+                {
+                    plen = _addToPartition(partition, plen, nextc, 0);
+                }
+                plen = _addToPartition(partition, plen, trans.m_firstChar, trans.m_stateNum+1);
+                nextc = trans.m_lastChar+1;
+            }
+            if (nextc <= Character.MAX_VALUE)
+            {
+                if (plen+2 > partition.length)
+                {
+                    partition = Arrays.copyOf(partition, partition.length*2);
+                }
+                plen = _addToPartition(partition, plen, nextc, 0);
+            }
+            
+            //the default is the target with the most ranges.  Ties go to no transition
+            int defaultTarget = 0;
+            for (int i=1; i<plen; i+=2)
+            {
+                ++targetCounts[partition[i]];
+            }
+            for (int i=1; i<plen; i+=2)
+            {
+                int t = partition[i];
+                if (targetCounts[t] > targetCounts[defaultTarget])
+                {
+                    defaultTarget = t;
+                }
+            }
+            for (int i=1; i<plen; i+=2)
+            {
+                targetCounts[partition[i]] = 0;
+            }
+            
+            row.clear();
+            row.add(defaultTarget);
+            for (int i=0; i<plen; i+=2)
+            {
+                if (partition[i+1] != defaultTarget)
+                {
+                    row.add(partition[i]);
+                    row.add(i+2 < plen ? partition[i+2]-1 : Character.MAX_VALUE);
+                    row.add(partition[i+1]);
+                }
+            }
+            Integer rowIndex = rowMap.get(row);
+            if (rowIndex == null)
+            {
+                rowIndex = rows.size();
+                final IntListKey key = row.clone();
+                key.forData((buf, len) -> rows.add(Arrays.copyOf(buf, len)));
+                rowMap.put(key, rowIndex);
+                rangeCount += (rows.get(rowIndex).length-1)/3;
+            }
+            m_stateRows[statenum] = rowIndex;
+        }
+        
+        if (lookaheadAcceptSets != null)
+        {
+            //states without lookahead accepts use their plain accept set in every context
+            for (int statenum = 0; statenum < nstates; ++statenum)
+            {
+                if (states.get(statenum).getLookaheadAcceptSetIndexes() == null)
+                {
+                    Arrays.fill(lookaheadAcceptSets, statenum*Assertion.NUM_CONTEXTS,
+                            (statenum+1)*Assertion.NUM_CONTEXTS, m_stateAcceptSets[statenum]);
+                }
+            }
+        }
+        m_stateLookaheadAcceptSets = lookaheadAcceptSets;
+        
+        //pack the rows
+        final int nrows = rows.size();
+        m_rowStarts = new int[nrows+1];
+        m_rowDefaults = new int[nrows];
+        m_rangeFirsts = new char[rangeCount];
+        m_rangeLasts = new char[rangeCount];
+        int[] targets = new int[rangeCount];
+        int pos = 0;
+        for (int r=0; r<nrows; ++r)
+        {
+            int[] rowData = rows.get(r);
+            m_rowStarts[r] = pos;
+            m_rowDefaults[r] = rowData[0];
+            for (int i=1; i<rowData.length; i+=3)
+            {
+                m_rangeFirsts[pos] = (char)rowData[i];
+                m_rangeLasts[pos] = (char)rowData[i+1];
+                targets[pos++] = rowData[i+2];
+            }
+        }
+        m_rowStarts[nrows] = pos;
+        if (nstates < Character.MAX_VALUE)
+        {
+            m_narrowTargets = new char[rangeCount];
+            for (int i=0; i<rangeCount; ++i)
+            {
+                m_narrowTargets[i] = (char)targets[i];
+            }
+            m_wideTargets = null;
+        }
+        else
+        {
+            m_narrowTargets = null;
+            m_wideTargets = targets;
+        }
+    }
+    
+    @Override
+    public List<DfaState<RESULT>> getStartStates()
+    {
+        List<DfaState<RESULT>> ret = m_startStatesMemo;
+        if (ret == null)
+        {
+            ret = _createStartStates();
+        }
+        return ret;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private synchronized List<DfaState<RESULT>> _createStartStates()
+    {
+        List<DfaState<RESULT>> ret = m_startStatesMemo;
+        if (ret == null)
+        {
+            final DfaState<RESULT>[] states = (DfaState<RESULT>[])new DfaState<?>[m_stateRows.length];
+            for (int i=0; i<states.length; ++i)
+            {
+                states[i] = new StateImpl(i, m_stateRows[i], _isConditional(i));
+            }
+            m_states = states;
+            ret = new ArrayList<>(m_startStateNumbers.length);
+            for (int startState : m_startStateNumbers)
+            {
+                ret.add(states[startState]);
+            }
+            //publishes m_states, too
+            m_startStatesMemo = ret;
+        }
+        return ret;
+    }
+    
+    //true if a state's match depends on the next character
+    private boolean _isConditional(int stateNum)
+    {
+        if (m_stateLookaheadAcceptSets != null)
+        {
+            final int base = stateNum*Assertion.NUM_CONTEXTS;
+            for (int i=0; i<Assertion.NUM_CONTEXTS; ++i)
+            {
+                if (m_stateLookaheadAcceptSets[base+i] != m_stateAcceptSets[stateNum])
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    //add a range to a partition, merging with the previous one if it has the same target
+    private static int _addToPartition(int[] partition, int plen, int firstc, int target)
+    {
+        if (plen > 0 && partition[plen-1] == target)
+        {
+            return plen;
+        }
+        partition[plen] = firstc;
+        partition[plen+1] = target;
+        return plen+2;
+    }
+    
+    //get the target state number +1 for a character in a row
+    private int _getTarget(int row, char c)
+    {
+        //find the last range that starts at or before c
+        int lo = m_rowStarts[row];
+        int hi = m_rowStarts[row+1];
+        while (lo < hi)
+        {
+            final int mid = (lo+hi)>>>1;
+            if (m_rangeFirsts[mid] <= c)
+            {
+                lo = mid+1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        if (lo > m_rowStarts[row] && m_rangeLasts[lo-1] >= c)
+        {
+            return (m_narrowTargets != null ? m_narrowTargets[lo-1] : m_wideTargets[lo-1]);
+        }
+        return m_rowDefaults[row];
+    }
+    
+    private int _getRangeTarget(int rangeIndex)
+    {
+        return (m_narrowTargets != null ? m_narrowTargets[rangeIndex] : m_wideTargets[rangeIndex]);
+    }
+    
+    private final class StateImpl extends DfaState<RESULT>
+    {
+        private final int m_stateNum;
+        private final int m_row;
+        //precomputed, because matchers check this at every step
+        private final boolean m_conditional;
+        
+        StateImpl(int stateNum, int row, boolean conditional)
+        {
+            m_stateNum = stateNum;
+            m_row = row;
+            m_conditional = conditional;
+        }
+
+        @Override
+        public DfaState<RESULT> getNextState(char c)
+        {
+            final int target = _getTarget(m_row, c);
+            return (target == 0 ? null : m_states[target-1]);
+        }
+
+        @Override
+        public RESULT getMatch()
+        {
+            return m_acceptSets.get(m_stateAcceptSets[m_stateNum]);
+        }
+
+        @Override
+        public int getMatchId()
+        {
+            //accept set 0 means no match
+            return m_stateAcceptSets[m_stateNum]-1;
+        }
+
+        @Override
+        public RESULT getMatchBefore(int nextChar)
+        {
+            return m_acceptSets.get(_getLookaheadAcceptSet(nextChar));
+        }
+
+        @Override
+        public int getMatchIdBefore(int nextChar)
+        {
+            return _getLookaheadAcceptSet(nextChar)-1;
+        }
+
+        @Override
+        public boolean hasConditionalMatch()
+        {
+            return m_conditional;
+        }
+        
+        private int _getLookaheadAcceptSet(int nextChar)
+        {
+            if (m_stateLookaheadAcceptSets == null)
+            {
+                return m_stateAcceptSets[m_stateNum];
+            }
+            return m_stateLookaheadAcceptSets[m_stateNum*Assertion.NUM_CONTEXTS + Assertion.contextOf(nextChar)];
+        }
+
+        @Override
+        public int getStateNumber()
+        {
+            return m_stateNum;
+        }
+
+        @Override
+        public void enumerateTransitions(DfaTransitionConsumer<RESULT> consumer)
+        {
+            final int end = m_rowStarts[m_row+1];
+            final int defaultTarget = m_rowDefaults[m_row];
+            int nextc = 0;
+            for (int i = m_rowStarts[m_row]; i < end; ++i)
+            {
+                final char first = m_rangeFirsts[i];
+                if (first > nextc && defaultTarget != 0)
+                {
+                    consumer.acceptTransition((char)nextc, (char)(first-1), m_states[defaultTarget-1]);
+                }
+                final int target = _getRangeTarget(i);
+                if (target != 0)
+                {
+                    consumer.acceptTransition(first, m_rangeLasts[i], m_states[target-1]);
+                }
+                nextc = m_rangeLasts[i]+1;
+            }
+            if (nextc <= Character.MAX_VALUE && defaultTarget != 0)
+            {
+                consumer.acceptTransition((char)nextc, Character.MAX_VALUE, m_states[defaultTarget-1]);
+            }
+        }
+
+        @Override
+        public Iterable<DfaState<RESULT>> getSuccessorStates()
+        {
+            final List<DfaState<RESULT>> ret = new ArrayList<>();
+            enumerateTransitions((firstc, lastc, target) -> ret.add(target));
+            return ret;
+        }
+
+        @Override
+        public boolean hasSuccessorStates()
+        {
+            return m_rowDefaults[m_row] != 0 || m_rowStarts[m_row+1] > m_rowStarts[m_row];
+        }
+
+        @Override
+        public int skipSelfLoop(CharSequence src, int pos, int limit)
+        {
+            final int self = m_stateNum+1;
+            while (pos < limit && _getTarget(m_row, src.charAt(pos)) == self)
+            {
+                ++pos;
+            }
+            return pos;
+        }
+
+        @Override
+        public int skipSelfLoop(char[] src, int pos, int limit)
+        {
+            final int self = m_stateNum+1;
+            while (pos < limit && _getTarget(m_row, src[pos]) == self)
+            {
+                ++pos;
+            }
+            return pos;
+        }
+
+        @Override
+        public int skipSelfLoopBackward(CharSequence src, int pos, int limit)
+        {
+            final int self = m_stateNum+1;
+            while (pos > limit && _getTarget(m_row, src.charAt(pos-1)) == self)
+            {
+                --pos;
+            }
+            return pos;
+        }
+    }
+}
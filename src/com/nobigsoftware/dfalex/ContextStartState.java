@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Start state for a DFA with {@link Assertion}s, which has a different start state for
+ * each context of the character before the start position.
+ * <P>
+ * It acts as the start state for the start of the input, and provides the others through
+ * {@link #getStartStateAfter(int)}.
+ */
+class ContextStartState<MATCHRESULT> extends DfaState<MATCHRESULT>
+{
+    private final DfaState<MATCHRESULT>[] m_contextStates;
+    
+    private ContextStartState(DfaState<MATCHRESULT>[] contextStates)
+    {
+        m_contextStates = contextStates;
+    }
+    
+    /**
+     * Combine the start states produced for an NFA with assertions
+     * 
+     * @param states DFA start states.  If there are {@link Assertion#NUM_CONTEXTS} times as
+     *      many as numStarts, then they are the start states for each context, context-major.
+     * @param numStarts the number of start states requested
+     * @return a list of numStarts start states
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<DfaState<T>> combine(List<DfaState<T>> states, int numStarts)
+    {
+        if (states.size() == numStarts)
+        {
+            return states;
+        }
+        assert(states.size() == numStarts * Assertion.NUM_CONTEXTS);
+        List<DfaState<T>> ret = new ArrayList<>(numStarts);
+        for (int i=0; i<numStarts; ++i)
+        {
+            DfaState<T>[] contextStates = (DfaState<T>[])new DfaState<?>[Assertion.NUM_CONTEXTS];
+            for (int context = 0; context < contextStates.length; ++context)
+            {
+                contextStates[context] = states.get(context*numStarts + i);
+            }
+            ret.add(new ContextStartState<>(contextStates));
+        }
+        return ret;
+    }
+
+    @Override
+    public DfaState<MATCHRESULT> getStartStateAfter(int prevChar)
+    {
+        return m_contextStates[Assertion.contextOf(prevChar)];
+    }
+    
+    @Override
+    public DfaState<MATCHRESULT> getNextState(char c)
+    {
+        return m_contextStates[0].getNextState(c);
+    }
+
+    @Override
+    public MATCHRESULT getMatch()
+    {
+        return m_contextStates[0].getMatch();
+    }
+
+    @Override
+    public int getMatchId()
+    {
+        return m_contextStates[0].getMatchId();
+    }
+
+    @Override
+    public MATCHRESULT getMatchBefore(int nextChar)
+    {
+        return m_contextStates[0].getMatchBefore(nextChar);
+    }
+
+    @Override
+    public int getMatchIdBefore(int nextChar)
+    {
+        return m_contextStates[0].getMatchIdBefore(nextChar);
+    }
+
+    @Override
+    public boolean hasConditionalMatch()
+    {
+        return m_contextStates[0].hasConditionalMatch();
+    }
+
+    @Override
+    public int getStateNumber()
+    {
+        return m_contextStates[0].getStateNumber();
+    }
+
+    @Override
+    public void enumerateTransitions(DfaTransitionConsumer<MATCHRESULT> consumer)
+    {
+        m_contextStates[0].enumerateTransitions(consumer);
+    }
+
+    @Override
+    public Iterable<DfaState<MATCHRESULT>> getSuccessorStates()
+    {
+        return m_contextStates[0].getSuccessorStates();
+    }
+
+    @Override
+    public boolean hasSuccessorStates()
+    {
+        return m_contextStates[0].hasSuccessorStates();
+    }
+
+    @Override
+    public int skipSelfLoop(CharSequence src, int pos, int limit)
+    {
+        return m_contextStates[0].skipSelfLoop(src, pos, limit);
+    }
+
+    @Override
+    public int skipSelfLoop(char[] src, int pos, int limit)
+    {
+        return m_contextStates[0].skipSelfLoop(src, pos, limit);
+    }
+
+    @Override
+    public int skipSelfLoopBackward(CharSequence src, int pos, int limit)
+    {
+        return m_contextStates[0].skipSelfLoopBackward(src, pos, limit);
+    }
+}
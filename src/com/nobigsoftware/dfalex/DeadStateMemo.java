@@ -0,0 +1,353 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.Arrays;
+
+/**
+ * Remembers (position, state) pairs from which a DFA can't find any more matches.
+ * <P>
+ * When a matcher runs a DFA from many different start positions, the runs often pass through the
+ * same states at the same positions.  If a run reaches a pair that an earlier run found to be
+ * dead, it can stop right away.  Since each pair is only processed once before it's
+ * recorded, this bounds the total work to the number of distinct pairs, as long as runs start
+ * at increasing positions.  Dead pairs before the start of the current run are discarded.
+ * <P>
+ * A matcher calls {@link #startRun(int)} before each run, {@link #visit(int, int, int)} for each
+ * state it passes through, {@link #matched()} whenever it finds a match, and {@link #endRun()} at
+ * the end.  Everything visited after the last match in a run is dead.
+ * <P>
+ * Single pairs are kept in an open-addressed hash set.  Runs through states that loop back to
+ * themselves are kept as one interval of positions per state, so skipping over a long run costs
+ * no memory.  When a state gets a new interval that doesn't touch its old one, the part of the
+ * old one that can still be reached is moved into the hash set, so nothing is forgotten.
+ * <P>
+ * The memo is only valid for a single source string and search limit.  Matchers that don't
+ * know in advance whether they will rescan much can use a {@link RescanTracker} to create one
+ * when it's needed.
+ */
+class DeadStateMemo
+{
+    private static final long EMPTY = -1L;
+    
+    //hash set of dead (position << 32 | state number) pairs
+    private long[] m_deadPairs = new long[256];
+    private int m_deadPairCount = 0;
+    //entries with positions before this can't be reached anymore, and can be discarded
+    private int m_minPos = 0;
+    
+    //the latest dead interval for each state number, inclusive.  Empty if start > end.
+    //Older intervals are spilled into m_deadPairs
+    private int[] m_loopStarts = new int[16];
+    private int[] m_loopEnds = new int[16];
+    
+    //pending visits in the current run, since the last match, as (state, first position, last position)
+    private int[] m_pending = new int[48];
+    private int m_pendingLen = 0;
+    
+    DeadStateMemo()
+    {
+        Arrays.fill(m_deadPairs, EMPTY);
+        Arrays.fill(m_loopStarts, 1);
+    }
+    
+    /**
+     * Start a new run
+     * 
+     * @param startPos the position at which the run starts
+     */
+    void startRun(int startPos)
+    {
+        m_pendingLen = 0;
+        m_minPos = startPos;
+    }
+    
+    /**
+     * Check whether a state is dead at a position
+     * 
+     * @param stateNum the state number
+     * @param pos the position in the source
+     * @return true if no match can be found from the given state at the given position
+     */
+    boolean isDead(int stateNum, int pos)
+    {
+        if (stateNum < m_loopStarts.length && pos >= m_loopStarts[stateNum] && pos <= m_loopEnds[stateNum])
+        {
+            return true;
+        }
+        final long key = _key(stateNum, pos);
+        final int mask = m_deadPairs.length-1;
+        for (int i = _hash(key) & mask; ; i = (i+1) & mask)
+        {
+            final long k = m_deadPairs[i];
+            if (k == key)
+            {
+                return true;
+            }
+            if (k == EMPTY)
+            {
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * Record that the current run was in a state at a range of positions
+     * 
+     * @param stateNum the state number
+     * @param firstPos the first position
+     * @param lastPos the last position
+     */
+    void visit(int stateNum, int firstPos, int lastPos)
+    {
+        if (m_pendingLen > 0 && m_pending[m_pendingLen-3] == stateNum && m_pending[m_pendingLen-1]+1 >= firstPos)
+        {
+            //continues the previous visit
+            m_pending[m_pendingLen-1] = lastPos;
+            return;
+        }
+        if (m_pendingLen + 3 > m_pending.length)
+        {
+            m_pending = Arrays.copyOf(m_pending, m_pending.length*2);
+        }
+        m_pending[m_pendingLen++] = stateNum;
+        m_pending[m_pendingLen++] = firstPos;
+        m_pending[m_pendingLen++] = lastPos;
+    }
+    
+    /**
+     * The current run found a match.  The visits so far are not dead
+     */
+    void matched()
+    {
+        m_pendingLen = 0;
+    }
+    
+    /**
+     * The current run was cut off before the end of the input.  The pending visits might not
+     * be dead, so they're forgotten
+     */
+    void abandonRun()
+    {
+        m_pendingLen = 0;
+    }
+    
+    /**
+     * The current run is finished.  All the pending visits are dead
+     */
+    void endRun()
+    {
+        for (int i=0; i<m_pendingLen; i+=3)
+        {
+            final int stateNum = m_pending[i];
+            final int first = m_pending[i+1];
+            final int last = m_pending[i+2];
+            if (first == last)
+            {
+                _addDeadPair(stateNum, first);
+            }
+            else
+            {
+                _addDeadInterval(stateNum, first, last);
+            }
+        }
+        m_pendingLen = 0;
+    }
+    
+    private void _addDeadInterval(int stateNum, int first, int last)
+    {
+        if (stateNum >= m_loopStarts.length)
+        {
+            int oldLen = m_loopStarts.length;
+            int newLen = Math.max(oldLen*2, stateNum+1);
+            m_loopStarts = Arrays.copyOf(m_loopStarts, newLen);
+            m_loopEnds = Arrays.copyOf(m_loopEnds, newLen);
+            Arrays.fill(m_loopStarts, oldLen, newLen, 1);
+        }
+        final int oldFirst = m_loopStarts[stateNum];
+        final int oldLast = m_loopEnds[stateNum];
+        if (oldFirst <= oldLast)
+        {
+            if (first <= oldLast+1 && last+1 >= oldFirst)
+            {
+                //overlapping or adjacent -- merge
+                first = Math.min(first, oldFirst);
+                last = Math.max(last, oldLast);
+            }
+            else
+            {
+                //keep the reachable part of the old interval as pairs.  Every one of these
+                //was visited, so this costs no more than the work already done
+                for (int pos = Math.max(oldFirst, m_minPos); pos <= oldLast; ++pos)
+                {
+                    _addDeadPair(stateNum, pos);
+                }
+            }
+        }
+        m_loopStarts[stateNum] = first;
+        m_loopEnds[stateNum] = last;
+    }
+    
+    private void _addDeadPair(int stateNum, int pos)
+    {
+        if ((m_deadPairCount+1)*2 > m_deadPairs.length)
+        {
+            _rehash();
+        }
+        final long key = _key(stateNum, pos);
+        final int mask = m_deadPairs.length-1;
+        for (int i = _hash(key) & mask; ; i = (i+1) & mask)
+        {
+            final long k = m_deadPairs[i];
+            if (k == key)
+            {
+                return;
+            }
+            if (k == EMPTY)
+            {
+                m_deadPairs[i] = key;
+                ++m_deadPairCount;
+                return;
+            }
+        }
+    }
+    
+    //drop unreachable entries, and grow if that doesn't free up enough space
+    private void _rehash()
+    {
+        final long[] oldPairs = m_deadPairs;
+        final long minKey = ((long)m_minPos)<<32;
+        int count = 0;
+        for (long k : oldPairs)
+        {
+            if (k >= minKey)
+            {
+                ++count;
+            }
+        }
+        int newLen = oldPairs.length;
+        while ((count+1)*4 > newLen)
+        {
+            newLen *= 2;
+        }
+        m_deadPairs = new long[newLen];
+        Arrays.fill(m_deadPairs, EMPTY);
+        m_deadPairCount = 0;
+        final int mask = newLen-1;
+        for (long k : oldPairs)
+        {
+            if (k >= minKey)
+            {
+                int i = _hash(k) & mask;
+                while (m_deadPairs[i] != EMPTY)
+                {
+                    i = (i+1) & mask;
+                }
+                m_deadPairs[i] = k;
+                ++m_deadPairCount;
+            }
+        }
+    }
+    
+    /**
+     * Creates a memo for a matcher when its runs start rescanning too much
+     * <P>
+     * Checking a memo slows down every step, so matchers start without one, and report the
+     * range of positions that each run examines.  When the number of characters examined more
+     * than once gets bigger than the number examined, plus an allowance, the runs are going
+     * quadratic, and a memo is created.
+     */
+    static final class RescanTracker
+    {
+        //number of characters we're allowed to rescan, in addition to the number of characters
+        //scanned, before we start using the dead state memo
+        private static final int RESCAN_ALLOWANCE = 256;
+        
+        private DeadStateMemo m_memo = null;
+        //Runs since the last reset have examined [m_scanFrom, m_scannedTo),
+        //and m_rescanned characters were examined more than once
+        private int m_scanFrom = -1;
+        private int m_scannedTo = 0;
+        private long m_rescanned = 0;
+        
+        /**
+         * @return the memo to use, or null if runs haven't rescanned enough to need one
+         */
+        DeadStateMemo getMemo()
+        {
+            return m_memo;
+        }
+        
+        /**
+         * Start using a memo right away
+         */
+        void startMemo()
+        {
+            if (m_memo == null)
+            {
+                m_memo = new DeadStateMemo();
+            }
+        }
+        
+        /**
+         * Record the positions examined by a run made without the memo
+         * 
+         * @param startPos the position at which the run started
+         * @param endPos the position after the last character the run examined
+         */
+        void track(int startPos, int endPos)
+        {
+            if (m_scanFrom < 0)
+            {
+                m_scanFrom = startPos;
+            }
+            if (startPos < m_scannedTo)
+            {
+                m_rescanned += Math.min(endPos, m_scannedTo) - startPos;
+                if (m_rescanned > (long)(m_scannedTo - m_scanFrom) + RESCAN_ALLOWANCE)
+                {
+                    startMemo();
+                }
+            }
+            if (endPos > m_scannedTo)
+            {
+                m_scannedTo = endPos;
+            }
+        }
+        
+        /**
+         * Forget the memo and everything tracked so far, for a new source or search limit
+         */
+        void reset()
+        {
+            m_memo = null;
+            m_scanFrom = -1;
+            m_scannedTo = 0;
+            m_rescanned = 0;
+        }
+    }
+    
+    private static long _key(int stateNum, int pos)
+    {
+        return (((long)pos)<<32) | (stateNum & 0xFFFFFFFFL);
+    }
+    
+    private static int _hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 29));
+    }
+}
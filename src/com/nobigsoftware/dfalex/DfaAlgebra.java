@@ -0,0 +1,475 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Set operations on DFAs that have already been built
+ * <P>
+ * These combine DFAs with a product construction, instead of rebuilding them from their
+ * patterns, so you can build and cache a DFA for each group of patterns once and then
+ * combine them as needed.  Only the reachable combinations of operand states are
+ * explored, and the result is minimized.
+ * <P>
+ * The operands can be any DFAs, including ones with {@link Assertion}s and the results of
+ * other operations.  The match IDs of results are assigned in operand order: the results
+ * of the first operand keep their IDs, the results of later operands follow, and results
+ * produced by an ambiguity resolver come last.
+ */
+public final class DfaAlgebra
+{
+    private DfaAlgebra()
+    {
+    }
+
+    /**
+     * Make a DFA that matches the strings that any of the given DFAs match
+     *
+     * @param dfas start states of the DFAs to combine
+     * @param ambiguityResolver When different DFAs produce different results for the same string, this is called to
+     *                          combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                          will be thrown in that case.
+     * @return the start state of the combined DFA
+     */
+    public static <MATCHRESULT> DfaState<MATCHRESULT> union(List<DfaState<MATCHRESULT>> dfas,
+            DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
+    {
+        return _product(dfas, new Operation<MATCHRESULT>()
+        {
+            @Override
+            MATCHRESULT getMatch(List<MATCHRESULT> matches)
+            {
+                return _resolve(matches, ambiguityResolver);
+            }
+
+            @Override
+            boolean isDead(DfaState<MATCHRESULT>[] states)
+            {
+                for (DfaState<MATCHRESULT> state : states)
+                {
+                    if (state != null)
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Make a DFA that matches the strings that all of the given DFAs match
+     *
+     * @param dfas start states of the DFAs to combine
+     * @param ambiguityResolver When different DFAs produce different results for the same string, this is called to
+     *                          combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                          will be thrown in that case.
+     * @return the start state of the combined DFA
+     */
+    public static <MATCHRESULT> DfaState<MATCHRESULT> intersection(List<DfaState<MATCHRESULT>> dfas,
+            DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
+    {
+        return _product(dfas, new Operation<MATCHRESULT>()
+        {
+            @Override
+            MATCHRESULT getMatch(List<MATCHRESULT> matches)
+            {
+                return (matches.contains(null) ? null : _resolve(matches, ambiguityResolver));
+            }
+
+            @Override
+            boolean isDead(DfaState<MATCHRESULT>[] states)
+            {
+                return Arrays.asList(states).contains(null);
+            }
+        });
+    }
+
+    /**
+     * Make a DFA that matches the strings that one DFA matches and another one doesn't
+     *
+     * @param dfa start state of the DFA that provides the results
+     * @param exclude start state of a DFA that matches strings to exclude
+     * @return the start state of the combined DFA
+     */
+    public static <MATCHRESULT> DfaState<MATCHRESULT> difference(DfaState<MATCHRESULT> dfa, DfaState<?> exclude)
+    {
+        @SuppressWarnings("unchecked")
+        List<DfaState<Object>> operands = Arrays.asList((DfaState<Object>)dfa, (DfaState<Object>)exclude);
+        return _product(operands, new Operation<Object>()
+        {
+            @Override
+            Object getMatch(List<Object> matches)
+            {
+                return (matches.get(1) != null ? null : matches.get(0));
+            }
+
+            @Override
+            boolean isDead(DfaState<Object>[] states)
+            {
+                return states[0] == null;
+            }
+        });
+    }
+
+    /**
+     * Make a DFA that matches the strings that a DFA doesn't match
+     *
+     * @param dfa start state of the DFA to complement
+     * @param result the result for strings that dfa doesn't match
+     * @return the start state of the complement DFA
+     */
+    public static <MATCHRESULT> DfaState<MATCHRESULT> complement(DfaState<?> dfa, MATCHRESULT result)
+    {
+        @SuppressWarnings("unchecked")
+        List<DfaState<Object>> operands = Collections.singletonList((DfaState<Object>)dfa);
+        return _product(operands, new Operation<Object>()
+        {
+            @Override
+            Object getMatch(List<Object> matches)
+            {
+                return (matches.get(0) != null ? null : result);
+            }
+
+            @Override
+            boolean isDead(DfaState<Object>[] states)
+            {
+                return false;
+            }
+        });
+    }
+
+    //combines the matches of operand states
+    private static abstract class Operation<T>
+    {
+        /**
+         * @param matches the operands' matches, with null for operands that don't match
+         * @return the combined match
+         */
+        abstract Object getMatch(List<T> matches);
+
+        /**
+         * @param states operand states, with null for dead operands
+         * @return true if the combined state can't lead to a match
+         */
+        abstract boolean isDead(DfaState<T>[] states);
+    }
+
+    private static <T> T _resolve(List<T> matches, DfaAmbiguityResolver<? super T> ambiguityResolver)
+    {
+        Set<T> results = new LinkedHashSet<>(matches);
+        results.remove(null);
+        if (results.size() <= 1)
+        {
+            return (results.isEmpty() ? null : results.iterator().next());
+        }
+        if (ambiguityResolver == null)
+        {
+            throw new DfaAmbiguityException(results);
+        }
+        @SuppressWarnings("unchecked")
+        T ret = (T)ambiguityResolver.apply(results);
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, R> DfaState<R> _product(List<DfaState<T>> operands, Operation<T> op)
+    {
+        final int numOperands = operands.size();
+        final HashMap<Object, Integer> acceptSetMap = new HashMap<>();
+        final ArrayList<Object> acceptSets = new ArrayList<>();
+        acceptSets.add(null);
+        boolean isFirst = true;
+        for (DfaState<T> operand : operands)
+        {
+            for (Map.Entry<Integer, Object> entry : _getResults(operand).entrySet())
+            {
+                final Object result = entry.getValue();
+                if (!acceptSetMap.containsKey(result))
+                {
+                    if (isFirst)
+                    {
+                        //the first operand's IDs can be sparse, e.g. when it was built for a subset
+                        //of a DfaBuilder's results.  Pad so they're kept
+                        while (acceptSets.size() <= entry.getKey())
+                        {
+                            acceptSets.add(null);
+                        }
+                    }
+                    acceptSetMap.put(result, acceptSets.size());
+                    acceptSets.add(result);
+                }
+            }
+            isFirst = false;
+        }
+
+        final HashMap<IntListKey, Integer> stateMap = new HashMap<>();
+        final List<DfaState<T>[]> stateTuples = new ArrayList<>();
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        //start states.  With assertions, one for each context, context-major
+        boolean hasContexts = false;
+        for (DfaState<T> operand : operands)
+        {
+            for (int prevChar : Assertion.CONTEXT_EXAMPLES)
+            {
+                hasContexts |= (operand.getStartStateAfter(prevChar) != operand);
+            }
+        }
+        int[] startStates = new int[hasContexts ? Assertion.NUM_CONTEXTS : 1];
+        DfaState<T>[] tuple = (DfaState<T>[])new DfaState<?>[numOperands];
+        for (int context = 0; context < startStates.length; ++context)
+        {
+            for (int i=0; i<numOperands; ++i)
+            {
+                tuple[i] = (hasContexts ? operands.get(i).getStartStateAfter(Assertion.CONTEXT_EXAMPLES[context]) : operands.get(i));
+            }
+            startStates[context] = _getState(tuple, stateMap, stateTuples, queue);
+        }
+
+        final List<DfaStateInfo> dfaStates = new ArrayList<>();
+        final List<T> matches = new ArrayList<>(numOperands);
+        final List<NfaTransition> transitions = new ArrayList<>();
+        final BitSet bounds = new BitSet();
+        while(!queue.isEmpty())
+        {
+            DfaState<T>[] states = stateTuples.get(queue.removeFirst());
+
+            //results
+            matches.clear();
+            boolean conditional = false;
+            for (DfaState<T> state : states)
+            {
+                matches.add(state == null ? null : state.getMatch());
+                conditional |= (state != null && state.hasConditionalMatch());
+            }
+            int acceptSetIndex = _getAcceptSetIndex(op.getMatch(matches), acceptSetMap, acceptSets);
+            int[] lookaheadAcceptSetIndexes = null;
+            if (conditional)
+            {
+                lookaheadAcceptSetIndexes = new int[Assertion.NUM_CONTEXTS];
+                for (int context = 0; context < lookaheadAcceptSetIndexes.length; ++context)
+                {
+                    matches.clear();
+                    for (DfaState<T> state : states)
+                    {
+                        matches.add(state == null ? null : state.getMatchBefore(Assertion.CONTEXT_EXAMPLES[context]));
+                    }
+                    lookaheadAcceptSetIndexes[context] = _getAcceptSetIndex(op.getMatch(matches), acceptSetMap, acceptSets);
+                }
+            }
+
+            //transitions, over the ranges between all the operands' transition boundaries
+            bounds.clear();
+            bounds.set(0);
+            for (DfaState<T> state : states)
+            {
+                if (state != null)
+                {
+                    state.enumerateTransitions((first, last, target) -> {
+                        bounds.set(first);
+                        bounds.set(last+1);
+                    });
+                }
+            }
+            transitions.clear();
+            for (int first = 0; first >= 0 && first <= Character.MAX_VALUE;)
+            {
+                int next = bounds.nextSetBit(first+1);
+                char last = (char)(next < 0 || next > Character.MAX_VALUE ? Character.MAX_VALUE : next-1);
+                for (int i=0; i<numOperands; ++i)
+                {
+                    tuple[i] = (states[i] == null ? null : states[i].getNextState((char)first));
+                }
+                if (!op.isDead(tuple))
+                {
+                    int target = _getState(tuple, stateMap, stateTuples, queue);
+                    int prev = transitions.size()-1;
+                    if (prev >= 0 && transitions.get(prev).m_stateNum == target && transitions.get(prev).m_lastChar == first-1)
+                    {
+                        transitions.set(prev, new NfaTransition(transitions.get(prev).m_firstChar, last, target));
+                    }
+                    else
+                    {
+                        transitions.add(new NfaTransition((char)first, last, target));
+                    }
+                }
+                first = next;
+            }
+            dfaStates.add(new DfaStateInfo(transitions, acceptSetIndex, lookaheadAcceptSetIndexes));
+        }
+        RawDfa<R> rawDfa = new RawDfa<>(_removeDeadStates(dfaStates, startStates), (List<R>)acceptSets, startStates);
+        RawDfa<R> minimalDfa = new DfaMinimizer<R>(rawDfa).getMinimizedDfa();
+        return ContextStartState.combine(new SerializableDfa<>(minimalDfa).getStartStates(), 1).get(0);
+    }
+
+    //remove states that can't lead to a match, and renumber the rest, including startStates
+    private static List<DfaStateInfo> _removeDeadStates(List<DfaStateInfo> states, int[] startStates)
+    {
+        final int numStates = states.size();
+        List<List<Integer>> sources = new ArrayList<>(numStates);
+        for (int i=0; i<numStates; ++i)
+        {
+            sources.add(new ArrayList<>());
+        }
+        BitSet live = new BitSet();
+        ArrayDeque<Integer> togo = new ArrayDeque<>();
+        for (int i=0; i<numStates; ++i)
+        {
+            DfaStateInfo info = states.get(i);
+            boolean accepting = info.getAcceptSetIndex() != 0;
+            if (info.getLookaheadAcceptSetIndexes() != null)
+            {
+                for (int index : info.getLookaheadAcceptSetIndexes())
+                {
+                    accepting |= (index != 0);
+                }
+            }
+            if (accepting)
+            {
+                live.set(i);
+                togo.add(i);
+            }
+            final int source = i;
+            info.forEachTransition(trans -> sources.get(trans.m_stateNum).add(source));
+        }
+        while(!togo.isEmpty())
+        {
+            for (int source : sources.get(togo.removeFirst()))
+            {
+                if (!live.get(source))
+                {
+                    live.set(source);
+                    togo.add(source);
+                }
+            }
+        }
+        //start states are kept even if they're dead
+        BitSet keep = (BitSet)live.clone();
+        for (int start : startStates)
+        {
+            keep.set(start);
+        }
+        int[] newNumbers = new int[numStates];
+        int count = 0;
+        for (int i=0; i<numStates; ++i)
+        {
+            newNumbers[i] = (keep.get(i) ? count++ : -1);
+        }
+        for (int i=0; i<startStates.length; ++i)
+        {
+            startStates[i] = newNumbers[startStates[i]];
+        }
+        List<DfaStateInfo> ret = new ArrayList<>(count);
+        List<NfaTransition> transitions = new ArrayList<>();
+        for (int i = keep.nextSetBit(0); i >= 0; i = keep.nextSetBit(i+1))
+        {
+            DfaStateInfo info = states.get(i);
+            transitions.clear();
+            info.forEachTransition(trans -> {
+                if (live.get(trans.m_stateNum))
+                {
+                    transitions.add(new NfaTransition(trans.m_firstChar, trans.m_lastChar, newNumbers[trans.m_stateNum]));
+                }
+            });
+            ret.add(new DfaStateInfo(transitions, info.getAcceptSetIndex(), info.getLookaheadAcceptSetIndexes()));
+        }
+        return ret;
+    }
+
+    //get or create the index of a product state.  States are numbered in the order they're queued
+    private static <T> int _getState(DfaState<T>[] tuple, HashMap<IntListKey, Integer> stateMap,
+            List<DfaState<T>[]> stateTuples, ArrayDeque<Integer> queue)
+    {
+        IntListKey key = new IntListKey();
+        for (DfaState<T> state : tuple)
+        {
+            key.add(state == null ? -1 : state.getStateNumber());
+        }
+        Integer ret = stateMap.get(key);
+        if (ret == null)
+        {
+            ret = stateTuples.size();
+            stateTuples.add(tuple.clone());
+            stateMap.put(key, ret);
+            queue.addLast(ret);
+        }
+        return ret;
+    }
+
+    private static int _getAcceptSetIndex(Object result, HashMap<Object, Integer> acceptSetMap, ArrayList<Object> acceptSets)
+    {
+        if (result == null)
+        {
+            return 0;
+        }
+        return acceptSetMap.computeIfAbsent(result, x -> {
+            acceptSets.add(x);
+            return acceptSets.size()-1;
+        });
+    }
+
+    //results of a DFA, by match ID
+    private static TreeMap<Integer, Object> _getResults(DfaState<?> start)
+    {
+        TreeMap<Integer, Object> results = new TreeMap<>();
+        HashMap<Integer, DfaState<?>> seen = new HashMap<>();
+        ArrayDeque<DfaState<?>> queue = new ArrayDeque<>();
+        for (int prevChar : Assertion.CONTEXT_EXAMPLES)
+        {
+            queue.add(start.getStartStateAfter(prevChar));
+        }
+        queue.add(start);
+        while(!queue.isEmpty())
+        {
+            DfaState<?> state = queue.removeFirst();
+            if (seen.putIfAbsent(state.getStateNumber(), state) != null)
+            {
+                continue;
+            }
+            if (state.getMatch() != null)
+            {
+                results.putIfAbsent(state.getMatchId(), state.getMatch());
+            }
+            if (state.hasConditionalMatch())
+            {
+                for (int nextChar : Assertion.CONTEXT_EXAMPLES)
+                {
+                    if (state.getMatchBefore(nextChar) != null)
+                    {
+                        results.putIfAbsent(state.getMatchIdBefore(nextChar), state.getMatchBefore(nextChar));
+                    }
+                }
+            }
+            for (DfaState<?> target : state.getSuccessorStates())
+            {
+                queue.add(target);
+            }
+        }
+        return results;
+    }
+}
@@ -35,14 +35,21 @@ import java.util.function.BiConsumer;
  * <P>
  * Use one instance of this class to calculate everything you need.  It will remember
  * results you ask for and reuse them for other calculations when required.
+ * <P>
+ * Instances of this class are thread-safe, and don't lock.  Results are calculated
+ * the first time they are needed.  If two threads ask for the same result at the same time,
+ * they might both calculate it, but they will get equal answers.
  */
 public class DfaAuxiliaryInformation<MATCHRESULT>
 {
     private static final Object SENTINEL = new Object();
     private final List<DfaState<MATCHRESULT>> m_startStates;
-    private List<DfaState<MATCHRESULT>> m_statesByNumber = null;
-    private int[] m_cycleNumbers = null;
-    private List<MATCHRESULT> m_destiniesByNumber = null;
+    //Memoized results.  Each one is completely calculated before it's stored, so the
+    //volatile write publishes it safely
+    private volatile List<DfaState<MATCHRESULT>> m_statesByNumber = null;
+    private volatile int[] m_cycleNumbers = null;
+    private volatile List<MATCHRESULT> m_destiniesByNumber = null;
+    private volatile List<MATCHRESULT> m_matchResultsById = null;
     
     /**
      * Create a new DfaAuxiliaryInformation.
@@ -50,12 +57,28 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
      * @param startStates   A collection of start states returned by a single call to {@link DfaBuilder}.
      *      The states must have been returned by a single call, so that the state numbers of all states
      *      they reach will be unique.  Methods of this class will calculate various information about
-     *      these states
+     *      these states.  Start states for matches that start after other characters
+     *      (see {@link DfaState#getStartStateAfter(int)}) are included too.
      */
     public DfaAuxiliaryInformation(Collection<DfaState<MATCHRESULT>> startStates)
     {
         m_startStates = new ArrayList<>(startStates.size());
-        m_startStates.addAll(startStates);
+        for (DfaState<MATCHRESULT> state : startStates)
+        {
+            if (state == null)
+            {
+                m_startStates.add(null);
+                continue;
+            }
+            for (int c : Assertion.CONTEXT_EXAMPLES)
+            {
+                DfaState<MATCHRESULT> contextState = state.getStartStateAfter(c);
+                if (c == DfaState.NO_CHAR || contextState != state)
+                {
+                    m_startStates.add(contextState);
+                }
+            }
+        }
     }
     
     /**
@@ -67,9 +90,10 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
      *      the index of each state s equal to s.getStateNumber().  Unused indexes will
      *      have null values.
      */
-    public synchronized List<DfaState<MATCHRESULT>> getStatesByNumber()
+    public List<DfaState<MATCHRESULT>> getStatesByNumber()
     {
-        if (m_statesByNumber == null)
+        List<DfaState<MATCHRESULT>> ret = m_statesByNumber;
+        if (ret == null)
         {
             List<DfaState<MATCHRESULT>> statesByNumber = new ArrayList<>();
             ArrayDeque<DfaState<MATCHRESULT>> q = new ArrayDeque<>();
@@ -105,9 +129,9 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
                     }
                 });
             }
-            m_statesByNumber = statesByNumber;
+            m_statesByNumber = ret = statesByNumber;
         }
-        return m_statesByNumber;
+        return ret;
     }
     
     /**
@@ -197,11 +221,12 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
      * 
      * @return  the cycle numbers array
      */
-    public synchronized int[] getCycleNumbers()
+    public int[] getCycleNumbers()
     {
-        if (m_cycleNumbers != null)
+        final int[] memo = m_cycleNumbers;
+        if (memo != null)
         {
-            return m_cycleNumbers;
+            return memo;
         }
         //Tarjan's algorithm
         final int[] pindex = new int[]{0};
@@ -259,8 +284,8 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
             }
         };
         
-        m_cycleNumbers = cycleNumbers;
         depthFirstSearch(onEnter, onSkip, onExit);
+        m_cycleNumbers = cycleNumbers;
         return cycleNumbers;
     }
     
@@ -274,19 +299,20 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
      * 
      * @return  The list of destinies by state number
      */
-    public synchronized List<MATCHRESULT> getDestinies()
+    public List<MATCHRESULT> getDestinies()
     {
-        if (m_destiniesByNumber != null)
+        final List<MATCHRESULT> memo = m_destiniesByNumber;
+        if (memo != null)
         {
-            return m_destiniesByNumber;
+            return memo;
         }
-        getCycleNumbers();
+        final int[] cycleNumbers = getCycleNumbers();
         int numCycles = 0;
-        for (int i=0;i<m_cycleNumbers.length;++i)
+        for (int i=0;i<cycleNumbers.length;++i)
         {
-            if (m_cycleNumbers[i]>=numCycles)
+            if (cycleNumbers[i]>=numCycles)
             {
-                numCycles = m_cycleNumbers[i]+1;
+                numCycles = cycleNumbers[i]+1;
             }
         }
         final Object[] destinies = new Object[getStatesByNumber().size()];
@@ -294,7 +320,7 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
         BiConsumer<DfaState<MATCHRESULT>, DfaState<MATCHRESULT>> onEnter = (parent, child) ->
         {
             int childi = child.getStateNumber();
-            int cycle = m_cycleNumbers[childi];
+            int cycle = cycleNumbers[childi];
             if (cycle >= 0)
             {
                 cycleDestinies[cycle]=_destinyMerge(cycleDestinies[cycle],child.getMatch());
@@ -310,9 +336,9 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
             {
                 int childi = child.getStateNumber();
                 int pari = parent.getStateNumber();
-                int cycle = m_cycleNumbers[childi];
+                int cycle = cycleNumbers[childi];
                 Object o = (cycle >= 0 ? cycleDestinies[cycle] : destinies[childi]);
-                cycle = m_cycleNumbers[pari];
+                cycle = cycleNumbers[pari];
                 if (cycle>=0)
                 {
                     cycleDestinies[cycle] = _destinyMerge(cycleDestinies[cycle],o);
@@ -327,14 +353,62 @@ public class DfaAuxiliaryInformation<MATCHRESULT>
   
         for (int i=0; i<destinies.length; ++i)
         {
-            int cycleNum = m_cycleNumbers[i];
+            int cycleNum = cycleNumbers[i];
             Object o = (cycleNum >= 0 ? cycleDestinies[cycleNum] : destinies[i]);
             destinies[i] = (o == SENTINEL ? null : o);
         }
-        m_destiniesByNumber = new ListWrap<>(destinies);
-        return m_destiniesByNumber;
+        final List<MATCHRESULT> ret = new ListWrap<>(destinies);
+        m_destiniesByNumber = ret;
+        return ret;
+    }
+    
+    
+    /**
+     * Get a list that maps each match ID to its MATCHRESULT
+     * <P>
+     * See {@link DfaState#getMatchId()}
+     * 
+     * @return The list of match results, with the index of each result equal to its
+     *      match ID.  IDs that aren't produced by any reachable state will have null values.
+     */
+    public List<MATCHRESULT> getMatchResultsById()
+    {
+        List<MATCHRESULT> ret = m_matchResultsById;
+        if (ret == null)
+        {
+            List<MATCHRESULT> results = new ArrayList<>();
+            for (DfaState<MATCHRESULT> state : getStatesByNumber())
+            {
+                if (state == null)
+                {
+                    continue;
+                }
+                _addMatchResult(results, state.getMatchId(), state.getMatch());
+                if (state.hasConditionalMatch())
+                {
+                    for (int c : Assertion.CONTEXT_EXAMPLES)
+                    {
+                        _addMatchResult(results, state.getMatchIdBefore(c), state.getMatchBefore(c));
+                    }
+                }
+            }
+            m_matchResultsById = ret = results;
+        }
+        return ret;
     }
     
+    private static <T> void _addMatchResult(List<T> results, int id, T result)
+    {
+        if (id < 0)
+        {
+            return;
+        }
+        while (results.size() <= id)
+        {
+            results.add(null);
+        }
+        results.set(id, result);
+    }
     
     private static Object _destinyMerge(Object a, Object b)
     {
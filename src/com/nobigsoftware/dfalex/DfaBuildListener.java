@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+/**
+ * A functional interface that is told about DFA builds
+ * <P>
+ * Set one with {@link DfaBuilder#setBuildListener(DfaBuildListener)} to log builds, or
+ * to forward their statistics to a monitoring system.
+ */
+public interface DfaBuildListener
+{
+    /**
+     * Called after a DFA is built or loaded from a cache
+     * <P>
+     * This is called on the thread that did the build, before the build method returns.
+     *
+     * @param statistics sizes and timings for the build
+     */
+    void buildFinished(DfaBuildStatistics statistics);
+}
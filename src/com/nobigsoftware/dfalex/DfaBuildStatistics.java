@@ -0,0 +1,311 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+/**
+ * Sizes and timings recorded while building a DFA
+ * <P>
+ * These are reported to a {@link DfaBuildListener}, so you can see why a build is slow or big,
+ * and watch pattern sets grow.  When a DFA comes from a {@link com.nobigsoftware.util.BuilderCache},
+ * only the cache result and total time are recorded, and the other counts are 0.
+ */
+public final class DfaBuildStatistics
+{
+    /**
+     * The kinds of DFA that are built
+     */
+    public enum Kind
+    {
+        /** DFAs from {@link DfaBuilder#build(java.util.List, DfaAmbiguityResolver)} and the other build methods */
+        MATCHER,
+        /** DFAs from {@link DfaBuilder#buildReverseFinders(java.util.List)} */
+        REVERSE_FINDER,
+        /** DFAs from {@link DfaBuilder#buildFromNfa(Nfa, int[], DfaAmbiguityResolver, com.nobigsoftware.util.BuilderCache, DfaBuildListener)} */
+        FROM_NFA
+    }
+
+    /**
+     * How a build used its cache
+     */
+    public enum CacheResult
+    {
+        /** There was no cache */
+        NONE,
+        /** The DFA was found in the cache */
+        HIT,
+        /** The DFA wasn't in the cache, so it was built */
+        MISS
+    }
+
+    //rough sizes in bytes for memory estimates
+    private static final int NFA_STATE_BYTES = 64;
+    private static final int NFA_EDGE_BYTES = 32;
+    private static final int SIGNATURE_BYTES = 112;
+    private static final int DFA_STATE_BYTES = 56;
+    private static final int DFA_TRANSITION_BYTES = 32;
+
+    private final Kind m_kind;
+    private final int m_numStartStates;
+    private CacheResult m_cacheResult = CacheResult.NONE;
+    private int m_nfaStateCount = 0;
+    private int m_nfaEdgeCount = 0;
+    private int m_rawDfaStateCount = 0;
+    private int m_rawDfaTransitionCount = 0;
+    private int m_dfaStateCount = 0;
+    private int m_dfaTransitionCount = 0;
+    private int m_maxTransitionCount = 0;
+    private long m_signatureIntCount = 0;
+    private int m_maxSignatureLength = 0;
+    private long m_nfaNanos = 0;
+    private long m_subsetConstructionNanos = 0;
+    private long m_minimizationNanos = 0;
+    private long m_packingNanos = 0;
+    private long m_totalNanos = 0;
+
+    DfaBuildStatistics(Kind kind, int numStartStates)
+    {
+        m_kind = kind;
+        m_numStartStates = numStartStates;
+    }
+
+    void recordNfa(Nfa<?> nfa, long nanos)
+    {
+        m_nfaNanos = nanos;
+        m_nfaStateCount = nfa.numStates();
+        final int[] edges = new int[1];
+        for (int state = 0; state < m_nfaStateCount; ++state)
+        {
+            nfa.forStateTransitions(state, trans -> ++edges[0]);
+            nfa.forStateEpsilons(state, target -> ++edges[0]);
+            nfa.forStateAssertions(state, (assertion, target) -> ++edges[0]);
+        }
+        m_nfaEdgeCount = edges[0];
+    }
+
+    void recordSubsetConstruction(DfaFromNfa<?> dfaFromNfa, RawDfa<?> rawDfa, long nanos)
+    {
+        m_subsetConstructionNanos = nanos;
+        m_rawDfaStateCount = rawDfa.getStates().size();
+        m_rawDfaTransitionCount = 0;
+        for (DfaStateInfo info : rawDfa.getStates())
+        {
+            m_rawDfaTransitionCount += info.getTransitionCount();
+        }
+        m_signatureIntCount = dfaFromNfa.getSignatureIntCount();
+        m_maxSignatureLength = dfaFromNfa.getMaxSignatureLength();
+    }
+
+    void recordMinimization(RawDfa<?> minimalDfa, long nanos)
+    {
+        m_minimizationNanos = nanos;
+        m_dfaStateCount = minimalDfa.getStates().size();
+        m_dfaTransitionCount = 0;
+        m_maxTransitionCount = 0;
+        for (DfaStateInfo info : minimalDfa.getStates())
+        {
+            m_dfaTransitionCount += info.getTransitionCount();
+            m_maxTransitionCount = Math.max(m_maxTransitionCount, info.getTransitionCount());
+        }
+    }
+
+    void recordPacking(long nanos)
+    {
+        m_packingNanos = nanos;
+    }
+
+    void finish(CacheResult cacheResult, long totalNanos)
+    {
+        m_cacheResult = cacheResult;
+        m_totalNanos = totalNanos;
+    }
+
+    /**
+     * @return the kind of DFA that was built
+     */
+    public Kind getKind()
+    {
+        return m_kind;
+    }
+
+    /**
+     * @return the number of start states requested, which is the number of languages for
+     *      {@link Kind#MATCHER} and {@link Kind#REVERSE_FINDER} DFAs
+     */
+    public int getNumStartStates()
+    {
+        return m_numStartStates;
+    }
+
+    /**
+     * @return whether the DFA came from the cache
+     */
+    public CacheResult getCacheResult()
+    {
+        return m_cacheResult;
+    }
+
+    /**
+     * @return the number of states in the NFA
+     */
+    public int getNfaStateCount()
+    {
+        return m_nfaStateCount;
+    }
+
+    /**
+     * @return the number of transitions, epsilons and assertions in the NFA
+     */
+    public int getNfaEdgeCount()
+    {
+        return m_nfaEdgeCount;
+    }
+
+    /**
+     * @return the number of DFA states made by subset construction, before minimization
+     */
+    public int getRawDfaStateCount()
+    {
+        return m_rawDfaStateCount;
+    }
+
+    /**
+     * @return the number of transitions between DFA states before minimization
+     */
+    public int getRawDfaTransitionCount()
+    {
+        return m_rawDfaTransitionCount;
+    }
+
+    /**
+     * @return the number of states in the minimized DFA
+     */
+    public int getDfaStateCount()
+    {
+        return m_dfaStateCount;
+    }
+
+    /**
+     * @return the number of transitions in the minimized DFA
+     */
+    public int getDfaTransitionCount()
+    {
+        return m_dfaTransitionCount;
+    }
+
+    /**
+     * @return the largest number of transitions out of one state in the minimized DFA
+     */
+    public int getMaxTransitionCount()
+    {
+        return m_maxTransitionCount;
+    }
+
+    /**
+     * Get the total size of the encoded NFA state sets that identify DFA states during subset construction
+     * <P>
+     * This is usually the biggest part of the memory used by a build
+     *
+     * @return the number of ints in all the state signatures
+     */
+    public long getSignatureIntCount()
+    {
+        return m_signatureIntCount;
+    }
+
+    /**
+     * @return the number of ints in the longest DFA state signature
+     */
+    public int getMaxSignatureLength()
+    {
+        return m_maxSignatureLength;
+    }
+
+    /**
+     * @return nanoseconds spent making the NFA from the patterns
+     */
+    public long getNfaNanos()
+    {
+        return m_nfaNanos;
+    }
+
+    /**
+     * @return nanoseconds spent making the DFA from the NFA
+     */
+    public long getSubsetConstructionNanos()
+    {
+        return m_subsetConstructionNanos;
+    }
+
+    /**
+     * @return nanoseconds spent minimizing the DFA
+     */
+    public long getMinimizationNanos()
+    {
+        return m_minimizationNanos;
+    }
+
+    /**
+     * @return nanoseconds spent reordering the minimized DFA and putting it in its serializable form
+     */
+    public long getPackingNanos()
+    {
+        return m_packingNanos;
+    }
+
+    /**
+     * @return nanoseconds for the whole build, including cache lookups and creating the states
+     */
+    public long getTotalNanos()
+    {
+        return m_totalNanos;
+    }
+
+    /**
+     * Estimate the most memory used at once by the build
+     * <P>
+     * This is a rough estimate of the size of the NFA and DFA structures during subset
+     * construction, which is when a build uses the most memory.
+     *
+     * @return estimated peak memory use, in bytes
+     */
+    public long getEstimatedPeakBytes()
+    {
+        return (long)m_nfaStateCount * NFA_STATE_BYTES
+                + (long)m_nfaEdgeCount * NFA_EDGE_BYTES
+                + (long)m_rawDfaStateCount * (SIGNATURE_BYTES + DFA_STATE_BYTES)
+                + m_signatureIntCount * 4
+                + (long)m_rawDfaTransitionCount * DFA_TRANSITION_BYTES;
+    }
+
+    @Override
+    public String toString()
+    {
+        return m_kind + " build: cache " + m_cacheResult
+                + ", NFA " + m_nfaStateCount + " states/" + m_nfaEdgeCount + " edges"
+                + ", DFA " + m_rawDfaStateCount + " -> " + m_dfaStateCount + " states"
+                + ", max fan-out " + m_maxTransitionCount
+                + ", signatures " + m_signatureIntCount + " ints (max " + m_maxSignatureLength + ")"
+                + ", ~" + (getEstimatedPeakBytes() >> 10) + "KB peak"
+                + ", times(ms) nfa " + _ms(m_nfaNanos) + " subset " + _ms(m_subsetConstructionNanos)
+                + " minimize " + _ms(m_minimizationNanos) + " pack " + _ms(m_packingNanos)
+                + " total " + _ms(m_totalNanos);
+    }
+
+    private static String _ms(long nanos)
+    {
+        return String.format("%.1f", nanos / 1000000.0);
+    }
+}
@@ -18,14 +18,23 @@ package com.nobigsoftware.dfalex;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
+import com.nobigsoftware.dfalex.DfaBuildStatistics.CacheResult;
 import com.nobigsoftware.util.BuilderCache;
 import com.nobigsoftware.util.SHAOutputStream;
 
@@ -65,9 +74,19 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
     //dfa types for cache keys
     private static final int DFATYPE_MATCHER = 0;
     private static final int DFATYPE_REVERSEFINDER = 1;
+    //added to the dfa type for DFAs in compact form
+    private static final int DFATYPE_COMPACT = 2;
+    //the fewest combinations of shard states that a sharded searcher remembers
+    private static final int MIN_SHARD_PRODUCT_STATES = 1024;
     
     private final BuilderCache m_cache;
 	private final Map<MATCHRESULT, List<Matchable>> m_patterns = new LinkedHashMap<>();
+	private boolean m_lazyStates = false;
+	private Executor m_prewarmExecutor = null;
+	private boolean m_compactStates = false;
+	private boolean m_reorderStates = false;
+	private List<String> m_stateOrderSamples = null;
+	private DfaBuildListener m_buildListener = null;
 	
 	/**
 	 * Create a new DfaBuilder without a {@link BuilderCache}
@@ -95,12 +114,147 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
 	    m_patterns.clear();
 	}
 	
+	/**
+	 * Choose whether built DFAs create their states lazily
+	 * <P>
+	 * Normally, all the states of a DFA are created before a build method returns.  For very
+	 * large DFAs, especially ones loaded from a {@link BuilderCache}, that can take a long
+	 * time and a lot of memory.  With lazy states, each state is created from the DFA's
+	 * compact serializable form the first time it is reached, so states that are never used
+	 * cost almost nothing.  Matching with lazy DFAs is a little slower, since each transition
+	 * goes through an extra level of indirection.
+	 * <P>
+	 * Lazy DFAs are thread-safe, like all DFAs.  This setting doesn't affect cache keys.
+	 * 
+	 * @param lazy true to create states lazily
+	 */
+	public void setLazyStates(boolean lazy)
+	{
+	    m_lazyStates = lazy;
+	}
+	
+	/**
+	 * Set an executor that creates all the states of lazy DFAs in the background
+	 * <P>
+	 * When this is set, the build methods still return as soon as the start states are
+	 * available, but a task that creates the remaining states is submitted to the executor.
+	 * That way, a service doesn't have to wait for a large DFA at startup, and doesn't pay
+	 * to create states on the request path later.  This only has an effect when
+	 * {@link #setLazyStates(boolean)} is on.
+	 * 
+	 * @param executor the executor to use, or null to create states only as they are reached
+	 */
+	public void setPrewarmExecutor(Executor executor)
+	{
+	    m_prewarmExecutor = executor;
+	}
+	
+	/**
+	 * Choose whether built DFAs are stored in compact form
+	 * <P>
+	 * The compact form stores all the transitions of a DFA in a few flat arrays.  States with
+	 * identical transitions share them, and the most common target of each state is stored only
+	 * once.  For DFAs with millions of states, this uses a small fraction of the memory that
+	 * the normal form needs, but each transition takes a binary search instead of a walk down
+	 * a tree of chars, so matching is a little slower.
+	 * <P>
+	 * Compact DFAs are created all at once, so {@link #setLazyStates(boolean)} doesn't affect
+	 * them.  Compact and normal DFAs are cached separately.
+	 * 
+	 * @param compact true to build DFAs in compact form
+	 */
+	public void setCompactStates(boolean compact)
+	{
+	    m_compactStates = compact;
+	}
+	
+	/**
+	 * Choose whether built DFAs have their states renumbered for memory locality
+	 * <P>
+	 * States are laid out in memory in state number order.  When this is on, states are
+	 * numbered breadth-first from the start states, so that the states near the start
+	 * states, which are used the most, are together in memory.  See also
+	 * {@link #setStateOrderSamples(Collection)}.
+	 * <P>
+	 * This changes state numbers, but not the behaviour of the DFA.  Reordered DFAs are cached
+	 * separately.
+	 * 
+	 * @param reorder true to renumber states breadth-first
+	 */
+	public void setReorderStates(boolean reorder)
+	{
+	    m_reorderStates = reorder;
+	}
+	
+	/**
+	 * Provide typical input, so built DFAs can have their most used states numbered first
+	 * <P>
+	 * Each sample is tokenized with the DFA, and the states that are visited most often are
+	 * given the lowest state numbers, so that they are together in memory.  States that
+	 * are visited equally often are numbered breadth-first.  This is useful for very large DFAs,
+	 * where most states are rarely used.
+	 * <P>
+	 * The samples are part of the cache key, so use the same ones every time.
+	 * 
+	 * @param samples sample input, or null to stop using samples
+	 */
+	public void setStateOrderSamples(Collection<? extends CharSequence> samples)
+	{
+	    if (samples == null || samples.isEmpty())
+	    {
+	        m_stateOrderSamples = null;
+	        return;
+	    }
+	    m_stateOrderSamples = new ArrayList<>(samples.size());
+	    for (CharSequence sample : samples)
+	    {
+	        m_stateOrderSamples.add(sample.toString());
+	    }
+	}
+	
+	/**
+	 * Set a listener that is told the sizes and timings of every DFA this builder builds
+	 * <P>
+	 * Statistics are only collected when a listener is set, because counting NFA edges and
+	 * state signatures takes a little extra time.  DFAs loaded from the cache are reported too,
+	 * with {@link DfaBuildStatistics#getCacheResult()} equal to {@link CacheResult#HIT}.
+	 * 
+	 * @param listener the listener to use, or null to stop collecting statistics
+	 */
+	public void setBuildListener(DfaBuildListener listener)
+	{
+	    m_buildListener = listener;
+	}
+	
 	public void addPattern(Matchable pat, MATCHRESULT accept)
 	{
 		List<Matchable> patlist = m_patterns.computeIfAbsent(accept, x -> new ArrayList<>());
 		patlist.add(pat);
 	}
 	
+	/**
+	 * Get the match ID that DFAs built by this builder will use for a result
+	 * <P>
+	 * Results are assigned dense IDs starting at 0, in the order that they were
+	 * first passed to {@link #addPattern(Matchable, Serializable)}.  See {@link DfaState#getMatchId()}
+	 * 
+	 * @param result a result that has been added to this builder
+	 * @return the match ID for the result, or -1 if no patterns have been added for it
+	 */
+	public int getMatchId(MATCHRESULT result)
+	{
+	    int id = 0;
+	    for (MATCHRESULT key : m_patterns.keySet())
+	    {
+	        if (key.equals(result))
+	        {
+	            return id;
+	        }
+	        ++id;
+	    }
+	    return -1;
+	}
+	
 	
     /**
      * Build DFA for a single language
@@ -157,22 +311,47 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
             return Collections.emptyList();
         }
         
-        SerializableDfa<MATCHRESULT> serializableDfa = null;
+        final long startTime = System.nanoTime();
+        final DfaBuildStatistics stats = (m_buildListener == null ? null :
+            new DfaBuildStatistics(DfaBuildStatistics.Kind.MATCHER, languages.size()));
+        CacheResult cacheResult = CacheResult.NONE;
+        BuiltDfa<MATCHRESULT> serializableDfa = null;
         if (m_cache == null)
         {
-            serializableDfa = _build(languages, ambiguityResolver);
+            serializableDfa = _build(languages, ambiguityResolver, stats);
         }
         else
         {
             String cacheKey = _getCacheKey(DFATYPE_MATCHER, languages, ambiguityResolver);
-            serializableDfa = (SerializableDfa<MATCHRESULT>) m_cache.getCachedItem(cacheKey);
+            serializableDfa = (BuiltDfa<MATCHRESULT>) m_cache.getCachedItem(cacheKey);
+            cacheResult = CacheResult.HIT;
             if (serializableDfa == null)
             {
-                serializableDfa = _build(languages, ambiguityResolver);
+                cacheResult = CacheResult.MISS;
+                serializableDfa = _build(languages, ambiguityResolver, stats);
                 m_cache.maybeCacheItem(cacheKey, serializableDfa);
             }
         }
-        return serializableDfa.getStartStates();
+        List<DfaState<MATCHRESULT>> ret = _getStartStates(serializableDfa, languages.size());
+        _reportBuild(m_buildListener, stats, cacheResult, startTime);
+        return ret;
+    }
+    
+    /**
+     * Build a {@link DfaTable} for all the patterns that have been added to this builder
+     * <P>
+     * The table is made from the DFA that {@link #build(DfaAmbiguityResolver)} returns, so
+     * if this builder has a cache, it is used.
+     * 
+     * @param ambiguityResolver     When patterns for multiple results match the same string, this is called to
+     *                              combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                              will be thrown in that case.
+     * @return a table-driven matcher for all the patterns in this builder
+     * @throws IllegalArgumentException if the DFA is too big for a table
+     */
+    public DfaTable<MATCHRESULT> buildTable(DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
+    {
+        return new DfaTable<>(build(ambiguityResolver));
     }
     
     /**
@@ -238,22 +417,30 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
             return Collections.emptyList();
         }
         
-        SerializableDfa<Boolean> serializableDfa = null;
+        final long startTime = System.nanoTime();
+        final DfaBuildStatistics stats = (m_buildListener == null ? null :
+            new DfaBuildStatistics(DfaBuildStatistics.Kind.REVERSE_FINDER, languages.size()));
+        CacheResult cacheResult = CacheResult.NONE;
+        BuiltDfa<Boolean> serializableDfa = null;
         if (m_cache == null)
         {
-            serializableDfa = _buildReverseFinders(languages);
+            serializableDfa = _buildReverseFinders(languages, stats);
         }
         else
         {
             String cacheKey = _getCacheKey(DFATYPE_REVERSEFINDER, languages, null);
-            serializableDfa = (SerializableDfa<Boolean>) m_cache.getCachedItem(cacheKey);
+            serializableDfa = (BuiltDfa<Boolean>) m_cache.getCachedItem(cacheKey);
+            cacheResult = CacheResult.HIT;
             if (serializableDfa == null)
             {
-                serializableDfa = _buildReverseFinders(languages);
+                cacheResult = CacheResult.MISS;
+                serializableDfa = _buildReverseFinders(languages, stats);
                 m_cache.maybeCacheItem(cacheKey, serializableDfa);
             }
         }
-        return serializableDfa.getStartStates();
+        List<DfaState<Boolean>> ret = _getStartStates(serializableDfa, languages.size());
+        _reportBuild(m_buildListener, stats, cacheResult, startTime);
+        return ret;
     }
     
     /**
@@ -269,6 +456,117 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
         return new StringSearcher<>(build(ambiguityResolver), buildReverseFinder());
     }
     
+    /**
+     * Build a {@link StringSearcher} that runs several smaller DFAs together, for pattern sets that
+     * would make one DFA too big
+     * <P>
+     * The results are divided into shards, and a matcher and a reverse finder are built for each
+     * shard.  Results with the same first characters are tried in the same shard first, and a shard
+     * grows until its DFAs would have more than maxShardStates states, so patterns that interact badly
+     * during subset construction, like ones with unbounded wildcards, end up in different shards.
+     * The total size of the DFAs then grows with the number of shards, instead of exponentially.
+     * <P>
+     * The searcher runs all the shard DFAs in lock-step, and finds the same matches with the same
+     * results as the searcher returned by {@link #buildStringSearcher(DfaAmbiguityResolver)}.
+     * Combinations of shard states are created when they are first reached, so an ambiguity
+     * between shards is only reported when a string that causes it is searched.  About as many
+     * combinations as the shard DFAs have states in total are remembered.  When there are more,
+     * they are forgotten and created again as they're reached, so memory stays proportional to the
+     * size of the shards.  In the worst case, when the input keeps reaching new combinations,
+     * searching costs about as much as running every shard DFA separately.
+     * <P>
+     * This builder's cache and DFA options are not used.
+     * 
+     * @param ambiguityResolver     When patterns for multiple results match the same string, this is called to
+     *                              combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                              will be thrown in that case.
+     * @param maxShardStates    the maximum number of states in a shard DFA, before minimization.  A shard with only
+     *                          one result can be bigger.
+     * @return A {@link StringSearcher} for all the patterns in this builder
+     */
+    public StringSearcher<MATCHRESULT> buildShardedStringSearcher(DfaAmbiguityResolver<MATCHRESULT> ambiguityResolver,
+            int maxShardStates)
+    {
+        List<List<MATCHRESULT>> shards = partitionShards(maxShardStates);
+        List<DfaState<BitSet>> matchers = new ArrayList<>(shards.size());
+        List<DfaState<BitSet>> finders = new ArrayList<>(shards.size());
+        List<List<Boolean>> finderResults = new ArrayList<>(shards.size());
+        for (List<MATCHRESULT> shard : shards)
+        {
+            Nfa<BitSet> nfa = new Nfa<>();
+            matchers.add(_buildShardDfa(nfa, _addShardMatcher(nfa, shard)));
+            nfa = new Nfa<>();
+            finders.add(_buildShardDfa(nfa, _addShardFinder(nfa, shard)));
+            finderResults.add(Collections.singletonList(Boolean.TRUE));
+        }
+        //limit the remembered combinations of shard states to about the total size of the shards
+        final int maxProductStates = (int)Math.min(Integer.MAX_VALUE,
+                Math.max(MIN_SHARD_PRODUCT_STATES, (long)shards.size() * maxShardStates));
+        DfaState<MATCHRESULT> matcher = new LazyUnionDfa<MATCHRESULT>(matchers, shards, ambiguityResolver,
+                new ArrayList<>(m_patterns.keySet()), maxProductStates).getStartState();
+        DfaState<Boolean> finder = new LazyUnionDfa<Boolean>(finders, finderResults, null,
+                Collections.singletonList(Boolean.TRUE), maxProductStates).getStartState();
+        return new StringSearcher<>(matcher, finder);
+    }
+    
+    /**
+     * Divide the results into shards for {@link #buildShardedStringSearcher(DfaAmbiguityResolver, int)}
+     * 
+     * @param maxShardStates the maximum number of states in a shard DFA
+     * @return the results in each shard
+     */
+    List<List<MATCHRESULT>> partitionShards(int maxShardStates)
+    {
+        //order the results by their first characters, so results with shared prefixes are
+        //tried together.  The sort is stable
+        final HashMap<MATCHRESULT, Integer> firstChars = new HashMap<>();
+        List<MATCHRESULT> results = new ArrayList<>();
+        for (Entry<MATCHRESULT, List<Matchable>> patEntry : m_patterns.entrySet())
+        {
+            if (!patEntry.getValue().isEmpty())
+            {
+                results.add(patEntry.getKey());
+                firstChars.put(patEntry.getKey(), _getFirstChar(patEntry.getValue()));
+            }
+        }
+        results.sort(Comparator.comparingInt(firstChars::get));
+        
+        List<List<MATCHRESULT>> shards = new ArrayList<>();
+        int pos = 0;
+        while (pos < results.size())
+        {
+            //A shard always gets at least one result.  Grow it in steps that double until
+            //the matcher doesn't fit, and then halve to find the limit
+            int end = pos+1;
+            boolean missed = false;
+            for (int step = 1; step > 0 && end < results.size();)
+            {
+                int tryEnd = Math.min(end+step, results.size());
+                if (_shardFits(results.subList(pos, tryEnd), maxShardStates, false))
+                {
+                    end = tryEnd;
+                    if (!missed)
+                    {
+                        step <<= 1;
+                    }
+                }
+                else
+                {
+                    missed = true;
+                    step >>= 1;
+                }
+            }
+            //The reverse finder usually fits too, and it's slower to build, so check it last
+            while (end > pos+1 && !_shardFits(results.subList(pos, end), maxShardStates, true))
+            {
+                end = pos + (end-pos)/2;
+            }
+            shards.add(new ArrayList<>(results.subList(pos, end)));
+            pos = end;
+        }
+        return shards;
+    }
+    
     /**
      * Build DFAs from a provided NFA
      * <P>
@@ -287,9 +585,36 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
      * @return DFA start states that are equivalent to the given NFA start states.  This will have the same length as nfaStartStates, with
      *         corresponding start states in corresponding positions.
      */
-    @SuppressWarnings("unchecked")
     public static <MR> List<DfaState<MR>> buildFromNfa(Nfa<MR> nfa, int[] nfaStartStates, DfaAmbiguityResolver<? super MR> ambiguityResolver, BuilderCache cache )
     {
+        return buildFromNfa(nfa, nfaStartStates, ambiguityResolver, cache, null);
+    }
+
+    /**
+     * Build DFAs from a provided NFA, reporting statistics to a listener
+     * <P>
+     * This is the same as {@link #buildFromNfa(Nfa, int[], DfaAmbiguityResolver, BuilderCache)}, except
+     * that the sizes and timings of the build are passed to the listener.
+     * 
+     * @param nfa           The NFA
+     * @param nfaStartStates     The return value will include the DFA states corresponding to these NFA states, in the same order
+     * @param ambiguityResolver     When patterns for multiple results match the same string, this is called to
+     *                              combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                              will be thrown in that case.
+     * @param cache If this cache is non-null, it will be checked for a memoized result for this NFA, and will be populated
+     *      with a memoized result when the call is complete.
+     * @param listener If this is non-null, it is told the statistics for the build
+     * @return DFA start states that are equivalent to the given NFA start states.  This will have the same length as nfaStartStates, with
+     *         corresponding start states in corresponding positions.
+     */
+    @SuppressWarnings("unchecked")
+    public static <MR> List<DfaState<MR>> buildFromNfa(Nfa<MR> nfa, int[] nfaStartStates, DfaAmbiguityResolver<? super MR> ambiguityResolver,
+            BuilderCache cache, DfaBuildListener listener)
+    {
+        final long startTime = System.nanoTime();
+        final DfaBuildStatistics stats = (listener == null ? null :
+            new DfaBuildStatistics(DfaBuildStatistics.Kind.FROM_NFA, nfaStartStates.length));
+        CacheResult cacheResult = CacheResult.NONE;
         String cacheKey = null;
         SerializableDfa<MR> serializableDfa = null;
         if (cache != null)
@@ -316,23 +641,45 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
                 throw new RuntimeException(e);
             }
             serializableDfa = (SerializableDfa<MR>)cache.getCachedItem(cacheKey);
+            cacheResult = (serializableDfa == null ? CacheResult.MISS : CacheResult.HIT);
         }
         if (serializableDfa == null)
         {
-            RawDfa<MR> minimalDfa;
+            if (stats != null)
             {
-                RawDfa<MR> rawDfa = (new DfaFromNfa<MR>(nfa, nfaStartStates, ambiguityResolver)).getDfa();
-                minimalDfa = (new DfaMinimizer<MR>(rawDfa)).getMinimizedDfa();
+                stats.recordNfa(nfa, 0);
             }
+            RawDfa<MR> minimalDfa = _buildMinimalDfa(nfa, nfaStartStates, ambiguityResolver, Collections.emptyList(), stats);
+            long packStart = System.nanoTime();
             serializableDfa = new SerializableDfa<>(minimalDfa);
+            if (stats != null)
+            {
+                stats.recordPacking(System.nanoTime() - packStart);
+            }
             if (cacheKey != null && cache != null)
             {
                 cache.maybeCacheItem(cacheKey, serializableDfa);
             }
         }
-        return serializableDfa.getStartStates();
+        List<DfaState<MR>> ret = ContextStartState.combine(serializableDfa.getStartStates(), nfaStartStates.length);
+        _reportBuild(listener, stats, cacheResult, startTime);
+        return ret;
     }
 
+    private <T> List<DfaState<T>> _getStartStates(BuiltDfa<T> serializableDfa, int numStarts)
+    {
+        if (!m_lazyStates)
+        {
+            return ContextStartState.combine(serializableDfa.getStartStates(), numStarts);
+        }
+        List<DfaState<T>> ret = serializableDfa.getLazyStartStates();
+        if (m_prewarmExecutor != null)
+        {
+            m_prewarmExecutor.execute(serializableDfa::prewarm);
+        }
+        return ContextStartState.combine(ret, numStarts);
+    }
+    
     private String _getCacheKey(final int dfaType, List<Set<MATCHRESULT>> languages, DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
     {
         String cacheKey;
@@ -344,7 +691,7 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
             ObjectOutputStream os = new ObjectOutputStream(sha);
             os.flush();
             sha.on(true);
-            os.writeInt(dfaType);
+            os.writeInt(m_compactStates ? dfaType + DFATYPE_COMPACT : dfaType);
             final int numLangs = languages.size();
             os.writeInt(numLangs);
             
@@ -395,7 +742,11 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
                 os.writeObject(patEntry.getKey());
             }
             os.writeInt(0); //0-size pattern list terminates pattern map
+            //all results, in order, since they determine the match IDs
+            os.writeObject(new ArrayList<>(m_patterns.keySet()));
             os.writeObject(ambiguityResolver);
+            os.writeBoolean(m_reorderStates);
+            os.writeObject(m_stateOrderSamples);
             os.flush();
             
             cacheKey = sha.getBase32Digest();
@@ -409,8 +760,10 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
         return cacheKey;
     }
     
-	private SerializableDfa<MATCHRESULT> _build(List<Set<MATCHRESULT>> languages, DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
+	private BuiltDfa<MATCHRESULT> _build(List<Set<MATCHRESULT>> languages, DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver,
+	        DfaBuildStatistics stats)
 	{
+		final long nfaStart = System.nanoTime();
 		Nfa<MATCHRESULT> nfa = new Nfa<>();
 		
 		int[] nfaStartStates = new int[languages.size()];
@@ -461,64 +814,209 @@ public class DfaBuilder<MATCHRESULT extends Serializable>
 			}
 		}
 		
-		SerializableDfa<MATCHRESULT> serializableDfa;
+		if (stats != null)
 		{
-			RawDfa<MATCHRESULT> minimalDfa;
-			{
-				RawDfa<MATCHRESULT> rawDfa = (new DfaFromNfa<MATCHRESULT>(nfa, nfaStartStates, ambiguityResolver)).getDfa();
-				minimalDfa = (new DfaMinimizer<MATCHRESULT>(rawDfa)).getMinimizedDfa();
-			}
-			serializableDfa = new SerializableDfa<>(minimalDfa);
+			stats.recordNfa(nfa, System.nanoTime() - nfaStart);
 		}
-		return serializableDfa;
+		RawDfa<MATCHRESULT> minimalDfa = _buildMinimalDfa(nfa, nfaStartStates, ambiguityResolver,
+		        new ArrayList<>(m_patterns.keySet()), stats);
+		return _toBuiltDfa(minimalDfa, languages.size(), stats);
 	}
 	
-    private SerializableDfa<Boolean> _buildReverseFinders(List<Set<MATCHRESULT>> languages)
+    private BuiltDfa<Boolean> _buildReverseFinders(List<Set<MATCHRESULT>> languages, DfaBuildStatistics stats)
     {
+        final long nfaStart = System.nanoTime();
         Nfa<Boolean> nfa = new Nfa<>();
+        final DfaAmbiguityResolver<Boolean> ambiguityResolver = conflicts -> defaultAmbiguityResolver(conflicts);
+        int startState = _addReverseFinder(nfa, result -> {
+            for (Set<MATCHRESULT> language : languages)
+            {
+                if (language.contains(result))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }, true);
         
+        if (stats != null)
+        {
+            stats.recordNfa(nfa, System.nanoTime() - nfaStart);
+        }
+        
+        //build the DFA
+        RawDfa<Boolean> minimalDfa = _buildMinimalDfa(nfa, new int[] {startState}, ambiguityResolver,
+                Collections.emptyList(), stats);
+        return _toBuiltDfa(minimalDfa, 1, stats);
+    }
+    
+    //Add a reverse finder for the patterns of the included results to an NFA, and return its start state
+    private <T> int _addReverseFinder(Nfa<T> nfa, Predicate<MATCHRESULT> included, T accept)
+    {
         int startState = nfa.addState(null);
-        final int endState = nfa.addState(true);
-        final DfaAmbiguityResolver<Boolean> ambiguityResolver = conflicts -> defaultAmbiguityResolver(conflicts);
+        final int endState = nfa.addState(accept);
 
         //First, make an NFA that matches the reverse of all the patterns
         for (Entry<MATCHRESULT, List<Matchable>> patEntry : m_patterns.entrySet())
         {
             List<Matchable> patList = patEntry.getValue();
-            if (patList == null || patList.size()<1)
+            if (patList == null || patList.size()<1 || !included.test(patEntry.getKey()))
             {
                 continue;
             }
-            for (int i=0; i<languages.size(); ++i)
+            for (Matchable pat : patList)
             {
-                if (!languages.get(i).contains(patEntry.getKey()))
-                {
-                    continue;
-                }
-                for (Matchable pat : patEntry.getValue())
-                {
-                    int st = pat.getReversed().addToNFA(nfa, endState);
-                    nfa.addEpsilon(startState, st);
-                }
+                int st = pat.getReversed().addToNFA(nfa, endState);
+                nfa.addEpsilon(startState, st);
             }
         }
         //omit the empty string
         startState = nfa.Disemptify(startState);
         
         //allow anything first
-        startState = Pattern.maybeRepeat(CharRange.ALL).addToNFA(nfa, startState);
-        
-        //build the DFA
-        SerializableDfa<Boolean> serializableDfa;
+        return Pattern.maybeRepeat(CharRange.ALL).addToNFA(nfa, startState);
+    }
+    
+    //lowest character that can start a match for a pattern list
+    private static int _getFirstChar(List<Matchable> patList)
+    {
+        Nfa<Boolean> nfa = new Nfa<>();
+        final int acceptState = nfa.addState(true);
+        ArrayDeque<Integer> togo = new ArrayDeque<>();
+        HashSet<Integer> seen = new HashSet<>();
+        for (Matchable pat : patList)
+        {
+            togo.add(pat.addToNFA(nfa, acceptState));
+        }
+        int ret = Character.MAX_VALUE+1;
+        while(!togo.isEmpty())
         {
-            RawDfa<Boolean> minimalDfa;
+            int state = togo.removeFirst();
+            if (!seen.add(state))
             {
-                RawDfa<Boolean> rawDfa = (new DfaFromNfa<Boolean>(nfa, new int[] {startState}, ambiguityResolver)).getDfa();
-                minimalDfa = (new DfaMinimizer<Boolean>(rawDfa)).getMinimizedDfa();
+                continue;
             }
-            serializableDfa = new SerializableDfa<>(minimalDfa);
+            for (NfaTransition trans : nfa.getStateTransitions(state))
+            {
+                ret = Math.min(ret, trans.m_firstChar);
+            }
+            nfa.forStateEpsilons(state, togo::add);
+            nfa.forStateAssertions(state, (assertion, target) -> togo.add(target));
+        }
+        return ret;
+    }
+    
+    //true if the matcher or reverse finder for a shard doesn't have too many states
+    private boolean _shardFits(List<MATCHRESULT> shard, int maxStates, boolean finder)
+    {
+        Nfa<BitSet> nfa = new Nfa<>();
+        int startState = (finder ? _addShardFinder(nfa, shard) : _addShardMatcher(nfa, shard));
+        return !new DfaFromNfa<>(nfa, new int[] {startState}, DfaBuilder::_unionBitSets, Collections.emptyList(),
+                maxStates).exceededMaxStates();
+    }
+    
+    //Add an NFA that matches the patterns of a shard, with a BitSet of the matching shard indexes
+    //as the result, and return its start state
+    private int _addShardMatcher(Nfa<BitSet> nfa, List<MATCHRESULT> shard)
+    {
+        int startState = nfa.addState(null);
+        for (int i=0; i<shard.size(); ++i)
+        {
+            BitSet accept = new BitSet();
+            accept.set(i);
+            int acceptState = nfa.addState(accept);
+            for (Matchable pat : m_patterns.get(shard.get(i)))
+            {
+                nfa.addEpsilon(startState, pat.addToNFA(nfa, acceptState));
+            }
+        }
+        return startState;
+    }
+    
+    //Add a reverse finder for a shard, with bit 0 set in its result, and return its start state
+    private int _addShardFinder(Nfa<BitSet> nfa, List<MATCHRESULT> shard)
+    {
+        BitSet accept = new BitSet();
+        accept.set(0);
+        HashSet<MATCHRESULT> included = new HashSet<>(shard);
+        return _addReverseFinder(nfa, included::contains, accept);
+    }
+    
+    private static DfaState<BitSet> _buildShardDfa(Nfa<BitSet> nfa, int startState)
+    {
+        RawDfa<BitSet> minimalDfa;
+        {
+            RawDfa<BitSet> rawDfa = (new DfaFromNfa<BitSet>(nfa, new int[] {startState}, DfaBuilder::_unionBitSets)).getDfa();
+            minimalDfa = (new DfaMinimizer<BitSet>(rawDfa)).getMinimizedDfa();
+        }
+        return ContextStartState.combine(new SerializableDfa<>(minimalDfa).getStartStates(), 1).get(0);
+    }
+    
+    private static BitSet _unionBitSets(Set<? extends BitSet> sets)
+    {
+        BitSet ret = new BitSet();
+        for (BitSet bits : sets)
+        {
+            ret.or(bits);
+        }
+        return ret;
+    }
+    
+    //subset construction and minimization, with statistics recorded if stats is non-null
+    private static <T> RawDfa<T> _buildMinimalDfa(Nfa<T> nfa, int[] nfaStartStates, DfaAmbiguityResolver<? super T> ambiguityResolver,
+            List<T> knownResults, DfaBuildStatistics stats)
+    {
+        long time = System.nanoTime();
+        DfaFromNfa<T> dfaFromNfa = new DfaFromNfa<T>(nfa, nfaStartStates, ambiguityResolver, knownResults);
+        RawDfa<T> rawDfa = dfaFromNfa.getDfa();
+        if (stats != null)
+        {
+            long now = System.nanoTime();
+            stats.recordSubsetConstruction(dfaFromNfa, rawDfa, now - time);
+            time = now;
+        }
+        RawDfa<T> minimalDfa = (new DfaMinimizer<T>(rawDfa)).getMinimizedDfa();
+        if (stats != null)
+        {
+            stats.recordMinimization(minimalDfa, System.nanoTime() - time);
+        }
+        return minimalDfa;
+    }
+    
+    private <T> BuiltDfa<T> _toBuiltDfa(RawDfa<T> minimalDfa, int numStarts, DfaBuildStatistics stats)
+    {
+        final long startTime = System.nanoTime();
+        if (m_stateOrderSamples != null)
+        {
+            minimalDfa = DfaStateOrder.byFrequency(minimalDfa, numStarts, m_stateOrderSamples);
+        }
+        else if (m_reorderStates)
+        {
+            minimalDfa = DfaStateOrder.breadthFirst(minimalDfa);
+        }
+        BuiltDfa<T> ret;
+        if (m_compactStates)
+        {
+            ret = new CompactDfa<>(minimalDfa);
+        }
+        else
+        {
+            ret = new SerializableDfa<>(minimalDfa);
+        }
+        if (stats != null)
+        {
+            stats.recordPacking(System.nanoTime() - startTime);
+        }
+        return ret;
+    }
+    
+    private static void _reportBuild(DfaBuildListener listener, DfaBuildStatistics stats, CacheResult cacheResult, long startTime)
+    {
+        if (listener != null && stats != null)
+        {
+            stats.finish(cacheResult, System.nanoTime() - startTime);
+            listener.buildFinished(stats);
         }
-        return serializableDfa;
     }
     
     private static <T> T defaultAmbiguityResolver(Set<T> matches)
@@ -17,6 +17,7 @@ package com.nobigsoftware.dfalex;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,6 +26,14 @@ import java.util.List;
 
 /**
  * Turns an NFA into a non-minimal RawDfa by powerset construction
+ * <P>
+ * If the NFA has {@link Assertion} transitions, then each DFA state also remembers the
+ * context of the last character consumed, which decides the assertions that can be followed
+ * before the next one.  The NFA state set just before a character depends on the context
+ * of that character too, so transitions are built separately for each context, and accepts
+ * that depend on the next character are stored as lookahead accept sets.  There is a DFA
+ * start state for each NFA start state and context of the character before the start
+ * position, in context-major order, so the first ones are for the start of the input.
  */
 class DfaFromNfa<RESULT>
 {
@@ -34,6 +43,13 @@ class DfaFromNfa<RESULT>
 	private final int[] m_dfaStartStates;
 	private final DfaAmbiguityResolver<? super RESULT> m_ambiguityResolver;
 	
+	//When the NFA has assertions, the DFA state signatures include a marker "NFA state"
+	//m_nfaStateCount+context, for states whose context matters
+	private final int m_nfaStateCount;
+	private final boolean m_hasAssertions;
+	private final int m_maxStates;
+	private boolean m_exceededMaxStates = false;
+	
 	//utility
 	private final DfaStateSignatureCodec m_dfaSigCodec = new DfaStateSignatureCodec();
 	
@@ -41,6 +57,14 @@ class DfaFromNfa<RESULT>
 	private final IntListKey m_tempStateSignature = new IntListKey();
 	private final ArrayDeque<Integer> m_tempNfaClosureList = new ArrayDeque<>();
 	private final HashSet<RESULT> m_tempResultSet = new HashSet<RESULT>();
+	private int[] m_tempAcceptIds = new int[8];
+	private int m_tempAcceptCount = 0;
+	private final CompactIntSubset m_tempNfaStateSet;
+	private boolean m_tempFoundAssertion;
+	private int m_tempContext;
+	
+	//accept set index for each NFA state, or 0 if it doesn't accept
+	private final int[] m_nfaAcceptSetIndexes;
 	
 	//accumulators
 	private final HashMap<RESULT,Integer> m_acceptSetMap = new HashMap<>();
@@ -51,15 +75,92 @@ class DfaFromNfa<RESULT>
 	private final ArrayList<DfaStateInfo> m_dfaStates = new ArrayList<>();
 	
 	public DfaFromNfa(Nfa<RESULT> nfa, int[] nfaStartStates, DfaAmbiguityResolver<? super RESULT> ambiguityResolver)
+	{
+		this(nfa, nfaStartStates, ambiguityResolver, Collections.emptyList());
+	}
+	
+	/**
+	 * Create a new DfaFromNfa
+	 * 
+	 * @param knownResults results to pre-assign accept set indexes to.  knownResults.get(i) will
+	 *     have accept set index i+1.  Other results are numbered after these.
+	 */
+	public DfaFromNfa(Nfa<RESULT> nfa, int[] nfaStartStates, DfaAmbiguityResolver<? super RESULT> ambiguityResolver, List<RESULT> knownResults)
+	{
+		this(nfa, nfaStartStates, ambiguityResolver, knownResults, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create a new DfaFromNfa, giving up if the DFA gets too big
+	 * 
+	 * @param knownResults results to pre-assign accept set indexes to.  knownResults.get(i) will
+	 *     have accept set index i+1.  Other results are numbered after these.
+	 * @param maxStates if the DFA would have more than this many states, subset construction stops
+	 *     early, and {@link #exceededMaxStates()} returns true
+	 */
+	public DfaFromNfa(Nfa<RESULT> nfa, int[] nfaStartStates, DfaAmbiguityResolver<? super RESULT> ambiguityResolver,
+	        List<RESULT> knownResults, int maxStates)
 	{
 		m_nfa = nfa;
+		m_maxStates = maxStates;
 		m_nfaStartStates = nfaStartStates;
-		m_dfaStartStates = new int[nfaStartStates.length];
+		m_nfaStateCount = nfa.numStates();
+		m_hasAssertions = nfa.hasAssertions();
+		m_dfaStartStates = new int[nfaStartStates.length * (m_hasAssertions ? Assertion.NUM_CONTEXTS : 1)];
+		m_tempNfaStateSet = (m_hasAssertions ? new CompactIntSubset(_getNfaRange()) : null);
 		m_ambiguityResolver = ambiguityResolver;
 		m_acceptSets.add(null);
+		for (RESULT result : knownResults)
+		{
+			_getAcceptSetIndex(result);
+		}
+		m_nfaAcceptSetIndexes = new int[nfa.numStates()];
+		for (int i=0; i<m_nfaAcceptSetIndexes.length; ++i)
+		{
+			RESULT accept = nfa.getAccept(i);
+			if (accept != null)
+			{
+				m_nfaAcceptSetIndexes[i] = _getAcceptSetIndex(accept);
+			}
+		}
 		_build();
 	}
 	
+	/**
+	 * @return true if subset construction stopped because the DFA had too many states.  In that
+	 *     case, {@link #getDfa()} returns an incomplete DFA
+	 */
+	public boolean exceededMaxStates()
+	{
+		return m_exceededMaxStates;
+	}
+
+	/**
+	 * @return the total number of ints in the DFA state signatures, for build statistics
+	 */
+	long getSignatureIntCount()
+	{
+		final long[] total = new long[1];
+		for (IntListKey sig : m_dfaStateSignatures)
+		{
+			sig.forData((buf, len) -> total[0] += len);
+		}
+		return total[0];
+	}
+
+	/**
+	 * @return the number of ints in the longest DFA state signature, for build statistics
+	 */
+	int getMaxSignatureLength()
+	{
+		final int[] max = new int[1];
+		for (IntListKey sig : m_dfaStateSignatures)
+		{
+			sig.forData((buf, len) -> max[0] = Math.max(max[0], len));
+		}
+		return max[0];
+	}
+
 	public RawDfa<RESULT> getDfa()
 	{
 		return new RawDfa<>(m_dfaStates, m_acceptSets, m_dfaStartStates);
@@ -68,16 +169,18 @@ class DfaFromNfa<RESULT>
 	private void _build()
 	{
 		
-		final CompactIntSubset nfaStateSet = new CompactIntSubset(m_nfa.numStates());
+		final CompactIntSubset nfaStateSet = new CompactIntSubset(_getNfaRange());
 		final ArrayList<NfaTransition> dfaStateTransitions = new ArrayList<>();
 		final ArrayList<NfaTransition> transitionQ = new ArrayList<>(1000);
 		
-		//Create the DFA start states
+		//Create the DFA start states.  With assertions, there's one for each context
+		//that can precede the start position
+		final int nstarts = m_nfaStartStates.length;
 		for(int i = 0; i<m_dfaStartStates.length; ++i)
 		{
 			nfaStateSet.clear();
-			_addNfaStateAndEpsilonsToSubset(nfaStateSet, m_nfaStartStates[i]);
-			m_dfaStartStates[i] = _getDfaState(nfaStateSet);
+			_addNfaStateAndEpsilonsToSubset(nfaStateSet, m_nfaStartStates[i%nstarts]);
+			m_dfaStartStates[i] = _getDfaState(nfaStateSet, i/nstarts);
 		}
 
 		//Create the transitions and other DFA states.
@@ -85,98 +188,210 @@ class DfaFromNfa<RESULT>
 		//m_dfaStates grows as we complete them
 		for (int stateNum = 0; stateNum < m_dfaStateSignatures.size(); ++stateNum)
 		{
+			if (m_dfaStateSignatures.size() > m_maxStates)
+			{
+				m_exceededMaxStates = true;
+				return;
+			}
 			final IntListKey dfaStateSig = m_dfaStateSignatures.get(stateNum);
 			
 			dfaStateTransitions.clear();
 			
-			//For each DFA state, combine the NFA transitions for each
-			//distinct character range into a DFA transiton, appending new DFA states
-			//as we discover them.
-			transitionQ.clear();
-			
-			//dump all the NFA transitions for the state into the Q
-			DfaStateSignatureCodec.expand(dfaStateSig, state -> m_nfa.forStateTransitions(state, transitionQ::add));
-			
-			//sort all the transitions by first character
-			Collections.sort(transitionQ, (arg0, arg1) -> {
-				if (arg0.m_firstChar != arg1.m_firstChar)
+			final int context = _getContext(dfaStateSig);
+			if (!m_hasAssertions)
+			{
+				//dump all the NFA transitions for the state into the Q
+				transitionQ.clear();
+				DfaStateSignatureCodec.expand(dfaStateSig, state -> m_nfa.forStateTransitions(state, transitionQ::add));
+				_addDfaTransitions(nfaStateSet, transitionQ, dfaStateTransitions, 0);
+			}
+			else
+			{
+				//The NFA states that can consume the next character depend on the assertions
+				//that hold before it, so do each context's characters separately
+				for (int next = Assertion.CONTEXT_NEWLINE; next < Assertion.NUM_CONTEXTS; ++next)
 				{
-					return(arg0.m_firstChar < arg1.m_firstChar ? -1 : 1);
+					_expandSignature(dfaStateSig, context, next, nfaStateSet);
+					final char[] ranges = Assertion.getContextRanges(next);
+					transitionQ.clear();
+					nfaStateSet.dumpInOrder(state -> m_nfa.forStateTransitions(state,
+					        trans -> _addClippedTransition(trans, ranges, transitionQ)));
+					_addDfaTransitions(nfaStateSet, transitionQ, dfaStateTransitions, next);
 				}
-				return 0;
-			});
-			
-			final int tqlen = transitionQ.size();
-			
-			//first character we haven't accounted for yet
-			char minc = 0;
+				Collections.sort(dfaStateTransitions, (arg0, arg1) -> Character.compare(arg0.m_firstChar, arg1.m_firstChar));
+			}
 			
-			//NFA transitions at index < tqstart are no longer relevant
-			//NFA transitions at index >= tqstart are in first char order OR have first char <= minc
-			//The sequence of NFA transitions contributing the the previous DFA transition starts here
-			int tqstart = 0;
+			//INVARIANT: m_dfaStatesOut.size() == stateNum
+			m_dfaStates.add(_createStateInfo(dfaStateSig, context, dfaStateTransitions));
+		}
+		
+	}
+	
+	//For each distinct character range in the NFA transitions in transitionQ, combine the NFA
+	//transitions into a DFA transition, appending new DFA states as we discover them.
+	//Targets are given the context of the characters.
+	private void _addDfaTransitions(CompactIntSubset nfaStateSet, ArrayList<NfaTransition> transitionQ,
+	        List<NfaTransition> dfaStateTransitions, int context)
+	{
+		//sort all the transitions by first character
+		Collections.sort(transitionQ, (arg0, arg1) -> {
+			if (arg0.m_firstChar != arg1.m_firstChar)
+			{
+				return(arg0.m_firstChar < arg1.m_firstChar ? -1 : 1);
+			}
+			return 0;
+		});
+		
+		final int tqlen = transitionQ.size();
+		
+		//first character we haven't accounted for yet
+		char minc = 0;
+		
+		//NFA transitions at index < tqstart are no longer relevant
+		//NFA transitions at index >= tqstart are in first char order OR have first char <= minc
+		//The sequence of NFA transitions contributing the the previous DFA transition starts here
+		int tqstart = 0;
+		
+		//make a range of NFA transitions corresponding to the next DFA transition
+		while(tqstart < tqlen)
+		{
+			NfaTransition trans = transitionQ.get(tqstart);
+			if (trans.m_lastChar < minc)
+			{
+				++tqstart;
+				continue;
+			}
 			
-			//make a range of NFA transitions corresponding to the next DFA transition
-			while(tqstart < tqlen)
+			//INVAR - trans contributes to the next DFA transition
+			nfaStateSet.clear();
+			_addNfaStateAndEpsilonsToSubset(nfaStateSet, trans.m_stateNum);
+			char startc = trans.m_firstChar;
+			char endc = trans.m_lastChar;
+			if (startc < minc)
+			{
+				startc = minc;
+			}
+			//make range of all transitions that include the start character, removing ones
+			//that drop out
+			for(int tqend = tqstart+1; tqend < tqlen; ++tqend)
 			{
-				NfaTransition trans = transitionQ.get(tqstart);
-				if (trans.m_lastChar < minc)
+				trans = transitionQ.get(tqend);
+				if (trans.m_lastChar < startc)
 				{
-					++tqstart;
+					//remove this one
+					transitionQ.set(tqend, transitionQ.get(tqstart++));
 					continue;
 				}
-				
-				//INVAR - trans contributes to the next DFA transition
-				nfaStateSet.clear();
-				_addNfaStateAndEpsilonsToSubset(nfaStateSet, trans.m_stateNum);
-				char startc = trans.m_firstChar;
-				char endc = trans.m_lastChar;
-				if (startc < minc)
-				{
-					startc = minc;
-				}
-				//make range of all transitions that include the start character, removing ones
-				//that drop out
-				for(int tqend = tqstart+1; tqend < tqlen; ++tqend)
+				if (trans.m_firstChar > startc)
 				{
-					trans = transitionQ.get(tqend);
-					if (trans.m_lastChar < startc)
+					//this one is for the next transition
+					if (trans.m_firstChar <= endc)
 					{
-						//remove this one
-						transitionQ.set(tqend, transitionQ.get(tqstart++));
-						continue;
+						endc = (char)(trans.m_firstChar-1);
 					}
-					if (trans.m_firstChar > startc)
-					{
-						//this one is for the next transition
-						if (trans.m_firstChar <= endc)
-						{
-							endc = (char)(trans.m_firstChar-1);
-						}
-						break;
-					}
-					//this one counts
-					if (trans.m_lastChar < endc)
-					{
-						endc = trans.m_lastChar;
-					}
-	                _addNfaStateAndEpsilonsToSubset(nfaStateSet, trans.m_stateNum);
+					break;
 				}
-				
-				dfaStateTransitions.add(new NfaTransition(startc, endc,  _getDfaState(nfaStateSet)));
-
-				minc = (char)(endc+1);
-				if (minc < endc)
+				//this one counts
+				if (trans.m_lastChar < endc)
 				{
-					//wrapped around
-					break;
+					endc = trans.m_lastChar;
 				}
+                _addNfaStateAndEpsilonsToSubset(nfaStateSet, trans.m_stateNum);
 			}
 			
-			//INVARIANT: m_dfaStatesOut.size() == stateNum
-			m_dfaStates.add(_createStateInfo(dfaStateSig, dfaStateTransitions));
+			dfaStateTransitions.add(new NfaTransition(startc, endc,  _getDfaState(nfaStateSet, context)));
+
+			minc = (char)(endc+1);
+			if (minc < endc)
+			{
+				//wrapped around
+				break;
+			}
+		}
+	}
+	
+	//Add the parts of an NFA transition that are in the given sorted character ranges
+	private static void _addClippedTransition(NfaTransition trans, char[] ranges, List<NfaTransition> dest)
+	{
+		for (int i=0; i<ranges.length; i+=2)
+		{
+			final char first = (char)Math.max(trans.m_firstChar, ranges[i]);
+			final char last = (char)Math.min(trans.m_lastChar, ranges[i+1]);
+			if (first <= last)
+			{
+				dest.add(first == trans.m_firstChar && last == trans.m_lastChar ?
+				        trans : new NfaTransition(first, last, trans.m_stateNum));
+			}
+		}
+	}
+	
+	private int _getNfaRange()
+	{
+		return m_nfaStateCount + (m_hasAssertions ? Assertion.NUM_CONTEXTS : 0);
+	}
+	
+	//Get the context stored in a DFA state signature, or -1 if it doesn't have one
+	private int _getContext(IntListKey sig)
+	{
+		m_tempContext = -1;
+		if (m_hasAssertions)
+		{
+			DfaStateSignatureCodec.expand(sig, state -> {
+				if (state >= m_nfaStateCount)
+				{
+					m_tempContext = state - m_nfaStateCount;
+				}
+			});
+		}
+		return m_tempContext;
+	}
+	
+	//Get the NFA states in a DFA state at a position before a character in nextContext.
+	//nextContext < 0 gets the states we're in no matter what comes next
+	private void _expandSignature(IntListKey sig, int context, int nextContext, CompactIntSubset dest)
+	{
+		dest.clear();
+		DfaStateSignatureCodec.expand(sig, state -> {
+			if (state < m_nfaStateCount)
+			{
+				dest.add(state);
+			}
+		});
+		if (context >= 0)
+		{
+			_addAssertionClosure(dest, context, nextContext);
+		}
+	}
+	
+	//Add the NFA states that can be reached from the ones in dest through assertions that
+	//hold between the previous and next contexts, and epsilons.  nextContext < 0 means only
+	//follow assertions that hold no matter what comes next
+	private void _addAssertionClosure(CompactIntSubset dest, int prevContext, int nextContext)
+	{
+		m_tempNfaClosureList.clear();
+		dest.dumpInOrder(state -> {
+			if (m_nfa.hasStateAssertions(state))
+			{
+				m_tempNfaClosureList.add(state);
+			}
+		});
+		Integer nfaState;
+		while((nfaState = m_tempNfaClosureList.poll())!=null)
+		{
+			m_nfa.forStateAssertions(nfaState, (assertion, target) -> {
+				if ((nextContext < 0 ? assertion.holdsAfter(prevContext) : assertion.holds(prevContext, nextContext))
+				        && dest.add(target))
+				{
+					m_tempNfaClosureList.add(target);
+				}
+			});
+			m_nfa.forStateEpsilons(nfaState, (Integer target) -> {
+				if (dest.add(target))
+				{
+					m_tempNfaClosureList.add(target);
+				}
+			});
 		}
-		
 	}
 	
 	//Add an NFA state to m_currentNFASubset, along with the transitive
@@ -202,7 +417,7 @@ class DfaFromNfa<RESULT>
 	
 	private void _addNfaStateToSignatureCodec(int stateNum)
 	{
-	    if (m_nfa.hasTransitionsOrAccepts(stateNum))
+	    if (stateNum >= m_nfaStateCount || m_nfa.hasTransitionsOrAccepts(stateNum))
 	    {
 	        m_dfaSigCodec.acceptInt(stateNum);
 	    }
@@ -210,9 +425,26 @@ class DfaFromNfa<RESULT>
 
 	
 	
-	//Make a DFA state for a set of simultaneous NFA states
-	private Integer _getDfaState(CompactIntSubset nfaStateSet)
+	//Make a DFA state for a set of simultaneous NFA states, reached by a character in the
+	//given context
+	private Integer _getDfaState(CompactIntSubset nfaStateSet, int context)
 	{
+		if (m_hasAssertions)
+		{
+			//the context only matters if we might have to follow assertions
+			m_tempFoundAssertion = false;
+			nfaStateSet.dumpInOrder(state -> {
+				if (m_nfa.hasStateAssertions(state))
+				{
+					m_tempFoundAssertion = true;
+				}
+			});
+			if (m_tempFoundAssertion)
+			{
+				nfaStateSet.add(m_nfaStateCount + context);
+			}
+		}
+		
 		//dump state combination into compressed form
 		m_tempStateSignature.clear();
 		m_dfaSigCodec.start(m_tempStateSignature::add, nfaStateSet.getSize(), nfaStateSet.getRange());
@@ -231,39 +463,100 @@ class DfaFromNfa<RESULT>
 		return dfaStateNum;
 	}
 	
-	@SuppressWarnings("unchecked")
-    private DfaStateInfo _createStateInfo(IntListKey sig, List<NfaTransition> transitions)
+    private DfaStateInfo _createStateInfo(IntListKey sig, int context, List<NfaTransition> transitions)
 	{
-		//calculate the set of accepts
-		m_tempResultSet.clear();
-		DfaStateSignatureCodec.expand(sig, nfastate -> {
-			RESULT accept = m_nfa.getAccept(nfastate);
-			if (accept != null)
+		if (context < 0)
+		{
+			m_tempAcceptCount = 0;
+			DfaStateSignatureCodec.expand(sig, this::_addAccept);
+			return new DfaStateInfo(transitions, _resolveAccepts());
+		}
+		
+		//accepts that don't depend on the next character
+		_expandSignature(sig, context, -1, m_tempNfaStateSet);
+		m_tempAcceptCount = 0;
+		m_tempNfaStateSet.dumpInOrder(this::_addAccept);
+		final int acceptSetIndex = _resolveAccepts();
+		
+		//and the ones that do
+		int[] lookaheadAcceptSetIndexes = null;
+		for (int next = 0; next < Assertion.NUM_CONTEXTS; ++next)
+		{
+			_expandSignature(sig, context, next, m_tempNfaStateSet);
+			m_tempAcceptCount = 0;
+			m_tempNfaStateSet.dumpInOrder(this::_addAccept);
+			final int index = _resolveAccepts();
+			if (index != acceptSetIndex)
 			{
-				m_tempResultSet.add(accept);
+				if (lookaheadAcceptSetIndexes == null)
+				{
+					lookaheadAcceptSetIndexes = new int[Assertion.NUM_CONTEXTS];
+					Arrays.fill(lookaheadAcceptSetIndexes, acceptSetIndex);
+				}
+				lookaheadAcceptSetIndexes[next] = index;
 			}
-		});
-		
-		//and get an accept set index for it
-		RESULT dfaAccept = null;
-		if (m_tempResultSet.size() > 1)
+		}
+		return new DfaStateInfo(transitions, acceptSetIndex, lookaheadAcceptSetIndexes);
+	}
+	
+	//add the accept set index for an NFA state to m_tempAcceptIds, if it's not already there
+	private void _addAccept(int nfastate)
+	{
+		if (nfastate >= m_nfaStateCount)
 		{
-			dfaAccept = (RESULT)m_ambiguityResolver.apply(m_tempResultSet);
+			return;
 		}
-		else if(!m_tempResultSet.isEmpty())
+		int accept = m_nfaAcceptSetIndexes[nfastate];
+		if (accept == 0)
 		{
-			dfaAccept = m_tempResultSet.iterator().next();
+			return;
 		}
-		
+		final int n = m_tempAcceptCount;
+		for (int i=0; i<n; ++i)
+		{
+			if (m_tempAcceptIds[i] == accept)
+			{
+				return;
+			}
+		}
+		if (n >= m_tempAcceptIds.length)
+		{
+			m_tempAcceptIds = Arrays.copyOf(m_tempAcceptIds, n*2);
+		}
+		m_tempAcceptIds[n] = accept;
+		m_tempAcceptCount = n+1;
+	}
+	
+	//get a single accept set index for the accepts in m_tempAcceptIds
+	@SuppressWarnings("unchecked")
+	private int _resolveAccepts()
+	{
 		int acceptSetIndex = 0;
-		if (dfaAccept != null)
+		if (m_tempAcceptCount > 1)
 		{
-			acceptSetIndex = m_acceptSetMap.computeIfAbsent(dfaAccept, keyset -> {
-				m_acceptSets.add(keyset);
-				return m_acceptSets.size()-1;
-			});
+			m_tempResultSet.clear();
+			for (int i=0; i<m_tempAcceptCount; ++i)
+			{
+				m_tempResultSet.add(m_acceptSets.get(m_tempAcceptIds[i]));
+			}
+			RESULT dfaAccept = (RESULT)m_ambiguityResolver.apply(m_tempResultSet);
+			if (dfaAccept != null)
+			{
+				acceptSetIndex = _getAcceptSetIndex(dfaAccept);
+			}
 		}
-		
-		return new DfaStateInfo(transitions, acceptSetIndex);
+		else if (m_tempAcceptCount > 0)
+		{
+			acceptSetIndex = m_tempAcceptIds[0];
+		}
+		return acceptSetIndex;
+	}
+	
+	private int _getAcceptSetIndex(RESULT result)
+	{
+		return m_acceptSetMap.computeIfAbsent(result, keyset -> {
+			m_acceptSets.add(keyset);
+			return m_acceptSets.size()-1;
+		});
 	}
 }
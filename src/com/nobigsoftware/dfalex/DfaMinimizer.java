@@ -17,6 +17,7 @@ package com.nobigsoftware.dfalex;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -105,7 +106,7 @@ class DfaMinimizer<RESULT>
 				m_tempTrans.add(new NfaTransition(startc, endc, dest));
 			}
 			
-			m_minStates.add(new DfaStateInfo(m_tempTrans, instate.getAcceptSetIndex()));
+			m_minStates.add(new DfaStateInfo(m_tempTrans, instate.getAcceptSetIndex(), instate.getLookaheadAcceptSetIndexes()));
 		}
 		
 		int [] origStartStates = m_origDfa.getStartStates();
@@ -132,6 +133,7 @@ class DfaMinimizer<RESULT>
 			m_origOrderPartNums[i] = m_origStates.get(i).getAcceptSetIndex();
 			m_partitionOrderStates[i] = i;
 		}
+		_separateLookaheadAccepts();
         //Then we repartition the whole state set, which will set m_origOrderPartNums and
 		//m_partitionOrderStates properly and do an initial partitioning by previous
 		//partition (accept set) AND transitions
@@ -217,6 +219,40 @@ class DfaMinimizer<RESULT>
 		}
 	}
 	
+	//States with accepts that depend on the next character have to be distinguished by
+	//their lookahead accept sets too.  Give every distinct combination its own number
+	private void _separateLookaheadAccepts()
+	{
+		HashMap<IntListKey, Integer> combos = null;
+		IntListKey key = new IntListKey();
+		for (int i=0;i<m_origOrderPartNums.length;++i)
+		{
+			int[] lookahead = m_origStates.get(i).getLookaheadAcceptSetIndexes();
+			if (lookahead == null)
+			{
+				continue;
+			}
+			if (combos == null)
+			{
+				combos = new HashMap<>();
+			}
+			key.clear();
+			key.add(m_origOrderPartNums[i]);
+			for (int index : lookahead)
+			{
+				key.add(index);
+			}
+			Integer partNum = combos.get(key);
+			if (partNum == null)
+			{
+				//plain accept set indexes are < the number of accept sets
+				partNum = m_origDfa.getAcceptSets().size() + combos.size();
+				combos.put(key.clone(), partNum);
+			}
+			m_origOrderPartNums[i] = partNum;
+		}
+	}
+	
 	//given the start and end of a partition in m_partitionOrderStartStates, repartition it
 	//into smaller partitions (equivalence classes) according to current information
 	//each partition will end up with a number equal to its start position in m_partitionOrderStartStates
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Generates Java source code for a stand-alone matcher
+ * <P>
+ * When the patterns a program uses are fixed, the DFA can be built once, during the
+ * program's build, and its source checked in or generated along with the rest of the code.
+ * The generated class doesn't depend on this library, and doesn't need to build, minimize,
+ * or deserialize anything at startup.  Its tables are static final arrays, decoded from
+ * string constants when the class is initialized, so it works well with ahead-of-time
+ * compilation and class data sharing.
+ * <P>
+ * The generated class has the same matchAt methods as {@link DfaTable}, and reports matches
+ * the same way, including those of patterns with {@link Assertion}s.  Match results can't be
+ * generated in general, so the generated class has an unmodifiable RESULTS list with the
+ * string value of the result for each match ID.  If the results are enum constants, the
+ * enum's valueOf method will turn them back into results.
+ */
+public class DfaSourceGenerator
+{
+    //max chars in a single string constant.  Each can take up to 3 bytes in the class file,
+    //and the limit is 65535 bytes
+    private static final int MAX_CONSTANT_CHARS = 16000;
+    private final DfaTable<?> m_table;
+    
+    /**
+     * Create a new source generator
+     * 
+     * @param table the table for the DFA to generate code for
+     */
+    public DfaSourceGenerator(DfaTable<?> table)
+    {
+        m_table = table;
+    }
+    
+    /**
+     * Generate the source code for a matcher class
+     * 
+     * @param packageName the package of the generated class, or null or "" for the default package
+     * @param className the simple name of the generated class
+     * @return the Java source for the class
+     */
+    public String generate(String packageName, String className)
+    {
+        StringBuilder sb = new StringBuilder();
+        try
+        {
+            generate(packageName, className, sb);
+        }
+        catch(IOException e)
+        {
+            //StringBuilder doesn't do this
+            throw new RuntimeException(e);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Generate the source code for a matcher class
+     * 
+     * @param packageName the package of the generated class, or null or "" for the default package
+     * @param className the simple name of the generated class
+     * @param out the source is written here
+     * @throws IOException if out throws one
+     */
+    public void generate(String packageName, String className, Appendable out) throws IOException
+    {
+        final int width = m_table.getClassCount()+1;
+        if (packageName != null && !packageName.isEmpty())
+        {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("/**\n");
+        out.append(" * DFA matcher generated by ").append(DfaSourceGenerator.class.getName()).append(".  Do not edit.\n");
+        out.append(" * <P>\n");
+        out.append(" * ").append(Integer.toString(m_table.getStateCount())).append(" states, ")
+            .append(Integer.toString(m_table.getClassCount())).append(" character classes\n");
+        out.append(" */\n");
+        out.append("public final class ").append(className).append("\n{\n");
+        out.append("    /**\n");
+        out.append("     * The value returned by the matchAt methods when there is no match\n");
+        out.append("     */\n");
+        out.append("    public static final long NO_MATCH = -1L;\n\n");
+        out.append("    /**\n");
+        out.append("     * String values of the match results, indexed by match ID\n");
+        out.append("     */\n");
+        out.append("    public static final java.util.List<String> RESULTS = java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+        final List<?> results = m_table.getResultsById();
+        for (int i=0; i<results.size(); ++i)
+        {
+            out.append(i > 0 ? ",\n        " : "\n        ");
+            final Object result = results.get(i);
+            if (result == null)
+            {
+                out.append("null");
+            }
+            else
+            {
+                appendStringLiteral(out, result.toString());
+            }
+        }
+        out.append("));\n\n");
+        
+        out.append("    private static final int BLOCK_BITS = ").append(Integer.toString(DfaTable.BLOCK_BITS)).append(";\n");
+        out.append("    private static final int WIDTH = ").append(Integer.toString(width)).append(";\n");
+        out.append("    private static final int[] BLOCK_OFFSETS = _ints(");
+        appendInts(out, m_table.getBlockOffsets());
+        out.append(");\n");
+        out.append("    private static final char[] CLASS_BLOCKS = _chars(");
+        appendChars(out, m_table.getClassBlocks());
+        out.append(");\n");
+        out.append("    //rows of WIDTH entries.  The first is the match ID, or -2-k for conditional match k.\n");
+        out.append("    //The others are target row offsets\n");
+        out.append("    private static final int[] TABLE = _ints(");
+        appendInts(out, m_table.getTable());
+        out.append(");\n");
+        out.append("    //start row offsets for each context of the previous character\n");
+        out.append("    private static final int[] START_ROWS = _ints(");
+        appendInts(out, m_table.getStartRows());
+        out.append(");\n");
+        out.append("    //match IDs for each conditional match and context of the next character\n");
+        out.append("    private static final int[] CONDITIONAL_IDS = _ints(");
+        appendInts(out, m_table.getConditionalIds());
+        out.append(");\n\n");
+        
+        out.append("    private ").append(className).append("()\n    {\n    }\n\n");
+        _appendMatchAt(out, "CharSequence", "src.charAt(%s)");
+        _appendMatchAt(out, "char[]", "src[%s]");
+        
+        out.append("    /**\n");
+        out.append("     * Get the match ID from a matchAt result\n");
+        out.append("     */\n");
+        out.append("    public static int getMatchId(long match)\n    {\n");
+        out.append("        return (int)(match >>> 32);\n    }\n\n");
+        out.append("    /**\n");
+        out.append("     * Get the end position from a matchAt result\n");
+        out.append("     */\n");
+        out.append("    public static int getMatchEnd(long match)\n    {\n");
+        out.append("        return (int)match;\n    }\n\n");
+        
+        out.append("    //the context of a character for assertions: none, newline, word, or other\n");
+        out.append("    private static int _context(int c)\n    {\n");
+        out.append("        if (c < 0)\n        {\n");
+        out.append("            return ").append(Integer.toString(Assertion.CONTEXT_NONE)).append(";\n        }\n");
+        out.append("        if (c == '\\n')\n        {\n");
+        out.append("            return ").append(Integer.toString(Assertion.CONTEXT_NEWLINE)).append(";\n        }\n");
+        out.append("        if (c <= 'z' && (c >= 'a' || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || c == '_'))\n        {\n");
+        out.append("            return ").append(Integer.toString(Assertion.CONTEXT_WORD)).append(";\n        }\n");
+        out.append("        return ").append(Integer.toString(Assertion.CONTEXT_OTHER)).append(";\n    }\n\n");
+        out.append("    private static char[] _chars(String... parts)\n    {\n");
+        out.append("        StringBuilder sb = new StringBuilder();\n");
+        out.append("        for (String part : parts)\n        {\n");
+        out.append("            sb.append(part);\n        }\n");
+        out.append("        return sb.toString().toCharArray();\n    }\n\n");
+        out.append("    //ints are stored as pairs of chars, high half first\n");
+        out.append("    private static int[] _ints(String... parts)\n    {\n");
+        out.append("        char[] chars = _chars(parts);\n");
+        out.append("        int[] ret = new int[chars.length/2];\n");
+        out.append("        for (int i=0; i<ret.length; ++i)\n        {\n");
+        out.append("            ret[i] = (chars[i*2]<<16) | chars[i*2+1];\n        }\n");
+        out.append("        return ret;\n    }\n");
+        out.append("}\n");
+    }
+    
+    //charAt is a format for reading the character at an index from src
+    private static void _appendMatchAt(Appendable out, String srcType, String charAt) throws IOException
+    {
+        out.append("    /**\n");
+        out.append("     * Find the longest match starting at a given position\n");
+        out.append("     *\n");
+        out.append("     * @return NO_MATCH, or (matchId &lt;&lt; 32) | end for the longest match\n");
+        out.append("     */\n");
+        out.append("    public static long matchAt(").append(srcType).append(" src, int pos, final int limit)\n    {\n");
+        out.append("        long ret = NO_MATCH;\n");
+        out.append("        int row = START_ROWS[_context(pos > 0 ? ").append(String.format(charAt, "pos-1")).append(" : -1)];\n");
+        out.append("        while (pos < limit)\n        {\n");
+        out.append("            final char c = ").append(String.format(charAt, "pos++")).append(";\n");
+        out.append("            row = TABLE[row + 1 + CLASS_BLOCKS[BLOCK_OFFSETS[c>>BLOCK_BITS] + (c & ((1<<BLOCK_BITS)-1))]];\n");
+        out.append("            if (row < 0)\n            {\n                break;\n            }\n");
+        out.append("            int matchId = TABLE[row];\n");
+        out.append("            if (matchId < -1)\n            {\n");
+        out.append("                matchId = CONDITIONAL_IDS[(-2-matchId)*").append(Integer.toString(Assertion.NUM_CONTEXTS))
+            .append(" + _context(pos < limit ? ").append(String.format(charAt, "pos")).append(" : -1)];\n            }\n");
+        out.append("            if (matchId >= 0)\n            {\n");
+        out.append("                ret = ((long)matchId << 32) | pos;\n            }\n");
+        out.append("        }\n");
+        out.append("        return ret;\n    }\n\n");
+    }
+    
+    //decode chars written by appendChars
+    static char[] decodeChars(String... parts)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts)
+        {
+            sb.append(part);
+        }
+        return sb.toString().toCharArray();
+    }
+    
+    //decode ints written by appendInts.  They are stored as pairs of chars, high half first
+    static int[] decodeInts(String... parts)
+    {
+        char[] chars = decodeChars(parts);
+        int[] ret = new int[chars.length/2];
+        for (int i=0; i<ret.length; ++i)
+        {
+            ret[i] = (chars[i*2]<<16) | chars[i*2+1];
+        }
+        return ret;
+    }
+    
+    //append ints as a list of string constants
+    static void appendInts(Appendable out, int[] ints) throws IOException
+    {
+        char[] chars = new char[ints.length*2];
+        for (int i=0; i<ints.length; ++i)
+        {
+            chars[i*2] = (char)(ints[i]>>>16);
+            chars[i*2+1] = (char)ints[i];
+        }
+        appendChars(out, chars);
+    }
+    
+    //append chars as a list of string constants
+    static void appendChars(Appendable out, char[] chars) throws IOException
+    {
+        int pos = 0;
+        do
+        {
+            final int end = Math.min(chars.length, pos + MAX_CONSTANT_CHARS);
+            out.append(pos > 0 ? ",\n        " : "\n        ");
+            appendStringLiteral(out, new String(chars, pos, end-pos));
+            pos = end;
+        } while (pos < chars.length);
+    }
+    
+    static void appendStringLiteral(Appendable out, String str) throws IOException
+    {
+        out.append('"');
+        int lineStart = 0;
+        for (int i=0; i<str.length(); ++i)
+        {
+            if (i - lineStart >= 16)
+            {
+                out.append("\"\n        + \"");
+                lineStart = i;
+            }
+            final char c = str.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                out.append('\\').append(c);
+            }
+            else if (c >= ' ' && c < 127)
+            {
+                out.append(c);
+            }
+            else if (c < 256)
+            {
+                //octal, because unicode escapes for line breaks are processed before parsing
+                out.append(String.format("\\%03o", (int)c));
+            }
+            else
+            {
+                out.append(String.format("\\u%04x", (int)c));
+            }
+        }
+        out.append('"');
+    }
+}
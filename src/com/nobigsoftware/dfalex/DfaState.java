@@ -17,6 +17,17 @@ package com.nobigsoftware.dfalex;
 
 /**
  * A state in a char-matching deterministic finite automaton (that's the google phrase) or DFA
+ * <P>
+ * DFA states behave as if they were immutable:  a state always reports the same matches, and
+ * its transitions always lead to states that behave the same way.  They aren't necessarily
+ * constructed up front, though.  States built with {@link DfaBuilder#setLazyStates(boolean)}
+ * are created when they are first reached, and the combined states of {@link IncrementalDfaBuilder}
+ * DFAs and {@link DfaBuilder#buildShardedStringSearcher(DfaAmbiguityResolver, int)} are also
+ * discarded and recreated as needed.  All such states are safely published, so the states of
+ * every DFA this package builds, including DFAs that were loaded from a
+ * {@link com.nobigsoftware.util.BuilderCache}, can be shared freely between any number of
+ * threads without external locking.  Implementations of this class outside this package
+ * should make the same guarantee.
  * 
  * @param MATCHRESULT the type of result produced by matching patterns with this DFA
  */
@@ -39,6 +50,103 @@ public abstract class DfaState<MATCHRESULT>
 	 */
 	public abstract MATCHRESULT getMatch();
 	
+    /**
+     * Get the ID of the result that has been matched if we've transitioned into this state
+     * <P>
+     * Match IDs are small, dense, non-negative integers, so they can be used as array indexes
+     * without any map lookups.  For DFAs built by {@link DfaBuilder}, each MATCHRESULT
+     * gets the ID that {@link DfaBuilder#getMatchId(java.io.Serializable)} reports for it,
+     * in the order that results were first added to the builder.  Results produced only by
+     * an ambiguity resolver are numbered after those.
+     * <P>
+     * See {@link DfaAuxiliaryInformation#getMatchResultsById()} to map IDs back to results.
+     * <P>
+     * The default implementation is for states that don't support match IDs.  It returns -1 if
+     * {@link #getMatch()} returns null, and throws UnsupportedOperationException otherwise.
+     *
+     * @return the ID of the match result produced by this state, or -1 if it doesn't produce one
+     */
+    public int getMatchId()
+    {
+        if (getMatch() == null)
+        {
+            return -1;
+        }
+        throw new UnsupportedOperationException("This DFA state does not support match IDs");
+    }
+
+    /**
+     * Character value for {@link #getMatchBefore(int)} and {@link #getStartStateAfter(int)}
+     * that means there is no character, because the position is at the end or start of the input
+     */
+    public static final int NO_CHAR = -1;
+
+    /**
+     * Get the result that has been matched if we've transitioned into this state, given the
+     * character that comes next
+     * <P>
+     * Patterns with {@link Assertion}s like $ and \b can match or not depending on the
+     * character after the match.  {@link #getMatch()} only reports the matches that don't
+     * depend on it.
+     * <P>
+     * The default implementation returns {@link #getMatch()}
+     *
+     * @param nextChar the character after the current position, or {@link #NO_CHAR} at the
+     *      end of the input
+     * @return the match result for the characters that led to this state, when followed
+     *      by nextChar, or null if they don't match
+     */
+    public MATCHRESULT getMatchBefore(int nextChar)
+    {
+        return getMatch();
+    }
+
+    /**
+     * Get the ID of the result that has been matched if we've transitioned into this state,
+     * given the character that comes next
+     * <P>
+     * See {@link #getMatchBefore(int)} and {@link #getMatchId()}.  The default implementation
+     * returns {@link #getMatchId()}
+     *
+     * @param nextChar the character after the current position, or {@link #NO_CHAR} at the
+     *      end of the input
+     * @return the ID of the match result produced by this state when followed by nextChar,
+     *      or -1 if it doesn't produce one
+     */
+    public int getMatchIdBefore(int nextChar)
+    {
+        return getMatchId();
+    }
+
+    /**
+     * Check whether the match produced by this state depends on the next character
+     *
+     * @return true if {@link #getMatchBefore(int)} can return something different from
+     *      {@link #getMatch()}
+     */
+    public boolean hasConditionalMatch()
+    {
+        return false;
+    }
+
+    /**
+     * Get the start state to use for a match that starts after a given character
+     * <P>
+     * DFAs for patterns with {@link Assertion}s like ^ and \b have different start states for
+     * different preceding characters.  The start states produced by {@link DfaBuilder} are the
+     * ones for the start of the input, and this method gets the others.
+     * <P>
+     * The default implementation returns this state
+     *
+     * @param prevChar the character before the start position, or {@link #NO_CHAR} at the
+     *      start of the input
+     * @return the start state for matches that start after prevChar
+     */
+    public DfaState<MATCHRESULT> getStartStateAfter(int prevChar)
+    {
+        return this;
+    }
+
 	
 	/**
      * Get the state number.  All states reachable from the output of a single call to
@@ -72,4 +180,74 @@ public abstract class DfaState<MATCHRESULT>
      * @return true if this state has any successor states
      */
     public abstract boolean hasSuccessorStates();
+
+    /**
+     * Skip over characters that this state transitions back to itself on.
+     * <P>
+     * Many states loop back to themselves on large sets of characters -- the insides of comments
+     * and string literals, for example.  Matchers call this when they see a state transition to
+     * itself, so that they can jump to the next character that leaves the loop instead of
+     * processing every character through {@link #getNextState(char)}.
+     * <P>
+     * The default implementation just calls {@link #getNextState(char)} for each character.  The
+     * states produced by {@link DfaBuilder} precompute their self-loops when the DFA is built.
+     *
+     * @param src the characters being matched
+     * @param pos position of the first character to examine
+     * @param limit position after the last character to examine
+     * @return the position of the first character in [pos, limit) that does NOT transition
+     *      to this state, or limit if there is no such character
+     */
+    public int skipSelfLoop(CharSequence src, int pos, int limit)
+    {
+        while (pos < limit && getNextState(src.charAt(pos)) == this)
+        {
+            ++pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Skip over characters that this state transitions back to itself on.
+     * <P>
+     * This is the same as {@link #skipSelfLoop(CharSequence, int, int)}, but operates on
+     * a char array.
+     *
+     * @param src the characters being matched
+     * @param pos position of the first character to examine
+     * @param limit position after the last character to examine
+     * @return the position of the first character in [pos, limit) that does NOT transition
+     *      to this state, or limit if there is no such character
+     */
+    public int skipSelfLoop(char[] src, int pos, int limit)
+    {
+        while (pos < limit && getNextState(src[pos]) == this)
+        {
+            ++pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Skip backward over characters that this state transitions back to itself on.
+     * <P>
+     * This is the counterpart of {@link #skipSelfLoop(CharSequence, int, int)} for DFAs that
+     * are applied to strings backwards, like the reverse finders built by
+     * {@link DfaBuilder#buildReverseFinder()}.
+     *
+     * @param src the characters being matched
+     * @param pos position after the first character to examine.  Characters are examined
+     *      starting at pos-1 and moving toward the start of src.
+     * @param limit position of the last character that may be examined
+     * @return the lowest position p in [limit, pos] such that all characters in [p, pos)
+     *      transition to this state
+     */
+    public int skipSelfLoopBackward(CharSequence src, int pos, int limit)
+    {
+        while (pos > limit && getNextState(src.charAt(pos-1)) == this)
+        {
+            --pos;
+        }
+        return pos;
+    }
 }
@@ -21,13 +21,21 @@ import java.util.function.Consumer;
 class DfaStateInfo
 {
 	private int m_acceptSetIndex;
+	//accept set index for each next character context, or null if they're all m_acceptSetIndex
+	private int[] m_lookaheadAcceptSetIndexes;
 	private int m_transitionCount;
 	private NfaTransition[] m_transitionBuf;
 	
 	DfaStateInfo(List<NfaTransition> transitions, int acceptSetIndex)
+	{
+		this(transitions, acceptSetIndex, null);
+	}
+	
+	DfaStateInfo(List<NfaTransition> transitions, int acceptSetIndex, int[] lookaheadAcceptSetIndexes)
 	{
 		
 		m_acceptSetIndex = acceptSetIndex;
+		m_lookaheadAcceptSetIndexes = lookaheadAcceptSetIndexes;
 		m_transitionCount = transitions.size();
 		m_transitionBuf = transitions.toArray(new NfaTransition[m_transitionCount]);
 	}
@@ -37,6 +45,18 @@ class DfaStateInfo
 		return m_acceptSetIndex;
 	}
 	
+	/**
+	 * Get the accept set indexes that apply before characters in each context.
+	 * See {@link Assertion}
+	 * 
+	 * @return the accept set index for each next character context, or null if the
+	 *     accept set doesn't depend on the next character
+	 */
+	public int[] getLookaheadAcceptSetIndexes()
+	{
+		return m_lookaheadAcceptSetIndexes;
+	}
+	
 	public int getTransitionCount()
 	{
 		return m_transitionCount;
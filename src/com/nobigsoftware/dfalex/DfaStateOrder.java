@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Renumbers the states of a DFA to improve memory locality while matching
+ * <P>
+ * The states of a built DFA are laid out in memory in state number order, so states that
+ * are used together should have nearby numbers.  States can be ordered breadth-first from
+ * the start states, so that states close to the start states are close together, or by how
+ * often they are visited when matching a sample of typical input.
+ */
+class DfaStateOrder
+{
+    /**
+     * Renumber states in breadth-first order from the start states
+     * <P>
+     * Transitions are followed in character order.  States that can't be reached from any
+     * start state are numbered last.
+     * 
+     * @param dfa the DFA to renumber
+     * @return an equivalent DFA with renumbered states
+     */
+    static <RESULT> RawDfa<RESULT> breadthFirst(RawDfa<RESULT> dfa)
+    {
+        return _renumber(dfa, _breadthFirstOrder(dfa));
+    }
+    
+    /**
+     * Renumber states by how often they're visited when matching sample input
+     * <P>
+     * Each sample is split into tokens the way {@link Lexer} would, by finding the longest match
+     * for each language at each position.  The states visited most often get the lowest
+     * numbers.  States with equal counts, including states that aren't visited at all, are
+     * numbered in breadth-first order.
+     * <P>
+     * Like {@link Lexer}, this remembers the (position, state) pairs that can't lead to a match
+     * when runs start to rescan the same text, so counting is linear in the sample length.
+     * The visits that this skips aren't counted.
+     * 
+     * @param dfa the DFA to renumber
+     * @param numStarts the number of languages.  If the DFA has {@link Assertion#NUM_CONTEXTS}
+     *      times as many start states, then they are the start states for each context, context-major.
+     * @param samples sample input
+     * @return an equivalent DFA with renumbered states
+     */
+    static <RESULT> RawDfa<RESULT> byFrequency(RawDfa<RESULT> dfa, int numStarts, Collection<? extends CharSequence> samples)
+    {
+        final List<DfaStateInfo> states = dfa.getStates();
+        final long[] counts = new long[states.size()];
+        final int[] allStarts = dfa.getStartStates();
+        final int numContexts = allStarts.length / numStarts;
+        final int[] contextStarts = new int[numContexts];
+        for (CharSequence sample : samples)
+        {
+            for (int i = 0; i < numStarts; ++i)
+            {
+                for (int context = 0; context < numContexts; ++context)
+                {
+                    contextStarts[context] = allStarts[context*numStarts + i];
+                }
+                _countVisits(states, contextStarts, sample, counts);
+            }
+        }
+        final int[] bfsOrder = _breadthFirstOrder(dfa);
+        Integer[] order = new Integer[bfsOrder.length];
+        for (int i=0; i<order.length; ++i)
+        {
+            order[i] = bfsOrder[i];
+        }
+        //stable sort, so equal counts stay in breadth-first order
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        int[] newOrder = new int[order.length];
+        for (int i=0; i<newOrder.length; ++i)
+        {
+            newOrder[i] = order[i];
+        }
+        return _renumber(dfa, newOrder);
+    }
+    
+    //get the old state numbers in breadth-first order
+    private static int[] _breadthFirstOrder(RawDfa<?> dfa)
+    {
+        final List<DfaStateInfo> states = dfa.getStates();
+        final int nstates = states.size();
+        final int[] order = new int[nstates];
+        final boolean[] seen = new boolean[nstates];
+        int len = 0;
+        for (int startState : dfa.getStartStates())
+        {
+            if (!seen[startState])
+            {
+                seen[startState] = true;
+                order[len++] = startState;
+            }
+        }
+        int unseenScan = 0;
+        for (int next = 0; next < nstates; ++next)
+        {
+            if (next >= len)
+            {
+                //unreachable states go last
+                while (seen[unseenScan])
+                {
+                    ++unseenScan;
+                }
+                seen[unseenScan] = true;
+                order[len++] = unseenScan;
+            }
+            DfaStateInfo info = states.get(order[next]);
+            for (int i=0; i<info.getTransitionCount(); ++i)
+            {
+                final int target = info.getTransition(i).m_stateNum;
+                if (!seen[target])
+                {
+                    seen[target] = true;
+                    order[len++] = target;
+                }
+            }
+        }
+        return order;
+    }
+    
+    //tokenize a sample, counting the states visited.  contextStarts has the start state for
+    //each context of the previous character, or just one if the DFA has no assertions
+    private static void _countVisits(List<DfaStateInfo> states, int[] contextStarts, CharSequence sample, long[] counts)
+    {
+        final int len = sample.length();
+        final DeadStateMemo.RescanTracker rescans = new DeadStateMemo.RescanTracker();
+        int pos = 0;
+        while (pos < len)
+        {
+            final DeadStateMemo memo = rescans.getMemo();
+            if (memo != null)
+            {
+                memo.startRun(pos);
+            }
+            int matchEnd = pos+1;
+            int state = contextStarts[contextStarts.length > 1 ?
+                    Assertion.contextOf(pos > 0 ? sample.charAt(pos-1) : DfaState.NO_CHAR) : 0];
+            ++counts[state];
+            int i = pos;
+            while (i < len)
+            {
+                state = _getNextState(states.get(state), sample.charAt(i++));
+                if (state < 0)
+                {
+                    break;
+                }
+                ++counts[state];
+                final DfaStateInfo info = states.get(state);
+                final int[] lookaheadAccepts = info.getLookaheadAcceptSetIndexes();
+                final int accept = (lookaheadAccepts == null ? info.getAcceptSetIndex() :
+                    lookaheadAccepts[Assertion.contextOf(i < len ? sample.charAt(i) : DfaState.NO_CHAR)]);
+                if (accept != 0)
+                {
+                    matchEnd = i;
+                    if (memo != null)
+                    {
+                        memo.matched();
+                    }
+                    continue;
+                }
+                if (memo != null)
+                {
+                    if (memo.isDead(state, i))
+                    {
+                        //an earlier run found nothing from here
+                        break;
+                    }
+                    memo.visit(state, i, i);
+                }
+            }
+            if (memo != null)
+            {
+                memo.endRun();
+            }
+            else
+            {
+                rescans.track(pos, i);
+            }
+            pos = matchEnd;
+        }
+    }
+    
+    private static int _getNextState(DfaStateInfo info, char c)
+    {
+        int lo = 0, hi = info.getTransitionCount();
+        while (lo < hi)
+        {
+            final int mid = (lo+hi)>>>1;
+            final NfaTransition trans = info.getTransition(mid);
+            if (c > trans.m_lastChar)
+            {
+                lo = mid+1;
+            }
+            else if (c < trans.m_firstChar)
+            {
+                hi = mid;
+            }
+            else
+            {
+                return trans.m_stateNum;
+            }
+        }
+        return -1;
+    }
+    
+    //newOrder[i] is the old number of new state i
+    private static <RESULT> RawDfa<RESULT> _renumber(RawDfa<RESULT> dfa, int[] newOrder)
+    {
+        final List<DfaStateInfo> oldStates = dfa.getStates();
+        final int[] newNumbers = new int[newOrder.length];
+        for (int i=0; i<newOrder.length; ++i)
+        {
+            newNumbers[newOrder[i]] = i;
+        }
+        final List<DfaStateInfo> newStates = new ArrayList<>(newOrder.length);
+        final List<NfaTransition> transitions = new ArrayList<>();
+        for (int oldNum : newOrder)
+        {
+            final DfaStateInfo info = oldStates.get(oldNum);
+            transitions.clear();
+            info.forEachTransition(trans -> transitions.add(
+                    new NfaTransition(trans.m_firstChar, trans.m_lastChar, newNumbers[trans.m_stateNum])));
+            newStates.add(new DfaStateInfo(transitions, info.getAcceptSetIndex(), info.getLookaheadAcceptSetIndexes()));
+        }
+        final int[] oldStarts = dfa.getStartStates();
+        final int[] newStarts = new int[oldStarts.length];
+        for (int i=0; i<oldStarts.length; ++i)
+        {
+            newStarts[i] = newNumbers[oldStarts[i]];
+        }
+        return new RawDfa<>(newStates, dfa.getAcceptSets(), newStarts);
+    }
+}
@@ -16,6 +16,7 @@
 package com.nobigsoftware.dfalex;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Base class for serializable placeholders that construct final-form DFA states and
@@ -23,12 +24,23 @@ import java.util.List;
  * <P>
  * In serialized placeholders, target states are identified by their state number in a
  * SerializableDfa.
+ * <P>
+ * Placeholders can also stay in the DFA permanently, creating their delegates lazily the
+ * first time they're used.  See {@link #prepareLazyDelegate(int, List)}
  */
 abstract class DfaStatePlaceholder<MATCH> extends DfaStateImpl<MATCH> implements java.io.Serializable
 {
 	private static final long serialVersionUID = 1L;
+	
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<DfaStatePlaceholder, DfaStateImpl> DELEGATE_UPDATER =
+	        AtomicReferenceFieldUpdater.newUpdater(DfaStatePlaceholder.class, DfaStateImpl.class, "m_delegate");
 
-	protected transient DfaStateImpl<MATCH> m_delegate = null;
+	protected transient volatile DfaStateImpl<MATCH> m_delegate = null;
+	
+	//for lazy delegate creation.  Published along with the start states
+	private transient int m_lazyStateNum;
+	private transient List<DfaStatePlaceholder<MATCH>> m_lazyStates = null;
 	
 	/**
 	 * Create a new DfaStatePlaceholder
@@ -47,6 +59,36 @@ abstract class DfaStatePlaceholder<MATCH> extends DfaStateImpl<MATCH> implements
 	 */
 	abstract void createDelegate(int statenum, List<DfaStatePlaceholder<MATCH>> allStates);
 	
+	/**
+	 * Creates a complete final form delegate whose transitions lead to the placeholders
+	 * in allStates, instead of to their delegates.
+	 * <P>
+	 * The returned state is not shared until it has been completely constructed, and
+	 * fixPlaceholderReferences is not called on it.
+	 */
+	abstract DfaStateImpl<MATCH> createLazyDelegate(int statenum, List<DfaStatePlaceholder<MATCH>> allStates);
+	
+	/**
+	 * Prepare this placeholder to create its delegate on first use, instead of
+	 * calling {@link #createDelegate(int, List)}.
+	 * <P>
+	 * Lazy placeholders are never resolved.  They stay in the DFA, and states reached
+	 * through them are also lazy placeholders.
+	 */
+	final void prepareLazyDelegate(int statenum, List<DfaStatePlaceholder<MATCH>> allStates)
+	{
+	    m_lazyStateNum = statenum;
+	    m_lazyStates = allStates;
+	}
+	
+	/**
+	 * Make sure this placeholder's delegate has been created
+	 */
+	final void materialize()
+	{
+	    _getDelegate();
+	}
+	
 	@Override
 	final void fixPlaceholderReferences()
 	{
@@ -56,40 +98,104 @@ abstract class DfaStatePlaceholder<MATCH> extends DfaStateImpl<MATCH> implements
 	@Override
 	final DfaStateImpl<MATCH> resolvePlaceholder()
 	{
+	    if (m_lazyStates != null)
+	    {
+	        return this;
+	    }
 		return m_delegate.resolvePlaceholder();
 	}
 	
+	@SuppressWarnings("unchecked")
+	private DfaStateImpl<MATCH> _getDelegate()
+	{
+	    DfaStateImpl<MATCH> ret = m_delegate;
+	    if (ret == null)
+	    {
+	        //lazy.  If two threads race to do this, they both make an equivalent state,
+	        //and one of them wins
+	        ret = createLazyDelegate(m_lazyStateNum, m_lazyStates);
+	        if (!DELEGATE_UPDATER.compareAndSet(this, null, ret))
+	        {
+	            ret = m_delegate;
+	        }
+	    }
+	    return ret;
+	}
+	
 	@Override
 	final public DfaState<MATCH> getNextState(char c)
 	{
-		return m_delegate.getNextState(c);
+		return _getDelegate().getNextState(c);
 	}
 	@Override
 	final public MATCH getMatch()
 	{
-		return m_delegate.getMatch();
+		return _getDelegate().getMatch();
 	}
+	@Override
+	final public int getMatchId()
+	{
+		return _getDelegate().getMatchId();
+	}
+    @Override
+    final public MATCH getMatchBefore(int nextChar)
+    {
+        return _getDelegate().getMatchBefore(nextChar);
+    }
+    @Override
+    final public int getMatchIdBefore(int nextChar)
+    {
+        return _getDelegate().getMatchIdBefore(nextChar);
+    }
+    @Override
+    final public boolean hasConditionalMatch()
+    {
+        return _getDelegate().hasConditionalMatch();
+    }
     @Override
     final public void enumerateTransitions(DfaTransitionConsumer<MATCH> consumer)
     {
-        m_delegate.enumerateTransitions(consumer);
+        _getDelegate().enumerateTransitions(consumer);
     }
 
     @Override
     final public int getStateNumber()
     {
+        if (m_lazyStates != null)
+        {
+            //no need to create the delegate for this
+            return m_lazyStateNum;
+        }
         return m_delegate.getStateNumber();
     }
 
     @Override
     public Iterable<DfaState<MATCH>> getSuccessorStates()
     {
-        return m_delegate.getSuccessorStates();
+        return _getDelegate().getSuccessorStates();
     }
 
     @Override
     public boolean hasSuccessorStates()
     {
-        return m_delegate.hasSuccessorStates();
+        return _getDelegate().hasSuccessorStates();
+    }
+
+    @Override
+    public int skipSelfLoop(CharSequence src, int pos, int limit)
+    {
+        return _getDelegate().skipSelfLoop(src, pos, limit);
+    }
+
+    @Override
+    public int skipSelfLoop(char[] src, int pos, int limit)
+    {
+        return _getDelegate().skipSelfLoop(src, pos, limit);
+    }
+
+    @Override
+    public int skipSelfLoopBackward(CharSequence src, int pos, int limit)
+    {
+        return _getDelegate().skipSelfLoopBackward(src, pos, limit);
     }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * A {@link StreamReplacer} that finds matches with a forward DFA
+ * <P>
+ * Text is read into a sliding buffer.  At each position, the DFA is run forward to find the
+ * longest match, reading more text only when the DFA needs it.  Text that is found not to start
+ * a match is written out before the buffer is refilled, so memory use is bounded by the
+ * longest lookahead that the DFA requires.
+ * <P>
+ * Like {@link StringMatcher}, the replacer starts a {@link DeadStateMemo} when runs from
+ * different positions start to rescan the same text, so the total time is linear in the length
+ * of the input.  The character before the buffer is remembered for patterns with
+ * {@link Assertion}s, and the end of the stream is the end of the input.
+ * <P>
+ * Matches are the same as those found by {@link StringSearcher#findAndReplace(String, ReplacementSelector)}:
+ * leftmost, then longest, and non-overlapping.
+ */
+class DfaStreamReplacer<MR> implements StreamReplacer
+{
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    //when the buffer start gets this far into the stream, positions in the memo are rebased
+    private static final int MAX_BASE = Integer.MAX_VALUE/2;
+    
+    private final DfaState<MR> m_matcher;
+    private final ReplacementSelector<? super MR> m_replacer;
+    private final int m_initialBufferSize;
+    
+    /**
+     * Create a new DfaStreamReplacer.
+     * 
+     * @param matcher   A DFA that matches the patterns being searched for
+     * @param replacer  provides replacement values for matches
+     */
+    public DfaStreamReplacer(DfaState<MR> matcher, ReplacementSelector<? super MR> replacer)
+    {
+        this(matcher, replacer, DEFAULT_BUFFER_SIZE);
+    }
+    
+    //initial buffer size is adjustable for testing
+    DfaStreamReplacer(DfaState<MR> matcher, ReplacementSelector<? super MR> replacer, int initialBufferSize)
+    {
+        m_matcher = matcher;
+        m_replacer = replacer;
+        m_initialBufferSize = Math.max(initialBufferSize, 1);
+    }
+
+    @Override
+    public void replace(Reader in, Writer out) throws IOException
+    {
+        try
+        {
+            new Run(in, out).replaceAll();
+        }
+        catch(UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * State for a single call to replace().
+     * <P>
+     * This is the CharSequence passed to the replacer.  It presents the current contents of the buffer.
+     */
+    private class Run implements CharSequence
+    {
+        private final Reader m_in;
+        private final WriterAppendable m_out;
+        private char[] m_buf;
+        private int m_len = 0;
+        private boolean m_eof = false;
+        //text before this position has been written or replaced
+        private int m_flushed = 0;
+        //next position to try a match
+        private int m_pos = 0;
+        //the character before the buffer, for assertions
+        private int m_prevChar = DfaState.NO_CHAR;
+        //position of the start of the buffer in the stream, so dead states can be remembered
+        //across buffer shifts
+        private int m_base = 0;
+        private final LongestMatchFinder m_finder = new LongestMatchFinder();
+        //the buffered text, indexed by stream position, for the finder
+        private final CharSequence m_streamText = new StreamText();
+        
+        Run(Reader in, Writer out)
+        {
+            m_in = in;
+            m_out = new WriterAppendable(out);
+            m_buf = new char[m_initialBufferSize];
+        }
+        
+        void replaceAll() throws IOException
+        {
+            for(;;)
+            {
+                if (m_pos >= m_len)
+                {
+                    if (m_eof)
+                    {
+                        break;
+                    }
+                    _fill();
+                    continue;
+                }
+                
+                if (m_base > MAX_BASE)
+                {
+                    //keep stream positions in range.  This forgets the dead states
+                    m_base = 0;
+                    m_finder.reset();
+                }
+                
+                //find the longest match at m_pos, reading more text while the DFA needs it
+                DfaState<MR> accepted;
+                for (;;)
+                {
+                    accepted = m_finder.find(m_matcher.getStartStateAfter(m_pos > 0 ? m_buf[m_pos-1] : m_prevChar),
+                            m_streamText, m_base + m_pos, m_base + m_len, m_eof);
+                    if (m_eof || !m_finder.reachedLimit())
+                    {
+                        break;
+                    }
+                    _readMore();
+                }
+                final int matchEnd = (accepted == null ? m_pos : m_finder.getMatchEnd() - m_base);
+                final MR matchResult = (accepted == null ? null :
+                    accepted.getMatchBefore(matchEnd < m_len ? m_buf[matchEnd] : DfaState.NO_CHAR));
+                if (matchResult == null)
+                {
+                    ++m_pos;
+                    continue;
+                }
+                
+                //write out the unchanged text and replace the match
+                if (m_flushed < m_pos)
+                {
+                    m_out.write(m_buf, m_flushed, m_pos);
+                }
+                int doneTo = m_replacer.apply(m_out, matchResult, this, m_pos, matchEnd);
+                if (doneTo <= 0)
+                {
+                    doneTo = matchEnd;
+                }
+                else
+                {
+                    if (doneTo <= m_pos)
+                    {
+                        throw new IndexOutOfBoundsException("Replacer tried to rescan matched string");
+                    }
+                    while (doneTo > m_len && !m_eof)
+                    {
+                        //the replacer consumed text we haven't read yet
+                        m_pos = m_flushed = m_len;
+                        doneTo -= _fill();
+                    }
+                    if (doneTo > m_len)
+                    {
+                        throw new IndexOutOfBoundsException("Replacer tried to skip past the end of the input");
+                    }
+                }
+                m_pos = m_flushed = doneTo;
+            }
+            if (m_flushed < m_len)
+            {
+                m_out.write(m_buf, m_flushed, m_len);
+            }
+        }
+        
+        /**
+         * Read until the text after m_pos has doubled in length, or until the end of the input
+         */
+        private void _readMore() throws IOException
+        {
+            final int want = (m_len - m_pos)*2;
+            do
+            {
+                _fill();
+            }
+            while (!m_eof && m_len - m_pos < want);
+        }
+        
+        /**
+         * Read more text into the buffer, or set m_eof.
+         * <P>
+         * Text before m_pos is written out (if necessary) and discarded first.
+         * 
+         * @return the amount by which positions in the buffer were shifted down
+         */
+        private int _fill() throws IOException
+        {
+            if (m_flushed < m_pos)
+            {
+                m_out.write(m_buf, m_flushed, m_pos);
+            }
+            final int shift = m_pos;
+            if (shift > 0)
+            {
+                m_prevChar = m_buf[shift-1];
+                m_base += shift;
+                System.arraycopy(m_buf, shift, m_buf, 0, m_len-shift);
+                m_len -= shift;
+                m_pos = m_flushed = 0;
+            }
+            if (m_len >= m_buf.length)
+            {
+                //lookahead fills the buffer
+                char[] newBuf = new char[m_buf.length*2];
+                System.arraycopy(m_buf, 0, newBuf, 0, m_len);
+                m_buf = newBuf;
+            }
+            int n;
+            do
+            {
+                n = m_in.read(m_buf, m_len, m_buf.length-m_len);
+            }
+            while (n == 0);
+            if (n < 0)
+            {
+                m_eof = true;
+            }
+            else
+            {
+                m_len += n;
+            }
+            return shift;
+        }
+
+        @Override
+        public int length()
+        {
+            return m_len;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            if (index >= m_len)
+            {
+                throw new IndexOutOfBoundsException();
+            }
+            return m_buf[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end)
+        {
+            if (start < 0 || end < start || end > m_len)
+            {
+                throw new IndexOutOfBoundsException();
+            }
+            return new String(m_buf, start, end-start);
+        }
+        
+        @Override
+        public String toString()
+        {
+            return new String(m_buf, 0, m_len);
+        }
+        
+        /**
+         * The buffered text, indexed by position in the stream
+         */
+        private class StreamText implements CharSequence
+        {
+            @Override
+            public int length()
+            {
+                return m_base + m_len;
+            }
+
+            @Override
+            public char charAt(int index)
+            {
+                return m_buf[index - m_base];
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end)
+            {
+                return new String(m_buf, start - m_base, end - start);
+            }
+            
+            @Override
+            public String toString()
+            {
+                return new String(m_buf, 0, m_len);
+            }
+        }
+    }
+}
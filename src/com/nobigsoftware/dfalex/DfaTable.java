@@ -0,0 +1,437 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A DFA compiled into a flat transition table, for the fastest possible matching
+ * <P>
+ * Characters are first mapped to equivalence classes:  two characters are in the same class
+ * if every state in the DFA treats them the same way.  Each state then has a row in a single
+ * int array with one entry per class, so each character processed costs just a few array
+ * reads, with no virtual calls.  Tables are best suited to DFAs with a moderate number of
+ * states that are used to process a lot of text, like lexers.
+ * <P>
+ * Matches are reported as longs that pack the match ID (see {@link DfaState#getMatchId()}) and
+ * the end position together, so no objects are allocated while matching.  Use
+ * {@link #getMatchId(long)} and {@link #getMatchEnd(long)} to unpack them.
+ * <P>
+ * Patterns with {@link Assertion}s work the same way they do in {@link StringMatcher}.  The table
+ * has a start row for each kind of character that can come before a match, and states with
+ * conditional matches record the match ID for each kind of character that can follow.
+ * <P>
+ * Instances of this class are immutable and thread-safe.
+ *
+ * @param MATCHRESULT the type of result produced by the DFA
+ */
+public class DfaTable<MATCHRESULT>
+{
+    /**
+     * The value returned by the matchAt methods when there is no match
+     */
+    public static final long NO_MATCH = -1L;
+    
+    static final int BLOCK_BITS = 8;
+    private static final int BLOCK_SIZE = 1<<BLOCK_BITS;
+    
+    //class of char c is m_classBlocks[m_blockOffsets[c>>BLOCK_BITS] + (c & (BLOCK_SIZE-1))]
+    private final int[] m_blockOffsets;
+    private final char[] m_classBlocks;
+    private final int m_classCount;
+    private final int m_stateCount;
+    //rows of m_classCount+1 entries.  The first entry is the state's match ID, or -2-k if
+    //the state has conditional match k.  The others are the offsets of the target rows for
+    //each class, or -1 for no transition
+    private final int[] m_table;
+    //offset of the start row for each context of the previous character
+    private final int[] m_startRows;
+    //match IDs for each conditional match and context of the next character
+    private final int[] m_conditionalIds;
+    private final List<MATCHRESULT> m_resultsById;
+    
+    /**
+     * Create a table from a DFA
+     * <P>
+     * The DFA must support match IDs, as the ones produced by {@link DfaBuilder} do.
+     * 
+     * @param startState the start state of the DFA
+     * @throws IllegalArgumentException if the table would have more than Integer.MAX_VALUE entries
+     */
+    public DfaTable(DfaState<MATCHRESULT> startState)
+    {
+        //find all the states, with the start state first
+        final List<DfaState<MATCHRESULT>> states = new ArrayList<>();
+        final IdentityHashMap<DfaState<MATCHRESULT>, Integer> stateIndexes = new IdentityHashMap<>();
+        states.add(startState);
+        stateIndexes.put(startState, 0);
+        final int[] startStates = new int[Assertion.NUM_CONTEXTS];
+        for (int ctx = 0; ctx < Assertion.NUM_CONTEXTS; ++ctx)
+        {
+            final DfaState<MATCHRESULT> state = startState.getStartStateAfter(Assertion.CONTEXT_EXAMPLES[ctx]);
+            Integer index = stateIndexes.get(state);
+            if (index == null)
+            {
+                index = states.size();
+                stateIndexes.put(state, index);
+                states.add(state);
+            }
+            startStates[ctx] = index;
+        }
+        for (int i=0; i<states.size(); ++i)
+        {
+            states.get(i).enumerateTransitions((firstc, lastc, target) -> {
+                if (!stateIndexes.containsKey(target))
+                {
+                    stateIndexes.put(target, states.size());
+                    states.add(target);
+                }
+            });
+        }
+        m_stateCount = states.size();
+        
+        //divide the character set into intervals that no transition crosses
+        final boolean[] isBound = new boolean[Character.MAX_VALUE+1];
+        isBound[0] = true;
+        for (DfaState<MATCHRESULT> state : states)
+        {
+            state.enumerateTransitions((firstc, lastc, target) -> {
+                isBound[firstc] = true;
+                if (lastc < Character.MAX_VALUE)
+                {
+                    isBound[lastc+1] = true;
+                }
+            });
+        }
+        int nintervals = 0;
+        final int[] intervalOf = new int[Character.MAX_VALUE+1];
+        for (int c = 0; c <= Character.MAX_VALUE; ++c)
+        {
+            if (isBound[c])
+            {
+                ++nintervals;
+            }
+            intervalOf[c] = nintervals-1;
+        }
+        
+        //each state's transitions, as (first, last, target) triples in character order
+        final int[][] transitions = new int[m_stateCount][];
+        final List<int[]> stateTransitions = new ArrayList<>();
+        for (int s=0; s<m_stateCount; ++s)
+        {
+            stateTransitions.clear();
+            states.get(s).enumerateTransitions((firstc, lastc, target) ->
+                stateTransitions.add(new int[] {firstc, lastc, stateIndexes.get(target)}));
+            stateTransitions.sort((a, b) -> Integer.compare(a[0], b[0]));
+            final int[] triples = new int[stateTransitions.size()*3];
+            for (int i=0; i<stateTransitions.size(); ++i)
+            {
+                System.arraycopy(stateTransitions.get(i), 0, triples, i*3, 3);
+            }
+            transitions[s] = triples;
+        }
+        
+        //intervals with identical targets in every state are in the same class.  Intervals
+        //are processed one at a time, sweeping through each state's transitions, so only
+        //the distinct columns of targets are kept
+        final HashMap<IntListKey, Integer> classMap = new HashMap<>();
+        final int[] intervalClasses = new int[nintervals];
+        final List<int[]> classColumns = new ArrayList<>();
+        final IntListKey key = new IntListKey();
+        final int[] cursors = new int[m_stateCount];
+        final int[] column = new int[m_stateCount];
+        int interval = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; ++c)
+        {
+            if (!isBound[c])
+            {
+                continue;
+            }
+            key.clear();
+            for (int s=0; s<m_stateCount; ++s)
+            {
+                final int[] triples = transitions[s];
+                int t = cursors[s];
+                while (t < triples.length && triples[t+1] < c)
+                {
+                    t += 3;
+                }
+                cursors[s] = t;
+                column[s] = (t < triples.length && triples[t] <= c ? triples[t+2] : -1);
+                key.add(column[s]);
+            }
+            Integer cls = classMap.get(key);
+            if (cls == null)
+            {
+                cls = classColumns.size();
+                classMap.put(key.clone(), cls);
+                classColumns.add(column.clone());
+            }
+            intervalClasses[interval++] = cls;
+        }
+        m_classCount = classColumns.size();
+        
+        //char to class map, in blocks.  Identical blocks are shared
+        final HashMap<String, Integer> blockMap = new HashMap<>();
+        final StringBuilder blocks = new StringBuilder();
+        m_blockOffsets = new int[(Character.MAX_VALUE+1)>>BLOCK_BITS];
+        final char[] block = new char[BLOCK_SIZE];
+        for (int b=0; b<m_blockOffsets.length; ++b)
+        {
+            for (int i=0; i<BLOCK_SIZE; ++i)
+            {
+                block[i] = (char)intervalClasses[intervalOf[(b<<BLOCK_BITS)+i]];
+            }
+            final String blockKey = new String(block);
+            Integer offset = blockMap.get(blockKey);
+            if (offset == null)
+            {
+                offset = blocks.length();
+                blocks.append(block);
+                blockMap.put(blockKey, offset);
+            }
+            m_blockOffsets[b] = offset;
+        }
+        m_classBlocks = blocks.toString().toCharArray();
+        
+        //the table
+        final int width = m_classCount+1;
+        final int tableSize;
+        try
+        {
+            tableSize = Math.multiplyExact(m_stateCount, width);
+        }
+        catch(ArithmeticException e)
+        {
+            throw new IllegalArgumentException("The DFA is too big for a table: " + m_stateCount
+                    + " states and " + m_classCount + " character classes");
+        }
+        m_table = new int[tableSize];
+        int nconditional = 0;
+        for (DfaState<MATCHRESULT> state : states)
+        {
+            if (state.hasConditionalMatch())
+            {
+                ++nconditional;
+            }
+        }
+        m_conditionalIds = new int[nconditional*Assertion.NUM_CONTEXTS];
+        nconditional = 0;
+        for (int s=0; s<m_stateCount; ++s)
+        {
+            final int row = s*width;
+            final DfaState<MATCHRESULT> state = states.get(s);
+            if (state.hasConditionalMatch())
+            {
+                m_table[row] = -2 - nconditional;
+                for (int ctx = 0; ctx < Assertion.NUM_CONTEXTS; ++ctx)
+                {
+                    m_conditionalIds[nconditional*Assertion.NUM_CONTEXTS + ctx] =
+                            state.getMatchIdBefore(Assertion.CONTEXT_EXAMPLES[ctx]);
+                }
+                ++nconditional;
+            }
+            else
+            {
+                m_table[row] = state.getMatchId();
+            }
+            for (int cls = 0; cls < m_classCount; ++cls)
+            {
+                final int t = classColumns.get(cls)[s];
+                m_table[row+1+cls] = (t < 0 ? -1 : t*width);
+            }
+        }
+        m_startRows = new int[Assertion.NUM_CONTEXTS];
+        for (int ctx = 0; ctx < Assertion.NUM_CONTEXTS; ++ctx)
+        {
+            m_startRows[ctx] = startStates[ctx]*width;
+        }
+        m_resultsById = Collections.unmodifiableList(
+                new DfaAuxiliaryInformation<>(Collections.singletonList(startState)).getMatchResultsById());
+    }
+    
+    /**
+     * @return the number of states in the table
+     */
+    public int getStateCount()
+    {
+        return m_stateCount;
+    }
+    
+    /**
+     * @return the number of character equivalence classes in the table
+     */
+    public int getClassCount()
+    {
+        return m_classCount;
+    }
+    
+    /**
+     * Get the result for a match ID
+     * 
+     * @param matchId a match ID from {@link #getMatchId(long)}
+     * @return the MATCHRESULT for that ID, or null if the DFA doesn't produce it
+     */
+    public MATCHRESULT getResult(int matchId)
+    {
+        return (matchId >= 0 && matchId < m_resultsById.size() ? m_resultsById.get(matchId) : null);
+    }
+    
+    //accessors for DfaSourceGenerator
+    int[] getBlockOffsets()
+    {
+        return m_blockOffsets;
+    }
+    
+    char[] getClassBlocks()
+    {
+        return m_classBlocks;
+    }
+    
+    int[] getTable()
+    {
+        return m_table;
+    }
+    
+    int[] getStartRows()
+    {
+        return m_startRows;
+    }
+    
+    int[] getConditionalIds()
+    {
+        return m_conditionalIds;
+    }
+    
+    List<MATCHRESULT> getResultsById()
+    {
+        return m_resultsById;
+    }
+    
+    /**
+     * Find the longest match starting at a given position
+     * <P>
+     * Patterns with {@link Assertion}s see the character before pos, as they do in
+     * {@link StringMatcher#matchAt(DfaState, int)}.
+     * 
+     * @param src the characters to match
+     * @param pos the position in src at which the match must start
+     * @param limit no characters at positions &gt;= limit are included in the match.  Patterns
+     *      with {@link Assertion}s treat this as the end of the input
+     * @return {@link #NO_MATCH} if there is no non-empty match at pos.  Otherwise the match
+     *      ID and end position of the longest match, which can be extracted with
+     *      {@link #getMatchId(long)} and {@link #getMatchEnd(long)}
+     */
+    public long matchAt(CharSequence src, int pos, final int limit)
+    {
+        final int[] table = m_table;
+        final int[] blockOffsets = m_blockOffsets;
+        final char[] classBlocks = m_classBlocks;
+        final int[] conditionalIds = m_conditionalIds;
+        long ret = NO_MATCH;
+        int row = m_startRows[Assertion.contextOf(pos > 0 ? src.charAt(pos-1) : DfaState.NO_CHAR)];
+        while (pos < limit)
+        {
+            final char c = src.charAt(pos++);
+            row = table[row + 1 + classBlocks[blockOffsets[c>>BLOCK_BITS] + (c & (BLOCK_SIZE-1))]];
+            if (row < 0)
+            {
+                break;
+            }
+            int matchId = table[row];
+            if (matchId < -1)
+            {
+                //the match depends on the next character
+                matchId = conditionalIds[(-2-matchId)*Assertion.NUM_CONTEXTS
+                        + Assertion.contextOf(pos < limit ? src.charAt(pos) : DfaState.NO_CHAR)];
+            }
+            if (matchId >= 0)
+            {
+                ret = ((long)matchId << 32) | pos;
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Find the longest match starting at a given position
+     * <P>
+     * This is the same as {@link #matchAt(CharSequence, int, int)}, but for char arrays.
+     * 
+     * @param src the characters to match
+     * @param pos the position in src at which the match must start
+     * @param limit no characters at positions &gt;= limit are included in the match
+     * @return {@link #NO_MATCH} if there is no non-empty match at pos.  Otherwise the match
+     *      ID and end position of the longest match, which can be extracted with
+     *      {@link #getMatchId(long)} and {@link #getMatchEnd(long)}
+     */
+    public long matchAt(char[] src, int pos, final int limit)
+    {
+        final int[] table = m_table;
+        final int[] blockOffsets = m_blockOffsets;
+        final char[] classBlocks = m_classBlocks;
+        final int[] conditionalIds = m_conditionalIds;
+        long ret = NO_MATCH;
+        int row = m_startRows[Assertion.contextOf(pos > 0 ? src[pos-1] : DfaState.NO_CHAR)];
+        while (pos < limit)
+        {
+            final char c = src[pos++];
+            row = table[row + 1 + classBlocks[blockOffsets[c>>BLOCK_BITS] + (c & (BLOCK_SIZE-1))]];
+            if (row < 0)
+            {
+                break;
+            }
+            int matchId = table[row];
+            if (matchId < -1)
+            {
+                //the match depends on the next character
+                matchId = conditionalIds[(-2-matchId)*Assertion.NUM_CONTEXTS
+                        + Assertion.contextOf(pos < limit ? src[pos] : DfaState.NO_CHAR)];
+            }
+            if (matchId >= 0)
+            {
+                ret = ((long)matchId << 32) | pos;
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Get the match ID from a matchAt result
+     * 
+     * @param match a value returned by a matchAt method, other than {@link #NO_MATCH}
+     * @return the match ID of the result
+     */
+    public static int getMatchId(long match)
+    {
+        return (int)(match >>> 32);
+    }
+    
+    /**
+     * Get the end position from a matchAt result
+     * 
+     * @param match a value returned by a matchAt method, other than {@link #NO_MATCH}
+     * @return the position after the last character in the match
+     */
+    public static int getMatchEnd(long match)
+    {
+        return (int)match;
+    }
+}
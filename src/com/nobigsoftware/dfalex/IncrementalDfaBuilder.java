@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds DFAs for pattern sets that change often, like a {@link DfaBuilder} that can
+ * rebuild in milliseconds after patterns are added or removed.
+ * <P>
+ * Results are divided into small groups in the order they're added, and a minimized
+ * DFA is built and cached for each group.  A built DFA runs all the group DFAs together,
+ * creating its states lazily as they are reached, so a rebuild only has to rebuild the
+ * groups whose patterns have changed.
+ * <P>
+ * The DFAs built this way match exactly the same strings with the same results as the
+ * DFAs that a {@link DfaBuilder} with the same patterns would build, and they have the same
+ * match IDs.  They aren't minimized, though, they can't be cached or serialized, and since
+ * states are created as they are reached, an ambiguity between results in different groups
+ * isn't found until a string that causes it is matched.  If there is no ambiguity resolver,
+ * the {@link DfaAmbiguityException} is thrown at that point.
+ * <P>
+ * Like all DFAs, the built DFAs are thread-safe.  The builder is not.
+ *
+ * @param MATCHRESULT The type of result to produce by matching a pattern.
+ */
+public class IncrementalDfaBuilder<MATCHRESULT extends Serializable>
+{
+    //maximum number of results in a group
+    static final int GROUP_SIZE = 64;
+
+    private final Map<MATCHRESULT, Group> m_groupMap = new LinkedHashMap<>();
+    private final List<Group> m_groups = new ArrayList<>();
+    //groups with room for more results, in the order they got it
+    private final Set<Group> m_openGroups = new LinkedHashSet<>();
+    //match IDs by result, or null if they need to be renumbered after a removal
+    private Map<MATCHRESULT, Integer> m_matchIds = new HashMap<>();
+    private int m_groupBuildCount = 0;
+
+    /**
+     * Reset this builder by forgetting all the patterns that have been added
+     */
+    public void clear()
+    {
+        m_groupMap.clear();
+        m_groups.clear();
+        m_openGroups.clear();
+        m_matchIds = new HashMap<>();
+    }
+
+    /**
+     * Add a pattern to the builder
+     * <P>
+     * Only the group DFA containing the result will be rebuilt.  A new result goes in the
+     * last group if it has room, or else in a hole left by a removed result, so groups
+     * don't grow when results are removed and added over and over.
+     *
+     * @param pat the pattern to match
+     * @param accept the result for strings that match the pattern
+     */
+    public void addPattern(Matchable pat, MATCHRESULT accept)
+    {
+        Group group = m_groupMap.get(accept);
+        if (group == null)
+        {
+            group = (m_openGroups.isEmpty() ? null : m_openGroups.iterator().next());
+            if (group == null)
+            {
+                group = new Group();
+                m_groups.add(group);
+                m_openGroups.add(group);
+            }
+            int slot = group.m_results.indexOf(null);
+            if (slot < 0)
+            {
+                group.m_results.add(accept);
+                group.m_patterns.add(new ArrayList<>());
+            }
+            else
+            {
+                group.m_results.set(slot, accept);
+                group.m_patterns.set(slot, new ArrayList<>());
+            }
+            if (++group.m_resultCount >= GROUP_SIZE)
+            {
+                m_openGroups.remove(group);
+            }
+            m_groupMap.put(accept, group);
+            if (m_matchIds != null)
+            {
+                m_matchIds.put(accept, m_matchIds.size());
+            }
+        }
+        group.m_patterns.get(group.m_results.indexOf(accept)).add(pat);
+        group.m_dfas.clear();
+    }
+
+    /**
+     * Remove all the patterns for a result
+     * <P>
+     * Match IDs are assigned in the order that results were added, so removing a result
+     * changes the IDs of the results added after it.
+     *
+     * @param result the result to remove
+     * @return true if there were patterns for the result
+     */
+    public boolean removePatterns(MATCHRESULT result)
+    {
+        Group group = m_groupMap.remove(result);
+        if (group == null)
+        {
+            return false;
+        }
+        int slot = group.m_results.indexOf(result);
+        //leave a hole, so the other bits in the group stay put.  addPattern will fill it
+        group.m_results.set(slot, null);
+        group.m_patterns.set(slot, null);
+        group.m_dfas.clear();
+        if (--group.m_resultCount <= 0)
+        {
+            m_groups.remove(group);
+            m_openGroups.remove(group);
+        }
+        else
+        {
+            m_openGroups.add(group);
+        }
+        m_matchIds = null;
+        return true;
+    }
+
+    /**
+     * Get the match ID that DFAs built by this builder will use for a result
+     * <P>
+     * Results are assigned dense IDs starting at 0, in the order that they were
+     * first passed to {@link #addPattern(Matchable, Serializable)}.  See {@link DfaState#getMatchId()}
+     *
+     * @param result a result that has been added to this builder
+     * @return the match ID for the result, or -1 if no patterns have been added for it
+     */
+    public int getMatchId(MATCHRESULT result)
+    {
+        if (m_matchIds == null)
+        {
+            m_matchIds = new HashMap<>();
+            for (MATCHRESULT key : m_groupMap.keySet())
+            {
+                m_matchIds.put(key, m_matchIds.size());
+            }
+        }
+        Integer id = m_matchIds.get(result);
+        return (id == null ? -1 : id);
+    }
+
+    /**
+     * Build a DFA that matches all the patterns that have been added to this builder
+     *
+     * @param ambiguityResolver     When patterns for multiple results match the same string, this is called to
+     *                              combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                              will be thrown in that case.
+     * @return The start state for a DFA that matches the set of patterns in language
+     */
+    public DfaState<MATCHRESULT> build(DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
+    {
+        return build(m_groupMap.keySet(), ambiguityResolver);
+    }
+
+    /**
+     * Build a DFA for a single language
+     * <P>
+     * The language is specified as a subset of available MATCHRESULTs, and will include patterns
+     * for each result in its set.  Group DFAs are cached separately for each language.
+     *
+     * @param language     set defining the languages to build
+     * @param ambiguityResolver     When patterns for multiple results match the same string, this is called to
+     *                              combine the multiple results into one.  If this is null, then a DfaAmbiguityException
+     *                              will be thrown in that case.
+     * @return The start state for a DFA that matches the set of patterns in language
+     */
+    public DfaState<MATCHRESULT> build(Set<MATCHRESULT> language, DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver)
+    {
+        List<DfaState<BitSet>> starts = new ArrayList<>();
+        List<List<MATCHRESULT>> groupResults = new ArrayList<>();
+        for (Group group : m_groups)
+        {
+            BitSet subset = new BitSet();
+            for (int i=0; i<group.m_results.size(); ++i)
+            {
+                MATCHRESULT result = group.m_results.get(i);
+                if (result != null && !group.m_patterns.get(i).isEmpty() && language.contains(result))
+                {
+                    subset.set(i);
+                }
+            }
+            if (subset.isEmpty())
+            {
+                continue;
+            }
+            DfaState<BitSet> start = group.m_dfas.get(subset);
+            if (start == null)
+            {
+                start = group.build(subset);
+                group.m_dfas.put(subset, start);
+                ++m_groupBuildCount;
+            }
+            starts.add(start);
+            groupResults.add(new ArrayList<>(group.m_results));
+        }
+        return new LazyUnionDfa<MATCHRESULT>(starts, groupResults, ambiguityResolver,
+                new ArrayList<>(m_groupMap.keySet()), Integer.MAX_VALUE).getStartState();
+    }
+
+    /**
+     * @return the number of group DFAs that have been built, for testing
+     */
+    int getGroupBuildCount()
+    {
+        return m_groupBuildCount;
+    }
+
+    /**
+     * @return the number of groups that results are divided into, for testing
+     */
+    int getGroupCount()
+    {
+        return m_groups.size();
+    }
+
+    private class Group
+    {
+        //results, with null for removed results
+        final List<MATCHRESULT> m_results = new ArrayList<>();
+        final List<List<Matchable>> m_patterns = new ArrayList<>();
+        //number of results that aren't holes
+        int m_resultCount = 0;
+        //built DFAs by language subset.  Cleared when the group changes
+        final Map<BitSet, DfaState<BitSet>> m_dfas = new HashMap<>();
+
+        DfaState<BitSet> build(BitSet subset)
+        {
+            Nfa<BitSet> nfa = new Nfa<>();
+            int startState = nfa.addState(null);
+            for (int i = subset.nextSetBit(0); i >= 0; i = subset.nextSetBit(i+1))
+            {
+                BitSet accept = new BitSet();
+                accept.set(i);
+                int acceptState = nfa.addState(accept);
+                for (Matchable pat : m_patterns.get(i))
+                {
+                    nfa.addEpsilon(startState, pat.addToNFA(nfa, acceptState));
+                }
+            }
+            DfaAmbiguityResolver<BitSet> union = conflicts -> {
+                BitSet ret = new BitSet();
+                for (BitSet bits : conflicts)
+                {
+                    ret.or(bits);
+                }
+                return ret;
+            };
+            RawDfa<BitSet> minimalDfa;
+            {
+                RawDfa<BitSet> rawDfa = (new DfaFromNfa<BitSet>(nfa, new int[] {startState}, union)).getDfa();
+                minimalDfa = (new DfaMinimizer<BitSet>(rawDfa)).getMinimizedDfa();
+            }
+            return ContextStartState.combine(new SerializableDfa<>(minimalDfa).getStartStates(), 1).get(0);
+        }
+    }
+}
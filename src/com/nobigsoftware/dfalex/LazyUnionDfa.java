@@ -0,0 +1,477 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A DFA that runs several component DFAs in parallel, and matches the union of their
+ * languages.
+ * <P>
+ * The components are DFAs with BitSet results, each bit standing for one MATCHRESULT
+ * in a list provided for the component.  When multiple results match, they are combined
+ * by an ambiguity resolver, just like in a DFA built from an NFA.
+ * <P>
+ * States of the product automaton are created lazily, the first time they are reached,
+ * so making a union of previously built DFAs costs almost nothing until it is used.
+ * The product states are not minimized.
+ * <P>
+ * The number of reachable product states can be exponential in the number of components,
+ * so the number of states that are remembered can be limited.  When there are too many,
+ * they are all forgotten, except the start states, and recreated as they're reached again.
+ * State numbers are never reused.  In the worst case, when the input keeps reaching new
+ * combinations, each step costs about as much as stepping all the components separately,
+ * and memory stays bounded.
+ * <P>
+ * Used by {@link IncrementalDfaBuilder} and {@link DfaBuilder#buildShardedStringSearcher(DfaAmbiguityResolver, int)}
+ */
+class LazyUnionDfa<MATCHRESULT>
+{
+    private final List<List<MATCHRESULT>> m_componentResults;
+    private final DfaAmbiguityResolver<? super MATCHRESULT> m_ambiguityResolver;
+    private final State m_startState;
+    private final int m_maxStates;
+
+    //guarded by m_stateMap
+    private final HashMap<IntListKey, State> m_stateMap = new HashMap<>();
+    private final HashMap<MATCHRESULT, Integer> m_matchIds = new HashMap<>();
+    private final List<State> m_startStates = new ArrayList<>();
+    private int m_nextStateNumber = 0;
+    //incremented whenever the state map is flushed, so that older transitions are recalculated.
+    //Only changed while holding the lock
+    private volatile int m_generation = 0;
+
+    /**
+     * Create a new LazyUnionDfa
+     *
+     * @param startStates start states of the component DFAs
+     * @param componentResults for each component, the result for each bit in its BitSet results
+     * @param ambiguityResolver combines results when more than one matches.  If this is null,
+     *      a {@link DfaAmbiguityException} is thrown in that case, when the ambiguous state is reached
+     * @param knownResults results that get the first match IDs, in order
+     * @param maxStates the number of product states to remember before they are all forgotten
+     */
+    LazyUnionDfa(List<DfaState<BitSet>> startStates, List<List<MATCHRESULT>> componentResults,
+            DfaAmbiguityResolver<? super MATCHRESULT> ambiguityResolver, List<MATCHRESULT> knownResults,
+            int maxStates)
+    {
+        m_componentResults = componentResults;
+        m_maxStates = maxStates;
+        m_ambiguityResolver = ambiguityResolver;
+        for (MATCHRESULT result : knownResults)
+        {
+            m_matchIds.putIfAbsent(result, m_matchIds.size());
+        }
+        int[] components = new int[startStates.size()];
+        @SuppressWarnings("unchecked")
+        DfaState<BitSet>[] states = (DfaState<BitSet>[])new DfaState<?>[startStates.size()];
+        for (int i=0; i<components.length; ++i)
+        {
+            components[i] = i;
+            states[i] = startStates.get(i);
+        }
+        synchronized(m_stateMap)
+        {
+            State start = _getState(components, states, components.length);
+            //start states that follow other contexts
+            boolean needContexts = false;
+            @SuppressWarnings("unchecked")
+            DfaState<BitSet>[] contextStates = (DfaState<BitSet>[])new DfaState<?>[states.length];
+            DfaState<?>[] contextStarts = new DfaState<?>[Assertion.NUM_CONTEXTS];
+            for (int context = 0; context < contextStarts.length; ++context)
+            {
+                int prevChar = Assertion.CONTEXT_EXAMPLES[context];
+                for (int i=0; i<states.length; ++i)
+                {
+                    contextStates[i] = states[i].getStartStateAfter(prevChar);
+                    needContexts |= (contextStates[i] != states[i]);
+                }
+                contextStarts[context] = _getState(components, contextStates, components.length);
+            }
+            if (needContexts)
+            {
+                start.m_contextStarts = contextStarts;
+            }
+            m_startState = start;
+            //these are kept when the state map is flushed
+            m_startStates.addAll(m_stateMap.values());
+        }
+    }
+
+    /**
+     * Get the start state of the union DFA
+     *
+     * @return the start state
+     */
+    DfaState<MATCHRESULT> getStartState()
+    {
+        return m_startState;
+    }
+
+    /**
+     * @return the number of product states that are currently remembered
+     */
+    int getStateCount()
+    {
+        synchronized(m_stateMap)
+        {
+            return m_stateMap.size();
+        }
+    }
+
+    //get or create the state for the first num components.  Must hold the lock
+    private State _getState(int[] components, DfaState<BitSet>[] states, int num)
+    {
+        IntListKey key = _getKey(components, states, num);
+        State ret = m_stateMap.get(key);
+        if (ret == null)
+        {
+            ret = new State(m_nextStateNumber++, Arrays.copyOf(components, num), Arrays.copyOf(states, num));
+            m_stateMap.put(key, ret);
+        }
+        return ret;
+    }
+
+    private static IntListKey _getKey(int[] components, DfaState<BitSet>[] states, int num)
+    {
+        IntListKey key = new IntListKey();
+        for (int i=0; i<num; ++i)
+        {
+            key.add(components[i]);
+            key.add(states[i].getStateNumber());
+        }
+        return key;
+    }
+
+    //forget all the states except the start states.  Must hold the lock
+    private void _flush()
+    {
+        m_stateMap.clear();
+        for (State state : m_startStates)
+        {
+            m_stateMap.put(_getKey(state.m_components, state.m_states, state.m_components.length), state);
+        }
+        ++m_generation;
+    }
+
+    //resolve the match for component matches.  Must hold the lock
+    @SuppressWarnings("unchecked")
+    private MATCHRESULT _resolve(int[] components, BitSet[] matches)
+    {
+        Set<MATCHRESULT> results = new LinkedHashSet<>();
+        for (int i=0; i<components.length; ++i)
+        {
+            BitSet bits = matches[i];
+            if (bits == null)
+            {
+                continue;
+            }
+            List<MATCHRESULT> componentResults = m_componentResults.get(components[i]);
+            for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit+1))
+            {
+                results.add(componentResults.get(bit));
+            }
+        }
+        if (results.isEmpty())
+        {
+            return null;
+        }
+        if (results.size() == 1)
+        {
+            return results.iterator().next();
+        }
+        if (m_ambiguityResolver == null)
+        {
+            throw new DfaAmbiguityException(results);
+        }
+        return (MATCHRESULT)m_ambiguityResolver.apply(results);
+    }
+
+    //Must hold the lock
+    private int _getMatchId(MATCHRESULT result)
+    {
+        if (result == null)
+        {
+            return -1;
+        }
+        return m_matchIds.computeIfAbsent(result, x -> m_matchIds.size());
+    }
+
+    //transitions of an expanded state
+    private static class Transitions
+    {
+        //first characters of the ranges, and the last characters
+        final char[] m_firsts;
+        final char[] m_lasts;
+        final DfaState<?>[] m_targets;
+        //the state map generation that the targets belong to
+        final int m_generation;
+
+        Transitions(char[] firsts, char[] lasts, DfaState<?>[] targets, int generation)
+        {
+            m_firsts = firsts;
+            m_lasts = lasts;
+            m_targets = targets;
+            m_generation = generation;
+        }
+    }
+
+    private class State extends DfaState<MATCHRESULT>
+    {
+        private final int m_stateNumber;
+        private final int[] m_components;
+        private final DfaState<BitSet>[] m_states;
+        private final MATCHRESULT m_match;
+        private final int m_matchId;
+        //null if the match isn't conditional
+        private final Object[] m_lookaheadMatches;
+        private final int[] m_lookaheadMatchIds;
+        //set in the LazyUnionDfa constructor, before publishing, for start states only
+        private DfaState<?>[] m_contextStarts = null;
+        private volatile Transitions m_transitions = null;
+
+        State(int stateNumber, int[] components, DfaState<BitSet>[] states)
+        {
+            m_stateNumber = stateNumber;
+            m_components = components;
+            m_states = states;
+            BitSet[] matches = new BitSet[states.length];
+            boolean conditional = false;
+            for (int i=0; i<states.length; ++i)
+            {
+                matches[i] = states[i].getMatch();
+                conditional |= states[i].hasConditionalMatch();
+            }
+            m_match = _resolve(components, matches);
+            m_matchId = _getMatchId(m_match);
+            if (conditional)
+            {
+                m_lookaheadMatches = new Object[Assertion.NUM_CONTEXTS];
+                m_lookaheadMatchIds = new int[Assertion.NUM_CONTEXTS];
+                for (int context = 0; context < m_lookaheadMatches.length; ++context)
+                {
+                    int nextChar = Assertion.CONTEXT_EXAMPLES[context];
+                    for (int i=0; i<states.length; ++i)
+                    {
+                        matches[i] = states[i].getMatchBefore(nextChar);
+                    }
+                    MATCHRESULT match = _resolve(components, matches);
+                    m_lookaheadMatches[context] = match;
+                    m_lookaheadMatchIds[context] = _getMatchId(match);
+                }
+            }
+            else
+            {
+                m_lookaheadMatches = null;
+                m_lookaheadMatchIds = null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public DfaState<MATCHRESULT> getNextState(char c)
+        {
+            Transitions trans = _getTransitions();
+            char[] firsts = trans.m_firsts;
+            int lo = 0, hi = firsts.length;
+            while (lo < hi)
+            {
+                int mid = (lo+hi)>>>1;
+                if (c < firsts[mid])
+                {
+                    hi = mid;
+                }
+                else
+                {
+                    lo = mid+1;
+                }
+            }
+            //lo is the first range that starts after c
+            if (lo > 0 && c <= trans.m_lasts[lo-1])
+            {
+                return (DfaState<MATCHRESULT>)trans.m_targets[lo-1];
+            }
+            return null;
+        }
+
+        @Override
+        public MATCHRESULT getMatch()
+        {
+            return m_match;
+        }
+
+        @Override
+        public int getMatchId()
+        {
+            return m_matchId;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public MATCHRESULT getMatchBefore(int nextChar)
+        {
+            return (m_lookaheadMatches == null ? m_match : (MATCHRESULT)m_lookaheadMatches[Assertion.contextOf(nextChar)]);
+        }
+
+        @Override
+        public int getMatchIdBefore(int nextChar)
+        {
+            return (m_lookaheadMatchIds == null ? m_matchId : m_lookaheadMatchIds[Assertion.contextOf(nextChar)]);
+        }
+
+        @Override
+        public boolean hasConditionalMatch()
+        {
+            return m_lookaheadMatches != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public DfaState<MATCHRESULT> getStartStateAfter(int prevChar)
+        {
+            return (m_contextStarts == null ? this : (DfaState<MATCHRESULT>)m_contextStarts[Assertion.contextOf(prevChar)]);
+        }
+
+        @Override
+        public int getStateNumber()
+        {
+            return m_stateNumber;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void enumerateTransitions(DfaTransitionConsumer<MATCHRESULT> consumer)
+        {
+            Transitions trans = _getTransitions();
+            for (int i=0; i<trans.m_targets.length; ++i)
+            {
+                consumer.acceptTransition(trans.m_firsts[i], trans.m_lasts[i], (DfaState<MATCHRESULT>)trans.m_targets[i]);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Iterable<DfaState<MATCHRESULT>> getSuccessorStates()
+        {
+            Transitions trans = _getTransitions();
+            LinkedHashSet<DfaState<MATCHRESULT>> ret = new LinkedHashSet<>();
+            for (DfaState<?> target : trans.m_targets)
+            {
+                ret.add((DfaState<MATCHRESULT>)target);
+            }
+            return ret;
+        }
+
+        @Override
+        public boolean hasSuccessorStates()
+        {
+            return _getTransitions().m_targets.length > 0;
+        }
+
+        private Transitions _getTransitions()
+        {
+            Transitions ret = m_transitions;
+            if (ret == null || ret.m_generation != m_generation)
+            {
+                synchronized(m_stateMap)
+                {
+                    ret = m_transitions;
+                    if (ret == null || ret.m_generation != m_generation)
+                    {
+                        //Transitions from before a flush are recalculated, so that the states
+                        //they lead to can be collected
+                        ret = _expand();
+                        m_transitions = ret;
+                        if (m_stateMap.size() > m_maxStates)
+                        {
+                            _flush();
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+
+        //Calculate the transitions of this state.  Must hold the lock
+        @SuppressWarnings("unchecked")
+        private Transitions _expand()
+        {
+            //collect the boundaries of all the component transition ranges
+            final BitSet bounds = new BitSet();
+            for (DfaState<BitSet> state : m_states)
+            {
+                state.enumerateTransitions((first, last, target) -> {
+                    bounds.set(first);
+                    bounds.set(last+1);
+                });
+            }
+            int[] nextComponents = new int[m_components.length];
+            DfaState<BitSet>[] nextStates = (DfaState<BitSet>[])new DfaState<?>[m_components.length];
+            List<Character> firsts = new ArrayList<>();
+            List<Character> lasts = new ArrayList<>();
+            List<State> targets = new ArrayList<>();
+            for (int first = bounds.nextSetBit(0); first >= 0 && first <= Character.MAX_VALUE;)
+            {
+                int next = bounds.nextSetBit(first+1);
+                char last = (char)(next < 0 ? Character.MAX_VALUE : next-1);
+                int num = 0;
+                for (int i=0; i<m_states.length; ++i)
+                {
+                    DfaState<BitSet> nextState = m_states[i].getNextState((char)first);
+                    if (nextState != null)
+                    {
+                        nextComponents[num] = m_components[i];
+                        nextStates[num++] = nextState;
+                    }
+                }
+                if (num > 0)
+                {
+                    State target = _getState(nextComponents, nextStates, num);
+                    int prev = targets.size()-1;
+                    if (prev >= 0 && targets.get(prev) == target && lasts.get(prev) == first-1)
+                    {
+                        lasts.set(prev, last);
+                    }
+                    else
+                    {
+                        firsts.add((char)first);
+                        lasts.add(last);
+                        targets.add(target);
+                    }
+                }
+                if (next < 0)
+                {
+                    break;
+                }
+                first = next;
+            }
+            char[] firstArray = new char[firsts.size()];
+            char[] lastArray = new char[firsts.size()];
+            for (int i=0; i<firstArray.length; ++i)
+            {
+                firstArray[i] = firsts.get(i);
+                lastArray[i] = lasts.get(i);
+            }
+            return new Transitions(firstArray, lastArray, targets.toArray(new DfaState<?>[targets.size()]), m_generation);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Splits input into a stream of tokens using a DFA.
+ * <P>
+ * At each position, the lexer finds the longest match for the DFA.  That becomes the next
+ * token, and lexing continues at its end.  Tokens are written to a {@link TokenBuffer}
+ * as (type, start, end) triples, so tokenizing an input doesn't allocate any objects per token.
+ * <P>
+ * Match results that shouldn't produce tokens, like whitespace and comments, can be
+ * registered with {@link #addSkipResult(Object)}.
+ * <P>
+ * Characters that don't start a match are dropped, unless an error result is set with
+ * {@link #setErrorResult(Object)}.  In that case, each run of consecutive unmatched characters
+ * produces a single token with the error result's type.
+ * <P>
+ * Finding the longest match can look far past the end of a token, like when an unterminated
+ * comment runs to the end of the input.  When that starts to happen repeatedly, the lexer
+ * remembers the (position, state) pairs that can't lead to a match, like {@link StringMatcher}
+ * does, so the time to tokenize an input stays linear in its length.
+ * <P>
+ * Token types are the match IDs of the DFA's results (see {@link DfaState#getMatchId()}), so
+ * the DFA must support match IDs, as the ones produced by {@link DfaBuilder} do.  An error
+ * result that the DFA doesn't produce gets the next available type.
+ * <P>
+ * Patterns with {@link Assertion}s see the characters around each token, as they do in
+ * {@link StringMatcher}.  Each document passed to
+ * {@link #tokenizeDocuments(char[], int[], int, int, int[], int[], int[], int[])} is a separate
+ * input, so its start and end are the start and end of the input.
+ * <P>
+ * NOTE: Configure the lexer before using it.  After that, it is safe to use a single lexer
+ * in multiple threads at once.
+ *
+ * @param MATCHRESULT the type of result produced by the DFA
+ */
+public class Lexer<MATCHRESULT>
+{
+    private final DfaState<MATCHRESULT> m_startState;
+    private final List<MATCHRESULT> m_resultsByType;
+    private final HashMap<MATCHRESULT, Integer> m_typesByResult;
+    //types below this are produced by the DFA
+    private final int m_dfaTypeCount;
+    private boolean[] m_skipTypes;
+    private int m_errorType = -1;
+
+    /**
+     * Create a new Lexer
+     *
+     * @param startState start state of the DFA that matches tokens
+     */
+    public Lexer(DfaState<MATCHRESULT> startState)
+    {
+        m_startState = startState;
+        m_resultsByType = new ArrayList<>(
+                new DfaAuxiliaryInformation<>(Collections.singletonList(startState)).getMatchResultsById());
+        m_typesByResult = new HashMap<>();
+        for (int i=0; i<m_resultsByType.size(); ++i)
+        {
+            MATCHRESULT result = m_resultsByType.get(i);
+            if (result != null)
+            {
+                m_typesByResult.put(result, i);
+            }
+        }
+        m_dfaTypeCount = m_resultsByType.size();
+        m_skipTypes = new boolean[m_dfaTypeCount];
+    }
+
+    /**
+     * Don't produce tokens for matches with the given result.
+     * <P>
+     * The matched characters are still consumed, so this is the way to handle whitespace
+     * and comments.
+     *
+     * @param result match result to skip
+     * @return this lexer
+     * @throws IllegalArgumentException if the DFA never produces result
+     */
+    public Lexer<MATCHRESULT> addSkipResult(MATCHRESULT result)
+    {
+        Integer type = m_typesByResult.get(result);
+        if (type == null || type >= m_dfaTypeCount)
+        {
+            throw new IllegalArgumentException("The lexer's DFA does not produce the skip result " + result);
+        }
+        m_skipTypes[type] = true;
+        return this;
+    }
+
+    /**
+     * Set the result for tokens made from unmatched characters.
+     * <P>
+     * By default, characters that don't start a match are dropped.  When an error result is set,
+     * each run of such characters produces a single token of the error type instead.
+     *
+     * @param result the result to report for unmatched characters, or null to drop them
+     * @return this lexer
+     */
+    public Lexer<MATCHRESULT> setErrorResult(MATCHRESULT result)
+    {
+        if (result == null)
+        {
+            m_errorType = -1;
+            return this;
+        }
+        m_errorType = _getOrAddType(result);
+        if (m_skipTypes.length < m_resultsByType.size())
+        {
+            boolean[] newSkipTypes = new boolean[m_resultsByType.size()];
+            System.arraycopy(m_skipTypes, 0, newSkipTypes, 0, m_skipTypes.length);
+            m_skipTypes = newSkipTypes;
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of token types used by this lexer
+     */
+    public int getTypeCount()
+    {
+        return m_resultsByType.size();
+    }
+
+    /**
+     * Get the token type for a match result
+     *
+     * @param result a match result
+     * @return the token type that the lexer assigns to result, or -1 if it has none
+     */
+    public int getTypeForResult(MATCHRESULT result)
+    {
+        Integer type = m_typesByResult.get(result);
+        return (type == null ? -1 : type);
+    }
+
+    /**
+     * Get the match result for a token type
+     *
+     * @param type a token type in [0, {@link #getTypeCount()})
+     * @return the match result for tokens of that type, or null if the type isn't used
+     */
+    public MATCHRESULT getResultForType(int type)
+    {
+        return m_resultsByType.get(type);
+    }
+
+    /**
+     * Tokenize an entire input
+     *
+     * @param src the input to tokenize
+     * @return a new buffer containing the tokens
+     */
+    public TokenBuffer<MATCHRESULT> tokenize(CharSequence src)
+    {
+        TokenBuffer<MATCHRESULT> dest = new TokenBuffer<>();
+        tokenize(src, 0, src.length(), dest);
+        return dest;
+    }
+
+    /**
+     * Tokenize part of an input, adding tokens to a buffer
+     * <P>
+     * Tokens are appended to dest, with positions relative to the start of src.  No
+     * token extends past limit.  Patterns with {@link Assertion}s see the characters
+     * before start, and limit counts as the end of the input.
+     *
+     * @param src the input to tokenize
+     * @param start position in src to start at
+     * @param limit position in src to stop at
+     * @param dest tokens are appended to this buffer
+     * @return the number of tokens added to dest
+     */
+    public int tokenize(CharSequence src, int start, int limit, TokenBuffer<MATCHRESULT> dest)
+    {
+        dest.setResultsByType(Collections.unmodifiableList(m_resultsByType));
+        final int oldSize = dest.size();
+        final int errorType = m_errorType;
+        final LongestMatchFinder finder = new LongestMatchFinder();
+        int errorStart = -1;
+        int pos = start;
+        while (pos < limit)
+        {
+            final long match = _longestMatch(src, pos > 0 ? src.charAt(pos-1) : DfaState.NO_CHAR, pos, limit, finder);
+            final int matchType = (int)(match >> 32);
+            final int matchEnd = (int)match;
+            if (matchType < 0)
+            {
+                //no match here
+                if (errorType >= 0 && errorStart < 0)
+                {
+                    errorStart = pos;
+                }
+                ++pos;
+                continue;
+            }
+            if (errorStart >= 0)
+            {
+                dest.add(errorType, errorStart, pos);
+                errorStart = -1;
+            }
+            if (!m_skipTypes[matchType])
+            {
+                dest.add(matchType, pos, matchEnd);
+            }
+            pos = matchEnd;
+        }
+        if (errorStart >= 0)
+        {
+            dest.add(errorType, errorStart, pos);
+        }
+        return dest.size() - oldSize;
+    }
+
+    /**
+     * Tokenize a batch of documents stored in a single char array
+     * <P>
+     * Document d occupies the range [docOffsets[d], docOffsets[d+1]) of src.  Documents
+     * fromDoc through toDoc-1 are tokenized in order.  For each token, its type, start,
+     * and end are stored at the same index in tokenTypes, tokenStarts, and tokenEnds,
+     * starting at index 0.  Token positions are indexes into src.
+     * <P>
+     * After document d is tokenized, docTokenEnds[d-fromDoc] is set to the total number
+     * of tokens written so far, so the tokens for document d are at indexes
+     * [docTokenEnds[d-fromDoc-1], docTokenEnds[d-fromDoc]) (starting at 0 for fromDoc).
+     * <P>
+     * If the token arrays fill up, processing stops before the document that
+     * didn't fit.  Call this method again with a new fromDoc to continue.  The arrays must
+     * be big enough for every token in any single document, since a document is never
+     * split across calls.
+     *
+     * @param src characters of all the documents
+     * @param docOffsets start position of each document in src, followed by the end of the last document
+     * @param fromDoc index of the first document to tokenize
+     * @param toDoc index after the last document to tokenize
+     * @param tokenTypes token types are stored here
+     * @param tokenStarts token start positions are stored here
+     * @param tokenEnds token end positions are stored here
+     * @param docTokenEnds the cumulative token count after each document is stored here
+     * @return the index after the last document that was completely tokenized.  This will
+     *      be toDoc unless the token arrays filled up.
+     * @throws IllegalArgumentException if the token arrays are too small for all the tokens
+     *      in document fromDoc, so no progress can be made
+     */
+    public int tokenizeDocuments(char[] src, int[] docOffsets, int fromDoc, int toDoc,
+            int[] tokenTypes, int[] tokenStarts, int[] tokenEnds, int[] docTokenEnds)
+    {
+        final int capacity = Math.min(tokenTypes.length, Math.min(tokenStarts.length, tokenEnds.length));
+        final int errorType = m_errorType;
+        final LongestMatchFinder finder = new LongestMatchFinder();
+        final CharSequence text = CharBuffer.wrap(src);
+        int ntokens = 0;
+        for (int doc = fromDoc; doc < toDoc; ++doc)
+        {
+            final int docStart = docOffsets[doc];
+            final int limit = docOffsets[doc+1];
+            int pos = docStart;
+            int errorStart = -1;
+            int n = ntokens;
+            //dead states are only good for one search limit
+            finder.reset();
+            while (pos < limit)
+            {
+                final long match = _longestMatch(text, pos > docStart ? src[pos-1] : DfaState.NO_CHAR, pos, limit, finder);
+                final int matchType = (int)(match >> 32);
+                final int matchEnd = (int)match;
+                if (matchType < 0)
+                {
+                    //no match here
+                    if (errorType >= 0 && errorStart < 0)
+                    {
+                        errorStart = pos;
+                    }
+                    ++pos;
+                    continue;
+                }
+                if (errorStart >= 0)
+                {
+                    if (n >= capacity)
+                    {
+                        return _stopBefore(doc, fromDoc);
+                    }
+                    tokenTypes[n] = errorType;
+                    tokenStarts[n] = errorStart;
+                    tokenEnds[n++] = pos;
+                    errorStart = -1;
+                }
+                if (!m_skipTypes[matchType])
+                {
+                    if (n >= capacity)
+                    {
+                        return _stopBefore(doc, fromDoc);
+                    }
+                    tokenTypes[n] = matchType;
+                    tokenStarts[n] = pos;
+                    tokenEnds[n++] = matchEnd;
+                }
+                pos = matchEnd;
+            }
+            if (errorStart >= 0)
+            {
+                if (n >= capacity)
+                {
+                    return _stopBefore(doc, fromDoc);
+                }
+                tokenTypes[n] = errorType;
+                tokenStarts[n] = errorStart;
+                tokenEnds[n++] = pos;
+            }
+            ntokens = n;
+            docTokenEnds[doc-fromDoc] = ntokens;
+        }
+        return toDoc;
+    }
+
+    //the token arrays filled up during doc
+    private static int _stopBefore(int doc, int fromDoc)
+    {
+        if (doc == fromDoc)
+        {
+            throw new IllegalArgumentException("The token arrays are too small for document " + doc);
+        }
+        return doc;
+    }
+
+    //find the longest match at startPos, which comes after prevChar.  Returns (type<<32)|end, or -1<<32 if there is no match
+    private long _longestMatch(CharSequence src, final int prevChar, final int startPos, final int limit, LongestMatchFinder finder)
+    {
+        final DfaState<MATCHRESULT> accepted = finder.find(m_startState.getStartStateAfter(prevChar), src, startPos, limit, true);
+        if (accepted == null)
+        {
+            return -1L << 32;
+        }
+        final int matchEnd = finder.getMatchEnd();
+        final int type = accepted.getMatchIdBefore(matchEnd < limit ? src.charAt(matchEnd) : DfaState.NO_CHAR);
+        return ((long)type << 32) | matchEnd;
+    }
+
+    private int _getOrAddType(MATCHRESULT result)
+    {
+        Integer type = m_typesByResult.get(result);
+        if (type == null)
+        {
+            type = m_resultsByType.size();
+            m_resultsByType.add(result);
+            m_typesByResult.put(result, type);
+        }
+        return type;
+    }
+}
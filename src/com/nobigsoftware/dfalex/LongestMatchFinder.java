@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+/**
+ * Finds the longest match for a DFA at a position in a source string
+ * <P>
+ * This is the matching loop shared by {@link StringMatcher}, {@link Lexer}, and
+ * {@link DfaStreamReplacer}.  It skips self-loops with {@link DfaState#skipSelfLoop(CharSequence, int, int)},
+ * resolves conditional matches with the next character, backing off to the last position in
+ * a skipped loop that matches, and uses a {@link DeadStateMemo} from a
+ * {@link DeadStateMemo.RescanTracker} when runs from different positions start to rescan the
+ * same text.
+ * <P>
+ * A finder remembers dead states for a single source and end of input, so reset it when
+ * either of those changes.
+ */
+final class LongestMatchFinder
+{
+    private final DeadStateMemo.RescanTracker m_rescans = new DeadStateMemo.RescanTracker();
+    private int m_matchEnd = 0;
+    private boolean m_reachedLimit = false;
+
+    /**
+     * Start using a dead state memo right away, instead of waiting for runs to rescan
+     */
+    void startMemo()
+    {
+        m_rescans.startMemo();
+    }
+
+    /**
+     * Forget all dead states, for a new source or end of input
+     */
+    void reset()
+    {
+        m_rescans.reset();
+    }
+
+    /**
+     * Find the longest non-empty match at a position
+     * <P>
+     * If there is one, its result is the one that the returned state produces before the
+     * character at {@link #getMatchEnd()}, or before {@link DfaState#NO_CHAR} if that's limit.
+     *
+     * @param <MR> the type of results produced by the DFA
+     * @param state the start state for the character before startPos
+     * @param src the source string
+     * @param startPos the position at which the match must start
+     * @param limit no characters at positions &gt;= limit are included in the match
+     * @param limitIsEnd true if limit is the end of the input.  When it isn't, a run that is
+     *      cut off by limit is not used to find dead states, so it can be repeated when there
+     *      is more input
+     * @return the state that accepted the longest match, or null if there is no match
+     */
+    <MR> DfaState<MR> find(DfaState<MR> state, CharSequence src, final int startPos, final int limit, boolean limitIsEnd)
+    {
+        final DeadStateMemo memo = m_rescans.getMemo();
+        if (memo != null)
+        {
+            memo.startRun(startPos);
+        }
+        DfaState<MR> ret = null;
+        int pos = startPos;
+        while (pos < limit)
+        {
+            final DfaState<MR> prevState = state;
+            state = state.getNextState(src.charAt(pos));
+            pos++;
+            if (state == null)
+            {
+                break;
+            }
+            final int enteredAt = pos;
+            if (state == prevState)
+            {
+                //in a loop -- skip everything that doesn't get us out
+                pos = state.skipSelfLoop(src, pos, limit);
+            }
+            boolean matched;
+            int matchEnd = pos;
+            if (state.hasConditionalMatch())
+            {
+                //the match depends on the next character.  Find the last position in the
+                //loop we skipped that matches
+                matched = (state.getMatchBefore(pos < limit ? src.charAt(pos) : DfaState.NO_CHAR) != null);
+                while (!matched && matchEnd > enteredAt)
+                {
+                    --matchEnd;
+                    matched = (state.getMatchBefore(src.charAt(matchEnd)) != null);
+                }
+            }
+            else
+            {
+                matched = (state.getMatch() != null);
+            }
+            if (matched)
+            {
+                ret = state;
+                m_matchEnd = matchEnd;
+                if (memo != null)
+                {
+                    memo.matched();
+                }
+                continue;
+            }
+            if (memo != null)
+            {
+                final int stateNum = state.getStateNumber();
+                if (memo.isDead(stateNum, enteredAt))
+                {
+                    //an earlier run found nothing from here.  That's as good as no transition
+                    state = null;
+                    break;
+                }
+                memo.visit(stateNum, enteredAt, pos);
+            }
+        }
+        m_reachedLimit = (pos >= limit && state != null);
+        if (memo != null)
+        {
+            if (m_reachedLimit && !limitIsEnd)
+            {
+                memo.abandonRun();
+            }
+            else
+            {
+                memo.endRun();
+            }
+        }
+        else
+        {
+            m_rescans.track(startPos, pos);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the end of the match found by the last call to find, if it found one
+     */
+    int getMatchEnd()
+    {
+        return m_matchEnd;
+    }
+
+    /**
+     * @return true if the last call to find stopped at its limit, with the DFA still running,
+     *      so more input could produce a longer match
+     */
+    boolean reachedLimit()
+    {
+        return m_reachedLimit;
+    }
+}
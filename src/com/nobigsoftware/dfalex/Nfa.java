@@ -17,9 +17,11 @@ package com.nobigsoftware.dfalex;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
@@ -31,6 +33,13 @@ import java.util.function.Consumer;
  * You can also build an NFA directly with this class and convert it to a DFA
  * with {@link DfaBuilder#buildFromNfa(Nfa, int[], DfaAmbiguityResolver, com.nobigsoftware.util.BuilderCache)}.
  * <P>
+ * Besides character and epsilon transitions, an NFA can have {@link Assertion} transitions,
+ * which are epsilon transitions that can only be followed in positions where the assertion
+ * holds.
+ * <P>
+ * States can also have capture tags, which don't change the strings that the NFA matches, but
+ * let a {@link CaptureExtractor} report where a match passed through them.
+ * <P>
  * See <a href="https://en.wikipedia.org/wiki/Nondeterministic_finite_automaton">NFA on Wikipedia</a>
  * 
  * @param MATCHRESULT The type of result produce by matching a pattern.  This must be serializable
@@ -41,6 +50,11 @@ public class Nfa<MATCHRESULT>
 	private final ArrayList<List<NfaTransition>> m_stateTransitions = new ArrayList<>();
 	private final ArrayList<List<Integer>> m_stateEpsilons = new ArrayList<>();
 	private final ArrayList<MATCHRESULT> m_stateAccepts = new ArrayList<>();
+	private final ArrayList<List<AssertionTransition>> m_stateAssertions = new ArrayList<>();
+	private int m_assertionCount = 0;
+	private final ArrayList<Integer> m_stateTags = new ArrayList<>();
+	private int m_numTags = 0;
+	private final ArrayList<Integer> m_loopBodies = new ArrayList<>();
 	
 	/**
 	 * Get the number of states in the NFA
@@ -64,6 +78,9 @@ public class Nfa<MATCHRESULT>
 		m_stateAccepts.add(accept);
 		m_stateTransitions.add(null);
 		m_stateEpsilons.add(null);
+		m_stateAssertions.add(null);
+		m_stateTags.add(null);
+		m_loopBodies.add(null);
 		assert(m_stateTransitions.size() == m_stateAccepts.size());
 		assert(m_stateEpsilons.size() == m_stateAccepts.size());
 		return ret;
@@ -97,6 +114,9 @@ public class Nfa<MATCHRESULT>
 	 * An epsilon transition is created from state <tt>from</tt> to state <tt>to</tt>.
 	 * <P>
 	 * This will cause any string that is accepted by <tt>to</tt> to be accepted by <tt>from</tt> as well
+	 * <P>
+	 * The order of a state's epsilon transitions doesn't affect the strings it matches, but
+	 * a {@link CaptureExtractor} prefers the ones that were added first.
 	 * 
      * @param from the number of the state to transition from 
      * @param to the number of the state to transition to
@@ -112,6 +132,108 @@ public class Nfa<MATCHRESULT>
 		list.add(to);
 	}
 	
+	/**
+	 * Add an assertion transition to the NFA
+	 * <P>
+	 * An epsilon transition is created from state <tt>from</tt> to state <tt>to</tt> that can
+	 * only be followed at positions where the assertion holds.
+	 * 
+	 * @param from the number of the state to transition from 
+	 * @param to the number of the state to transition to
+	 * @param assertion the condition that must hold at the current position
+	 */
+	public void addAssertion(int from, int to, Assertion assertion)
+	{
+		List<AssertionTransition> list = m_stateAssertions.get(from);
+		if (list == null)
+		{
+			list = new ArrayList<>();
+			m_stateAssertions.set(from, list);
+		}
+		list.add(new AssertionTransition(assertion, to));
+		++m_assertionCount;
+	}
+	
+	/**
+	 * Check whether any assertion transitions have been added to the NFA
+	 * 
+	 * @return true if {@link #addAssertion(int, int, Assertion)} has been called
+	 */
+	public boolean hasAssertions()
+	{
+		return m_assertionCount > 0;
+	}
+	
+	/**
+	 * Attach a capture tag to a state
+	 * <P>
+	 * Tags don't change the strings that the NFA matches.  A {@link CaptureExtractor} reports
+	 * the position at which a match passes through a state with tag t in element t of its
+	 * groups array, so capture group g uses tag 2g for its start and 2g+1 for its end.
+	 * See {@link Pattern#capture(int, Matchable)}
+	 * 
+	 * @param state the state number
+	 * @param tag the tag, &gt;= 2
+	 */
+	public void setStateTag(int state, int tag)
+	{
+		if (tag < 2)
+		{
+			throw new IllegalArgumentException("Invalid capture tag " + tag + ".  Tags 0 and 1 are for the whole match");
+		}
+		m_stateTags.set(state, tag);
+		m_numTags = Math.max(m_numTags, tag+1);
+	}
+	
+	/**
+	 * Get the capture tag attached to a state
+	 * 
+	 * @param state the state number
+	 * @return the tag set with {@link #setStateTag(int, int)}, or -1 if the state has no tag
+	 */
+	public int getStateTag(int state)
+	{
+		Integer tag = m_stateTags.get(state);
+		return (tag == null ? -1 : tag);
+	}
+	
+	/**
+	 * Get the number of capture tags used in the NFA
+	 * 
+	 * @return one more than the largest tag attached to a state, or 0 if there are none
+	 */
+	public int numTags()
+	{
+		return m_numTags;
+	}
+	
+	/**
+	 * Mark a state as the point where a repetition decides whether to match its pattern again
+	 * <P>
+	 * Like tags, loops don't change the strings that the NFA matches.  A {@link CaptureExtractor}
+	 * uses them to assign groups the way java.util.regex does when an iteration matches the empty
+	 * string:  after an empty iteration, the repetition stops instead of trying another one.
+	 * 
+	 * @param state the state with epsilon transitions to the repeated pattern and to the rest of the match
+	 * @param bodyState the start state of the repeated pattern
+	 */
+	public void setLoop(int state, int bodyState)
+	{
+		m_loopBodies.set(state, bodyState);
+	}
+	
+	/**
+	 * Get the start state of the pattern repeated at a loop state
+	 * 
+	 * @param state the state number
+	 * @return the body state set with {@link #setLoop(int, int)}, or -1 if the state isn't a loop
+	 */
+	public int getLoopBody(int state)
+	{
+		Integer body = m_loopBodies.get(state);
+		return (body == null ? -1 : body);
+	}
+	
 	/**
 	 * Get the result attached to the given state
 	 * 
@@ -125,13 +247,17 @@ public class Nfa<MATCHRESULT>
 	
 	/**
 	 * Check whether a state has any non-epsilon transitions or has a result attached
+	 * <P>
+	 * Assertion transitions count, because they can't be followed without knowing the
+	 * position.
 	 * 
 	 * @param state the state number
 	 * @return true if the state has any transitions or accepts
 	 */
 	public boolean hasTransitionsOrAccepts(int state)
 	{
-		return (m_stateAccepts.get(state) != null || m_stateTransitions.get(state) != null);
+		return (m_stateAccepts.get(state) != null || m_stateTransitions.get(state) != null ||
+		        m_stateAssertions.get(state) != null);
 	}
 	
 	/**
@@ -166,12 +292,28 @@ public class Nfa<MATCHRESULT>
      * that case a new NFA state will be created that matches all the same strings <i>except</i>
      * the empty string.
      * 
+     * <P>
+     * Assertion transitions are kept, but they lead to disemptified copies of their targets.
+     * Capture tags on the epsilon-reachable states are not copied to the new state.
+     * 
      * @param state the number of the state to disemptify
      * @return If <tt>state</tt> matches the empty string, then a new state that does not match
      *      the empty string is returned.  Otherwise <tt>state</tt> is returned.
      */
     public int Disemptify(final int state)
     {
+        return _disemptify(state, new HashMap<>());
+    }
+    
+    //done maps states that have already been disemptified to their replacements, so that
+    //cycles through assertions terminate
+    private int _disemptify(final int state, HashMap<Integer, Integer> done)
+    {
+        Integer prev = done.get(state);
+        if (prev != null)
+        {
+            return prev;
+        }
         ArrayList<Integer> reachable = new ArrayList<>();
         
         //first find all epsilon-reachable states
@@ -190,14 +332,15 @@ public class Nfa<MATCHRESULT>
             }
         }
         
-        //if none of them accept, then we're done
+        //if none of them accept or assert, then we're done
         for (int i=0; ; ++i)
         {
             if (i>=reachable.size())
             {
+                done.put(state, state);
                 return state;
             }
-            if (getAccept(reachable.get(i))!=null)
+            if (getAccept(reachable.get(i))!=null || m_stateAssertions.get(reachable.get(i))!=null)
             {
                 break;
             }
@@ -205,6 +348,7 @@ public class Nfa<MATCHRESULT>
         
         //need to make a new disemptified state.  first get all transitions
         int newState = addState(null);
+        done.put(state, newState);
         Set<NfaTransition> transSet = new HashSet<>();
         for (Integer src : reachable)
         {
@@ -215,6 +359,17 @@ public class Nfa<MATCHRESULT>
                 }
             });
         }
+        for (Integer src : reachable)
+        {
+            List<AssertionTransition> list = m_stateAssertions.get(src);
+            if (list != null)
+            {
+                for (AssertionTransition trans : list.toArray(new AssertionTransition[list.size()]))
+                {
+                    addAssertion(newState, _disemptify(trans.m_stateNum, done), trans.m_assertion);
+                }
+            }
+        }
         return newState;
     }
     
@@ -235,4 +390,33 @@ public class Nfa<MATCHRESULT>
 			list.forEach(dest);
 		}
 	}
+	
+	boolean hasStateAssertions(int state)
+	{
+		return m_stateAssertions.get(state) != null;
+	}
+	
+	void forStateAssertions(int state, BiConsumer<Assertion, Integer> dest)
+	{
+		List<AssertionTransition> list = m_stateAssertions.get(state);
+		if (list != null)
+		{
+			for (AssertionTransition trans : list)
+			{
+				dest.accept(trans.m_assertion, trans.m_stateNum);
+			}
+		}
+	}
+	
+	private static final class AssertionTransition
+	{
+		final Assertion m_assertion;
+		final int m_stateNum;
+		
+		AssertionTransition(Assertion assertion, int stateNum)
+		{
+			m_assertion = assertion;
+			m_stateNum = stateNum;
+		}
+	}
 }
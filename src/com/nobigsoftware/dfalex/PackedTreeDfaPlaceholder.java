@@ -24,7 +24,7 @@ import java.util.List;
  */
 class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 	
 	private static final char[] NO_CHARS = new char[0];
 	private static final DfaStateImpl<?>[] NO_SUCC_STATES = new DfaStateImpl[1];
@@ -40,11 +40,28 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 	//target number -1 means no transition
 	private int[] m_targetStateNumbers;
 	private MATCH m_match;
+	//accept set 0 means no match, so match IDs are offset by 1
+	private int m_matchId;
+	//matches and IDs for each next character context, or null if they're all the same
+	private Object[] m_lookaheadMatches;
+	private int[] m_lookaheadMatchIds;
 	
 	PackedTreeDfaPlaceholder(RawDfa<MATCH> rawDfa, int stateNum)
 	{
 		DfaStateInfo info = rawDfa.getStates().get(stateNum);
         m_match = rawDfa.getAcceptSets().get(info.getAcceptSetIndex());
+        m_matchId = info.getAcceptSetIndex()-1;
+        final int[] lookahead = info.getLookaheadAcceptSetIndexes();
+        if (lookahead != null)
+        {
+            m_lookaheadMatches = new Object[lookahead.length];
+            m_lookaheadMatchIds = new int[lookahead.length];
+            for (int i=0; i<lookahead.length; ++i)
+            {
+                m_lookaheadMatches[i] = rawDfa.getAcceptSets().get(lookahead[i]);
+                m_lookaheadMatchIds[i] = lookahead[i]-1;
+            }
+        }
 		
 		int rawTransCount = info.getTransitionCount();
 		if (rawTransCount<=0)
@@ -101,6 +118,19 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 
 	@Override
 	void createDelegate(int statenum, List<DfaStatePlaceholder<MATCH>> allStates)
+	{
+		m_delegate = new StateImpl<>(m_internalNodes, _getTargets(allStates), m_match, m_matchId,
+		        m_lookaheadMatches, m_lookaheadMatchIds, statenum, null);
+	}
+	
+	@Override
+	DfaStateImpl<MATCH> createLazyDelegate(int statenum, List<DfaStatePlaceholder<MATCH>> allStates)
+	{
+		return new StateImpl<>(m_internalNodes, _getTargets(allStates), m_match, m_matchId,
+		        m_lookaheadMatches, m_lookaheadMatchIds, statenum, this);
+	}
+	
+	private DfaStateImpl<?>[] _getTargets(List<DfaStatePlaceholder<MATCH>> allStates)
 	{
 		DfaStateImpl<?>[] targetStates = new DfaStateImpl<?>[m_targetStateNumbers.length];
 		for (int i=0; i < targetStates.length; ++i)
@@ -108,7 +138,7 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 		    int num = m_targetStateNumbers[i];
 			targetStates[i] = (num < 0 ? null : allStates.get(num));
 		}
-		m_delegate = new StateImpl<>(m_internalNodes, targetStates, m_match, statenum);
+		return targetStates;
 	}
 	
 	//generate the tree by inorder traversal
@@ -173,10 +203,22 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 		private final char[] m_internalNodes;
 		private final DfaStateImpl<?>[] m_targetStates;
 		private final M m_match;
+		private final int m_matchId;
+		private final Object[] m_lookaheadMatches;
+		private final int[] m_lookaheadMatchIds;
 		private final int m_stateNum;
+		//the state that transitions back to this one lead to.  For lazily created states,
+		//this is the placeholder
+		private final DfaState<?> m_self;
+		//self-loop characters < 128, as bit masks, filled in by _findSelfLoops
+		private long m_loopMaskLo;
+		private long m_loopMaskHi;
+		private boolean m_hasSelfLoop;
 		
+		//lazyOwner is the placeholder for lazily created states, or null
 		StateImpl(char[] internalNodes, DfaStateImpl<?>[] targetStates,
-				M match, int stateNum)
+				M match, int matchId, Object[] lookaheadMatches, int[] lookaheadMatchIds,
+				int stateNum, DfaStateImpl<?> lazyOwner)
 		{
 			super();
 			boolean haveSucc = false;
@@ -196,7 +238,16 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 			m_internalNodes = internalNodes;
 			m_targetStates = targetStates;
 			m_match = match;
+			m_matchId = matchId;
+			m_lookaheadMatches = lookaheadMatches;
+			m_lookaheadMatchIds = lookaheadMatchIds;
 			m_stateNum = stateNum;
+			m_self = (lazyOwner == null ? this : lazyOwner);
+			if (lazyOwner != null)
+			{
+			    //targets are already final
+			    _findSelfLoops();
+			}
 		}
 
 		@Override
@@ -209,6 +260,30 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 					m_targetStates[i] = m_targetStates[i].resolvePlaceholder();
 				}
 			}
+			//now that targets are resolved, we can find the self-loops
+			_findSelfLoops();
+		}
+		
+		private void _findSelfLoops()
+		{
+			enumerateTransitions((firstc, lastc, target) -> {
+			    if (target != m_self)
+			    {
+			        return;
+			    }
+			    m_hasSelfLoop = true;
+			    for (int c = firstc; c <= lastc && c < 128; ++c)
+			    {
+			        if (c < 64)
+			        {
+			            m_loopMaskLo |= 1L << c;
+			        }
+			        else
+			        {
+			            m_loopMaskHi |= 1L << (c-64);
+			        }
+			    }
+			});
 		}
 
 		@Override
@@ -229,12 +304,93 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
 			return (DfaState<M>)m_targetStates[i-m_internalNodes.length];
 		}
 
+		@Override
+		public int skipSelfLoop(CharSequence src, int pos, int limit)
+		{
+		    if (!m_hasSelfLoop)
+		    {
+		        return pos;
+		    }
+		    while (pos < limit && _loopsOn(src.charAt(pos)))
+		    {
+		        ++pos;
+		    }
+		    return pos;
+		}
+
+		@Override
+		public int skipSelfLoop(char[] src, int pos, int limit)
+		{
+		    if (!m_hasSelfLoop)
+		    {
+		        return pos;
+		    }
+		    while (pos < limit && _loopsOn(src[pos]))
+		    {
+		        ++pos;
+		    }
+		    return pos;
+		}
+
+		@Override
+		public int skipSelfLoopBackward(CharSequence src, int pos, int limit)
+		{
+		    if (!m_hasSelfLoop)
+		    {
+		        return pos;
+		    }
+		    while (pos > limit && _loopsOn(src.charAt(pos-1)))
+		    {
+		        --pos;
+		    }
+		    return pos;
+		}
+
+		private boolean _loopsOn(char c)
+		{
+		    if (c < 64)
+		    {
+		        return (m_loopMaskLo & (1L << c)) != 0;
+		    }
+		    if (c < 128)
+		    {
+		        //shift distance is taken mod 64
+		        return (m_loopMaskHi & (1L << c)) != 0;
+		    }
+		    return getNextState(c) == m_self;
+		}
+
 		@Override
 		public M getMatch()
 		{
 			return m_match;
 		}
 
+		@Override
+		public int getMatchId()
+		{
+			return m_matchId;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public M getMatchBefore(int nextChar)
+		{
+			return (m_lookaheadMatches == null ? m_match : (M)m_lookaheadMatches[Assertion.contextOf(nextChar)]);
+		}
+
+		@Override
+		public int getMatchIdBefore(int nextChar)
+		{
+			return (m_lookaheadMatchIds == null ? m_matchId : m_lookaheadMatchIds[Assertion.contextOf(nextChar)]);
+		}
+
+		@Override
+		public boolean hasConditionalMatch()
+		{
+			return m_lookaheadMatches != null;
+		}
+
         @Override
         public int getStateNumber()
         {
@@ -339,7 +495,7 @@ class PackedTreeDfaPlaceholder<MATCH> extends DfaStatePlaceholder<MATCH>
         {
             @SuppressWarnings("unchecked")
             DfaState<M> ret = (DfaState<M>)m_array[m_pos];
-            for (; m_pos<m_array.length && m_array[m_pos]==null; ++m_pos);
+            for (++m_pos; m_pos<m_array.length && m_array[m_pos]==null; ++m_pos);
             return ret;
         }
 	    
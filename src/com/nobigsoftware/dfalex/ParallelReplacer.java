@@ -0,0 +1,361 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Implements search and replace on large strings, using multiple threads.
+ * <P>
+ * The string is split into chunks, and the work is done in phases:
+ * <OL><LI>
+ * In parallel, each chunk is scanned for matches, assuming that the scan starts
+ * at the start of the chunk.  Matches can extend past the end of the chunk.
+ * </LI><LI>
+ * Sequentially, the chunks are stitched together.  If a match from one chunk extends
+ * into the next one, the next chunk is rescanned from the end of that match only until the
+ * rescan reaches a position that the original scan also visited.  From that point on, the
+ * scans are identical.
+ * </LI><LI>
+ * In parallel, the replacer is called for each match, and each chunk's output is recorded as a
+ * list of segments.  If a replacer returns a position to continue at, the matches after that
+ * point are no longer valid.  That chunk stops, and the rest of the string is processed
+ * sequentially from that point.
+ * </LI><LI>
+ * All the chunk outputs are copied into the final string.
+ * </LI></OL>
+ * The result is the same as {@link StringSearcher#findAndReplace(String, ReplacementSelector)}.
+ */
+class ParallelReplacer<MR>
+{
+    private static final int MIN_CHUNK_SIZE = 1<<16;
+    
+    private final DfaState<MR> m_matcher;
+    private final ReplacementSelector<? super MR> m_replacer;
+    
+    ParallelReplacer(DfaState<MR> matcher, ReplacementSelector<? super MR> replacer)
+    {
+        m_matcher = matcher;
+        m_replacer = replacer;
+    }
+    
+    /**
+     * Get a reasonable chunk size for a string
+     * 
+     * @param len length of the string
+     * @param pool the pool that will do the work
+     * @return the chunk size to use
+     */
+    static int defaultChunkSize(int len, ForkJoinPool pool)
+    {
+        return Math.max(MIN_CHUNK_SIZE, len/(pool.getParallelism()*4)+1);
+    }
+
+    /**
+     * Replace all occurrences of the patterns in a string
+     * 
+     * @param src   the string to search
+     * @param pool  the pool to run tasks on
+     * @param chunkSize the size of the chunks to work on in parallel
+     * @return the new string with values replaced
+     */
+    String findAndReplace(String src, ForkJoinPool pool, int chunkSize)
+    {
+        final int len = src.length();
+        final int nchunks = (int)((len + (long)chunkSize - 1)/chunkSize);
+        final List<Chunk> chunks = new ArrayList<>(nchunks);
+        for (int i=0; i<nchunks; ++i)
+        {
+            chunks.add(new Chunk(i*chunkSize, (int)Math.min(len, (long)(i+1)*chunkSize)));
+        }
+        
+        //speculative scans
+        _runAll(pool, chunks, chunk -> chunk.scan(src));
+        
+        //stitch
+        int scanPos = 0;
+        for (Chunk chunk : chunks)
+        {
+            scanPos = chunk.resync(src, scanPos);
+        }
+        
+        //replace
+        _runAll(pool, chunks, chunk -> chunk.replace(src));
+        
+        //the first chunk that repositioned finishes sequentially
+        int nvalid = nchunks;
+        for (int i=0; i<nchunks; ++i)
+        {
+            if (chunks.get(i).m_divergePos >= 0)
+            {
+                chunks.get(i).finishSequentially(src);
+                nvalid = i+1;
+                break;
+            }
+        }
+        
+        boolean changed = false;
+        int totalLen = 0;
+        for (int i=0; i<nvalid; ++i)
+        {
+            changed |= chunks.get(i).m_changed;
+            totalLen += chunks.get(i).m_out.length();
+        }
+        if (!changed)
+        {
+            return src;
+        }
+        final char[] buf = new char[totalLen];
+        int pos = 0;
+        for (int i=0; i<nvalid; ++i)
+        {
+            chunks.get(i).m_out.getChars(buf, pos);
+            pos += chunks.get(i).m_out.length();
+        }
+        return String.valueOf(buf);
+    }
+    
+    private void _runAll(ForkJoinPool pool, List<Chunk> chunks, Consumer<Chunk> task)
+    {
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+            for (Chunk chunk : chunks)
+            {
+                tasks.add(ForkJoinTask.adapt(() -> task.accept(chunk)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }));
+    }
+    
+    private class Chunk
+    {
+        final int m_start;
+        final int m_end;
+        //matches found, as (start, end) pairs, and their results
+        int[] m_matchPositions = new int[32];
+        int m_numMatches = 0;
+        final ArrayList<MR> m_matchResults = new ArrayList<>();
+        //index of the first match that the true scan uses
+        int m_firstMatch = 0;
+        //true scan position at the start of the chunk.  Output starts here
+        int m_outStart;
+        //the output ends here
+        int m_outEnd;
+        StringReplaceAppendable m_out;
+        boolean m_changed = false;
+        //position at which the replacer asked to continue, or -1
+        int m_divergePos = -1;
+        
+        Chunk(int start, int end)
+        {
+            m_start = start;
+            m_end = end;
+        }
+        
+        void scan(String src)
+        {
+            StringMatcher matcher = new StringMatcher(src);
+            int pos = m_start;
+            while(pos < m_end)
+            {
+                MR mr = matcher.matchAt(m_matcher, pos);
+                if (mr == null)
+                {
+                    ++pos;
+                    continue;
+                }
+                pos = matcher.getLastMatchEnd();
+                _addMatch(matcher.getLastMatchStart(), pos, mr);
+            }
+        }
+        
+        /**
+         * Given the true scan position at the start of the chunk, fix up the matches
+         * found by the speculative scan
+         * 
+         * @return the true scan position at the end of the chunk
+         */
+        int resync(String src, int scanPos)
+        {
+            m_outStart = scanPos;
+            //drop matches that start before the true scan position
+            int first = 0;
+            while (first < m_numMatches && m_matchPositions[first*2] < scanPos)
+            {
+                ++first;
+            }
+            //if the true scan position was inside a speculative match, then the scans are
+            //different until the true scan visits a position that the speculative scan visited
+            ArrayList<int[]> resyncMatches = null;
+            ArrayList<MR> resyncResults = null;
+            if (first > 0 && m_matchPositions[first*2-1] > scanPos)
+            {
+                StringMatcher matcher = null;
+                resyncMatches = new ArrayList<>();
+                resyncResults = new ArrayList<>();
+                for (;;)
+                {
+                    //skip speculative matches that we're past
+                    while (first < m_numMatches && m_matchPositions[first*2] < scanPos)
+                    {
+                        ++first;
+                    }
+                    //in sync if scanPos isn't inside a speculative match, or we've left the chunk
+                    final boolean inMatch = (first > 0 && m_matchPositions[first*2-1] > scanPos);
+                    if (!inMatch || scanPos >= m_end)
+                    {
+                        break;
+                    }
+                    if (matcher == null)
+                    {
+                        matcher = new StringMatcher(src);
+                    }
+                    MR mr = matcher.matchAt(m_matcher, scanPos);
+                    if (mr == null)
+                    {
+                        ++scanPos;
+                        continue;
+                    }
+                    resyncMatches.add(new int[] {scanPos, matcher.getLastMatchEnd()});
+                    resyncResults.add(mr);
+                    scanPos = matcher.getLastMatchEnd();
+                }
+            }
+            if (resyncMatches != null && !resyncMatches.isEmpty())
+            {
+                //splice the rescanned matches in front of the remaining speculative ones
+                final int nresync = resyncMatches.size();
+                final int nrest = m_numMatches - first;
+                int[] newPositions = new int[(nresync + nrest)*2 + 2];
+                for (int i=0; i<nresync; ++i)
+                {
+                    newPositions[i*2] = resyncMatches.get(i)[0];
+                    newPositions[i*2+1] = resyncMatches.get(i)[1];
+                }
+                System.arraycopy(m_matchPositions, first*2, newPositions, nresync*2, nrest*2);
+                ArrayList<MR> newResults = new ArrayList<>(resyncResults);
+                newResults.addAll(m_matchResults.subList(first, m_numMatches));
+                m_matchPositions = newPositions;
+                m_matchResults.clear();
+                m_matchResults.addAll(newResults);
+                m_numMatches = nresync + nrest;
+                first = 0;
+            }
+            m_firstMatch = first;
+            //only matches that start in this chunk belong to it
+            int n = m_numMatches;
+            while (n > first && m_matchPositions[n*2-2] >= m_end)
+            {
+                --n;
+            }
+            m_numMatches = n;
+            if (n > first)
+            {
+                scanPos = Math.max(scanPos, m_matchPositions[n*2-1]);
+            }
+            m_outEnd = Math.max(scanPos, m_end);
+            return m_outEnd;
+        }
+        
+        void replace(String src)
+        {
+            m_out = new StringReplaceAppendable(src, m_outStart);
+            int doneTo = m_outStart;
+            for (int i = m_firstMatch; i < m_numMatches; ++i)
+            {
+                final int s = m_matchPositions[i*2];
+                final int e = m_matchPositions[i*2+1];
+                m_changed = true;
+                if (doneTo < s)
+                {
+                    m_out.append(src, doneTo, s);
+                }
+                doneTo = m_replacer.apply(m_out, m_matchResults.get(i), src, s, e);
+                if (doneTo <= 0)
+                {
+                    doneTo = e;
+                }
+                else
+                {
+                    if (doneTo <= s)
+                    {
+                        throw new IndexOutOfBoundsException("Replacer tried to rescan matched string");
+                    }
+                    m_divergePos = doneTo;
+                    return;
+                }
+            }
+            if (doneTo < m_outEnd)
+            {
+                m_out.append(src, doneTo, m_outEnd);
+            }
+        }
+        
+        //continue from m_divergePos to the end of the string
+        void finishSequentially(String src)
+        {
+            final int len = src.length();
+            StringMatcher matcher = new StringMatcher(src);
+            int doneTo = m_divergePos;
+            int pos = doneTo;
+            while (pos < len)
+            {
+                MR mr = matcher.matchAt(m_matcher, pos);
+                if (mr == null)
+                {
+                    ++pos;
+                    continue;
+                }
+                final int e = matcher.getLastMatchEnd();
+                if (doneTo < pos)
+                {
+                    m_out.append(src, doneTo, pos);
+                }
+                doneTo = m_replacer.apply(m_out, mr, src, pos, e);
+                if (doneTo <= 0)
+                {
+                    doneTo = e;
+                }
+                else if (doneTo <= pos)
+                {
+                    throw new IndexOutOfBoundsException("Replacer tried to rescan matched string");
+                }
+                pos = doneTo;
+            }
+            if (doneTo < len)
+            {
+                m_out.append(src, doneTo, len);
+            }
+        }
+        
+        private void _addMatch(int start, int end, MR result)
+        {
+            if (m_numMatches*2 >= m_matchPositions.length)
+            {
+                m_matchPositions = Arrays.copyOf(m_matchPositions, m_matchPositions.length*2);
+            }
+            m_matchPositions[m_numMatches*2] = start;
+            m_matchPositions[m_numMatches*2+1] = end;
+            m_matchResults.add(result);
+            ++m_numMatches;
+        }
+    }
+}
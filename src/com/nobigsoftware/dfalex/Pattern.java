@@ -36,8 +36,15 @@ public abstract class Pattern implements Matchable
 {
     private static final long serialVersionUID = 1L;
     
-    private volatile Pattern mv_reverse = null;
+    private transient volatile Pattern mv_reverse = null;
     
+    /**
+     * The largest repetition count allowed in {@link #repeat(Matchable, int, int)}
+     * <P>
+     * Every count adds a copy of the repeated pattern to the NFA, and large counts inside
+     * unbounded patterns, like ".*a.{n}", can make the DFA exponentially large.
+     */
+    public static final int MAX_REPEAT_COUNT = 1000;
     
     /**
      * Pattern that matches only the empty string
@@ -161,11 +168,13 @@ public abstract class Pattern implements Matchable
      * <P>
      * Syntax supported includes:
      * <UL><LI>. (matches ANY character, including newlines)
-     * </LI><LI> ?, +, *, |, ()
+     * </LI><LI> ?, +, *, |, () capturing groups, (?:) non-capturing groups
+     * </LI><LI> {n}, {n,}, {n,m} bounded repetition
      * </LI><LI> [abc][^abc][a-zA-Z0-9], etc., character sets (
      * </LI><LI> \t, \n, \r, \f, \a, \e, &#92;xXX, &#92;uXXXX, \cX character escapes
      * </LI><LI> \\, or \x, where x is any non-alphanumeric character.  character escape for x
      * </LI><LI> \d, \D, \s, \S, \w, \W class escapes
+     * </LI><LI> ^, $, \A, \z, \b, \B assertions
      * </LI></UL>
      * 
      * @param regex regular expression string to parse
@@ -222,6 +231,45 @@ public abstract class Pattern implements Matchable
         return repeat(match(str));
     }
 
+    /**
+     * Create a pattern that matches a given pattern repeated a bounded number of times
+     * <P>
+     * This is like {n,m} in a regular expression, but makes a much smaller NFA than the
+     * equivalent chain of {@link #then(Matchable)} and {@link #thenMaybe(Matchable)}
+     * calls.  The given pattern is only added to an NFA once, and then copied.
+     * 
+     * @param pat  given pattern
+     * @param min  minimum number of occurrences
+     * @param max  maximum number of occurrences, or -1 for no maximum
+     * @return the new pattern
+     * @throws IllegalArgumentException if min &lt; 0, max &lt; min, or either count is
+     *      larger than {@link #MAX_REPEAT_COUNT}
+     */
+    public static Pattern repeat(Matchable pat, int min, int max)
+    {
+        if (min < 0 || (max >= 0 && max < min) || min > MAX_REPEAT_COUNT || max > MAX_REPEAT_COUNT)
+        {
+            throw new IllegalArgumentException("Invalid repetition count {" + min + "," + (max < 0 ? "" : max) 
+                    + "}.  Counts must be in [0," + MAX_REPEAT_COUNT + "]");
+        }
+        if (max < 0)
+        {
+            if (min <= 1)
+            {
+                return new RepeatingPattern(pat, min > 0);
+            }
+        }
+        else if (max == 0)
+        {
+            return EMPTY;
+        }
+        else if (max == 1)
+        {
+            return (min > 0 ? match(pat) : maybe(pat));
+        }
+        return new BoundedRepeatingPattern(pat, min, max);
+    }
+
     /**
      * Create a pattern that matches a given pattern or the empty string
      * 
@@ -288,6 +336,28 @@ public abstract class Pattern implements Matchable
         return maybeRepeat(matchI(str));
     }
 
+    /**
+     * Create a pattern that matches a given pattern, and captures the part of the input that
+     * matches it as a numbered group
+     * <P>
+     * Capture groups don't change the strings that a pattern matches.  They are reported by
+     * {@link CaptureExtractor}.  If more than one capture has the same group number, then the
+     * group reports whichever one matched last.
+     * 
+     * @param group the group number, &gt;= 1.  Group 0 is the whole match
+     * @param pat  given pattern
+     * @return the new pattern
+     * @throws IllegalArgumentException if group &lt; 1
+     */
+    public static Pattern capture(int group, Matchable pat)
+    {
+        if (group < 1)
+        {
+            throw new IllegalArgumentException("Invalid capture group " + group + ".  Group numbers start at 1");
+        }
+        return new CapturePattern(pat, group);
+    }
+
     /**
      * Create a pattern that matches any of the given patterns
      * 
@@ -454,6 +524,22 @@ public abstract class Pattern implements Matchable
         return then(repeatI(str));
     }
 
+    /**
+     * Create a pattern that matches strings from this pattern, followed by a given
+     * pattern repeated a bounded number of times
+     * <P>
+     * See {@link #repeat(Matchable, int, int)}
+     * 
+     * @param pat the given pattern
+     * @param min  minimum number of occurrences
+     * @param max  maximum number of occurrences, or -1 for no maximum
+     * @return the new pattern
+     */
+    public Pattern thenRepeat(Matchable pat, int min, int max)
+    {
+        return then(repeat(pat, min, max));
+    }
+
     /**
      * Create a pattern that matches strings from this pattern, maybe followed by a
      * match of the given pattern
@@ -866,17 +952,22 @@ public abstract class Pattern implements Matchable
 		@Override
 		public int addToNFA(Nfa<?> nfa, int targetState)
 		{
+			//repeating is preferred to stopping, for capture extraction
 			int repState = nfa.addState(null);
-			nfa.addEpsilon(repState, targetState);
 			int startState = m_pattern.addToNFA(nfa,  repState);
 			nfa.addEpsilon(repState,startState);
+			nfa.addEpsilon(repState, targetState);
+			if (m_pattern.matchesEmpty())
+			{
+				nfa.setLoop(repState, startState);
+			}
 			if (m_needAtLeastOne || m_pattern.matchesEmpty())
 			{
 				return startState;
 			}
 			int skipState = nfa.addState(null);
-			nfa.addEpsilon(skipState, targetState);
 			nfa.addEpsilon(skipState, startState);
+			nfa.addEpsilon(skipState, targetState);
 			return skipState;
 		}
 		
@@ -917,6 +1008,202 @@ public abstract class Pattern implements Matchable
             }
         }
 	}
+    private static class BoundedRepeatingPattern extends Pattern
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final Matchable m_pattern;
+        private final int m_min;
+        private final int m_max;
+        
+        BoundedRepeatingPattern(Matchable pattern, int min, int max)
+        {
+            m_pattern = pattern;
+            m_min = min;
+            m_max = max;
+        }
+        
+        @Override
+        public int addToNFA(Nfa<?> nfa, int targetState)
+        {
+            //add the pattern to a scratch NFA once, and then copy it as many times as we need
+            final Nfa<Object> template = new Nfa<>();
+            final int templateTarget = template.addState(null);
+            final int templateStart = m_pattern.addToNFA(template, templateTarget);
+            final int[] stateMap = new int[template.numStates()];
+            int startState;
+            int nrequired = m_min;
+            if (m_max < 0)
+            {
+                //last required copy loops
+                int repState = nfa.addState(null);
+                startState = _addCopy(nfa, template, templateStart, templateTarget, repState, stateMap);
+                nfa.addEpsilon(repState, startState);
+                nfa.addEpsilon(repState, targetState);
+                if (m_pattern.matchesEmpty())
+                {
+                    nfa.setLoop(repState, startState);
+                }
+                --nrequired;
+            }
+            else
+            {
+                //optional copies are nested, like (x(x(x)?)?)?, so every skip goes directly to
+                //the target, and we don't make long chains of epsilons
+                startState = targetState;
+                final boolean matchesEmpty = m_pattern.matchesEmpty();
+                for (int i = m_max - m_min; i > 0; --i)
+                {
+                    startState = _addCopy(nfa, template, templateStart, templateTarget, startState, stateMap);
+                    if (!matchesEmpty)
+                    {
+                        int skipState = nfa.addState(null);
+                        nfa.addEpsilon(skipState, startState);
+                        nfa.addEpsilon(skipState, targetState);
+                        startState = skipState;
+                    }
+                }
+            }
+            for (; nrequired > 0; --nrequired)
+            {
+                startState = _addCopy(nfa, template, templateStart, templateTarget, startState, stateMap);
+            }
+            return startState;
+        }
+        
+        //copy the template into nfa, mapping templateTarget to targetState.  Returns the copy of templateStart
+        private static int _addCopy(Nfa<?> nfa, Nfa<?> template, int templateStart, int templateTarget, int targetState, int[] stateMap)
+        {
+            final int nstates = template.numStates();
+            for (int i=0; i<nstates; ++i)
+            {
+                stateMap[i] = (i == templateTarget ? targetState : nfa.addState(null));
+            }
+            for (int i=0; i<nstates; ++i)
+            {
+                if (i == templateTarget)
+                {
+                    continue;
+                }
+                final int from = stateMap[i];
+                final int tag = template.getStateTag(i);
+                if (tag >= 0)
+                {
+                    nfa.setStateTag(from, tag);
+                }
+                final int loopBody = template.getLoopBody(i);
+                if (loopBody >= 0)
+                {
+                    nfa.setLoop(from, stateMap[loopBody]);
+                }
+                for (NfaTransition trans : template.getStateTransitions(i))
+                {
+                    nfa.addTransition(from, stateMap[trans.m_stateNum], trans.m_firstChar, trans.m_lastChar);
+                }
+                for (Integer to : template.getStateEpsilons(i))
+                {
+                    nfa.addEpsilon(from, stateMap[to]);
+                }
+                template.forStateAssertions(i, (assertion, to) -> nfa.addAssertion(from, stateMap[to], assertion));
+            }
+            return stateMap[templateStart];
+        }
+        
+        @Override
+        public boolean matchesEmpty()
+        {
+            return m_min == 0 || m_pattern.matchesEmpty();
+        }
+        
+        @Override
+        public boolean matchesNonEmpty()
+        {
+            return m_pattern.matchesNonEmpty();
+        }
+
+        @Override
+        public boolean matchesSomething()
+        {
+            return m_min == 0 || m_pattern.matchesSomething();
+        }
+
+        @Override
+        public boolean isUnbounded()
+        {
+            return (m_max < 0 ? m_pattern.matchesNonEmpty() : m_pattern.isUnbounded());
+        }
+        
+        @Override
+        protected Pattern calcReverse()
+        {
+            Matchable revpat = m_pattern.getReversed();
+            if (revpat == m_pattern)
+            {
+                return this;
+            }
+            else
+            {
+                return new BoundedRepeatingPattern(revpat, m_min, m_max);
+            }
+        }
+    }
+    private static class CapturePattern extends Pattern
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final Matchable m_pattern;
+        private final int m_group;
+        
+        CapturePattern(Matchable pattern, int group)
+        {
+            m_pattern = pattern;
+            m_group = group;
+        }
+        
+        @Override
+        public int addToNFA(Nfa<?> nfa, int targetState)
+        {
+            int endState = nfa.addState(null);
+            nfa.setStateTag(endState, m_group*2+1);
+            nfa.addEpsilon(endState, targetState);
+            int startState = nfa.addState(null);
+            nfa.setStateTag(startState, m_group*2);
+            nfa.addEpsilon(startState, m_pattern.addToNFA(nfa, endState));
+            return startState;
+        }
+        
+        @Override
+        public boolean matchesEmpty()
+        {
+            return m_pattern.matchesEmpty();
+        }
+        
+        @Override
+        public boolean matchesNonEmpty()
+        {
+            return m_pattern.matchesNonEmpty();
+        }
+
+        @Override
+        public boolean matchesSomething()
+        {
+            return m_pattern.matchesSomething();
+        }
+
+        @Override
+        public boolean isUnbounded()
+        {
+            return m_pattern.isUnbounded();
+        }
+        
+        @Override
+        protected Pattern calcReverse()
+        {
+            //reversed patterns are for finding matches, not extracting groups.  Wrap it so we
+            //don't share the reversed pattern's back-reference
+            return new WrapPattern(m_pattern.getReversed());
+        }
+    }
 	private static class OptionalPattern extends Pattern
 	{
         private static final long serialVersionUID = 1L;
@@ -937,8 +1224,8 @@ public abstract class Pattern implements Matchable
 				return startState;
 			}
 			int skipState = nfa.addState(null);
-			nfa.addEpsilon(skipState, targetState);
 			nfa.addEpsilon(skipState, startState);
+			nfa.addEpsilon(skipState, targetState);
 			return skipState;
 		}
 		
@@ -990,7 +1277,7 @@ public abstract class Pattern implements Matchable
         private static final int F_UNBOUND_MATCH = 32;
         
         private final Matchable[] m_choices;
-		private volatile int mv_flags=0;
+		private transient volatile int mv_flags=0;
 		
 		UnionPattern(Matchable[] choices)
 		{
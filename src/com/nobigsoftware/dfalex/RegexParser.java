@@ -15,8 +15,11 @@
  */
 package com.nobigsoftware.dfalex;
 
-import java.io.Serializable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Parses regular expressions into {@link Matchable} implementations.
@@ -27,14 +30,43 @@ import java.util.ArrayList;
  * Syntax supported includes:
  * <UL><LI>. (matches ANY character, including newlines)
  * </LI><LI> ?, +, *, |, ()
+ * </LI><LI> (x) capturing groups, numbered from 1 in the order of their opening parentheses.
+ * See {@link Pattern#capture(int, Matchable)}.  (?:x) groups don't capture
+ * </LI><LI> {n}, {n,}, {n,m} bounded repetition.  A { that doesn't start one of these is a literal
  * </LI><LI> [abc][^abc][a-zA-Z0-9], etc., character sets (
  * </LI><LI> \t, \n, \r, \f, \a, \e, &#92;xXX, &#92;uXXXX, \cX character escapes
  * </LI><LI> \\, or \x, where x is any non-alphanumeric character.  character escape for x
  * </LI><LI> \d, \D, \s, \S, \w, \W class escapes
+ * </LI><LI> ^, $, \A, \z, \b, \B assertions.  See {@link Assertion}
  * </LI></UL>
+ * <P>
+ * The parser's grammar is a DFA, but it isn't built when this class is loaded.  It is
+ * built ahead of time, and its tables are in {@link RegexParserTables}.  If you change
+ * the grammar, regenerate them with {@link #generateTablesSource()}.
+ * <P>
+ * Recently parsed expressions are cached, so parsing the same expression again returns
+ * the same {@link Matchable}.
  */
 class RegexParser {
-    private static final DfaState<Action> DFA = _buildParserDfa();
+    private static final int CACHE_SIZE = 256;
+    
+    //the parser DFA.  Rows are states, as in DfaTable.  The start state is at 0
+    private static final int[] BLOCK_OFFSETS = DfaSourceGenerator.decodeInts(RegexParserTables.BLOCK_OFFSETS);
+    private static final char[] CLASS_BLOCKS = DfaSourceGenerator.decodeChars(RegexParserTables.CLASS_BLOCKS);
+    private static final int[] TABLE = DfaSourceGenerator.decodeInts(RegexParserTables.TABLE);
+    private static final Action[] ACTIONS = _decodeActions(RegexParserTables.ACTIONS);
+    
+    //most recently used first.  Keys are the expression with a case flag prepended
+    private static final LinkedHashMap<String, Matchable> PARSE_CACHE = new LinkedHashMap<String, Matchable>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Matchable> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
 
     private final boolean m_caseI;
     private final String m_src;
@@ -43,7 +75,11 @@ class RegexParser {
     private char m_cprev, m_clast;
     private final StringBuilder m_symStack = new StringBuilder();
     private final ArrayList<Matchable> m_valStack = new ArrayList<>();
-    private ArrayList<DfaState<Action>> m_stateStack = new ArrayList<>();
+    private int[] m_stateStack = new int[16];
+    private int m_stateStackSize = 0;
+    //group number for each open parenthesis, or 0 for non-capturing groups
+    private final ArrayList<Integer> m_groupStack = new ArrayList<>();
+    private int m_groupCount = 0;
     
     public static CharRange DIGIT_CHARS = CharRange.DIGITS;
     public static CharRange NON_DIGIT_CHARS = DIGIT_CHARS.getComplement();
@@ -63,7 +99,22 @@ class RegexParser {
      */
     public static Matchable parse(String str, boolean caseIndependent)
     {
-        return (new RegexParser(str, caseIndependent))._parse();
+        final String key = (caseIndependent ? "I" : "S") + str;
+        Matchable ret;
+        synchronized(PARSE_CACHE)
+        {
+            ret = PARSE_CACHE.get(key);
+        }
+        if (ret == null)
+        {
+            //Matchables are immutable, so it doesn't matter if two threads do this at once
+            ret = (new RegexParser(str, caseIndependent))._parse();
+            synchronized(PARSE_CACHE)
+            {
+                PARSE_CACHE.put(key, ret);
+            }
+        }
+        return ret;
     }
     
     private RegexParser(String str, boolean caseI)
@@ -74,45 +125,53 @@ class RegexParser {
     
     private Matchable _parse()
     {
-        m_stateStack.clear();
         m_valStack.clear();
         m_symStack.setLength(0);
         m_readPos = 0;
-        m_stateStack.add(DFA);
+        m_stateStack[0] = 0;
+        m_stateStackSize = 1;
+        m_groupStack.clear();
+        m_groupCount = 0;
         final int srclen = m_src.length();
         int maxpos = 0;
         for (;;)
         {
             //Match up to the end of the recognized symbol stack.  If we can't do
             //this, then there's a bug and we've reduced something we shouldn't have
-            DfaState<Action> st = m_stateStack.get(m_stateStack.size()-1);
-            while(m_stateStack.size()-1 < m_symStack.length())
+            int st = m_stateStack[m_stateStackSize-1];
+            while(m_stateStackSize-1 < m_symStack.length())
             {
-                st = st.getNextState(m_symStack.charAt(m_stateStack.size()-1));
-                if (st == null)
+                st = _nextState(st, m_symStack.charAt(m_stateStackSize-1));
+                if (st < 0)
                 {
                     throw new RuntimeException("Internal bug encountered parsing regular expression: "+m_src);
                 }
-                m_stateStack.add(st);
+                if (m_stateStackSize >= m_stateStack.length)
+                {
+                    int[] newStack = new int[m_stateStack.length*2];
+                    System.arraycopy(m_stateStack, 0, newStack, 0, m_stateStackSize);
+                    m_stateStack = newStack;
+                }
+                m_stateStack[m_stateStackSize++] = st;
             }
             //get the reduction action at the end of the symbol stack
-            Action action = st.getMatch();
+            Action action = _getAction(st);
             
             //if we can lex and then reduce, do that instead
-            DfaState<Action> lexState = st.getNextState(':');
-            if (lexState != null && m_readPos < srclen)
+            int lexState = _nextState(st, ':');
+            if (lexState >= 0 && m_readPos < srclen)
             {
                 for (int i=m_readPos; i < srclen; ++i)
                 {
-                    lexState = lexState.getNextState(m_src.charAt(i));
-                    if (lexState == null)
+                    lexState = _nextState(lexState, m_src.charAt(i));
+                    if (lexState < 0)
                     {
                         break;
                     }
                     maxpos = i+1;
-                    if (lexState.getMatch() != null)
+                    if (_getAction(lexState) != null)
                     {
-                        action = lexState.getMatch();
+                        action = _getAction(lexState);
                         m_readPos = i+1;
                     }
                 }
@@ -153,13 +212,24 @@ class RegexParser {
                 ret = pat;
             }
         }
-        while(m_stateStack.size()-1 > m_symStack.length())
+        if (m_stateStackSize-1 > m_symStack.length())
         {
-            m_stateStack.remove(m_stateStack.size()-1);
+            m_stateStackSize = m_symStack.length()+1;
         }
         return ret;
     }
     
+    private static int _nextState(int row, char c)
+    {
+        return TABLE[row + 1 + CLASS_BLOCKS[BLOCK_OFFSETS[c>>DfaTable.BLOCK_BITS] + (c & ((1<<DfaTable.BLOCK_BITS)-1))]];
+    }
+    
+    private static Action _getAction(int row)
+    {
+        final int matchId = TABLE[row];
+        return (matchId < 0 ? null : ACTIONS[matchId]);
+    }
+    
     private char _lastChar()
     {
         return m_src.charAt(m_readPos-1);
@@ -220,6 +290,51 @@ class RegexParser {
         throw new RuntimeException("Invalid character escape \\"+m_src.substring(spos, spos+1));
     }
     
+    private Matchable _parseCount(Matchable pat)
+    {
+        int spos = m_readPos-1;
+        for (; spos > 0 && m_src.charAt(spos-1)!='{'; --spos);
+        final String counts = m_src.substring(spos, m_readPos-1);
+        final int comma = counts.indexOf(',');
+        try
+        {
+            if (comma < 0)
+            {
+                final int n = Integer.parseInt(counts);
+                return Pattern.repeat(pat, n, n);
+            }
+            final int min = Integer.parseInt(counts.substring(0, comma));
+            final int max = (comma+1 < counts.length() ? Integer.parseInt(counts.substring(comma+1)) : -1);
+            return Pattern.repeat(pat, min, max);
+        }
+        catch(IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid regular expression: \""+m_src+"\" has invalid repetition count {"+counts+"}", e);
+        }
+    }
+    
+    private Assertion _parseAssertion()
+    {
+        switch(_lastChar())
+        {
+            case '^':
+            return Assertion.START_OF_LINE;
+            
+            case '$':
+            return Assertion.END_OF_LINE;
+            
+            case 'A':
+            return Assertion.START_OF_INPUT;
+            
+            case 'z':
+            return Assertion.END_OF_INPUT;
+            
+            case 'b':
+            return Assertion.WORD_BOUNDARY;
+        }
+        return Assertion.NOT_WORD_BOUNDARY;
+    }
+    
     private CharRange _parseClassEscape()
     {
         int spos = m_readPos-1;
@@ -247,6 +362,85 @@ class RegexParser {
         throw new RuntimeException("Invalid class escape \\"+m_src.substring(spos, spos+1));
     }
     
+    /**
+     * Build the parser's DFA table from its grammar
+     * <P>
+     * This is how the tables in {@link RegexParserTables} are made
+     * 
+     * @return the table
+     */
+    static DfaTable<Action> buildParserTable()
+    {
+        return new DfaTable<>(_buildParserDfa());
+    }
+    
+    /**
+     * Generate the source for {@link RegexParserTables}
+     * <P>
+     * Run this after changing the grammar, and replace RegexParserTables.java with the output
+     * 
+     * @return the Java source for RegexParserTables
+     */
+    static String generateTablesSource()
+    {
+        final DfaTable<Action> table = buildParserTable();
+        final StringBuilder out = new StringBuilder();
+        try
+        {
+            out.append("package ").append(RegexParser.class.getPackage().getName()).append(";\n\n");
+            out.append("/**\n");
+            out.append(" * Pre-built DFA tables for {@link RegexParser}, so its grammar doesn't have to be built at runtime\n");
+            out.append(" * <P>\n");
+            out.append(" * Generated by RegexParser.generateTablesSource().  Do not edit.\n");
+            out.append(" */\n");
+            out.append("final class RegexParserTables\n{\n");
+            out.append("    //names of the RegexParser.Action for each match ID\n");
+            out.append("    static final String[] ACTIONS = {");
+            final List<Action> actions = table.getResultsById();
+            for (int i=0; i<actions.size(); ++i)
+            {
+                out.append(i > 0 ? ",\n        " : "\n        ");
+                final Action action = actions.get(i);
+                if (action == null)
+                {
+                    out.append("null");
+                }
+                else
+                {
+                    out.append('"').append(action.name()).append('"');
+                }
+            }
+            out.append("};\n");
+            out.append("    static final String[] BLOCK_OFFSETS = {");
+            DfaSourceGenerator.appendInts(out, table.getBlockOffsets());
+            out.append("};\n");
+            out.append("    static final String[] CLASS_BLOCKS = {");
+            DfaSourceGenerator.appendChars(out, table.getClassBlocks());
+            out.append("};\n");
+            out.append("    static final String[] TABLE = {");
+            DfaSourceGenerator.appendInts(out, table.getTable());
+            out.append("};\n\n");
+            out.append("    private RegexParserTables()\n    {\n    }\n");
+            out.append("}\n");
+        }
+        catch(IOException e)
+        {
+            //StringBuilder doesn't do this
+            throw new RuntimeException(e);
+        }
+        return out.toString();
+    }
+    
+    private static Action[] _decodeActions(String[] names)
+    {
+        Action[] ret = new Action[names.length];
+        for (int i=0; i<names.length; ++i)
+        {
+            ret[i] = (names[i] == null ? null : Action.valueOf(names[i]));
+        }
+        return ret;
+    }
+    
     //Build a DFA that matches a parse stack from the bottom to produce the next LR(1) action to perform
     //The stack is of the form XXX:ccc, where XXX are previously recognized symbols, and ccc are all the
     //remaining characters in the input.
@@ -257,136 +451,351 @@ class RegexParser {
         Pattern Spos = Pattern.maybeRepeat(Pattern.maybeRepeat(CharRange.anyOf("SCA|")).then("("));
         
         //S: C | S '|' C
-        bld.addPattern(Spos.then("C"), x -> x._push("S", x._pop(1)));
-        bld.addPattern(Spos.then("S:|"), x -> x._push("|", null));
-        bld.addPattern(Spos.then("S|C"), x -> {
-            Matchable p1 = x._pop(2);
-            Matchable p2 = x._pop(1);
-            x._push("S", Pattern.anyOf(p1,p2));
-        });
+        bld.addPattern(Spos.then("C"), Action.S_FROM_C);
+        bld.addPattern(Spos.then("S:|"), Action.LEX_BAR);
+        bld.addPattern(Spos.then("S|C"), Action.S_FROM_S_BAR_C);
         Pattern Cpos = Spos.thenMaybe("S|");
         
         //C: e | C A
-        bld.addPattern(Cpos, x -> x._push("C", Pattern.EMPTY));
-        bld.addPattern(Cpos.then("CA"),  x -> {
-            Matchable p2 = x._pop(1);
-            Matchable p1 = x._pop(1);
-            x._push("C", Pattern.match(p1).then(p2));
-        });
+        bld.addPattern(Cpos, Action.C_FROM_EMPTY);
+        bld.addPattern(Cpos.then("CA"), Action.C_FROM_C_A);
         Pattern Apos = Cpos.then("C");
         
         //A: A? | A+ | A*
-        bld.addPattern(Apos.then("A:?"), x -> x._push("A", Pattern.maybe(x._pop(1))));
-        bld.addPattern(Apos.then("A:+"), x -> x._push("A", Pattern.repeat(x._pop(1))));
-        bld.addPattern(Apos.then("A:*"), x -> x._push("A", Pattern.maybeRepeat(x._pop(1))));
+        bld.addPattern(Apos.then("A:?"), Action.A_FROM_A_QUESTION);
+        bld.addPattern(Apos.then("A:+"), Action.A_FROM_A_PLUS);
+        bld.addPattern(Apos.then("A:*"), Action.A_FROM_A_STAR);
+        
+        //A: A{n} | A{n,} | A{n,m}
+        bld.addPattern(Apos.then("A:{").then(Pattern.DIGITS).thenMaybe(Pattern.match(",").thenMaybe(Pattern.DIGITS)).then("}"),
+                Action.A_FROM_A_COUNT);
         
         //A: GROUP
-        bld.addPattern(Apos.then(":("), x -> x._push("(",null));
-        bld.addPattern(Apos.then("(S:)"), x -> x._push("A",x._pop(2)));
+        bld.addPattern(Apos.then(":("), Action.LEX_OPEN);
+        bld.addPattern(Apos.then(":(?:"), Action.LEX_OPEN_NONCAPTURING);
+        bld.addPattern(Apos.then("(S:)"), Action.A_FROM_GROUP);
         
-        //A: literal | .
-        bld.addPattern(Apos.then(":").then(CharRange.builder().addChars(".()[]+*?|\\").invert().build()), x-> {
-            CharRange range;
-            char c = x._lastChar();
-            if (!x.m_caseI)
-            {
-                range = CharRange.single(c);
-            }
-            else
-            {
-                char lc = Character.toLowerCase(c);
-                char uc = Character.toUpperCase(c);
-                if (lc == uc && lc == c)
-                {
-                    range = CharRange.single(c);
-                }
-                else
-                {
-                    range = CharRange.builder().addChar(c).addChar(lc).addChar(uc).build();
-                }
-            }
-            x._push( "A" , range);
-        });
-        bld.addPattern(Apos.then(":."), x->x._push("A", CharRange.ALL));
+        //A: literal | . | assertion
+        bld.addPattern(Apos.then(":").then(CharRange.builder().addChars(".()[]+*?|\\^$").invert().build()), Action.A_FROM_LITERAL);
+        bld.addPattern(Apos.then(":."), Action.A_FROM_DOT);
+        bld.addPattern(Apos.then(":").then(Pattern.anyOf(CharRange.anyOf("^$"), Pattern.match("\\").then(CharRange.anyOf("AzbB")))),
+                Action.A_FROM_ASSERTION);
 
         final Pattern charEscape = Pattern.match(":\\").then(Pattern.anyOf(
                 Pattern.match("x").then(CharRange.HEXDIGITS).then(CharRange.HEXDIGITS),
                 Pattern.match("u").then(CharRange.HEXDIGITS).then(CharRange.HEXDIGITS).then(CharRange.HEXDIGITS).then(CharRange.HEXDIGITS),
                 Pattern.match("c").then(CharRange.builder().addRange('a', 'z').addRange('A','Z').build()),
-                CharRange.builder().addChars("xucdDwWsS").invert().build()));
+                CharRange.builder().addChars("xucdDwWsSAzbB").invert().build()));
         final Pattern classEscape = Pattern.match(":\\").then(Pattern.anyCharIn("dDsSwW"));
         
-        bld.addPattern(Apos.then(charEscape), x -> x._push("A",CharRange.single(x._parseCharEscape())));
-        bld.addPattern(Apos.then(classEscape), x -> x._push("A",x._parseClassEscape()));
+        bld.addPattern(Apos.then(charEscape), Action.A_FROM_CHAR_ESCAPE);
+        bld.addPattern(Apos.then(classEscape), Action.A_FROM_CLASS_ESCAPE);
         
         //A: [R] | [^R]
-        bld.addPattern(Apos.then(":[^"), x -> {
-            x.m_charBuilder.clear();
-            x._push("[^", null);            
-        });
-        bld.addPattern(Apos.then(":["), x -> {
-            x.m_charBuilder.clear();
-            x._push("[", null);            
-        });
-        bld.addPattern(Apos.then("[R:]"), x -> {
-            x._pop(2);
-            if (x.m_caseI)
-            {
-                x.m_charBuilder.expandCases();
-            }
-            x._push("A", x.m_charBuilder.build());
-        });
-        bld.addPattern(Apos.then("[^R:]"), x -> {
-            x._pop(3);
-            if (x.m_caseI)
-            {
-                x.m_charBuilder.expandCases();
-            }
-            x._push("A", x.m_charBuilder.invert().build());
-        });
+        bld.addPattern(Apos.then(":[^"), Action.LEX_OPEN_NEGATED_CLASS);
+        bld.addPattern(Apos.then(":["), Action.LEX_OPEN_CLASS);
+        bld.addPattern(Apos.then("[R:]"), Action.A_FROM_CLASS);
+        bld.addPattern(Apos.then("[^R:]"), Action.A_FROM_NEGATED_CLASS);
         Pattern Rpos = Apos.then(Pattern.anyOf("[^", "["));
         
         //R: e | R classEscape | R c | R c - c 
-        bld.addPattern(Rpos, x -> x._push("R", null));
-        bld.addPattern(Rpos.then("R").then(classEscape), x -> {
-            x.m_charBuilder.addRange(x._parseClassEscape());
-            x._pop(0);
-        });
-        bld.addPattern(Rpos.then("Rc"), x -> {
-            x._pop(1);
-            x.m_charBuilder.addRange(x.m_clast, x.m_clast);
-        });
-        bld.addPattern(Rpos.then("Rc:-"), x -> x._push("-", null));
-        bld.addPattern(Rpos.then("Rc-c"), x -> {
-            x._pop(3);
-            if (x.m_clast < x.m_cprev)
-            {
-                x.m_charBuilder.addRange(x.m_clast, x.m_cprev);
-            }
-            else
-            {
-                x.m_charBuilder.addRange(x.m_cprev, x.m_clast);
-            }
-        });
+        bld.addPattern(Rpos, Action.R_FROM_EMPTY);
+        bld.addPattern(Rpos.then("R").then(classEscape), Action.R_FROM_R_CLASS_ESCAPE);
+        bld.addPattern(Rpos.then("Rc"), Action.R_FROM_R_C);
+        bld.addPattern(Rpos.then("Rc:-"), Action.LEX_DASH);
+        bld.addPattern(Rpos.then("Rc-c"), Action.R_FROM_R_C_DASH_C);
         Pattern cpos = Rpos.then("R").thenMaybe("c-");
         
         //class chars
-        bld.addPattern(cpos.then(":").then(CharRange.builder().addChars("-[]\\").invert().build()), x->{
-            x.m_cprev = x.m_clast;
-            x.m_clast = x._lastChar();
-            x._push("c", null);
-        });
-        bld.addPattern(cpos.then(charEscape), x->{
-            x.m_cprev = x.m_clast;
-            x.m_clast = x._parseCharEscape();
-            x._push("c", null);
-        });
+        bld.addPattern(cpos.then(":").then(CharRange.builder().addChars("-[]\\").invert().build()), Action.LEX_CLASS_CHAR);
+        bld.addPattern(cpos.then(charEscape), Action.LEX_CLASS_CHAR_ESCAPE);
         
         return bld.build(null);
     }
 
-    private static interface Action extends Serializable
+    //Parser actions.  These are enum constants so that they can be identified by name in
+    //the pre-built tables
+    enum Action
     {
-        void apply(RegexParser parser);
+        S_FROM_C
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("S", x._pop(1));
+            }
+        },
+        LEX_BAR
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("|", null);
+            }
+        },
+        S_FROM_S_BAR_C
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                Matchable p2 = x._pop(2);
+                Matchable p1 = x._pop(1);
+                //keep the alternatives in order, so capture groups prefer the first one
+                x._push("S", Pattern.anyOf(p1,p2));
+            }
+        },
+        C_FROM_EMPTY
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("C", Pattern.EMPTY);
+            }
+        },
+        C_FROM_C_A
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                Matchable p2 = x._pop(1);
+                Matchable p1 = x._pop(1);
+                x._push("C", Pattern.match(p1).then(p2));
+            }
+        },
+        A_FROM_A_QUESTION
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A", Pattern.maybe(x._pop(1)));
+            }
+        },
+        A_FROM_A_PLUS
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A", Pattern.repeat(x._pop(1)));
+            }
+        },
+        A_FROM_A_STAR
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A", Pattern.maybeRepeat(x._pop(1)));
+            }
+        },
+        A_FROM_A_COUNT
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A", x._parseCount(x._pop(1)));
+            }
+        },
+        LEX_OPEN
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_groupStack.add(++x.m_groupCount);
+                x._push("(",null);
+            }
+        },
+        LEX_OPEN_NONCAPTURING
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_groupStack.add(0);
+                x._push("(",null);
+            }
+        },
+        A_FROM_GROUP
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                Matchable pat = x._pop(2);
+                int group = x.m_groupStack.remove(x.m_groupStack.size()-1);
+                x._push("A", group > 0 ? Pattern.capture(group, pat) : pat);
+            }
+        },
+        A_FROM_LITERAL
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                CharRange range;
+                char c = x._lastChar();
+                if (!x.m_caseI)
+                {
+                    range = CharRange.single(c);
+                }
+                else
+                {
+                    char lc = Character.toLowerCase(c);
+                    char uc = Character.toUpperCase(c);
+                    if (lc == uc && lc == c)
+                    {
+                        range = CharRange.single(c);
+                    }
+                    else
+                    {
+                        range = CharRange.builder().addChar(c).addChar(lc).addChar(uc).build();
+                    }
+                }
+                x._push( "A" , range);
+            }
+        },
+        A_FROM_DOT
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A", CharRange.ALL);
+            }
+        },
+        A_FROM_ASSERTION
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A", x._parseAssertion());
+            }
+        },
+        A_FROM_CHAR_ESCAPE
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A",CharRange.single(x._parseCharEscape()));
+            }
+        },
+        A_FROM_CLASS_ESCAPE
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("A",x._parseClassEscape());
+            }
+        },
+        LEX_OPEN_NEGATED_CLASS
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_charBuilder.clear();
+                x._push("[^", null);
+            }
+        },
+        LEX_OPEN_CLASS
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_charBuilder.clear();
+                x._push("[", null);
+            }
+        },
+        A_FROM_CLASS
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._pop(2);
+                if (x.m_caseI)
+                {
+                    x.m_charBuilder.expandCases();
+                }
+                x._push("A", x.m_charBuilder.build());
+            }
+        },
+        A_FROM_NEGATED_CLASS
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._pop(3);
+                if (x.m_caseI)
+                {
+                    x.m_charBuilder.expandCases();
+                }
+                x._push("A", x.m_charBuilder.invert().build());
+            }
+        },
+        R_FROM_EMPTY
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("R", null);
+            }
+        },
+        R_FROM_R_CLASS_ESCAPE
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_charBuilder.addRange(x._parseClassEscape());
+                x._pop(0);
+            }
+        },
+        R_FROM_R_C
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._pop(1);
+                x.m_charBuilder.addRange(x.m_clast, x.m_clast);
+            }
+        },
+        LEX_DASH
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._push("-", null);
+            }
+        },
+        R_FROM_R_C_DASH_C
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x._pop(3);
+                if (x.m_clast < x.m_cprev)
+                {
+                    x.m_charBuilder.addRange(x.m_clast, x.m_cprev);
+                }
+                else
+                {
+                    x.m_charBuilder.addRange(x.m_cprev, x.m_clast);
+                }
+            }
+        },
+        LEX_CLASS_CHAR
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_cprev = x.m_clast;
+                x.m_clast = x._lastChar();
+                x._push("c", null);
+            }
+        },
+        LEX_CLASS_CHAR_ESCAPE
+        {
+            @Override
+            void apply(RegexParser x)
+            {
+                x.m_cprev = x.m_clast;
+                x.m_clast = x._parseCharEscape();
+                x._push("c", null);
+            }
+        };
+        
+        abstract void apply(RegexParser parser);
     }
 }
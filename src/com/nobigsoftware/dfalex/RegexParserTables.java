@@ -0,0 +1,367 @@
+package com.nobigsoftware.dfalex;
+
+/**
+ * Pre-built DFA tables for {@link RegexParser}, so its grammar doesn't have to be built at runtime
+ * <P>
+ * Generated by RegexParser.generateTablesSource().  Do not edit.
+ */
+final class RegexParserTables
+{
+    //names of the RegexParser.Action for each match ID
+    static final String[] ACTIONS = {
+        "S_FROM_C",
+        "LEX_BAR",
+        "S_FROM_S_BAR_C",
+        "C_FROM_EMPTY",
+        "C_FROM_C_A",
+        "A_FROM_A_QUESTION",
+        "A_FROM_A_PLUS",
+        "A_FROM_A_STAR",
+        "A_FROM_A_COUNT",
+        "LEX_OPEN",
+        "LEX_OPEN_NONCAPTURING",
+        "A_FROM_GROUP",
+        "A_FROM_LITERAL",
+        "A_FROM_DOT",
+        "A_FROM_ASSERTION",
+        "A_FROM_CHAR_ESCAPE",
+        "A_FROM_CLASS_ESCAPE",
+        "LEX_OPEN_NEGATED_CLASS",
+        "LEX_OPEN_CLASS",
+        "A_FROM_CLASS",
+        "A_FROM_NEGATED_CLASS",
+        "R_FROM_EMPTY",
+        "R_FROM_R_CLASS_ESCAPE",
+        "R_FROM_R_C",
+        "LEX_DASH",
+        "R_FROM_R_C_DASH_C",
+        "LEX_CLASS_CHAR",
+        "LEX_CLASS_CHAR_ESCAPE"};
+    static final String[] BLOCK_OFFSETS = {
+        "\000\000\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"
+        + "\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100\000\u0100"};
+    static final String[] CLASS_BLOCKS = {
+        "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\001\000\000\000\002\003\004\005\006\007\010\000"
+        + "\011\011\011\011\011\011\011\011\011\011\012\000\000\000\000\013"
+        + "\000\014\015\016\017\020\020\021\021\021\021\021\021\021\021\021"
+        + "\021\021\022\023\021\021\021\024\021\021\021\025\026\027\030\000"
+        + "\000\020\015\031\017\020\020\021\021\021\021\021\021\021\021\021"
+        + "\021\021\021\024\021\032\021\024\033\021\034\035\036\037\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"
+        + "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000"};
+    static final String[] TABLE = {
+        "\000\003\uffff\uffff\uffff\uffff\000\000\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff\000B"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000c\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\000\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff"
+        + "\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000!\uffff\uffff\000\000\uffff\uffff\uffff\uffff\000\204\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\245\uffff\uffff\000\306"
+        + "\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff"
+        + "\000\347\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\000\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0108\uffff\uffff"
+        + "\000!\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u0129\uffff\uffff\000\003\uffff\uffff\uffff\uffff\000\000"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000!\uffff\uffff\000B\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u014a\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff\uffff\uffff\000\u016b\000\u018c"
+        + "\000\u01ad\uffff\uffff\uffff\uffff\uffff\uffff\000\u016b\000\u016b\000\u01ce\000\u016b"
+        + "\000\u016b\uffff\uffff\000\u016b\000\u016b\000\u016b\000\u016b\000\u016b\000\u016b"
+        + "\000\u016b\000\u016b\000\u016b\000\u01ef\000\u0210\uffff\uffff\000\u018c\000\u016b"
+        + "\000\u016b\000\u016b\000\u016b\000\u016b\uffff\uffff\000\u016b\000\004\uffff\uffff"
+        + "\uffff\uffff\000\000\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u0231\uffff\uffff\000!\uffff\uffff\000!\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff\000\025"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u0252\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u0273\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0294"
+        + "\uffff\uffff\000\003\uffff\uffff\uffff\uffff\000\000\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff"
+        + "\000\u02b5\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\000\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u02d6\uffff\uffff\000!"
+        + "\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u0129\uffff\uffff\000\014\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\016\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\011\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u02f7\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\015\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\022"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u0318\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339"
+        + "\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339\000\u018c\000\u018c\000\u0339"
+        + "\000\u035a\000\u0339\000\u0339\000\u0339\000\u035a\000\u035a\000\u0339\000\u0339"
+        + "\000\u0339\000\u0339\000\u037b\000\u039c\000\u03bd\000\u018c\000\u0339\000\u0339"
+        + "\000\u0339\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u03de\000\u03ff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0420\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0441"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0462\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0483\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\000\025\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u04a4\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\001\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\002\uffff\uffff\uffff\uffff"
+        + "\000\204\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\245\uffff\uffff\000\306\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000!\uffff\uffff\000\347\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000!\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u04c5\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0294\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u04e6\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\021\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\017\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\020\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339\000\u0339"
+        + "\000\u0339\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0339\000\u0339\000\u0339"
+        + "\000\u0339\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0507\uffff\uffff"
+        + "\uffff\uffff\000\u0507\000\u0507\000\u0507\000\u0507\000\u0507\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0507\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0528"
+        + "\uffff\uffff\uffff\uffff\000\u0528\000\u0528\000\u0528\000\u0528\000\u0528\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0528"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\007\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\006"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\005\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\000\u0549\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\000\u056a\000\u056a\uffff\uffff\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\uffff\uffff\000\u058b\000\u05ac\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\000\u056a\000\u056a\000\u056a\000\027\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\000\u05cd\uffff\uffff\uffff\uffff\000\u05ee\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u060f"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0483\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\013\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\012\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u03bd\uffff\uffff\uffff\uffff\000\u03bd\000\u03bd\000\u03bd\000\u03bd"
+        + "\000\u03bd\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u03bd\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u0339\uffff\uffff\uffff\uffff\000\u0339\000\u0339\000\u0339"
+        + "\000\u0339\000\u0339\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u0339\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u0630\uffff\uffff\uffff\uffff\000\u0549\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u0651\000\032\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0672\000\u0672\000\u0672\000\u0672"
+        + "\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672"
+        + "\uffff\uffff\uffff\uffff\000\u0672\000\u0693\000\u0672\000\u0672\000\u0672\000\u0693"
+        + "\000\u0693\000\u0672\000\u0672\000\u0672\000\u0672\000\u06b4\000\u06d5\000\u06f6"
+        + "\uffff\uffff\000\u0672\000\u0672\000\u0672\000\023\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u0717\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0738"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0759\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\uffff\uffff"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\uffff\uffff\000\u058b\000\u077a"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\u0630\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u0651\000\010\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\033\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\000\026\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672"
+        + "\000\u0672\000\u0672\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0672\000\u0672"
+        + "\000\u0672\000\u0672\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u079b"
+        + "\uffff\uffff\uffff\uffff\000\u079b\000\u079b\000\u079b\000\u079b\000\u079b\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u079b"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u07bc\uffff\uffff\uffff\uffff\000\u07bc\000\u07bc\000\u07bc\000\u07bc\000\u07bc"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u07bc\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\uffff\uffff"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\uffff\uffff\000\u07dd\uffff\uffff"
+        + "\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a\000\u056a"
+        + "\000\031\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\000\030\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\000\024\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u06f6\uffff\uffff\uffff\uffff"
+        + "\000\u06f6\000\u06f6\000\u06f6\000\u06f6\000\u06f6\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u06f6\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0672\uffff\uffff"
+        + "\uffff\uffff\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\uffff\uffff\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0672\uffff\uffff"
+        + "\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\uffff\000\u0672\000\u0672"
+        + "\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672\000\u0672"
+        + "\000\u0672\000\u0672\uffff\uffff\uffff\uffff\000\u0672\uffff\uffff\000\u0672\000\u0672"
+        + "\000\u0672\uffff\uffff\uffff\uffff\000\u0672\000\u0672\000\u0672\000\u0672\000\u06b4"
+        + "\000\u06d5\000\u06f6\uffff\uffff\000\u0672\000\u0672\000\u0672"};
+
+    private RegexParserTables()
+    {
+    }
+}
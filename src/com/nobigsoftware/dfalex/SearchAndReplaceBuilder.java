@@ -18,6 +18,7 @@ package com.nobigsoftware.dfalex;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import com.nobigsoftware.util.BuilderCache;
@@ -159,6 +160,63 @@ public class SearchAndReplaceBuilder
         return (str -> searcher.findAndReplace(str, replacer));
     }
     
+    /**
+     * Build a search and replace function that uses multiple threads for large strings
+     * <P>
+     * The function produces the same results as {@link #buildStringReplacer()}.  See
+     * {@link StringSearcher#findAndReplaceParallel(String, ReplacementSelector, ForkJoinPool)}.
+     * 
+     * @param pool the ForkJoinPool to use
+     * @return The search+replace function
+     */
+    public Function<String,String> buildParallelStringReplacer(ForkJoinPool pool)
+    {
+        if (m_dfaMemo == null)
+        {
+            m_dfaMemo = m_dfaBuilder.build(SearchAndReplaceBuilder::ambiguityResolver);
+        }
+        if (m_reverseFinderMemo == null)
+        {
+            m_reverseFinderMemo = m_dfaBuilder.buildReverseFinder();
+        }
+        final StringSearcher<Integer> searcher = new StringSearcher<>(m_dfaMemo, m_reverseFinderMemo);
+        final StringSearcherReplacer replacer = new StringSearcherReplacer(m_replacements);
+        return (str -> searcher.findAndReplaceParallel(str, replacer, pool));
+    }
+    
+    /**
+     * Build a search and replace function that reads from a {@link java.io.Reader} and
+     * writes to a {@link java.io.Writer}
+     * <P>
+     * Matches are selected by the same rules as {@link #buildStringReplacer()}.  Unchanged
+     * text is written as soon as it's known not to be part of a match, so the amount of memory
+     * used depends only on the patterns, not on the size of the input.  Note, though, that
+     * an unterminated match for a pattern that can match unbounded strings, like a
+     * comment without an end, needs lookahead all the way to the end of the input.
+     *
+     * @return The search+replace function
+     */
+    public StreamReplacer buildStreamReplacer()
+    {
+        if (m_dfaMemo == null)
+        {
+            m_dfaMemo = m_dfaBuilder.build(SearchAndReplaceBuilder::ambiguityResolver);
+        }
+        return new DfaStreamReplacer<>(m_dfaMemo, new StringSearcherReplacer(m_replacements));
+    }
+    
+    /**
+     * Build a stream search and replace function from a DFA and replacer
+     * 
+     * @param matcher A DFA that matches the patterns being searched for
+     * @param replacer the replacer
+     * @return The search+replace function
+     */
+    public static <MR> StreamReplacer buildStreamReplacerFromDfa(DfaState<MR> matcher, ReplacementSelector<? super MR> replacer)
+    {
+        return new DfaStreamReplacer<>(matcher, replacer);
+    }
+    
     /**
      * Build a search and replace function from a searcher and replacer
      * 
@@ -15,18 +15,22 @@
  */
 package com.nobigsoftware.dfalex;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-class SerializableDfa<RESULT> implements Serializable
+/**
+ * A built DFA, with each state stored as a {@link PackedTreeDfaPlaceholder}
+ */
+class SerializableDfa<RESULT> implements BuiltDfa<RESULT>
 {
 	private static final long serialVersionUID = 1L;
 	
 	private final ArrayList<DfaStatePlaceholder<RESULT>> m_dfaStates;
 	private final int[] m_startStateNumbers;
 	
-	private transient List<DfaState<RESULT>> m_startStatesMemo;
+	//Written once, after all the states are complete.  The volatile write publishes
+	//the whole state graph to threads that read it
+	private transient volatile List<DfaState<RESULT>> m_startStatesMemo;
 
 	public SerializableDfa(RawDfa<RESULT> rawDfa)
 	{
@@ -40,25 +44,94 @@ class SerializableDfa<RESULT> implements Serializable
 		}
 	}
 	
-	public synchronized List<DfaState<RESULT>> getStartStates()
+	/**
+	 * Get the start states, creating the final form states on first use
+	 * <P>
+	 * This doesn't lock after the first call, so any number of threads can share a DFA.
+	 * Only the first callers synchronize, to make sure that the states are created only once.
+	 * <P>
+	 * If the start states were already created by {@link #getLazyStartStates()}, those
+	 * are returned.
+	 */
+	@Override
+	public List<DfaState<RESULT>> getStartStates()
+	{
+		List<DfaState<RESULT>> ret = m_startStatesMemo;
+		if (ret == null)
+		{
+			ret = _createStartStates(false);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get start states that create the final form states only as they are reached
+	 * <P>
+	 * This is much faster than {@link #getStartStates()} for large DFAs, and only uses memory
+	 * for the states that are actually used.  In exchange, each transition goes through
+	 * the state's placeholder, which makes matching a little slower.
+	 * <P>
+	 * If the start states were already created by {@link #getStartStates()}, those
+	 * are returned.
+	 */
+	@Override
+	public List<DfaState<RESULT>> getLazyStartStates()
+	{
+		List<DfaState<RESULT>> ret = m_startStatesMemo;
+		if (ret == null)
+		{
+			ret = _createStartStates(true);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Create all the states that haven't been created yet.
+	 * <P>
+	 * Lazy DFAs can do this in a background thread to get the cost out of the way.  Threads
+	 * matching at the same time will use the states as they become ready.
+	 */
+	@Override
+	public void prewarm()
+	{
+		getLazyStartStates();
+		for (DfaStatePlaceholder<RESULT> state : m_dfaStates)
+		{
+			state.materialize();
+		}
+	}
+	
+	private synchronized List<DfaState<RESULT>> _createStartStates(boolean lazy)
 	{
-		if (m_startStatesMemo == null)
+		List<DfaState<RESULT>> ret = m_startStatesMemo;
+		if (ret == null)
 		{
 	        final int len = m_dfaStates.size();
-	        for (int i=0;i<len;++i)
+	        if (lazy)
 	        {
-	            m_dfaStates.get(i).createDelegate(i, m_dfaStates);
+	            for (int i=0;i<len;++i)
+	            {
+	                m_dfaStates.get(i).prepareLazyDelegate(i, m_dfaStates);
+	            }
 	        }
-	        for (int i=0;i<len;++i)
+	        else
 	        {
-	            m_dfaStates.get(i).fixPlaceholderReferences();
+	            for (int i=0;i<len;++i)
+	            {
+	                m_dfaStates.get(i).createDelegate(i, m_dfaStates);
+	            }
+	            for (int i=0;i<len;++i)
+	            {
+	                m_dfaStates.get(i).fixPlaceholderReferences();
+	            }
 	        }
-			m_startStatesMemo = new ArrayList<>(m_startStateNumbers.length);
+			ret = new ArrayList<>(m_startStateNumbers.length);
 			for (int startState : m_startStateNumbers)
 			{
-				m_startStatesMemo.add(m_dfaStates.get(startState).resolvePlaceholder());
+				ret.add(m_dfaStates.get(startState).resolvePlaceholder());
 			}
+			m_startStatesMemo = ret;
 		}
-		return m_startStatesMemo;
+		return ret;
 	}
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * A search and replace function that works on streams
+ * <P>
+ * {@link SearchAndReplaceBuilder#buildStreamReplacer()} produces these.  Unchanged text is
+ * written to the output as soon as it is known not to be part of a match, and only the
+ * lookahead required to find the current match is kept in memory.
+ * <P>
+ * Implementations are thread-safe.
+ */
+public interface StreamReplacer
+{
+    /**
+     * Read all the text from a Reader, replace all the pattern occurrences, and write the result
+     * to a Writer.
+     * <P>
+     * Neither the reader nor the writer is closed.  The writer is not flushed.
+     * 
+     * @param in    the text to search
+     * @param out   the text with replacements is written here
+     * @throws IOException if reading or writing fails
+     */
+    void replace(Reader in, Writer out) throws IOException;
+}
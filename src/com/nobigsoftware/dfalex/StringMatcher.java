@@ -15,15 +15,21 @@
  */
 package com.nobigsoftware.dfalex;
 
+import java.util.NoSuchElementException;
+
 /**
  * This class implements fast matching in a string using DFAs
  * <P>
- * Substrings matching patterns are discoverd with the {@link #findNext(DfaState)} and
- * {@link #matchAt(DfaState, int)} methods, both of which take a DFA start state for the
- * patterns to find.
+ * Substrings matching patterns are discoverd with the {@link #findNext(DfaState)},
+ * {@link #findAll(DfaState)}, and {@link #matchAt(DfaState, int)} methods, all of which take
+ * a DFA start state for the patterns to find.
  * <P>
  * NOTE that you don't have to pass the same state every time -- different calls with the
  * same matcher can search for different patterns and return different kinds of results.
+ * However, when repeated calls with the same state start to rescan the same characters, the
+ * matcher remembers where the DFA can't match, so that the total work stays linear.  That
+ * memory is dropped whenever a different state is passed or the positions are set, so if
+ * you interleave calls with two DFAs, use a separate matcher for each one.
  * <P>
  * 3 pointers are maintained in the string:
  * <UL><LI>
@@ -36,21 +42,20 @@ package com.nobigsoftware.dfalex;
  *  The SearchLimit is highest position to search.  This is initially set to the source string
  *  length.  No characters at positions &gt;= SearchLimit will be included in matches
  * </LI></UL>
+ * <P>
+ * Patterns with {@link Assertion}s see the characters around a match, including ones
+ * before the LastMatchEnd position.  The SearchLimit counts as the end of the input.
  */
 public class StringMatcher
 {
-    private static final int NMM_SIZE = 40;
     private final String m_src;
     private int m_lastMatchStart = 0;
     private int m_lastMatchEnd = 0;
     private int m_limit;
     
-    //non-matching memo
-    //For all x >= m_nmmStart, whenever you're in m_nmmState[x] at position m_nmmPositions[x],
-    //you will fail to find a match 
-    private int m_nmmStart = NMM_SIZE;
-    private final int[] m_nmmPositions = new int[NMM_SIZE];
-    private final DfaState<?>[] m_nmmStates = (DfaState<?>[]) new DfaState[NMM_SIZE];
+    //the DFA that the finder's dead states are for
+    private DfaState<?> m_memoState = null;
+    private final LongestMatchFinder m_finder = new LongestMatchFinder();
     
     /**
      * Create a new StringMatcher.
@@ -85,7 +90,7 @@ public class StringMatcher
         m_lastMatchStart = lastMatchStart;
         m_lastMatchEnd = lastMatchEnd;
         m_limit = searchLimit;
-        m_nmmStart = NMM_SIZE;
+        _resetMemo(null);
     }
     
     /**
@@ -161,6 +166,34 @@ public class StringMatcher
         return null;
     }
     
+    /**
+     * Find all the non-overlapping matches from the LastMatchEnd position to the search limit
+     * <P>
+     * The matches returned are the same ones that repeated calls to {@link #findNext(DfaState)}
+     * would find:  at each step, the leftmost match is selected, and the longest one if there
+     * are several that start at the same position.
+     * <P>
+     * The returned iterator remembers (position, state) pairs from which the DFA can't match
+     * from the very first search, so that no pair is processed more than once.  The time taken
+     * is therefore linear in the length of the string, even when the input is crafted to
+     * make every start position scan to the end.  This makes it suitable for untrusted input.
+     * <P>
+     * This matcher's positions are not changed by the iterator.
+     * 
+     * @param <MATCHRESULT> the type of results produced by the DFA  
+     * @param state The start state of the DFA for the patterns you want to find
+     * @return a {@link StringMatchIterator} that returns all the matches
+     */
+    public <MATCHRESULT> StringMatchIterator<MATCHRESULT> findAll(DfaState<MATCHRESULT> state)
+    {
+        StringMatcher matcher = new StringMatcher(m_src);
+        matcher.setPositions(m_lastMatchEnd, m_lastMatchEnd, m_limit);
+        //start with the memo on
+        matcher.m_memoState = state;
+        matcher.m_finder.startMemo();
+        return new MatchIterator<>(matcher, state, m_lastMatchEnd);
+    }
+    
     /**
      * Find the longest match starting at a given position.
      * <P>
@@ -177,71 +210,28 @@ public class StringMatcher
      */
     public <MATCHRESULT> MATCHRESULT matchAt(DfaState<MATCHRESULT> state, final int startPos)
     {
-        MATCHRESULT ret = null; 
-        int newNmmSize = 0;
-        int writeNmmNext = startPos + 4;
-
-        POSLOOP:
-        for(int pos = startPos; pos < m_limit ;)
+        if (state != m_memoState)
         {
-            state = state.getNextState(m_src.charAt(pos));
-            pos++;
-            if (state == null)
-            {
-                break;
-            }
-            MATCHRESULT match = state.getMatch();
-            if (match != null)
-            {
-                ret = match;
-                m_lastMatchEnd = pos;
-                newNmmSize = 0;
-                continue;
-            }
-            
-            //Check and update the non-matching memo, to accelerate processing long sequences
-            //of non-accepting states at multiple positions
-            //Many DFAs simply don't have long sequences of non-accepting states, so we only
-            //want to incur this overhead when we're actually in a non-accepting state
-            while (m_nmmStart < NMM_SIZE && m_nmmPositions[m_nmmStart] <= pos)
-            {
-                if (m_nmmPositions[m_nmmStart] == pos && m_nmmStates[m_nmmStart] == state)
-                {
-                    //hit the memo -- we won't find a match.
-                    break POSLOOP;
-                }
-                //we passed this memo entry without using it -- remove it.
-                ++m_nmmStart;
-            }
-            if (pos >= writeNmmNext && newNmmSize < NMM_SIZE)
-            {
-                m_nmmPositions[newNmmSize] = pos;
-                m_nmmStates[newNmmSize] = state;
-                ++newNmmSize;
-                writeNmmNext = pos+(2<<newNmmSize);
-                if (m_nmmStart < newNmmSize)
-                {
-                    m_nmmStart = newNmmSize;
-                }
-            }
-        }
-        //successful or not, we're done.  Merge in our new entries for the non-matching memo
-        while (m_nmmStart < NMM_SIZE && m_nmmPositions[m_nmmStart] < writeNmmNext)
-        {
-            ++m_nmmStart;
-        }
-        while(newNmmSize > 0)
-        {
-            --newNmmSize;
-            --m_nmmStart;
-            m_nmmPositions[m_nmmStart] = m_nmmPositions[newNmmSize]; 
-            m_nmmStates[m_nmmStart] = m_nmmStates[newNmmSize]; 
+            //memo is for a different DFA
+            _resetMemo(state);
         }
-        if (ret != null)
+        final DfaState<MATCHRESULT> accepted = m_finder.find(
+                state.getStartStateAfter(startPos > 0 ? m_src.charAt(startPos-1) : DfaState.NO_CHAR),
+                m_src, startPos, m_limit, true);
+        if (accepted == null)
         {
-            m_lastMatchStart = startPos;
+            return null;
         }
-        return ret;
+        final int matchEnd = m_finder.getMatchEnd();
+        m_lastMatchStart = startPos;
+        m_lastMatchEnd = matchEnd;
+        return accepted.getMatchBefore(matchEnd < m_limit ? m_src.charAt(matchEnd) : DfaState.NO_CHAR);
+    }
+    
+    private void _resetMemo(DfaState<?> state)
+    {
+        m_memoState = state;
+        m_finder.reset();
     }
     
     /**
@@ -263,6 +253,113 @@ public class StringMatcher
             }
             state = state.getNextState(str.charAt(i));
         }
-        return (state == null ? null : state.getMatch());
+        return (state == null ? null : state.getMatchBefore(DfaState.NO_CHAR));
+    }
+    
+    //Iterates over matches using a private StringMatcher.  The matcher's memo stays valid
+    //when we reposition, since it only depends on the source string and search limit
+    private static class MatchIterator<MR> implements StringMatchIterator<MR>
+    {
+        private final StringMatcher m_matcher;
+        private final DfaState<MR> m_state;
+        //if >= 0, the next* fields are invalid, and the next match must be searched for
+        //starting here
+        private int m_pendingScanStart;
+        private MR m_nextResult;
+        private int m_nextPos;
+        private int m_nextEnd;
+        private int m_prevPos;
+        private int m_prevEnd;
+        private MR m_prevResult;
+        private String m_prevString;
+        
+        MatchIterator(StringMatcher matcher, DfaState<MR> state, int startPos)
+        {
+            m_matcher = matcher;
+            m_state = state;
+            m_pendingScanStart = startPos;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (m_pendingScanStart >= 0)
+            {
+                final StringMatcher matcher = m_matcher;
+                final int start = Math.min(m_pendingScanStart, matcher.m_limit);
+                m_pendingScanStart = -1;
+                matcher.m_lastMatchStart = matcher.m_lastMatchEnd = start;
+                m_nextResult = matcher.findNext(m_state);
+                m_nextPos = matcher.m_lastMatchStart;
+                m_nextEnd = matcher.m_lastMatchEnd;
+            }
+            return (m_nextResult != null);
+        }
+
+        @Override
+        public MR next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            m_prevPos = m_nextPos;
+            m_prevEnd = m_nextEnd;
+            m_prevResult = m_nextResult;
+            m_prevString = null;
+            m_pendingScanStart = m_prevEnd;
+            return m_prevResult;
+        }
+
+        @Override
+        public int matchStartPosition()
+        {
+            if (m_prevResult == null)
+            {
+                throw new IllegalStateException();
+            }
+            return m_prevPos;
+        }
+
+        @Override
+        public int matchEndPosition()
+        {
+            if (m_prevResult == null)
+            {
+                throw new IllegalStateException();
+            }
+            return m_prevEnd;
+        }
+
+        @Override
+        public String matchValue()
+        {
+            if (m_prevString == null)
+            {
+                if (m_prevResult == null)
+                {
+                    throw new IllegalStateException();
+                }
+                m_prevString = m_matcher.m_src.substring(m_prevPos, m_prevEnd);
+            }
+            return m_prevString;
+        }
+
+        @Override
+        public MR matchResult()
+        {
+            if (m_prevResult == null)
+            {
+                throw new IllegalStateException();
+            }
+            return m_prevResult;
+        }
+
+        @Override
+        public boolean reposition(int pos)
+        {
+            m_pendingScanStart = Math.max(pos, 0);
+            return hasNext();
+        }
     }
 }
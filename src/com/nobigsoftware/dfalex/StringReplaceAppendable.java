@@ -15,26 +15,54 @@
  */
 package com.nobigsoftware.dfalex;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
 
 
 /**
- * An {@link Appendable} for string replacements that will allocate a new string buffer only when
+ * An {@link Appendable} for string replacements that will allocate new storage only when
  * the first difference is written
+ * <P>
+ * After the first difference, output is recorded as a list of segments.  Each segment is
+ * either a span of the source string or a span of replacement text.  Unchanged spans of the
+ * source are never copied until the final output is produced by {@link #toString()},
+ * {@link #getChars(char[], int)}, or {@link #writeTo(Writer)}.
  */
 class StringReplaceAppendable implements SafeAppendable
 {
     private final String m_src;
-    private char[] m_buf;
+    //the output starts at this position in m_src
+    private final int m_base;
+    //while the output is the same as m_src starting at m_base, this is the end of the same part
     private int m_len;
+    //segments as (start,end) pairs.  Source spans have start >= 0.
+    //Replacement text spans in m_replacementText are stored as (~start, end)
+    private int[] m_segs;
+    private int m_segsLen;
+    private StringBuilder m_replacementText;
+    private int m_totalLen;
     
     /**
      * Create a new StringReplaceAppendable.
      * @param src
      */
     public StringReplaceAppendable(String src)
+    {
+        this(src, 0);
+    }
+    
+    /**
+     * Create a new StringReplaceAppendable for output that replaces the part of src that starts
+     * at a given position
+     * 
+     * @param src the source string
+     * @param start the position in src that corresponds to the start of the output
+     */
+    public StringReplaceAppendable(String src, int start)
     {
         m_src = src;
+        m_base = m_len = start;
     }
 
     @Override
@@ -47,22 +75,17 @@ class StringReplaceAppendable implements SafeAppendable
     @Override
     public SafeAppendable append(char c)
     {
-        if (m_buf != null)
+        if (m_segs == null)
         {
-            if (m_len >= m_buf.length)
+            if (m_len < m_src.length() && m_src.charAt(m_len)==c)
             {
-                m_buf = Arrays.copyOf(m_buf, m_buf.length*2);
+                ++m_len;
+                return this;
             }
-            m_buf[m_len++]=c;
-            return this;
+            _startSegments();
         }
-        if (m_len < m_src.length() && m_src.charAt(m_len)==c)
-        {
-            ++m_len;
-            return this;
-        }
-        _allocate(1);
-        m_buf[m_len++]=c;
+        m_replacementText.append(c);
+        _addReplacementSegment(1);
         return this;
     }
     
@@ -73,17 +96,26 @@ class StringReplaceAppendable implements SafeAppendable
         {
             throw new IndexOutOfBoundsException();
         }
-        if (m_buf == null)
+        if (csq == m_src)
         {
-            if (csq == m_src && start == m_len)
+            if (end > m_src.length())
+            {
+                throw new IndexOutOfBoundsException();
+            }
+            if (m_segs == null)
             {
-                if (end > m_src.length())
+                if (start == m_len)
                 {
-                    throw new IndexOutOfBoundsException();
+                    m_len = end;
+                    return this;
                 }
-                m_len = end;
-                return this;
+                _startSegments();
             }
+            _addSourceSegment(start, end);
+            return this;
+        }
+        if (m_segs == null)
+        {
             for (;; ++start, ++m_len)
             {
                 if (start >= end)
@@ -95,45 +127,142 @@ class StringReplaceAppendable implements SafeAppendable
                     break;
                 }
             }
-            //new data - need to allocate
-            _allocate(end-start);
+            //new data - start recording segments
+            _startSegments();
         }
-        else if (m_buf.length - m_len < (end-start))
+        if (start < end)
         {
-            m_buf = Arrays.copyOf(m_buf, Math.max(m_buf.length*2, m_len+(end-start)));
+            m_replacementText.append(csq, start, end);
+            _addReplacementSegment(end-start);
         }
-        if (csq instanceof String)
+        return this;
+    }
+    
+    /**
+     * @return the length of the output
+     */
+    public int length()
+    {
+        return (m_segs == null ? m_len-m_base : m_totalLen);
+    }
+    
+    /**
+     * Copy the output into a char array
+     * 
+     * @param dest  the array to copy into
+     * @param destPos  the position in dest at which to start copying 
+     */
+    public void getChars(char[] dest, int destPos)
+    {
+        if (m_segs == null)
         {
-            ((String)csq).getChars(start, end, m_buf, m_len);
-            m_len += (end-start);
+            m_src.getChars(m_base, m_len, dest, destPos);
+            return;
         }
-        else
+        for (int i=0; i<m_segsLen; i+=2)
         {
-            while (start<end)
+            int start = m_segs[i];
+            int end = m_segs[i+1];
+            if (start >= 0)
+            {
+                m_src.getChars(start, end, dest, destPos);
+                destPos += end-start;
+            }
+            else
             {
-                m_buf[m_len++] = csq.charAt(start++);
+                start = ~start;
+                m_replacementText.getChars(start, end, dest, destPos);
+                destPos += end-start;
+            }
+        }
+    }
+    
+    /**
+     * Write the output to a Writer
+     * 
+     * @param out   the writer to write to
+     * @throws IOException if the writer does
+     */
+    public void writeTo(Writer out) throws IOException
+    {
+        if (m_segs == null)
+        {
+            out.write(m_src, m_base, m_len-m_base);
+            return;
+        }
+        for (int i=0; i<m_segsLen; i+=2)
+        {
+            int start = m_segs[i];
+            int end = m_segs[i+1];
+            if (start >= 0)
+            {
+                out.write(m_src, start, end-start);
+            }
+            else
+            {
+                out.append(m_replacementText, ~start, end);
             }
         }
-        return this;
     }
     
     @Override
     public String toString()
     {
-        if (m_buf != null)
+        if (m_segs == null)
         {
-            return String.copyValueOf(m_buf, 0, m_len);
+            return m_src.substring(m_base, m_len);
         }
-        if (m_len == m_src.length())
+        char[] buf = new char[m_totalLen];
+        getChars(buf, 0);
+        return String.valueOf(buf);
+    }
+    
+    private void _startSegments()
+    {
+        m_segs = new int[16];
+        m_segsLen = 0;
+        m_replacementText = new StringBuilder();
+        m_totalLen = 0;
+        _addSourceSegment(m_base, m_len);
+    }
+    
+    private void _addSourceSegment(int start, int end)
+    {
+        if (start >= end)
+        {
+            return;
+        }
+        m_totalLen += end-start;
+        if (m_segsLen > 0 && m_segs[m_segsLen-1] == start && m_segs[m_segsLen-2] >= 0)
         {
-            return m_src;
+            //contiguous with the previous source span
+            m_segs[m_segsLen-1] = end;
+            return;
         }
-        return m_src.substring(0, m_len);
+        _addSegment(start, end);
     }
     
-    private void _allocate(int addlen)
+    //the last len chars of m_replacementText were just appended
+    private void _addReplacementSegment(int len)
     {
-        m_buf = new char[Math.max(m_len + addlen, m_src.length()+16)];
-        m_src.getChars(0, m_len, m_buf, 0);
+        m_totalLen += len;
+        final int end = m_replacementText.length();
+        if (m_segsLen > 0 && m_segs[m_segsLen-2] < 0)
+        {
+            //replacement text is always contiguous
+            m_segs[m_segsLen-1] = end;
+            return;
+        }
+        _addSegment(~(end-len), end);
+    }
+    
+    private void _addSegment(int start, int end)
+    {
+        if (m_segsLen >= m_segs.length)
+        {
+            m_segs = Arrays.copyOf(m_segs, m_segs.length*2);
+        }
+        m_segs[m_segsLen++] = start;
+        m_segs[m_segsLen++] = end;
     }
 }
@@ -15,7 +15,10 @@
  */
 package com.nobigsoftware.dfalex;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Performs fast searches of a whole string for patterns.  When you need to search the
@@ -69,51 +72,60 @@ public class StringSearcher<MATCHRESULT>
             {
                 return (StringMatchIterator<MATCHRESULT>)NO_MATCHES;
             }
-            --pos;
-            finderState = finderState.getNextState(src.charAt(pos));
+            final DfaState<?> prevState = finderState;
+            finderState = finderState.getNextState(src.charAt(--pos));
             if (finderState == null)
             {
                 return (StringMatchIterator<MATCHRESULT>)NO_MATCHES;
             }
-            if (finderState.getMatch() != null)
+            if (_isFinderMatch(finderState, src, pos))
             {
                 break;
             }
+            if (finderState == prevState && !finderState.hasConditionalMatch())
+            {
+                //usually the start state.  Skip to the next char that could end a match
+                pos = finderState.skipSelfLoopBackward(src, pos, 0);
+            }
         }
         //found at least one (the last) match
         //make a bit mask of matching positions, starting at the end
-        int[] maskArray = new int[8];
-        maskArray[maskArray.length-1] = 1<<31;
-        int maskStartPos = pos-(maskArray.length*32-1);
+        MatchMaskBuilder mask = new MatchMaskBuilder(pos);
         while(pos > 0)
         {
-            --pos;
-            finderState = finderState.getNextState(src.charAt(pos));
+            final DfaState<?> prevState = finderState;
+            finderState = finderState.getNextState(src.charAt(--pos));
             if (finderState == null)
             {
                 break;
             }
-            if (finderState.getMatch() != null)
+            final boolean isMatch = _isFinderMatch(finderState, src, pos);
+            if (isMatch)
+            {
+                mask.add(pos);
+            }
+            if (finderState == prevState && !finderState.hasConditionalMatch())
             {
-                if (pos < maskStartPos)
+                final int newpos = finderState.skipSelfLoopBackward(src, pos, 0);
+                if (isMatch && newpos < pos)
                 {
-                    //need a longer array
-                    int toadd = Math.max(maskStartPos-pos, maskArray.length<<5);
-                    toadd = (toadd|31)>>5; //bits to ints
-                    int[] newMask = new int[maskArray.length + toadd];
-                    for (int i=0;i<maskArray.length;++i)
-                    {
-                        newMask[i+toadd] = maskArray[i];
-                    }
-                    maskArray = newMask;
-                    maskStartPos -= toadd<<5;
-                    assert(maskStartPos<=pos);
+                    mask.addRange(newpos, pos);
                 }
-                int offset = pos-maskStartPos;
-                maskArray[offset>>>5] |= 1<<(offset&31);
+                pos = newpos;
             }
         }
-        return new IteratorImpl<>(src, m_matcher, maskArray, maskStartPos);
+        return new IteratorImpl<>(src, m_matcher, mask.getMask(), mask.getMaskStartPos());
+    }
+    
+    //check for a match of the reverse finder after it consumes src[pos].  The finder works
+    //backwards, so the next character is the one before pos
+    private static boolean _isFinderMatch(DfaState<?> finderState, String src, int pos)
+    {
+        if (finderState.hasConditionalMatch())
+        {
+            return finderState.getMatchBefore(pos > 0 ? src.charAt(pos-1) : DfaState.NO_CHAR) != null;
+        }
+        return finderState.getMatch() != null;
     }
 
     /**
@@ -129,6 +141,69 @@ public class StringSearcher<MATCHRESULT>
      * @return the new string with values replaced
      */
     public String findAndReplace(String src, ReplacementSelector<? super MATCHRESULT> replacer)
+    {
+        StringReplaceAppendable dest = _findAndReplace(src, replacer);
+        return (dest == null ? src : dest.toString());
+    }
+
+    /**
+     * Replace all occurrences of patterns in a string, and write the result to a Writer
+     * <P>
+     * This is the same as {@link #findAndReplace(String, ReplacementSelector)}, except that
+     * the result is written directly to out.  Unchanged parts of the source string
+     * are written without being copied into an intermediate buffer.
+     * 
+     * @param src  the String to search   
+     * @param replacer  the {@link ReplacementSelector} that provides new values for matches in the string
+     * @param out the new string with values replaced is written here
+     * @throws IOException if out throws an IOException
+     */
+    public void findAndReplace(String src, ReplacementSelector<? super MATCHRESULT> replacer, Writer out) throws IOException
+    {
+        StringReplaceAppendable dest = _findAndReplace(src, replacer);
+        if (dest == null)
+        {
+            out.write(src);
+        }
+        else
+        {
+            dest.writeTo(out);
+        }
+    }
+    
+    /**
+     * Replace all occurrences of patterns in a string, using multiple threads
+     * <P>
+     * This produces the same result as {@link #findAndReplace(String, ReplacementSelector)}, but
+     * large strings are split into chunks that are searched and replaced in parallel.
+     * <P>
+     * The replacer will be called from multiple threads at once, so it must be thread-safe.
+     * If it ever returns a position to continue at, then the rest of the string after that
+     * point is processed sequentially.  In that case the replacer may also have been called for matches
+     * after that point that end up being discarded, so it should not have side effects.
+     * 
+     * @param src  the String to search   
+     * @param replacer  the {@link ReplacementSelector} that provides new values for matches in the string
+     * @param pool  the ForkJoinPool to use
+     * @return the new string with values replaced
+     */
+    public String findAndReplaceParallel(String src, ReplacementSelector<? super MATCHRESULT> replacer, ForkJoinPool pool)
+    {
+        return findAndReplaceParallel(src, replacer, pool, ParallelReplacer.defaultChunkSize(src.length(), pool));
+    }
+    
+    //chunk size is adjustable for testing
+    String findAndReplaceParallel(String src, ReplacementSelector<? super MATCHRESULT> replacer, ForkJoinPool pool, int chunkSize)
+    {
+        if (src.length() <= chunkSize)
+        {
+            return findAndReplace(src, replacer);
+        }
+        return new ParallelReplacer<>(m_matcher, replacer).findAndReplace(src, pool, chunkSize);
+    }
+    
+    //returns null if there are no matches
+    private StringReplaceAppendable _findAndReplace(String src, ReplacementSelector<? super MATCHRESULT> replacer)
     {
         StringMatchIterator<MATCHRESULT> it = searchString(src);
         StringReplaceAppendable dest=null;
@@ -160,28 +235,32 @@ public class StringSearcher<MATCHRESULT>
                 it.reposition(doneTo);
             }
         }
-        if (dest != null)
-        {
-            if (doneTo < src.length())
-            {
-                dest.append(src, doneTo, src.length());
-            }
-            return dest.toString();
-        }
-        else
+        if (dest != null && doneTo < src.length())
         {
-            return src;
+            dest.append(src, doneTo, src.length());
         }
+        return dest;
     }
 
 
+    /**
+     * Iterates through the matches marked in the match mask.
+     * <P>
+     * Each match is found with a single forward pass that runs from the match start until the DFA
+     * stops, remembering the longest match.  The search for the next match is done lazily, so
+     * that no work is wasted if the caller repositions the iterator.
+     */
     private static class IteratorImpl<MR> implements StringMatchIterator<MR>
     {
         private final String m_src;
         private final DfaState<MR> m_matcher;
         private final int [] m_matchMask;
         private final int m_matchMaskPos;
-        private DfaState<MR> m_nextEndState;
+        private final StringMatcher m_confirmer;
+        //if >= 0, the next* fields are invalid, and the next match must be searched for
+        //starting here
+        private int m_pendingScanStart;
+        private MR m_nextResult;
         private int m_nextScanStart; //where we started looking for m_next*
         private int m_nextPos;
         private int m_nextEnd;
@@ -201,54 +280,39 @@ public class StringSearcher<MATCHRESULT>
             m_matcher = matcher;
             m_matchMask = matchMask;
             m_matchMaskPos = matchMaskPos;
-            m_nextScanStart = 0;
-            if (!_scanForNext(0, m_src.length()))
-            {
-                m_nextEndState = null;
-                m_nextPos = m_nextEnd = m_src.length();
-            }
+            m_confirmer = new StringMatcher(src);
+            m_pendingScanStart = 0;
         }
 
         @Override
         public boolean hasNext()
         {
-            return (m_nextEndState != null);
+            if (m_pendingScanStart >= 0)
+            {
+                final int start = m_pendingScanStart;
+                m_pendingScanStart = -1;
+                m_nextScanStart = start;
+                if (!_scanForNext(start, m_src.length()))
+                {
+                    m_nextResult = null;
+                    m_nextPos = m_nextEnd = m_src.length();
+                }
+            }
+            return (m_nextResult != null);
         }
 
         @Override
         public MR next()
         {
-            if (m_nextEndState == null)
+            if (!hasNext())
             {
                 throw new NoSuchElementException();
             }
             m_prevPos = m_nextPos;
             m_prevEnd = m_nextEnd;
-            m_prevResult = m_nextEndState.getMatch();
+            m_prevResult = m_nextResult;
             m_prevString = null;
-            //extend the previously found match as far as possible
-            DfaState<MR> st = m_nextEndState;
-            final int len = m_src.length();
-            for (int pos = m_nextEnd; pos < len; pos++)
-            {
-                st = st.getNextState(m_src.charAt(pos));
-                if (st == null)
-                {
-                    break;
-                }
-                MR match = st.getMatch();
-                if (match != null)
-                {
-                    m_prevResult = match;
-                    m_prevEnd = pos+1;
-                }
-            }
-            m_nextScanStart = m_prevEnd;
-            if (!_scanForNext(m_prevEnd,len))
-            {
-                m_nextEndState = null;
-                m_nextPos = m_nextEnd = len;
-            }
+            m_pendingScanStart = m_prevEnd;
             return m_prevResult;
         }
 
@@ -299,9 +363,15 @@ public class StringSearcher<MATCHRESULT>
         @Override
         public boolean reposition(int pos)
         {
+            if (m_pendingScanStart >= 0)
+            {
+                //haven't looked yet.  Just look from the new position
+                m_pendingScanStart = pos;
+                return hasNext();
+            }
             if (pos >= m_nextScanStart)
             {
-                if (m_nextEndState == null)
+                if (m_nextResult == null)
                 {
                     return false;
                 }
@@ -312,7 +382,7 @@ public class StringSearcher<MATCHRESULT>
                 m_nextScanStart = pos;
                 if (!_scanForNext(pos, m_src.length()))
                 {
-                    m_nextEndState = null;
+                    m_nextResult = null;
                     m_nextPos = m_nextEnd = m_src.length();
                     return false;
                 }
@@ -325,7 +395,7 @@ public class StringSearcher<MATCHRESULT>
                 //No need to scan forward into the part we've already scanned
                 _scanForNext(pos, m_nextScanStart);
                 m_nextScanStart = pos;
-                return (m_nextEndState != null);
+                return (m_nextResult != null);
             }
         }
         
@@ -355,27 +425,22 @@ public class StringSearcher<MATCHRESULT>
                 }
                 //move start position up to next bit set
                 start = (wi<<5)+BitUtils.lowBitIndex(mask);
+                if (start >= end)
+                {
+                    return false;
+                }
                 
-                //get corresponding string position and find the _shortest_ match
-                //(it will be expanded to the longest match when next() is called)
+                //get corresponding string position and find the longest match.  The confirmer
+                //remembers dead states, so overlapping confirmations can't go quadratic
                 final int trypos = start + m_matchMaskPos;
-                final int len = m_src.length();
-                DfaState<MR> st = m_matcher;
-                for (int pos = trypos; pos<len; ++pos)
+                final MR result = m_confirmer.matchAt(m_matcher, trypos);
+                if (result != null)
                 {
-                    st = st.getNextState(m_src.charAt(pos));
-                    if (st == null)
-                    {
-                        break;
-                    }
-                    if (st.getMatch() != null)
-                    {
-                        //found one!
-                        m_nextPos = trypos;
-                        m_nextEnd = pos+1;
-                        m_nextEndState = st;
-                        return true;
-                    }
+                    //found one!
+                    m_nextPos = trypos;
+                    m_nextEnd = m_confirmer.getLastMatchEnd();
+                    m_nextResult = result;
+                    return true;
                 }
                 //missed (shouldn't happen if the reverse finder is accurate)
                 ++start;
@@ -384,6 +449,86 @@ public class StringSearcher<MATCHRESULT>
         }
     }
     
+    //Accumulates the bit mask of match start positions produced by the reverse finder.
+    //Positions are added in decreasing order, and bits are collected in a local word that
+    //is only stored into the array when we move on to a different word.
+    private static class MatchMaskBuilder
+    {
+        private int[] m_mask;
+        private int m_maskStartPos;
+        private int m_wordIndex;
+        private int m_word;
+        
+        MatchMaskBuilder(int lastMatchPos)
+        {
+            m_mask = new int[8];
+            m_maskStartPos = lastMatchPos-(m_mask.length*32-1);
+            m_wordIndex = m_mask.length-1;
+            m_word = 1<<31;
+        }
+        
+        //pos must be <= all positions added previously
+        void add(int pos)
+        {
+            int offset = pos-m_maskStartPos;
+            if ((offset>>5) != m_wordIndex)
+            {
+                _moveTo(pos);
+                offset = pos-m_maskStartPos;
+            }
+            m_word |= 1<<(offset&31);
+        }
+        
+        //add all positions in [from,to).  from must be <= all positions added previously
+        void addRange(int from, int to)
+        {
+            while(from < to)
+            {
+                add(to-1);
+                final int wordStart = m_wordIndex<<5;
+                int lo = from-m_maskStartPos;
+                if (lo < wordStart)
+                {
+                    lo = wordStart;
+                }
+                final int hi = to-1-m_maskStartPos;
+                //bits lo through hi, inclusive
+                m_word |= (-1<<(lo&31)) & (-1>>>(31-(hi&31)));
+                to = lo+m_maskStartPos;
+            }
+        }
+        
+        int[] getMask()
+        {
+            m_mask[m_wordIndex] |= m_word;
+            m_word = 0;
+            return m_mask;
+        }
+        
+        int getMaskStartPos()
+        {
+            return m_maskStartPos;
+        }
+
+        private void _moveTo(int pos)
+        {
+            m_mask[m_wordIndex] |= m_word;
+            m_word = 0;
+            if (pos < m_maskStartPos)
+            {
+                //need a longer array
+                int toadd = Math.max(m_maskStartPos-pos, m_mask.length<<5);
+                toadd = (toadd+31)>>5; //bits to ints, rounding up
+                int[] newMask = new int[m_mask.length + toadd];
+                System.arraycopy(m_mask, 0, newMask, toadd, m_mask.length);
+                m_mask = newMask;
+                m_maskStartPos -= toadd<<5;
+                assert(m_maskStartPos<=pos);
+            }
+            m_wordIndex = (pos-m_maskStartPos)>>5;
+        }
+    }
+    
     private static class NoMatchIterator implements StringMatchIterator<Object>
     {
         @Override
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A growable list of tokens produced by a {@link Lexer}.
+ * <P>
+ * Each token is stored as three ints: its type, start position, and end position.
+ * No objects are allocated per token, and a buffer can be cleared and reused
+ * for any number of inputs.
+ * <P>
+ * Token types are small non-negative integers assigned by the lexer.  The
+ * MATCHRESULT for a type can be retrieved with {@link #getResult(int)} or
+ * {@link Lexer#getResultForType(int)}.
+ *
+ * @param MATCHRESULT the type of result produced by the lexer's DFA
+ */
+public class TokenBuffer<MATCHRESULT>
+{
+    private static final int[] NO_TOKENS = new int[0];
+    private int[] m_data = NO_TOKENS;
+    private int m_size = 0;
+    private List<MATCHRESULT> m_resultsByType = Collections.emptyList();
+
+    /**
+     * Create a new, empty TokenBuffer
+     */
+    public TokenBuffer()
+    {
+    }
+
+    /**
+     * @return the number of tokens in the buffer
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Remove all tokens from the buffer.  Allocated space is retained.
+     */
+    public void clear()
+    {
+        m_size = 0;
+    }
+
+    /**
+     * Get the type of a token
+     *
+     * @param index index of the token in this buffer
+     * @return the token type assigned by the lexer
+     */
+    public int getType(int index)
+    {
+        return m_data[_checkIndex(index)*3];
+    }
+
+    /**
+     * Get the start position of a token
+     *
+     * @param index index of the token in this buffer
+     * @return the position of the token's first character in the source
+     */
+    public int getStart(int index)
+    {
+        return m_data[_checkIndex(index)*3+1];
+    }
+
+    /**
+     * Get the end position of a token
+     *
+     * @param index index of the token in this buffer
+     * @return the position after the token's last character in the source
+     */
+    public int getEnd(int index)
+    {
+        return m_data[_checkIndex(index)*3+2];
+    }
+
+    /**
+     * Get the match result for a token
+     *
+     * @param index index of the token in this buffer
+     * @return the MATCHRESULT for the token's type
+     */
+    public MATCHRESULT getResult(int index)
+    {
+        return m_resultsByType.get(getType(index));
+    }
+
+    /**
+     * Add a token to the end of the buffer
+     *
+     * @param type the token type
+     * @param start start position of the token
+     * @param end end position of the token
+     */
+    void add(int type, int start, int end)
+    {
+        int i = m_size*3;
+        if (i >= m_data.length)
+        {
+            int[] newData = new int[Math.max(48, m_data.length*2)];
+            System.arraycopy(m_data, 0, newData, 0, i);
+            m_data = newData;
+        }
+        m_data[i] = type;
+        m_data[i+1] = start;
+        m_data[i+2] = end;
+        ++m_size;
+    }
+
+    /**
+     * Set the list that maps token types to match results
+     */
+    void setResultsByType(List<MATCHRESULT> resultsByType)
+    {
+        m_resultsByType = resultsByType;
+    }
+
+    private int _checkIndex(int index)
+    {
+        if (index < 0 || index >= m_size)
+        {
+            throw new IndexOutOfBoundsException("Token index " + index + " out of range [0," + m_size + ")");
+        }
+        return index;
+    }
+}
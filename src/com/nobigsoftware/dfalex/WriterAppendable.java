@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Matthew Timmermans
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nobigsoftware.dfalex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * A {@link SafeAppendable} that writes to a {@link Writer}
+ * <P>
+ * IOExceptions from the writer are rethrown as {@link UncheckedIOException}s
+ */
+class WriterAppendable implements SafeAppendable
+{
+    private final Writer m_out;
+    
+    /**
+     * Create a new WriterAppendable.
+     * @param out the writer to append to
+     */
+    public WriterAppendable(Writer out)
+    {
+        m_out = out;
+    }
+
+    @Override
+    public SafeAppendable append(char c)
+    {
+        try
+        {
+            m_out.write(c);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public SafeAppendable append(CharSequence csq, int start, int end)
+    {
+        try
+        {
+            if (csq instanceof String)
+            {
+                m_out.write((String)csq, start, end-start);
+            }
+            else
+            {
+                m_out.append(csq, start, end);
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public SafeAppendable append(CharSequence csq)
+    {
+        return append(csq, 0, csq.length());
+    }
+    
+    /**
+     * Write characters from an array
+     * 
+     * @param buf   the characters
+     * @param start index of the first character to write
+     * @param end   index after the last character to write
+     */
+    void write(char[] buf, int start, int end)
+    {
+        try
+        {
+            m_out.write(buf, start, end-start);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
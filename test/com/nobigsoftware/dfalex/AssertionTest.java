@@ -0,0 +1,171 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AssertionTest extends TestBase
+{
+    private static final String[] PATTERNS = {
+        "\\bab*\\b",
+        "^a+",
+        "b+$",
+        "\\Ba+\\B",
+        "(^|_)ab",
+        "a(\\b|b)*",
+        "\\Aa|b\\z",
+        "[ab]+\\b\\s",
+        "a\\n^b",
+        "a$\\n",
+        "(\\ba)+",
+        "(a\\b ){2}",
+        "\\b[^ ]+\\b",
+        "(\\b|x)a*",
+        "\\B_+",
+    };
+
+    @Test
+    public void testMatchAt() throws Exception
+    {
+        Random r = new Random(45);
+        for (String regex : PATTERNS)
+        {
+            final java.util.regex.Pattern javaPattern = java.util.regex.Pattern.compile(regex,
+                    java.util.regex.Pattern.MULTILINE | java.util.regex.Pattern.UNIX_LINES);
+            for (int variant = 0; variant < 3; ++variant)
+            {
+                DfaBuilder<String> builder = new DfaBuilder<>();
+                builder.setCompactStates(variant == 1);
+                builder.setLazyStates(variant == 2);
+                builder.addPattern(Pattern.regex(regex), "X");
+                DfaState<String> start = builder.build(null);
+                for (int t = 0; t < 100; ++t)
+                {
+                    String src = _randomString(r);
+                    StringMatcher matcher = new StringMatcher(src);
+                    for (int pos = 0; pos < src.length(); ++pos)
+                    {
+                        int want = _javaLongestMatch(javaPattern, src, pos);
+                        String result = matcher.matchAt(start, pos);
+                        int have = (result == null ? -1 : matcher.getLastMatchEnd());
+                        Assert.assertEquals(regex + " in \"" + src + "\" at " + pos, want, have);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearcher() throws Exception
+    {
+        Random r = new Random(46);
+        for (String regex : PATTERNS)
+        {
+            DfaBuilder<String> builder = new DfaBuilder<>();
+            builder.addPattern(Pattern.regex(regex), "X");
+            StringSearcher<String> searcher = builder.buildStringSearcher(null);
+            DfaState<String> start = builder.build(null);
+            for (int t = 0; t < 100; ++t)
+            {
+                String src = _randomString(r);
+                StringMatchIterator<String> want = new StringMatcher(src).findAll(start);
+                StringMatchIterator<String> have = searcher.searchString(src);
+                while (want.hasNext())
+                {
+                    want.next();
+                    Assert.assertTrue(regex + " in \"" + src + "\"", have.hasNext());
+                    have.next();
+                    Assert.assertEquals(want.matchStartPosition(), have.matchStartPosition());
+                    Assert.assertEquals(want.matchEndPosition(), have.matchEndPosition());
+                }
+                Assert.assertFalse(regex + " in \"" + src + "\"", have.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testPatterns() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.match(Assertion.WORD_BOUNDARY).then("cat").then(Assertion.WORD_BOUNDARY), "CAT");
+        builder.addPattern(Pattern.match(Assertion.START_OF_LINE).then(Pattern.repeat(CharRange.DIGITS)), "NUM");
+        DfaState<String> start = builder.build(null);
+
+        String src = "cat concat cats 12 cat\n34 cat_ (cat)";
+        StringBuilder sb = new StringBuilder();
+        StringMatchIterator<String> it = new StringMatcher(src).findAll(start);
+        while (it.hasNext())
+        {
+            sb.append(it.next()).append('@').append(it.matchStartPosition()).append(' ');
+        }
+        Assert.assertEquals("CAT@0 CAT@19 NUM@23 CAT@32 ", sb.toString());
+
+        //the reverse of a line start is a line end
+        Assert.assertEquals(Assertion.END_OF_LINE, Assertion.START_OF_LINE.getReversed());
+        Assert.assertEquals(Assertion.WORD_BOUNDARY, Assertion.WORD_BOUNDARY.getReversed());
+
+        //conditional matches are resolved by the next character
+        DfaState<String> state = start;
+        for (char c : "cat".toCharArray())
+        {
+            state = state.getNextState(c);
+        }
+        Assert.assertTrue(state.hasConditionalMatch());
+        Assert.assertNull(state.getMatch());
+        Assert.assertEquals("CAT", state.getMatchBefore(' '));
+        Assert.assertEquals("CAT", state.getMatchBefore(DfaState.NO_CHAR));
+        Assert.assertNull(state.getMatchBefore('s'));
+        Assert.assertEquals(0, state.getMatchIdBefore('.'));
+        Assert.assertEquals("CAT", StringMatcher.matchWholeString(start, "cat"));
+
+        //start states depend on the previous character
+        Assert.assertNotNull(start.getStartStateAfter('\n').getNextState('1'));
+        Assert.assertNull(start.getStartStateAfter(' ').getNextState('1'));
+    }
+
+    @Test
+    public void testNoAssertionStates() throws Exception
+    {
+        //without assertions, there's only one start state
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("a+b"), "X");
+        DfaState<String> start = builder.build(null);
+        Assert.assertSame(start, start.getStartStateAfter('a'));
+        Assert.assertEquals(3, _countStates(start));
+    }
+
+    //longest match at pos, according to java.util.regex
+    private static int _javaLongestMatch(java.util.regex.Pattern javaPattern, String src, int pos)
+    {
+        Matcher m = javaPattern.matcher(src);
+        m.useTransparentBounds(true);
+        m.useAnchoringBounds(false);
+        for (int end = src.length(); end > pos; --end)
+        {
+            m.region(pos, end);
+            if (m.matches())
+            {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    private static String _randomString(Random r)
+    {
+        final String chars = "ab ab_\nx";
+        char[] buf = new char[r.nextInt(12)];
+        for (int i=0; i<buf.length; ++i)
+        {
+            buf[i] = chars.charAt(r.nextInt(chars.length()));
+        }
+        //java's ^ doesn't match after a newline at the end of the input
+        if (buf.length > 0 && buf[buf.length-1] == '\n')
+        {
+            buf[buf.length-1] = '_';
+        }
+        return new String(buf);
+    }
+}
@@ -0,0 +1,113 @@
+package com.nobigsoftware.dfalex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nobigsoftware.dfalex.DfaBuildStatistics.CacheResult;
+import com.nobigsoftware.util.BuilderCache;
+
+public class BuildStatisticsTest extends TestBase
+{
+    @Test
+    public void testCounts() throws Exception
+    {
+        List<DfaBuildStatistics> reports = new ArrayList<>();
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        builder.setBuildListener(reports::add);
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        DfaState<JavaToken> start = builder.build(null);
+        Assert.assertEquals(1, reports.size());
+        DfaBuildStatistics stats = reports.get(0);
+        Assert.assertEquals(DfaBuildStatistics.Kind.MATCHER, stats.getKind());
+        Assert.assertEquals(CacheResult.NONE, stats.getCacheResult());
+        Assert.assertEquals(1, stats.getNumStartStates());
+        Assert.assertEquals(_countStates(start), stats.getDfaStateCount());
+        Assert.assertTrue(stats.getRawDfaStateCount() >= stats.getDfaStateCount());
+        Assert.assertTrue(stats.getNfaEdgeCount() > stats.getNfaStateCount() / 2);
+        Assert.assertTrue(stats.getMaxTransitionCount() > 10);
+        Assert.assertTrue(stats.getDfaTransitionCount() >= stats.getMaxTransitionCount());
+        Assert.assertTrue(stats.getSignatureIntCount() >= stats.getRawDfaStateCount());
+        Assert.assertTrue(stats.getMaxSignatureLength() > 0);
+        Assert.assertTrue(stats.getEstimatedPeakBytes() > 0);
+        Assert.assertTrue(stats.getTotalNanos() >= stats.getSubsetConstructionNanos() + stats.getMinimizationNanos());
+
+        builder.buildReverseFinder();
+        Assert.assertEquals(2, reports.size());
+        Assert.assertEquals(DfaBuildStatistics.Kind.REVERSE_FINDER, reports.get(1).getKind());
+        Assert.assertTrue(reports.get(1).getDfaStateCount() > 0);
+
+        //no listener, no statistics
+        builder.setBuildListener(null);
+        builder.build(null);
+        Assert.assertEquals(2, reports.size());
+    }
+
+    @Test
+    public void testCache() throws Exception
+    {
+        List<DfaBuildStatistics> reports = new ArrayList<>();
+        MapBuilderCache cache = new MapBuilderCache();
+        DfaBuilder<String> builder = new DfaBuilder<>(cache);
+        builder.setBuildListener(reports::add);
+        builder.addPattern(Pattern.regex("[a-z]+"), "ID");
+        builder.addPattern(Pattern.regex("[0-9]+"), "NUM");
+        builder.addPattern(Pattern.match("if"), "IF");
+        DfaAmbiguityResolver<String> resolver = conflicts -> "IF";
+
+        builder.build(resolver);
+        Assert.assertEquals(CacheResult.MISS, reports.get(0).getCacheResult());
+        Assert.assertTrue(reports.get(0).getDfaStateCount() > 0);
+
+        //building a reverse finder mustn't change the cache key of the patterns
+        builder.buildReverseFinder();
+        Assert.assertEquals(CacheResult.MISS, reports.get(1).getCacheResult());
+        builder.build(resolver);
+        Assert.assertEquals(CacheResult.HIT, reports.get(2).getCacheResult());
+        Assert.assertEquals(0, reports.get(2).getDfaStateCount());
+        builder.buildReverseFinder();
+        Assert.assertEquals(CacheResult.HIT, reports.get(3).getCacheResult());
+        Assert.assertEquals(2, cache.m_cache.size());
+    }
+
+    @Test
+    public void testFromNfa() throws Exception
+    {
+        Nfa<String> nfa = new Nfa<>();
+        int start = nfa.addState(null);
+        int accept = nfa.addState("AB");
+        nfa.addEpsilon(start, Pattern.regex("a*b").addToNFA(nfa, accept));
+        List<DfaBuildStatistics> reports = new ArrayList<>();
+        DfaState<String> dfa = DfaBuilder.buildFromNfa(nfa, new int[] {start}, null, null, reports::add).get(0);
+        Assert.assertEquals("AB", StringMatcher.matchWholeString(dfa, "aab"));
+        Assert.assertEquals(1, reports.size());
+        Assert.assertEquals(DfaBuildStatistics.Kind.FROM_NFA, reports.get(0).getKind());
+        Assert.assertEquals(nfa.numStates(), reports.get(0).getNfaStateCount());
+        Assert.assertEquals(_countStates(dfa), reports.get(0).getDfaStateCount());
+    }
+
+    private static class MapBuilderCache implements BuilderCache
+    {
+        Map<String, Serializable> m_cache = new HashMap<>();
+
+        @Override
+        public Serializable getCachedItem(String key)
+        {
+            return m_cache.get(key);
+        }
+
+        @Override
+        public void maybeCacheItem(String key, Serializable item)
+        {
+            m_cache.put(key, item);
+        }
+    }
+}
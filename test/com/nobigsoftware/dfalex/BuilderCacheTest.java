@@ -5,9 +5,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -35,6 +42,122 @@ public class BuilderCacheTest extends TestBase
         _build(builder);
         Assert.assertEquals(1, cache.m_cache.size());
         Assert.assertEquals(2, cache.m_hits);
+        
+        //compact DFAs are cached separately
+        builder = new DfaBuilder<>(cache);
+        builder.setCompactStates(true);
+        _build(builder);
+        Assert.assertEquals(2, cache.m_cache.size());
+        Assert.assertEquals(2, cache.m_hits);
+        builder.clear();
+        _build(builder);
+        Assert.assertEquals(2, cache.m_cache.size());
+        Assert.assertEquals(3, cache.m_hits);
+    }
+    
+    @Test
+    public void concurrentLoadTest() throws Exception
+    {
+        InMemoryBuilderCache cache = new InMemoryBuilderCache();
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>(cache);
+        _build(builder);
+        byte[] bytes = cache.m_cache.values().iterator().next();
+        for (int rep = 0; rep < 10; ++rep)
+        {
+            //a freshly loaded DFA, hit by many threads at once
+            @SuppressWarnings("unchecked")
+            SerializableDfa<JavaToken> dfa = (SerializableDfa<JavaToken>)
+                new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            final int nthreads = 8;
+            CountDownLatch ready = new CountDownLatch(nthreads);
+            List<DfaState<JavaToken>> starts = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < nthreads; ++i)
+            {
+                Thread t = new Thread(() -> {
+                    ready.countDown();
+                    try
+                    {
+                        ready.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    DfaState<JavaToken> start = dfa.getStartStates().get(0);
+                    if (StringMatcher.matchWholeString(start, "while") == JavaToken.WHILE)
+                    {
+                        starts.add(start);
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads)
+            {
+                t.join();
+            }
+            Assert.assertEquals(nthreads, starts.size());
+            for (DfaState<JavaToken> start : starts)
+            {
+                Assert.assertSame(starts.get(0), start);
+            }
+        }
+    }
+    
+    @Test
+    public void lazyStatesTest() throws Exception
+    {
+        InMemoryBuilderCache cache = new InMemoryBuilderCache();
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>(cache);
+        _build(builder);
+        byte[] bytes = cache.m_cache.values().iterator().next();
+        
+        //only the states we reach are created
+        @SuppressWarnings("unchecked")
+        SerializableDfa<JavaToken> dfa = (SerializableDfa<JavaToken>)
+            new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        DfaState<JavaToken> start = dfa.getLazyStartStates().get(0);
+        Assert.assertEquals(JavaToken.WHILE, StringMatcher.matchWholeString(start, "while"));
+        Assert.assertEquals(6, _countCreatedStates(dfa));
+        StringMatcher matcher = new StringMatcher("x = 12345678;");
+        Assert.assertEquals(JavaToken.EQ, matcher.findNext(start));
+        Assert.assertEquals(JavaToken.INTEGER_LITERAL, matcher.findNext(start));
+        Assert.assertEquals("12345678", matcher.getLastMatch());
+        Assert.assertTrue(_countCreatedStates(dfa) < _countStates(start));
+        
+        //lazy DFAs are the same as eager ones
+        builder = new DfaBuilder<>(cache);
+        builder.setLazyStates(true);
+        _build(builder);
+        
+        //prewarming creates everything
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            builder.setPrewarmExecutor(executor);
+            _build(builder);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+    
+    private static int _countCreatedStates(SerializableDfa<?> dfa) throws Exception
+    {
+        java.lang.reflect.Field statesField = SerializableDfa.class.getDeclaredField("m_dfaStates");
+        statesField.setAccessible(true);
+        int count = 0;
+        for (Object state : (List<?>)statesField.get(dfa))
+        {
+            if (((DfaStatePlaceholder<?>)state).m_delegate != null)
+            {
+                ++count;
+            }
+        }
+        return count;
     }
     
     private void _build(DfaBuilder<JavaToken> builder) throws Exception
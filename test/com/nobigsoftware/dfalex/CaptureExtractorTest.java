@@ -0,0 +1,139 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CaptureExtractorTest extends TestBase
+{
+    private static final String[] PATTERNS = {
+        "(a|ab)(c|bcd)(d*)",
+        "(a+)(b+)?",
+        "((a)|b)+",
+        "(a*)(a*)",
+        "(?:(a)|(b))*c",
+        "(a|b)*(b)",
+        "x(a{1,3})(a{0,2})",
+        "(\\w+)\\s(\\w+)",
+        "(\\ba)(b*)\\b",
+        "((ab)*)c",
+        "(a(b)?)+",
+        "(?:a|(ab))(c)?",
+        "(x|xa)(ab|b)*",
+        "([ab]{2})+(c)",
+        "(a*)+",
+        "(a|b*)+",
+        "((a*)b*)+",
+        "(a?){2,}c",
+    };
+
+    @Test
+    public void testAgainstJava() throws Exception
+    {
+        Random r = new Random(46);
+        for (String regex : PATTERNS)
+        {
+            final java.util.regex.Pattern javaPattern = java.util.regex.Pattern.compile(regex);
+            final CaptureExtractor extractor = new CaptureExtractor(Pattern.regex(regex));
+            Assert.assertEquals(regex, javaPattern.matcher("").groupCount()+1, extractor.getGroupCount());
+            final int[] groups = new int[extractor.getGroupCount()*2];
+            for (int t = 0; t < 200; ++t)
+            {
+                String src = _randomString(r);
+                for (int pos = 0; pos < src.length(); ++pos)
+                {
+                    String msg = regex + " in \"" + src + "\" at " + pos;
+                    Matcher m = javaPattern.matcher(src);
+                    m.useTransparentBounds(true);
+                    m.useAnchoringBounds(false);
+                    int want = -1;
+                    for (int end = src.length(); end >= pos; --end)
+                    {
+                        m.region(pos, end);
+                        if (m.matches())
+                        {
+                            want = end;
+                            break;
+                        }
+                    }
+                    int have = extractor.matchAt(src, pos, groups);
+                    Assert.assertEquals(msg, want, have);
+                    if (want >= 0)
+                    {
+                        for (int g = 0; g <= m.groupCount(); ++g)
+                        {
+                            Assert.assertEquals(msg + " group " + g + " start", m.start(g), groups[g*2]);
+                            Assert.assertEquals(msg + " group " + g + " end", m.end(g), groups[g*2+1]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPatterns() throws Exception
+    {
+        //key=value, where the value is a number or a word
+        Pattern pat = Pattern.capture(1, Pattern.repeat(CharRange.builder().addRange('a', 'z').build()))
+                .then("=")
+                .then(Pattern.anyOf(Pattern.capture(2, Pattern.DIGITS), Pattern.capture(3, Pattern.regex("\\w+"))));
+        CaptureExtractor extractor = new CaptureExtractor(pat);
+        Assert.assertEquals(4, extractor.getGroupCount());
+        int[] groups = new int[8];
+        String src = "x;size=42;name=bob";
+        Assert.assertEquals(9, extractor.matchAt(src, 2, groups));
+        Assert.assertEquals("size", src.substring(groups[2], groups[3]));
+        Assert.assertEquals("42", src.substring(groups[4], groups[5]));
+        Assert.assertEquals(-1, groups[6]);
+        Assert.assertEquals(18, extractor.matchAt(src, 10, groups));
+        Assert.assertEquals(-1, groups[4]);
+        Assert.assertEquals("bob", src.substring(groups[6], groups[7]));
+        Assert.assertEquals(-1, extractor.matchAt(src, 0, groups));
+
+        //limits
+        Assert.assertEquals(8, extractor.matchAt(src, 2, 8, groups));
+        Assert.assertEquals("4", src.substring(groups[4], groups[5]));
+
+        //captures don't change what the DFA matches
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(pat, "KV");
+        DfaState<String> start = builder.build(null);
+        StringMatcher matcher = new StringMatcher(src);
+        Assert.assertEquals("KV", matcher.matchAt(start, 10));
+        Assert.assertEquals(18, matcher.getLastMatchEnd());
+
+        //after the last non-empty iteration, a repetition matches the empty string once more
+        extractor = new CaptureExtractor(Pattern.regex("(a*)+"));
+        Assert.assertEquals(2, extractor.matchAt("aa", 0, groups));
+        Assert.assertEquals(2, groups[2]);
+        Assert.assertEquals(2, groups[3]);
+
+        //no groups
+        extractor = new CaptureExtractor(Pattern.regex("(?:ab)+"));
+        Assert.assertEquals(1, extractor.getGroupCount());
+        groups = new int[2];
+        Assert.assertEquals(4, extractor.matchAt("abab", 0, groups));
+        Assert.assertEquals(0, groups[0]);
+        Assert.assertEquals(4, groups[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadGroup() throws Exception
+    {
+        Pattern.capture(0, Pattern.match("a"));
+    }
+
+    private static String _randomString(Random r)
+    {
+        final String chars = "abcdx ";
+        char[] buf = new char[r.nextInt(10)];
+        for (int i=0; i<buf.length; ++i)
+        {
+            buf[i] = chars.charAt(r.nextInt(chars.length()));
+        }
+        return new String(buf);
+    }
+}
@@ -0,0 +1,103 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+//wraps a DFA and counts calls to getNextState
+class CountingState<M> extends DfaState<M>
+{
+    private final DfaState<M> m_delegate;
+    private final int[] m_counter;
+    private final HashMap<DfaState<M>, CountingState<M>> m_wrappers;
+
+    CountingState(DfaState<M> delegate, int[] counter, HashMap<DfaState<M>, CountingState<M>> wrappers)
+    {
+        m_delegate = delegate;
+        m_counter = counter;
+        m_wrappers = wrappers;
+        wrappers.put(delegate, this);
+    }
+
+    @Override
+    public DfaState<M> getNextState(char c)
+    {
+        ++m_counter[0];
+        return _wrap(m_delegate.getNextState(c));
+    }
+
+    @Override
+    public M getMatch()
+    {
+        return m_delegate.getMatch();
+    }
+
+    @Override
+    public int getMatchId()
+    {
+        return m_delegate.getMatchId();
+    }
+
+    @Override
+    public M getMatchBefore(int nextChar)
+    {
+        return m_delegate.getMatchBefore(nextChar);
+    }
+
+    @Override
+    public int getMatchIdBefore(int nextChar)
+    {
+        return m_delegate.getMatchIdBefore(nextChar);
+    }
+
+    @Override
+    public boolean hasConditionalMatch()
+    {
+        return m_delegate.hasConditionalMatch();
+    }
+
+    @Override
+    public DfaState<M> getStartStateAfter(int prevChar)
+    {
+        return _wrap(m_delegate.getStartStateAfter(prevChar));
+    }
+
+    @Override
+    public int getStateNumber()
+    {
+        return m_delegate.getStateNumber();
+    }
+
+    @Override
+    public void enumerateTransitions(DfaTransitionConsumer<M> consumer)
+    {
+        m_delegate.enumerateTransitions((first, last, target) -> consumer.acceptTransition(first, last, _wrap(target)));
+    }
+
+    @Override
+    public Iterable<DfaState<M>> getSuccessorStates()
+    {
+        List<DfaState<M>> ret = new ArrayList<>();
+        for (DfaState<M> target : m_delegate.getSuccessorStates())
+        {
+            ret.add(_wrap(target));
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean hasSuccessorStates()
+    {
+        return m_delegate.hasSuccessorStates();
+    }
+
+    private DfaState<M> _wrap(DfaState<M> state)
+    {
+        if (state == null)
+        {
+            return null;
+        }
+        CountingState<M> ret = m_wrappers.get(state);
+        return (ret != null ? ret : new CountingState<>(state, m_counter, m_wrappers));
+    }
+}
@@ -0,0 +1,158 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DfaAlgebraTest extends TestBase
+{
+    @Test
+    public void testUnion() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("[a-z]+"), "ID");
+        builder.addPattern(Pattern.regex("[0-9]+"), "NUM");
+        DfaState<String> group1 = builder.build(null);
+        builder.clear();
+        builder.addPattern(Pattern.regex("if|else"), "KEYWORD");
+        builder.addPattern(Pattern.regex("0x[0-9a-f]+"), "HEX");
+        DfaState<String> group2 = builder.build(null);
+        DfaAmbiguityResolver<String> resolver = conflicts -> conflicts.contains("KEYWORD") ? "KEYWORD" : "ID";
+
+        DfaState<String> have = DfaAlgebra.union(Arrays.asList(group1, group2), resolver);
+
+        builder.clear();
+        builder.addPattern(Pattern.regex("[a-z]+"), "ID");
+        builder.addPattern(Pattern.regex("[0-9]+"), "NUM");
+        builder.addPattern(Pattern.regex("if|else"), "KEYWORD");
+        builder.addPattern(Pattern.regex("0x[0-9a-f]+"), "HEX");
+        DfaState<String> want = builder.build(resolver);
+
+        Assert.assertEquals(_countStates(want), _countStates(have));
+        Random r = new Random(48);
+        for (int t = 0; t < 1000; ++t)
+        {
+            String src = _randomString(r, "ifelsx0123");
+            Assert.assertEquals(src, StringMatcher.matchWholeString(want, src), StringMatcher.matchWholeString(have, src));
+        }
+        Assert.assertEquals("KEYWORD", StringMatcher.matchWholeString(have, "else"));
+        Assert.assertEquals("HEX", StringMatcher.matchWholeString(have, "0x1f"));
+
+        //the first operand keeps its match IDs
+        Assert.assertEquals(group1.getNextState('7').getMatchId(), have.getNextState('7').getMatchId());
+
+        //ambiguities
+        try
+        {
+            DfaAlgebra.union(Arrays.asList(group1, group2), null);
+            Assert.fail("expected an ambiguity exception");
+        }
+        catch(DfaAmbiguityException e)
+        {
+        }
+    }
+
+    @Test
+    public void testIntersectionAndDifference() throws Exception
+    {
+        DfaState<String> words = _build("[a-z]+", "WORD");
+        DfaState<String> hasCat = _build(".*cat.*", "WORD");
+        DfaState<String> five = _build(".{5}", "FIVE");
+
+        DfaState<String> catWords = DfaAlgebra.intersection(Arrays.asList(words, hasCat), null);
+        DfaState<String> fiveWords = DfaAlgebra.intersection(Arrays.asList(words, five), conflicts -> "FIVEWORD");
+        DfaState<String> otherWords = DfaAlgebra.difference(words, hasCat);
+        DfaState<String> notWords = DfaAlgebra.complement(words, "OTHER");
+
+        Random r = new Random(49);
+        for (int t = 0; t < 2000; ++t)
+        {
+            String src = _randomString(r, "cat1x");
+            boolean isWord = src.matches("[a-z]+");
+            boolean isCat = src.contains("cat");
+            Assert.assertEquals(src, isWord && isCat ? "WORD" : null, StringMatcher.matchWholeString(catWords, src));
+            Assert.assertEquals(src, isWord && src.length() == 5 ? "FIVEWORD" : null, StringMatcher.matchWholeString(fiveWords, src));
+            Assert.assertEquals(src, isWord && !isCat ? "WORD" : null, StringMatcher.matchWholeString(otherWords, src));
+            Assert.assertEquals(src, isWord ? null : "OTHER", StringMatcher.matchWholeString(notWords, src));
+        }
+
+        //complement of the complement
+        DfaState<String> words2 = DfaAlgebra.complement(notWords, "WORD");
+        Assert.assertEquals(_countStates(words), _countStates(words2));
+        Assert.assertEquals("WORD", StringMatcher.matchWholeString(words2, "abc"));
+        Assert.assertNull(StringMatcher.matchWholeString(words2, "a\u1234"));
+
+        //empty intersection
+        DfaState<String> none = DfaAlgebra.intersection(Arrays.asList(_build("a+", "A"), _build("b+", "A")), null);
+        Assert.assertEquals(1, _countStates(none));
+        Assert.assertFalse(none.hasSuccessorStates());
+    }
+
+    @Test
+    public void testLanguageSubsets() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("a+"), "A");
+        builder.addPattern(Pattern.regex("b+"), "B");
+        builder.addPattern(Pattern.regex("c+"), "C");
+        DfaState<String> onlyC = builder.build(Collections.singleton("C"), null);
+        Assert.assertEquals(2, onlyC.getNextState('c').getMatchId());
+
+        //the first operand keeps its sparse IDs, and the others come after
+        DfaState<String> have = DfaAlgebra.union(Arrays.asList(onlyC, _build("x", "X")), null);
+        Assert.assertEquals("C", StringMatcher.matchWholeString(have, "cc"));
+        Assert.assertEquals(2, have.getNextState('c').getMatchId());
+        Assert.assertEquals(3, have.getNextState('x').getMatchId());
+        Assert.assertNull(have.getNextState('a'));
+
+        DfaState<String> fewer = DfaAlgebra.difference(onlyC, _build("ccc", "C"));
+        Assert.assertEquals(2, fewer.getNextState('c').getMatchId());
+        Assert.assertNull(StringMatcher.matchWholeString(fewer, "ccc"));
+        Assert.assertEquals("C", StringMatcher.matchWholeString(fewer, "cccc"));
+    }
+
+    @Test
+    public void testAssertions() throws Exception
+    {
+        DfaState<String> cats = _build("\\bcat\\b", "CAT");
+        DfaState<String> nums = _build("^[0-9]+", "NUM");
+        DfaState<String> have = DfaAlgebra.union(Arrays.asList(cats, nums), null);
+
+        String src = "cat concat cats 12 cat\n34 cat_ (cat)";
+        StringBuilder sb = new StringBuilder();
+        StringMatchIterator<String> it = new StringMatcher(src).findAll(have);
+        while (it.hasNext())
+        {
+            sb.append(it.next()).append('@').append(it.matchStartPosition()).append(' ');
+        }
+        Assert.assertEquals("CAT@0 CAT@19 NUM@23 CAT@32 ", sb.toString());
+
+        //words that aren't followed by a word character
+        DfaState<String> notCats = DfaAlgebra.difference(_build("[a-z]+", "WORD"), cats);
+        StringMatcher matcher = new StringMatcher("cat cats");
+        Assert.assertEquals("WORD", matcher.matchAt(notCats, 0));
+        Assert.assertEquals(2, matcher.getLastMatchEnd());
+        Assert.assertEquals("WORD", matcher.matchAt(notCats, 4));
+        Assert.assertEquals(8, matcher.getLastMatchEnd());
+    }
+
+    private static DfaState<String> _build(String regex, String result)
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex(regex), result);
+        return builder.build(null);
+    }
+
+    private static String _randomString(Random r, String chars)
+    {
+        char[] buf = new char[r.nextInt(8)];
+        for (int i=0; i<buf.length; ++i)
+        {
+            buf[i] = chars.charAt(r.nextInt(chars.length()));
+        }
+        return new String(buf);
+    }
+}
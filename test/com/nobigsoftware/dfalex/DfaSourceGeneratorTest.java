@@ -0,0 +1,114 @@
+package com.nobigsoftware.dfalex;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class DfaSourceGeneratorTest extends TestBase
+{
+    @Test
+    public void test() throws Exception
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        DfaTable<JavaToken> table = builder.buildTable(null);
+        String source = new DfaSourceGenerator(table).generate("gen.test", "JavaTokenMatcher");
+        
+        //compile and load it
+        File dir = Files.createTempDirectory("dfagen").toFile();
+        File srcFile = new File(dir, "JavaTokenMatcher.java");
+        Files.write(srcFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toURI().toURL()}))
+        {
+            Assert.assertEquals(0, compiler.run(null, null, null, "-d", dir.getPath(), srcFile.getPath()));
+            Class<?> cls = loader.loadClass("gen.test.JavaTokenMatcher");
+            Method matchAt = cls.getMethod("matchAt", CharSequence.class, int.class, int.class);
+            @SuppressWarnings("unchecked")
+            List<String> results = (List<String>)cls.getField("RESULTS").get(null);
+            
+            String src = _readResource("SearcherTestInput.txt") + "\u00e9\u4e2d\uffff \"\u00e9\" 1";
+            for (int pos = 0; pos < src.length(); ++pos)
+            {
+                long want = table.matchAt(src, pos, src.length());
+                long have = (Long)matchAt.invoke(null, src, pos, src.length());
+                Assert.assertEquals(want, have);
+                if (want != DfaTable.NO_MATCH)
+                {
+                    JavaToken result = table.getResult(DfaTable.getMatchId(want));
+                    Assert.assertEquals(result, JavaToken.valueOf(results.get(DfaTable.getMatchId(have))));
+                }
+            }
+        }
+        finally
+        {
+            _delete(dir);
+        }
+    }
+    
+    @Test
+    public void testAssertions() throws Exception
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        
+        DfaTable<String> table = DfaTableTest.assertionBuilder().buildTable(DfaTableTest::resolveAssertionResults);
+        String source = new DfaSourceGenerator(table).generate(null, "AssertionMatcher");
+        
+        File dir = Files.createTempDirectory("dfagen").toFile();
+        File srcFile = new File(dir, "AssertionMatcher.java");
+        Files.write(srcFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toURI().toURL()}))
+        {
+            Assert.assertEquals(0, compiler.run(null, null, null, "-d", dir.getPath(), srcFile.getPath()));
+            Class<?> cls = loader.loadClass("AssertionMatcher");
+            Method matchAt = cls.getMethod("matchAt", CharSequence.class, int.class, int.class);
+            Method matchArrayAt = cls.getMethod("matchAt", char[].class, int.class, int.class);
+            
+            //^, $, and \b see the characters around the match, and the limit is the end of the input
+            String src = "aa\naab ab1 ba b\nbb a1 \n";
+            for (int pos = 0; pos < src.length(); ++pos)
+            {
+                for (int limit = pos; limit <= src.length(); ++limit)
+                {
+                    long want = table.matchAt(src, pos, limit);
+                    Assert.assertEquals(want, matchAt.invoke(null, src, pos, limit));
+                    Assert.assertEquals(want, matchArrayAt.invoke(null, src.toCharArray(), pos, limit));
+                }
+            }
+        }
+        finally
+        {
+            _delete(dir);
+        }
+    }
+    
+    private static void _delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                _delete(child);
+            }
+        }
+        file.delete();
+    }
+}
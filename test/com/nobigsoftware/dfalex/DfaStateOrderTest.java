@@ -0,0 +1,55 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DfaStateOrderTest extends TestBase
+{
+    @Test(timeout = 20000)
+    public void testLinear() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.BLOCK_COMMENT, "COMMENT");
+        builder.addPattern(Pattern.regex("[/* ]"), "CHAR");
+        //every position starts an unterminated comment that runs to the end of the sample
+        StringBuilder sample = new StringBuilder();
+        for (int i=0; i<100000; ++i)
+        {
+            sample.append("/* ");
+        }
+        builder.setStateOrderSamples(Collections.singletonList(sample));
+        DfaState<String> start = builder.build(null);
+        Assert.assertEquals("COMMENT", StringMatcher.matchWholeString(start, "/* x */"));
+    }
+
+    @Test
+    public void testAssertions() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("ab\\b"), "AB");
+        builder.addPattern(Pattern.regex("b+"), "B");
+        builder.addPattern(Pattern.regex("~"), "TILDE");
+        StringBuilder sample = new StringBuilder();
+        for (int i=0; i<100; ++i)
+        {
+            sample.append("ab~");
+        }
+        builder.setStateOrderSamples(Collections.singletonList(sample));
+        DfaState<String> start = builder.build(null);
+        //"ab" is a token, since it's followed by a non-word character, so no token starts at 'b'
+        Assert.assertTrue(_stateAfter(start, "~").getStateNumber() < _stateAfter(start, "b").getStateNumber());
+        Assert.assertEquals("AB", StringMatcher.matchWholeString(start, "ab"));
+    }
+
+    private static DfaState<String> _stateAfter(DfaState<String> state, String str)
+    {
+        state = state.getStartStateAfter(DfaState.NO_CHAR);
+        for (int i=0; i<str.length(); ++i)
+        {
+            state = state.getNextState(str.charAt(i));
+        }
+        return state;
+    }
+}
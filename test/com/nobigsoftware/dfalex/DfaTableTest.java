@@ -0,0 +1,117 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DfaTableTest extends TestBase
+{
+    @Test
+    public void test() throws Exception
+    {
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        DfaState<JavaToken> start = builder.build(null);
+        DfaTable<JavaToken> table = builder.buildTable(null);
+        Assert.assertEquals(_countStates(start), table.getStateCount());
+        Assert.assertTrue(table.getClassCount() < 100);
+        
+        //same results as the DFA everywhere
+        String src = _readResource("SearcherTestInput.txt") + "\u00e9\u4e2d\uffff \"\u00e9\" 1";
+        char[] chars = src.toCharArray();
+        StringMatcher matcher = new StringMatcher(src);
+        int nmatches = 0;
+        for (int pos = 0; pos < src.length(); ++pos)
+        {
+            JavaToken want = matcher.matchAt(start, pos);
+            long match = table.matchAt(src, pos, src.length());
+            Assert.assertEquals(match, table.matchAt(chars, pos, chars.length));
+            if (want == null)
+            {
+                Assert.assertEquals(DfaTable.NO_MATCH, match);
+                continue;
+            }
+            ++nmatches;
+            Assert.assertEquals(want, table.getResult(DfaTable.getMatchId(match)));
+            Assert.assertEquals(builder.getMatchId(want), DfaTable.getMatchId(match));
+            Assert.assertEquals(matcher.getLastMatchEnd(), DfaTable.getMatchEnd(match));
+        }
+        Assert.assertTrue(nmatches > 100);
+        
+        //limits
+        long match = table.matchAt("while", 0, 4);
+        Assert.assertEquals(DfaTable.NO_MATCH, match);
+        match = table.matchAt("123456", 1, 3);
+        Assert.assertEquals(JavaToken.INTEGER_LITERAL, table.getResult(DfaTable.getMatchId(match)));
+        Assert.assertEquals(3, DfaTable.getMatchEnd(match));
+    }
+    
+    @Test
+    public void testAssertions() throws Exception
+    {
+        DfaBuilder<String> builder = assertionBuilder();
+        DfaTable<String> table = builder.buildTable(DfaTableTest::resolveAssertionResults);
+        DfaState<String> start = builder.build(DfaTableTest::resolveAssertionResults);
+        
+        //same results as StringMatcher, which sees the characters around the match
+        Random r = new Random(47);
+        String chars = "ab 1\n";
+        for (int t=0; t<200; ++t)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = r.nextInt(12); i > 0; --i)
+            {
+                sb.append(chars.charAt(r.nextInt(chars.length())));
+            }
+            String src = sb.toString();
+            StringMatcher matcher = new StringMatcher(src);
+            for (int pos = 0; pos < src.length(); ++pos)
+            {
+                String want = matcher.matchAt(start, pos);
+                long match = table.matchAt(src, pos, src.length());
+                Assert.assertEquals(match, table.matchAt(src.toCharArray(), pos, src.length()));
+                if (want == null)
+                {
+                    Assert.assertEquals("\"" + src + "\" at " + pos, DfaTable.NO_MATCH, match);
+                    continue;
+                }
+                Assert.assertEquals("\"" + src + "\" at " + pos, want, table.getResult(DfaTable.getMatchId(match)));
+                Assert.assertEquals(matcher.getLastMatchEnd(), DfaTable.getMatchEnd(match));
+            }
+        }
+        
+        //the character before pos, and the limit as the end of the input
+        Assert.assertEquals("LINE", table.getResult(DfaTable.getMatchId(table.matchAt("\na", 1, 2))));
+        Assert.assertEquals("WORD", table.getResult(DfaTable.getMatchId(table.matchAt(" a", 1, 2))));
+        Assert.assertEquals("CHAR", table.getResult(DfaTable.getMatchId(table.matchAt("ba", 1, 2))));
+        Assert.assertEquals("END", table.getResult(DfaTable.getMatchId(table.matchAt("abb b", 1, 3))));
+        long match = table.matchAt("abb b", 1, 5);
+        Assert.assertEquals("CHAR", table.getResult(DfaTable.getMatchId(match)));
+        Assert.assertEquals(2, DfaTable.getMatchEnd(match));
+    }
+    
+    //patterns with ^, $, and \b
+    static DfaBuilder<String> assertionBuilder()
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("^a+"), "LINE");
+        builder.addPattern(Pattern.regex("b+$"), "END");
+        builder.addPattern(Pattern.regex("\\ba+\\b"), "WORD");
+        builder.addPattern(Pattern.regex("[ab1]"), "CHAR");
+        return builder;
+    }
+    
+    //ambiguity resolver for assertionBuilder.  Results that were added first win
+    static String resolveAssertionResults(Set<? extends String> conflicts)
+    {
+        return Collections.min(conflicts, Comparator.comparing(Arrays.asList("LINE", "END", "WORD", "CHAR")::indexOf));
+    }
+}
@@ -0,0 +1,194 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IncrementalBuildTest extends TestBase
+{
+    @Test
+    public void testAddRemove() throws Exception
+    {
+        Random r = new Random(47);
+        IncrementalDfaBuilder<Integer> incremental = new IncrementalDfaBuilder<>();
+        List<String> regexes = new ArrayList<>();
+        for (int i=0; i<300; ++i)
+        {
+            regexes.add(_randomRegex(r));
+            incremental.addPattern(Pattern.regex(regexes.get(i)), i);
+        }
+        DfaAmbiguityResolver<Integer> resolver = conflicts -> {
+            int min = Integer.MAX_VALUE;
+            for (Integer result : conflicts)
+            {
+                min = Math.min(min, result);
+            }
+            return min;
+        };
+        _check(r, incremental, regexes, resolver);
+        int fullBuildParts = incremental.getGroupBuildCount();
+        Assert.assertEquals((300 + IncrementalDfaBuilder.GROUP_SIZE - 1)/IncrementalDfaBuilder.GROUP_SIZE, fullBuildParts);
+
+        //change a few results.  Only their groups are rebuilt
+        for (int i : new int[] {3, 5, 200})
+        {
+            incremental.removePatterns(i);
+            regexes.set(i, null);
+        }
+        incremental.addPattern(Pattern.regex("xyz"), 7);
+        regexes.set(7, regexes.get(7) + "|xyz");
+        _check(r, incremental, regexes, resolver);
+        Assert.assertEquals(fullBuildParts + 2, incremental.getGroupBuildCount());
+
+        //a new result goes in the last group
+        incremental.addPattern(Pattern.regex("[ab]+c"), 300);
+        regexes.add("[ab]+c");
+        _check(r, incremental, regexes, resolver);
+        Assert.assertEquals(fullBuildParts + 3, incremental.getGroupBuildCount());
+
+        //removed results can come back
+        incremental.addPattern(Pattern.regex("a.c"), 3);
+        regexes.set(3, "a.c");
+        _check(r, incremental, regexes, resolver);
+    }
+
+    @Test
+    public void testChurn() throws Exception
+    {
+        Random r = new Random(53);
+        IncrementalDfaBuilder<Integer> incremental = new IncrementalDfaBuilder<>();
+        List<String> regexes = new ArrayList<>();
+        int size = IncrementalDfaBuilder.GROUP_SIZE*2;
+        for (int i=0; i<size; ++i)
+        {
+            regexes.add(_randomRegex(r));
+            incremental.addPattern(Pattern.regex(regexes.get(i)), i);
+        }
+        DfaAmbiguityResolver<Integer> resolver = conflicts -> {
+            int min = Integer.MAX_VALUE;
+            for (Integer result : conflicts)
+            {
+                min = Math.min(min, result);
+            }
+            return min;
+        };
+        //replace results over and over.  New results fill the holes left by removed ones
+        for (int i=0; i<size*5; ++i)
+        {
+            int victim = r.nextInt(regexes.size());
+            while (regexes.get(victim) == null)
+            {
+                victim = (victim+1) % regexes.size();
+            }
+            incremental.removePatterns(victim);
+            regexes.set(victim, null);
+            regexes.add(_randomRegex(r));
+            incremental.addPattern(Pattern.regex(regexes.get(regexes.size()-1)), regexes.size()-1);
+            Assert.assertEquals(2, incremental.getGroupCount());
+        }
+        _check(r, incremental, regexes, resolver);
+        Assert.assertEquals(-1, incremental.getMatchId(regexes.indexOf(null)));
+    }
+
+    @Test
+    public void testLanguages() throws Exception
+    {
+        IncrementalDfaBuilder<String> builder = new IncrementalDfaBuilder<>();
+        builder.addPattern(Pattern.regex("[a-z]+"), "ID");
+        builder.addPattern(Pattern.regex("[0-9]+"), "NUM");
+        builder.addPattern(Pattern.regex("if|else"), "KEYWORD");
+        builder.addPattern(Pattern.regex("^#[a-z]+"), "DIRECTIVE");
+        DfaAmbiguityResolver<String> resolver = conflicts -> conflicts.contains("KEYWORD") ? "KEYWORD" : null;
+        DfaState<String> lang0 = builder.build(new HashSet<>(Arrays.asList("ID", "NUM")), resolver);
+        DfaState<String> lang1 = builder.build(new HashSet<>(Arrays.asList("ID", "KEYWORD", "DIRECTIVE")), resolver);
+        Assert.assertEquals("ID", StringMatcher.matchWholeString(lang0, "if"));
+        Assert.assertEquals("NUM", StringMatcher.matchWholeString(lang0, "42"));
+        Assert.assertEquals("KEYWORD", StringMatcher.matchWholeString(lang1, "if"));
+        Assert.assertNull(StringMatcher.matchWholeString(lang1, "42"));
+        Assert.assertEquals("DIRECTIVE", StringMatcher.matchWholeString(lang1, "#define"));
+        Assert.assertNull(StringMatcher.matchWholeString(lang1.getStartStateAfter('a'), "#define"));
+        Assert.assertEquals(builder.getMatchId("NUM"), lang0.getNextState('4').getMatchId());
+
+        //ambiguities are reported when they're reached
+        DfaState<String> start = builder.build(null);
+        Assert.assertEquals("NUM", StringMatcher.matchWholeString(start, "42"));
+        try
+        {
+            StringMatcher.matchWholeString(start, "if");
+            Assert.fail("expected an ambiguity exception");
+        }
+        catch(DfaAmbiguityException e)
+        {
+        }
+    }
+
+    private void _check(Random r, IncrementalDfaBuilder<Integer> incremental, List<String> regexes,
+            DfaAmbiguityResolver<Integer> resolver)
+    {
+        DfaBuilder<Integer> full = new DfaBuilder<>();
+        for (int i=0; i<regexes.size(); ++i)
+        {
+            if (regexes.get(i) != null)
+            {
+                full.addPattern(Pattern.regex(regexes.get(i)), i);
+            }
+        }
+        DfaState<Integer> want = full.build(resolver);
+        DfaState<Integer> have = incremental.build(resolver);
+        Assert.assertTrue(_countStates(have) >= _countStates(want));
+        for (int t=0; t<500; ++t)
+        {
+            String src = _randomString(r, "abcxyz");
+            Assert.assertEquals(src, StringMatcher.matchWholeString(want, src),
+                    StringMatcher.matchWholeString(have, src));
+            DfaState<Integer> wantState = want, haveState = have;
+            for (int i=0; i<src.length() && wantState != null; ++i)
+            {
+                wantState = wantState.getNextState(src.charAt(i));
+                haveState = haveState.getNextState(src.charAt(i));
+            }
+            Assert.assertEquals(src, wantState == null, haveState == null);
+            if (wantState != null)
+            {
+                Assert.assertEquals(src, incremental.getMatchId(haveState.getMatch()), haveState.getMatchId());
+            }
+        }
+    }
+
+    private static String _randomRegex(Random r)
+    {
+        StringBuilder sb = new StringBuilder();
+        int len = r.nextInt(4)+1;
+        for (int i=0; i<len; ++i)
+        {
+            sb.append("abcxyz".charAt(r.nextInt(6)));
+            switch(r.nextInt(5))
+            {
+                case 0:
+                    sb.append('*');
+                    break;
+                case 1:
+                    sb.append('?');
+                    break;
+                default:
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String _randomString(Random r, String chars)
+    {
+        char[] buf = new char[r.nextInt(6)];
+        for (int i=0; i<buf.length; ++i)
+        {
+            buf[i] = chars.charAt(r.nextInt(chars.length()));
+        }
+        return new String(buf);
+    }
+}
@@ -1,7 +1,9 @@
 package com.nobigsoftware.dfalex;
 
+import java.util.Collections;
 import java.util.EnumSet;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 public class JavaTest extends TestBase
@@ -18,4 +20,58 @@ public class JavaTest extends TestBase
         DfaState<?> start = builder.build(lang, null);
         _checkDfa(start, "JavaTest.out.txt", false);
     }
+    
+    @Test
+    public void testCompact() throws Exception
+    {
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        builder.setCompactStates(true);
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        EnumSet<JavaToken> lang = EnumSet.allOf(JavaToken.class);
+        DfaState<?> start = builder.build(lang, null);
+        _checkDfa(start, "JavaTest.out.txt", false);
+    }
+    
+    @Test
+    public void testReorder() throws Exception
+    {
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        EnumSet<JavaToken> lang = EnumSet.allOf(JavaToken.class);
+        
+        builder.setReorderStates(true);
+        DfaState<JavaToken> start = builder.build(lang, null);
+        _checkDfa(start, "JavaTest.out.txt", false);
+        Assert.assertEquals(0, start.getStateNumber());
+        //breadth-first, so shorter prefixes come first
+        Assert.assertTrue(_stateAfter(start, "w").getStateNumber() < _stateAfter(start, "wh").getStateNumber());
+        Assert.assertTrue(_stateAfter(start, "wh").getStateNumber() < _stateAfter(start, "whil").getStateNumber());
+        
+        //by frequency
+        StringBuilder sample = new StringBuilder();
+        for (int i=0; i<100; ++i)
+        {
+            sample.append("while(true)");
+        }
+        builder.setStateOrderSamples(Collections.singletonList(sample));
+        start = builder.build(lang, null);
+        _checkDfa(start, "JavaTest.out.txt", false);
+        Assert.assertEquals(0, start.getStateNumber());
+        Assert.assertTrue(_stateAfter(start, "whil").getStateNumber() < _stateAfter(start, "s").getStateNumber());
+    }
+    
+    private static DfaState<JavaToken> _stateAfter(DfaState<JavaToken> state, String str)
+    {
+        for (int i=0; i<str.length(); ++i)
+        {
+            state = state.getNextState(str.charAt(i));
+        }
+        return state;
+    }
 }
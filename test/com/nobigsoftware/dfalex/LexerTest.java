@@ -0,0 +1,306 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LexerTest extends TestBase
+{
+    @Test
+    public void test() throws Exception
+    {
+        Lexer<String> lexer = _buildLexer();
+        String src = "x1 = 42+y /* comment */ * 7;";
+        Assert.assertEquals("ID(x1) OP(=) NUM(42) OP(+) ID(y) OP(*) NUM(7) ERR(;) ",
+                _tokenString(src, lexer.tokenize(src)));
+    }
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        Lexer<String> lexer = _buildLexer();
+        String src = "#$ a@@@b /* unterminated";
+        Assert.assertEquals("ERR(#$) ID(a) ERR(@@@) ID(b) OP(/) OP(*) ID(unterminated) ",
+                _tokenString(src, lexer.tokenize(src)));
+
+        //without an error result, unmatched characters are dropped
+        lexer.setErrorResult(null);
+        Assert.assertEquals("ID(a) ID(b) OP(/) OP(*) ID(unterminated) ",
+                _tokenString(src, lexer.tokenize(src)));
+    }
+
+    @Test
+    public void testBufferReuse() throws Exception
+    {
+        Lexer<String> lexer = _buildLexer();
+        TokenBuffer<String> buf = new TokenBuffer<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<1000; ++i)
+        {
+            sb.append("abc ").append(i).append(" + ");
+        }
+        String src = sb.toString();
+        Assert.assertEquals(3000, lexer.tokenize(src, 0, src.length(), buf));
+        Assert.assertEquals(3000, buf.size());
+        Assert.assertEquals("NUM", buf.getResult(2998));
+        Assert.assertEquals(lexer.getTypeForResult("NUM"), buf.getType(2998));
+        Assert.assertEquals(src.length()-6, buf.getStart(2998));
+        Assert.assertEquals(src.length()-3, buf.getEnd(2998));
+
+        //tokenizing part of the input, and appending
+        Assert.assertEquals(2, lexer.tokenize(src, 1, 6, buf));
+        Assert.assertEquals(3002, buf.size());
+        Assert.assertEquals("ID", buf.getResult(3000));
+        Assert.assertEquals(1, buf.getStart(3000));
+        Assert.assertEquals(3, buf.getEnd(3000));
+        Assert.assertEquals("NUM", buf.getResult(3001));
+        Assert.assertEquals(4, buf.getStart(3001));
+        Assert.assertEquals(5, buf.getEnd(3001));
+
+        buf.clear();
+        Assert.assertEquals(0, buf.size());
+    }
+
+    @Test
+    public void testDocuments() throws Exception
+    {
+        Lexer<String> lexer = _buildLexer();
+        String[] docs = {"a = 1", "", "/* x */ b;;c", "#", "d+e*f", "42"};
+        StringBuilder sb = new StringBuilder();
+        int[] docOffsets = new int[docs.length+1];
+        for (int i=0; i<docs.length; ++i)
+        {
+            docOffsets[i] = sb.length();
+            sb.append(docs[i]);
+        }
+        docOffsets[docs.length] = sb.length();
+        char[] src = sb.toString().toCharArray();
+        
+        //what we expect for each document, with positions in src
+        StringBuilder want = new StringBuilder();
+        for (int i=0; i<docs.length; ++i)
+        {
+            TokenBuffer<String> tokens = lexer.tokenize(docs[i]);
+            for (int t=0; t<tokens.size(); ++t)
+            {
+                want.append(tokens.getType(t)).append('@').append(tokens.getStart(t)+docOffsets[i])
+                    .append('-').append(tokens.getEnd(t)+docOffsets[i]).append(' ');
+            }
+            want.append("| ");
+        }
+        
+        //a document that doesn't fit isn't tokenized
+        int[] small = new int[3];
+        Assert.assertEquals(3, lexer.tokenizeDocuments(src, docOffsets, 2, docs.length, small, small.clone(), small.clone(), new int[4]));
+        //...and it's an error if no document fits, since the caller could never make progress
+        try
+        {
+            lexer.tokenizeDocuments(src, docOffsets, 4, docs.length, small, small.clone(), small.clone(), new int[2]);
+            Assert.fail("expected an exception for a document with too many tokens");
+        }
+        catch(IllegalArgumentException e)
+        {
+        }
+
+        //batches of various sizes.  The longest document has 5 tokens
+        for (int cap = 5; cap < 20; ++cap)
+        {
+            int[] types = new int[cap];
+            int[] starts = new int[cap];
+            int[] ends = new int[cap];
+            int[] docEnds = new int[docs.length];
+            StringBuilder have = new StringBuilder();
+            for (int doc = 0; doc < docs.length;)
+            {
+                int nextDoc = lexer.tokenizeDocuments(src, docOffsets, doc, docs.length, types, starts, ends, docEnds);
+                Assert.assertTrue(nextDoc > doc);
+                int t=0;
+                for (int d = doc; d < nextDoc; ++d)
+                {
+                    for (; t<docEnds[d-doc]; ++t)
+                    {
+                        have.append(types[t]).append('@').append(starts[t]).append('-').append(ends[t]).append(' ');
+                    }
+                    have.append("| ");
+                }
+                doc = nextDoc;
+            }
+            Assert.assertEquals(want.toString(), have.toString());
+        }
+    }
+
+    @Test
+    public void testLinear() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("x"), "X");
+        builder.addPattern(Pattern.regex("x[a-z]*y"), "XY");
+        builder.addPattern(Pattern.BLOCK_COMMENT, "COMMENT");
+        int[] counter = new int[1];
+        Lexer<String> lexer = new Lexer<>(new CountingState<>(builder.build(null), counter, new HashMap<>()))
+                .setErrorResult("ERR");
+        final int n = 20000;
+
+        //every x is a token, but each one starts a scan to the end
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<n; ++i)
+        {
+            sb.append('x');
+        }
+        String src = sb.toString();
+        counter[0] = 0;
+        TokenBuffer<String> tokens = lexer.tokenize(src);
+        Assert.assertEquals(n, tokens.size());
+        Assert.assertEquals("X", tokens.getResult(n-1));
+        Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < src.length()*10);
+        counter[0] = 0;
+        int[] docTokens = new int[n];
+        Assert.assertEquals(1, lexer.tokenizeDocuments(src.toCharArray(), new int[] {0, n}, 0, 1,
+                docTokens, docTokens.clone(), docTokens.clone(), new int[1]));
+        Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < src.length()*10);
+
+        //an unterminated comment at every position
+        sb.setLength(0);
+        for (int i=0; i<n; ++i)
+        {
+            sb.append("/* ");
+        }
+        src = sb.toString();
+        counter[0] = 0;
+        tokens = lexer.tokenize(src);
+        Assert.assertEquals(1, tokens.size());
+        Assert.assertEquals("ERR", tokens.getResult(0));
+        Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < src.length()*10);
+    }
+
+    @Test
+    public void testSkipResults() throws Exception
+    {
+        Lexer<String> lexer = _buildLexer();
+        try
+        {
+            lexer.addSkipResult("SPACE");
+            Assert.fail("expected an exception for a result the DFA doesn't produce");
+        }
+        catch(IllegalArgumentException e)
+        {
+        }
+        //the error result isn't produced by the DFA
+        try
+        {
+            lexer.addSkipResult("ERR");
+            Assert.fail("expected an exception for the error result");
+        }
+        catch(IllegalArgumentException e)
+        {
+        }
+        String src = "a # b";
+        Assert.assertEquals("ID(a) ERR(#) ID(b) ", _tokenString(src, lexer.tokenize(src)));
+    }
+
+    @Test
+    public void testAssertions() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("^#[a-z]+"), "DIRECTIVE");
+        builder.addPattern(Pattern.regex("#"), "HASH");
+        builder.addPattern(Pattern.regex("[a-z]+"), "ID");
+        builder.addPattern(Pattern.regex("[a-z]+:$"), "LABEL");
+        builder.addPattern(Pattern.regex(":"), "COLON");
+        builder.addPattern(Pattern.regex("[0-9]+\\b"), "NUM");
+        builder.addPattern(Pattern.regex("[ \n]+"), "WS");
+        Lexer<String> lexer = new Lexer<>(builder.build(null))
+                .addSkipResult("WS")
+                .setErrorResult("ERR");
+        String src = "#if a\nb #c d:\ne: f 12 34x";
+        Assert.assertEquals("DIRECTIVE(#if) ID(a) ID(b) HASH(#) ID(c) LABEL(d:) ID(e) COLON(:) ID(f) NUM(12) ERR(34) ID(x) ",
+                _tokenString(src, lexer.tokenize(src)));
+        
+        //the characters before start are seen, and the limit is the end of the input
+        TokenBuffer<String> tokens = new TokenBuffer<>();
+        lexer.tokenize(src, 8, 16, tokens);
+        Assert.assertEquals("HASH(#) ID(c) LABEL(d:) LABEL(e:) ", _tokenString(src, tokens));
+        
+        //each document is a separate input
+        char[] docs = "#a b:#c".toCharArray();
+        int[] types = new int[3];
+        int[] starts = new int[3];
+        int[] ends = new int[3];
+        int[] docEnds = new int[2];
+        Assert.assertEquals(2, lexer.tokenizeDocuments(docs, new int[] {0, 5, 7}, 0, 2, types, starts, ends, docEnds));
+        Assert.assertArrayEquals(new int[] {2, 3}, docEnds);
+        Assert.assertArrayEquals(new int[] {lexer.getTypeForResult("DIRECTIVE"), lexer.getTypeForResult("LABEL"),
+                lexer.getTypeForResult("DIRECTIVE")}, types);
+        Assert.assertArrayEquals(new int[] {0, 3, 5}, starts);
+        Assert.assertArrayEquals(new int[] {2, 5, 7}, ends);
+    }
+
+    @Test
+    public void testMatchIds() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("[a-z]+"), "ID");
+        builder.addPattern(Pattern.regex("[0-9]+"), "NUM");
+        builder.addPattern(Pattern.regex("if"), "IF");
+        builder.addPattern(Pattern.regex("[a-z]+[0-9]+"), "ID");
+        Assert.assertEquals(0, builder.getMatchId("ID"));
+        Assert.assertEquals(1, builder.getMatchId("NUM"));
+        Assert.assertEquals(2, builder.getMatchId("IF"));
+        Assert.assertEquals(-1, builder.getMatchId("KEYWORD"));
+        
+        //"if" is ambiguous.  The resolver produces a result that wasn't added
+        DfaState<String> start = builder.build(
+                new HashSet<>(Arrays.asList("NUM", "ID", "IF")),
+                conflicts -> "KEYWORD");
+        Assert.assertEquals(0, _matchId(start, "abc"));
+        Assert.assertEquals(0, _matchId(start, "abc12"));
+        Assert.assertEquals(1, _matchId(start, "12"));
+        Assert.assertEquals(3, _matchId(start, "if"));
+        Assert.assertEquals(-1, _matchId(start, "12a"));
+        List<String> results = new DfaAuxiliaryInformation<>(Collections.singletonList(start)).getMatchResultsById();
+        Assert.assertEquals(Arrays.asList("ID", "NUM", null, "KEYWORD"), results);
+        
+        //IDs are the same in languages that don't include every result
+        start = builder.build(Collections.singleton("NUM"), null);
+        Assert.assertEquals(1, _matchId(start, "12"));
+    }
+
+    private static int _matchId(DfaState<String> state, String str)
+    {
+        for (int i=0; i<str.length() && state != null; ++i)
+        {
+            state = state.getNextState(str.charAt(i));
+        }
+        return (state == null ? -1 : state.getMatchId());
+    }
+
+    private static Lexer<String> _buildLexer()
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("[a-zA-Z_][a-zA-Z_0-9]*"), "ID");
+        builder.addPattern(Pattern.regex("[0-9]+"), "NUM");
+        builder.addPattern(Pattern.regex("[+*/=\\-]"), "OP");
+        builder.addPattern(Pattern.regex("[ \t\r\n]+"), "WS");
+        builder.addPattern(Pattern.BLOCK_COMMENT, "COMMENT");
+        return new Lexer<>(builder.build(null))
+                .addSkipResult("WS")
+                .addSkipResult("COMMENT")
+                .setErrorResult("ERR");
+    }
+
+    private static String _tokenString(String src, TokenBuffer<String> tokens)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<tokens.size(); ++i)
+        {
+            sb.append(tokens.getResult(i)).append('(')
+                .append(src, tokens.getStart(i), tokens.getEnd(i)).append(") ");
+        }
+        return sb.toString();
+    }
+}
@@ -17,6 +17,8 @@ package com.nobigsoftware.dfalex;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -73,6 +75,111 @@ public class RegexTest extends TestBase
         _check(p1,p2);
     }
     
+    @Test
+    public void testPrebuiltTables() throws Exception
+    {
+        //if this fails, the grammar has changed.  Replace RegexParserTables.java with
+        //the output of RegexParser.generateTablesSource()
+        DfaTable<?> table = RegexParser.buildParserTable();
+        Assert.assertArrayEquals(DfaSourceGenerator.decodeInts(RegexParserTables.BLOCK_OFFSETS), table.getBlockOffsets());
+        Assert.assertArrayEquals(DfaSourceGenerator.decodeChars(RegexParserTables.CLASS_BLOCKS), table.getClassBlocks());
+        Assert.assertArrayEquals(DfaSourceGenerator.decodeInts(RegexParserTables.TABLE), table.getTable());
+        Assert.assertEquals(table.getResultsById().size(), RegexParserTables.ACTIONS.length);
+        for (int i=0; i<RegexParserTables.ACTIONS.length; ++i)
+        {
+            Object action = table.getResult(i);
+            Assert.assertEquals(action == null ? null : action.toString(), RegexParserTables.ACTIONS[i]);
+        }
+    }
+    
+    @Test
+    public void testParseCache() throws Exception
+    {
+        Matchable p1 = RegexParser.parse("a(b|c)*[d-f]", false);
+        Assert.assertSame(p1, RegexParser.parse("a(b|c)*[d-f]", false));
+        Matchable p2 = RegexParser.parse("a(b|c)*[d-f]", true);
+        Assert.assertNotSame(p1, p2);
+        Assert.assertSame(p2, RegexParser.parse("a(b|c)*[d-f]", true));
+        
+        //errors aren't cached
+        for (int i=0; i<2; ++i)
+        {
+            try
+            {
+                RegexParser.parse("a(b", false);
+                Assert.fail("expected an error");
+            }
+            catch(IllegalArgumentException e)
+            {
+            }
+        }
+    }
+    
+    @Test
+    public void testBoundedRepeat() throws Exception
+    {
+        _check(Pattern.regex("aaa"), Pattern.regex("a{3}"));
+        _check(Pattern.regex("aaa*"), Pattern.regex("a{2,}"));
+        _check(Pattern.regex("aaa?a?"), Pattern.regex("a{2,4}"));
+        _check(Pattern.regex("(ab?)?(ab?)?"), Pattern.regex("(ab?){0,2}"));
+        _check(Pattern.regex("x(ab|c)((ab|c)(ab|c)?)?y"), Pattern.regex("x(ab|c){1,3}y"));
+        _check(Pattern.regex("(a?b?)(a?b?)(a?b?)*"), Pattern.regex("(a?b?){2,}"));
+        _check(Pattern.regex("[0-9][0-9]?[0-9]?"), Pattern.match(CharRange.DIGITS).thenRepeat(CharRange.DIGITS, 0, 2));
+        _check(Pattern.EMPTY, Pattern.regex("a{0}"));
+        _check(Pattern.regex("a{3}"), Pattern.regex("a{3}").getReversed());
+        
+        //a { that doesn't start a count is a literal
+        _check(Pattern.match("a{").then("x}"), Pattern.regex("a{x}"));
+        _check(Pattern.match("a{,2}"), Pattern.regex("a{,2}"));
+        
+        Assert.assertTrue(Pattern.regex("a{0,3}").matchesEmpty());
+        Assert.assertFalse(Pattern.regex("a{1,3}").matchesEmpty());
+        Assert.assertFalse(Pattern.regex("a{1,3}").isUnbounded());
+        Assert.assertTrue(Pattern.regex("a{2,}").isUnbounded());
+        
+        for (String bad : new String[] {"a{3,2}", "a{1001}", "a{99999999999}"})
+        {
+            try
+            {
+                Pattern.regex(bad);
+                Assert.fail("expected an error for " + bad);
+            }
+            catch(IllegalArgumentException e)
+            {
+            }
+        }
+        
+        //optional repetitions don't make long chains of epsilons
+        Nfa<Boolean> chain = new Nfa<>();
+        Pattern p = Pattern.EMPTY;
+        for (int i=0; i<64; ++i)
+        {
+            p = p.thenMaybe(CharRange.DIGITS);
+        }
+        Assert.assertTrue(_closureSize(chain, p.addToNFA(chain, chain.addState(true))) > 64);
+        Nfa<Boolean> bounded = new Nfa<>();
+        Pattern p2 = Pattern.repeat(CharRange.DIGITS, 0, 64);
+        Assert.assertEquals(3, _closureSize(bounded, p2.addToNFA(bounded, bounded.addState(true))));
+        _check(p, p2);
+    }
+    
+    private static int _closureSize(Nfa<?> nfa, int state)
+    {
+        List<Integer> closure = new ArrayList<>();
+        closure.add(state);
+        for (int i=0; i<closure.size(); ++i)
+        {
+            for (Integer next : nfa.getStateEpsilons(closure.get(i)))
+            {
+                if (!closure.contains(next))
+                {
+                    closure.add(next);
+                }
+            }
+        }
+        return closure.size();
+    }
+    
     private void _check(Matchable pWant, Matchable pHave) throws Exception
     {
         String want = _pToString(pWant);
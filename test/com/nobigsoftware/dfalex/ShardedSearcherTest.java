@@ -0,0 +1,153 @@
+package com.nobigsoftware.dfalex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShardedSearcherTest extends TestBase
+{
+    @Test
+    public void testExplosivePatterns() throws Exception
+    {
+        //each of these is small by itself, but together they make a DFA with
+        //thousands of states
+        DfaBuilder<Integer> builder = new DfaBuilder<>();
+        for (int i = 0; i < 10; ++i)
+        {
+            builder.addPattern(Pattern.regex("[ab]*a[ab]{" + i + "}c"), i);
+        }
+        builder.addPattern(Pattern.regex("abc"), 100);
+        builder.addPattern(Pattern.regex("bb+"), 101);
+        DfaAmbiguityResolver<Integer> resolver = conflicts -> {
+            int min = Integer.MAX_VALUE;
+            for (Integer result : conflicts)
+            {
+                min = Math.min(min, result);
+            }
+            return min;
+        };
+        List<List<Integer>> shards = builder.partitionShards(200);
+        Assert.assertTrue(shards.size() > 1);
+        int total = 0;
+        for (List<Integer> shard : shards)
+        {
+            total += shard.size();
+        }
+        Assert.assertEquals(12, total);
+
+        StringSearcher<Integer> want = builder.buildStringSearcher(resolver);
+        StringSearcher<Integer> have = builder.buildShardedStringSearcher(resolver, 200);
+        Random r = new Random(49);
+        for (int t = 0; t < 300; ++t)
+        {
+            _checkSame(want, have, _randomString(r, "abbc x", 40));
+        }
+    }
+
+    @Test
+    public void testAssertions() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("\\bcat\\b"), "CAT");
+        builder.addPattern(Pattern.regex("^[0-9]+"), "NUM");
+        builder.addPattern(Pattern.regex("c[a-z]*"), "C");
+        builder.addPattern(Pattern.regex("[0-9]+x"), "NX");
+        StringSearcher<String> want = builder.buildStringSearcher(conflicts -> "CAT");
+        //one result per shard
+        StringSearcher<String> have = builder.buildShardedStringSearcher(conflicts -> "CAT", 1);
+        Assert.assertEquals(4, builder.partitionShards(1).size());
+        Random r = new Random(50);
+        for (int t = 0; t < 300; ++t)
+        {
+            _checkSame(want, have, _randomString(r, "cat12x \n", 20));
+        }
+        Assert.assertEquals("C:ccat NX:12x CAT:cat ", _describe(have.searchString("ccat 12x cat")));
+    }
+
+    @Test
+    public void testProductStateLimit() throws Exception
+    {
+        //one component for each pattern, so almost every input reaches new combinations
+        List<DfaState<BitSet>> components = new ArrayList<>();
+        List<List<Integer>> componentResults = new ArrayList<>();
+        DfaBuilder<Integer> full = new DfaBuilder<>();
+        BitSet bit0 = new BitSet();
+        bit0.set(0);
+        for (int i = 0; i < 8; ++i)
+        {
+            Pattern pat = Pattern.regex("[ab]*a[ab]{" + i + "}c");
+            DfaBuilder<BitSet> builder = new DfaBuilder<>();
+            builder.addPattern(pat, bit0);
+            components.add(builder.build(null));
+            componentResults.add(Collections.singletonList(i));
+            full.addPattern(pat, i);
+        }
+        //a different result for every combination of matches
+        DfaAmbiguityResolver<Integer> resolver = conflicts -> {
+            int ret = 1000;
+            for (Integer result : conflicts)
+            {
+                ret += 1 << result;
+            }
+            return ret;
+        };
+        LazyUnionDfa<Integer> union = new LazyUnionDfa<>(components, componentResults, resolver,
+                Collections.emptyList(), 50);
+        DfaState<Integer> want = full.build(resolver);
+        DfaState<Integer> have = union.getStartState();
+        Random r = new Random(51);
+        for (int t = 0; t < 300; ++t)
+        {
+            String src = _randomString(r, "abbc", 40);
+            StringMatcher wantMatcher = new StringMatcher(src);
+            StringMatcher haveMatcher = new StringMatcher(src);
+            for (int pos = 0; pos < src.length(); ++pos)
+            {
+                Assert.assertEquals(src, wantMatcher.matchAt(want, pos), haveMatcher.matchAt(have, pos));
+                Assert.assertEquals(src, wantMatcher.getLastMatchEnd(), haveMatcher.getLastMatchEnd());
+            }
+            //one expansion can add a few states past the limit before they're flushed
+            Assert.assertTrue(union.getStateCount() <= 60);
+        }
+        Assert.assertTrue(_countStates(want) > 60);
+    }
+
+    @Test
+    public void testEmpty() throws Exception
+    {
+        DfaBuilder<String> builder = new DfaBuilder<>();
+        Assert.assertTrue(builder.partitionShards(100).isEmpty());
+        StringSearcher<String> searcher = builder.buildShardedStringSearcher(null, 100);
+        Assert.assertFalse(searcher.searchString("abc").hasNext());
+    }
+
+    private static <T> void _checkSame(StringSearcher<T> want, StringSearcher<T> have, String src)
+    {
+        Assert.assertEquals(src, _describe(want.searchString(src)), _describe(have.searchString(src)));
+    }
+
+    private static <T> String _describe(StringMatchIterator<T> it)
+    {
+        StringBuilder sb = new StringBuilder();
+        while (it.hasNext())
+        {
+            sb.append(it.next()).append(':').append(it.matchValue()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String _randomString(Random r, String chars, int maxLen)
+    {
+        char[] buf = new char[r.nextInt(maxLen)];
+        for (int i=0; i<buf.length; ++i)
+        {
+            buf[i] = chars.charAt(r.nextInt(chars.length()));
+        }
+        return new String(buf);
+    }
+}
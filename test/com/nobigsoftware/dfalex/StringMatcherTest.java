@@ -1,5 +1,6 @@
 package com.nobigsoftware.dfalex;
 
+import java.util.HashMap;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -35,4 +36,197 @@ public class StringMatcherTest extends TestBase
         result = matcher.findNext(dfa);
         Assert.assertEquals(null, result);
     }
+    
+    @Test
+    public void testSelfLoops()
+    {
+        DfaState<Integer> dfa;
+        {
+            DfaBuilder<Integer> builder = new DfaBuilder<>();
+            builder.addPattern(Pattern.BLOCK_COMMENT, 1);
+            builder.addPattern(Pattern.DQ_STRING, 2);
+            builder.addPattern(Pattern.match("/"), 3);
+            builder.addPattern(Pattern.repeat(CharRange.JAVA_ID_CHAR), 4);
+            dfa = builder.build(null);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("x = /* ");
+        for (int i=0; i<1000; ++i)
+        {
+            sb.append("comment \u00e9\u4e2d * / ");
+        }
+        sb.append("*/ \"");
+        for (int i=0; i<1000; ++i)
+        {
+            sb.append("string \\\" \u00e9\u4e2d ");
+        }
+        sb.append("\";");
+        String src = sb.toString();
+        int commentStart = src.indexOf("/*");
+        int commentEnd = src.indexOf("*/")+2;
+        int stringStart = src.indexOf('"');
+        int stringEnd = src.length()-1;
+        
+        StringMatcher matcher = new StringMatcher(src);
+        Assert.assertEquals((Integer)4, matcher.findNext(dfa));
+        Assert.assertEquals((Integer)1, matcher.findNext(dfa));
+        Assert.assertEquals(commentStart, matcher.getLastMatchStart());
+        Assert.assertEquals(commentEnd, matcher.getLastMatchEnd());
+        Assert.assertEquals((Integer)2, matcher.findNext(dfa));
+        Assert.assertEquals(stringStart, matcher.getLastMatchStart());
+        Assert.assertEquals(stringEnd, matcher.getLastMatchEnd());
+        Assert.assertEquals(null, matcher.findNext(dfa));
+        
+        //an unterminated comment doesn't match
+        matcher = new StringMatcher(src.substring(commentStart, commentEnd-1));
+        Assert.assertEquals((Integer)3, matcher.findNext(dfa));
+        Assert.assertEquals(1, matcher.getLastMatchEnd());
+    }
+    
+    @Test
+    public void testLinearFindNext()
+    {
+        DfaState<Integer> dfa;
+        {
+            DfaBuilder<Integer> builder = new DfaBuilder<>();
+            builder.addPattern(Pattern.BLOCK_COMMENT, 1);
+            builder.addPattern(Pattern.regex("a*b"), 2);
+            builder.addPattern(Pattern.regex("(xy)*z"), 3);
+            dfa = builder.build(null);
+        }
+        final int n = 20000;
+        String[] inputs = {_repeat("/* ", n), _repeat("a", n), _repeat("xy", n), _repeat("/* a", n) + "b"};
+        for (String src : inputs)
+        {
+            int[] counter = new int[1];
+            StringMatcher matcher = new StringMatcher(src);
+            Integer result = matcher.findNext(new CountingState<>(dfa, counter, new HashMap<>()));
+            if (src.endsWith("b"))
+            {
+                Assert.assertEquals((Integer)2, result);
+                Assert.assertEquals(src.length()-2, matcher.getLastMatchStart());
+            }
+            else
+            {
+                Assert.assertNull(result);
+            }
+            //quadratic would be about n*n/2 
+            Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < src.length()*10);
+        }
+    }
+    
+    @Test
+    public void testFindAll()
+    {
+        DfaState<Integer> dfa;
+        {
+            DfaBuilder<Integer> builder = new DfaBuilder<>();
+            builder.addPattern(Pattern.regex("a[ab]*b"), 1);
+            builder.addPattern(Pattern.regex("a[ab]*c"), 2);
+            builder.addPattern(Pattern.regex("x"), 3);
+            builder.addPattern(Pattern.regex("x[a-z]*y"), 4);
+            dfa = builder.build(null);
+        }
+        String src = "bbbbbaaaaaaaaaaaaaaaaaaaaaaaabbbbcaaaaaaabbbaaaaaaaxxxaxbxyxxaa";
+        
+        //same matches as findNext
+        StringBuilder want = new StringBuilder();
+        StringMatcher matcher = new StringMatcher(src);
+        for (Integer result; (result = matcher.findNext(dfa)) != null;)
+        {
+            want.append(result).append('@').append(matcher.getLastMatchStart())
+                .append('-').append(matcher.getLastMatchEnd()).append(' ');
+        }
+        matcher.setPositions(0, 0, Integer.MAX_VALUE);
+        StringBuilder have = new StringBuilder();
+        StringMatchIterator<Integer> it = matcher.findAll(dfa);
+        while (it.hasNext())
+        {
+            Integer result = it.next();
+            Assert.assertEquals(src.substring(it.matchStartPosition(), it.matchEndPosition()), it.matchValue());
+            have.append(result).append('@').append(it.matchStartPosition())
+                .append('-').append(it.matchEndPosition()).append(' ');
+        }
+        Assert.assertEquals(want.toString(), have.toString());
+        Assert.assertEquals(0, matcher.getLastMatchEnd());
+        
+        //search limit and reposition
+        matcher.setPositions(15, 20, 33);
+        it = matcher.findAll(dfa);
+        Assert.assertEquals((Integer)1, it.next());
+        Assert.assertEquals("aaaaaaaaabbbb", it.matchValue());
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(it.reposition(22));
+        Assert.assertEquals((Integer)1, it.next());
+        Assert.assertEquals("aaaaaaabbbb", it.matchValue());
+        Assert.assertFalse(it.reposition(33));
+    }
+    
+    @Test
+    public void testLinearFindAll()
+    {
+        DfaState<Integer> dfa;
+        {
+            DfaBuilder<Integer> builder = new DfaBuilder<>();
+            builder.addPattern(Pattern.regex("x"), 1);
+            builder.addPattern(Pattern.regex("x[a-z]*y"), 2);
+            builder.addPattern(Pattern.BLOCK_COMMENT, 3);
+            dfa = builder.build(null);
+        }
+        final int n = 20000;
+        //every x matches, but each one starts a scan to the end
+        String src = _repeat("x", n);
+        int[] counter = new int[1];
+        DfaState<Integer> counting = new CountingState<>(dfa, counter, new HashMap<>());
+        StringMatchIterator<Integer> it = new StringMatcher(src).findAll(counting);
+        int count = 0;
+        while (it.hasNext())
+        {
+            Assert.assertEquals((Integer)1, it.next());
+            Assert.assertEquals(count++, it.matchStartPosition());
+        }
+        Assert.assertEquals(n, count);
+        Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < src.length()*10);
+        
+        //no matches at all
+        src = _repeat("/* ", n);
+        counter[0] = 0;
+        Assert.assertFalse(new StringMatcher(src).findAll(counting).hasNext());
+        Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < src.length()*10);
+    }
+    
+    @Test
+    public void testDeadStateMemoIntervals()
+    {
+        DeadStateMemo memo = new DeadStateMemo();
+        memo.startRun(0);
+        memo.visit(1, 5, 10);
+        memo.endRun();
+        //a separate interval for the same state doesn't forget the first one
+        memo.startRun(4);
+        memo.visit(1, 20, 30);
+        memo.endRun();
+        Assert.assertTrue(memo.isDead(1, 5));
+        Assert.assertTrue(memo.isDead(1, 10));
+        Assert.assertTrue(memo.isDead(1, 25));
+        Assert.assertFalse(memo.isDead(1, 15));
+        Assert.assertFalse(memo.isDead(2, 25));
+        //merging adjacent intervals
+        memo.startRun(4);
+        memo.visit(1, 31, 40);
+        memo.endRun();
+        Assert.assertTrue(memo.isDead(1, 20));
+        Assert.assertTrue(memo.isDead(1, 40));
+        Assert.assertTrue(memo.isDead(1, 8));
+    }
+    
+    private static String _repeat(String s, int n)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<n; ++i)
+        {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
 }
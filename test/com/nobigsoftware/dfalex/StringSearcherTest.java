@@ -1,5 +1,9 @@
 package com.nobigsoftware.dfalex;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import org.junit.Assert;
@@ -22,6 +26,22 @@ public class StringSearcherTest extends TestBase
         Assert.assertEquals(want, have);
     }
 
+    @Test
+    public void compactTest() throws Exception
+    {
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        builder.setCompactStates(true);
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        StringSearcher<JavaToken> searcher = builder.buildStringSearcher(null);
+        String instr = _readResource("SearcherTestInput.txt");
+        String want = _readResource("SearcherTestOutput.txt");
+        String have = searcher.findAndReplace(instr, StringSearcherTest::tokenReplace);
+        Assert.assertEquals(want, have);
+    }
+
     @Test
     public void testReplaceFunc() throws Exception
     {
@@ -124,7 +144,288 @@ public class StringSearcherTest extends TestBase
         Assert.assertEquals(want, have);
     }
     
+    @Test
+    public void writerReplaceTest() throws Exception
+    {
+        DfaBuilder<JavaToken> builder = new DfaBuilder<>();
+        for (JavaToken tok : JavaToken.values())
+        {
+            builder.addPattern(tok.m_pattern, tok);
+        }
+        StringSearcher<JavaToken> searcher = builder.buildStringSearcher(null);
+        String instr = _readResource("SearcherTestInput.txt");
+        String want = _readResource("SearcherTestOutput.txt");
+        StringWriter out = new StringWriter();
+        searcher.findAndReplace(instr, StringSearcherTest::tokenReplace, out);
+        Assert.assertEquals(want, out.toString());
+        
+        //unchanged strings aren't copied
+        Assert.assertSame(instr, searcher.findAndReplace(instr, (dest, mr, src, s, e) -> StringReplacements.IGNORE.apply(dest, src, s, e)));
+    }
+    
+    @Test
+    public void replaceAppendableTest() throws Exception
+    {
+        String src = "0123456789";
+        StringReplaceAppendable dest = new StringReplaceAppendable(src);
+        dest.append("012").append('3').append(src, 4, 6);
+        Assert.assertEquals("012345", dest.toString());
+        dest.append('x').append("yz").append(src, 6, 8).append(src, 8, 9).append("").append(src, 1, 3);
+        Assert.assertEquals("012345xyz67812", dest.toString());
+        Assert.assertEquals(14, dest.length());
+        char[] chars = new char[16];
+        dest.getChars(chars, 1);
+        Assert.assertEquals("012345xyz67812", new String(chars, 1, 14));
+        StringWriter out = new StringWriter();
+        dest.writeTo(out);
+        Assert.assertEquals("012345xyz67812", out.toString());
+    }
+    
+    @Test
+    public void streamReplaceTest() throws Exception
+    {
+        SearchAndReplaceBuilder builder = new SearchAndReplaceBuilder();
+        for (JavaToken tok : JavaToken.values())
+        {
+            final JavaToken t = tok;
+            builder.addReplacement(tok.m_pattern, (dest, src, s, e) -> tokenReplace(dest, t, src, s, e));
+        }
+        String instr = _readResource("SearcherTestInput.txt");
+        String want = _readResource("SearcherTestOutput.txt");
+        StringWriter out = new StringWriter();
+        builder.buildStreamReplacer().replace(new StringReader(instr), out);
+        Assert.assertEquals(want, out.toString());
+        
+        //tiny buffers, with a reader that returns one char at a time
+        DfaBuilder<JavaToken> dfaBuilder = new DfaBuilder<>();
+        for (JavaToken tok : JavaToken.values())
+        {
+            dfaBuilder.addPattern(tok.m_pattern, tok);
+        }
+        StreamReplacer replacer = new DfaStreamReplacer<>(dfaBuilder.build(null), StringSearcherTest::tokenReplace, 1);
+        out = new StringWriter();
+        replacer.replace(new OneCharReader(instr), out);
+        Assert.assertEquals(want, out.toString());
+    }
     
+    @Test
+    public void streamRepositionTest() throws Exception
+    {
+        SearchAndReplaceBuilder builder = new SearchAndReplaceBuilder();
+        builder.addReplacement(Pattern.regexI("[a-z0-9]+ +[a-z0-9]+"), (dest, src, s, e) -> {
+            for (e=s;src.charAt(e)!=' ';++e);
+            dest.append(src, s, e).append(", ");
+            for (;src.charAt(e)==' ';++e);
+            return e;
+        });
+        //skip past the end of the match, into text that might not be read yet
+        builder.addReplacement(Pattern.match("#"), (dest, src, s, e) -> {
+            dest.append("<skipped>");
+            return e+5;
+        });
+        StreamReplacer replacer = builder.buildStreamReplacer();
+        
+        String instr = " one two  three   four five #12345six ";
+        String want = " one, two, three, four, five <skipped>six ";
+        StringWriter out = new StringWriter();
+        replacer.replace(new OneCharReader(instr), out);
+        Assert.assertEquals(want, out.toString());
+    }
+    
+    @Test
+    public void parallelReplaceTest() throws Exception
+    {
+        DfaBuilder<Integer> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("a+"), 1);
+        builder.addPattern(Pattern.regex("x[^y]*y"), 2);
+        builder.addPattern(Pattern.regex("ab*c"), 3);
+        builder.addPattern(Pattern.regex("b"), 4);
+        StringSearcher<Integer> searcher = builder.buildStringSearcher(null);
+        ReplacementSelector<Integer> replacer = (dest, mr, src, s, e) -> {
+            dest.append("<").append(mr.toString()).append(">");
+            return 0;
+        };
+        //replacer that repositions sometimes
+        ReplacementSelector<Integer> repositioner = (dest, mr, src, s, e) -> {
+            dest.append("<").append(mr.toString()).append(">");
+            return (mr == 3 ? Math.min(src.length(), e+2) : 0);
+        };
+        
+        java.util.Random r = new java.util.Random(1234);
+        String pieces = "abcxy.";
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            for (int test=0; test<300; ++test)
+            {
+                StringBuilder sb = new StringBuilder();
+                int npieces = r.nextInt(60);
+                for (int i=0; i<npieces; ++i)
+                {
+                    char c = pieces.charAt(r.nextInt(pieces.length()));
+                    for (int n = r.nextInt(r.nextBoolean() ? 3 : 40); n>=0; --n)
+                    {
+                        sb.append(c);
+                    }
+                }
+                String instr = sb.toString();
+                int chunkSize = 1+r.nextInt(50);
+                Assert.assertEquals(searcher.findAndReplace(instr, replacer),
+                        searcher.findAndReplaceParallel(instr, replacer, pool, chunkSize));
+                Assert.assertEquals(searcher.findAndReplace(instr, repositioner),
+                        searcher.findAndReplaceParallel(instr, repositioner, pool, chunkSize));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void longRunsTest() throws Exception
+    {
+        DfaBuilder<Integer> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("a+"), 1);
+        builder.addPattern(Pattern.regex("x[^y]*y"), 2);
+        builder.addPattern(Pattern.regex("\u00e9+z"), 3);
+        StringSearcher<Integer> searcher = builder.buildStringSearcher(null);
+        DfaState<Integer> matcher = builder.build(null);
+        
+        //long runs of characters that the reverse finder skips over, with and without matches
+        java.util.Random r = new java.util.Random(42);
+        String pieces = "ab.xy\u00e9z";
+        for (int test=0; test<200; ++test)
+        {
+            StringBuilder sb = new StringBuilder();
+            int npieces = r.nextInt(10);
+            for (int i=0; i<npieces; ++i)
+            {
+                char c = pieces.charAt(r.nextInt(pieces.length()));
+                for (int n = r.nextInt(r.nextBoolean() ? 5 : 300); n>=0; --n)
+                {
+                    sb.append(c);
+                }
+            }
+            String instr = sb.toString();
+            
+            StringBuilder want = new StringBuilder();
+            StringMatcher sm = new StringMatcher(instr);
+            Integer mr;
+            while((mr = sm.findNext(matcher)) != null)
+            {
+                want.append(mr).append('@').append(sm.getLastMatchStart()).append('-').append(sm.getLastMatchEnd()).append(' ');
+            }
+            StringBuilder have = new StringBuilder();
+            StringMatchIterator<Integer> it = searcher.searchString(instr);
+            while(it.hasNext())
+            {
+                mr = it.next();
+                have.append(mr).append('@').append(it.matchStartPosition()).append('-').append(it.matchEndPosition()).append(' ');
+            }
+            Assert.assertEquals(want.toString(), have.toString());
+        }
+    }
+    
+    //returns one char at a time, to test buffer handling
+    @Test
+    public void overlappingTailsTest() throws Exception
+    {
+        DfaBuilder<Integer> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("x"), 1);
+        builder.addPattern(Pattern.regex("x[a-z]*y"), 2);
+        StringSearcher<Integer> searcher = builder.buildStringSearcher(null);
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<200000; ++i)
+        {
+            sb.append('x');
+        }
+        //every x matches, and each one's confirmation would scan to the end if
+        //dead states weren't remembered
+        String src = sb.toString();
+        StringMatchIterator<Integer> it = searcher.searchString(src);
+        int count = 0;
+        while (it.hasNext())
+        {
+            Assert.assertEquals((Integer)1, it.next());
+            Assert.assertEquals(count++, it.matchStartPosition());
+        }
+        Assert.assertEquals(src.length(), count);
+    }
+    
+    @Test
+    public void streamRandomTest() throws Exception
+    {
+        DfaBuilder<Integer> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("a+"), 1);
+        builder.addPattern(Pattern.regex("x[^y]*y"), 2);
+        builder.addPattern(Pattern.regex("\\bab*\\b"), 3);
+        builder.addPattern(Pattern.regex("^b+"), 4);
+        builder.addPattern(Pattern.regex("_+$"), 5);
+        builder.addPattern(Pattern.regex("\\Bx\\z"), 6);
+        DfaAmbiguityResolver<Integer> resolver = conflicts -> java.util.Collections.min(conflicts);
+        StringSearcher<Integer> searcher = builder.buildStringSearcher(resolver);
+        DfaState<Integer> matcher = builder.build(resolver);
+        ReplacementSelector<Integer> replacer = (dest, mr, src, s, e) -> {
+            dest.append("<").append(mr.toString()).append(">");
+            return 0;
+        };
+        
+        //the stream replacer must find the same matches as the searcher, with any buffer size
+        java.util.Random r = new java.util.Random(4321);
+        String pieces = "abxy_ \n";
+        for (int test=0; test<300; ++test)
+        {
+            StringBuilder sb = new StringBuilder();
+            int npieces = r.nextInt(40);
+            for (int i=0; i<npieces; ++i)
+            {
+                char c = pieces.charAt(r.nextInt(pieces.length()));
+                for (int n = r.nextInt(r.nextBoolean() ? 3 : 20); n>=0; --n)
+                {
+                    sb.append(c);
+                }
+            }
+            String instr = sb.toString();
+            StringWriter out = new StringWriter();
+            new DfaStreamReplacer<>(matcher, replacer, 1+r.nextInt(10)).replace(new OneCharReader(instr), out);
+            Assert.assertEquals("\"" + instr + "\"", searcher.findAndReplace(instr, replacer), out.toString());
+        }
+    }
+    
+    @Test
+    public void streamLinearTest() throws Exception
+    {
+        DfaBuilder<Integer> builder = new DfaBuilder<>();
+        builder.addPattern(Pattern.regex("x[a-z]*y"), 1);
+        int[] counter = new int[1];
+        DfaState<Integer> matcher = new CountingState<>(builder.build(null), counter, new java.util.HashMap<>());
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<20000; ++i)
+        {
+            sb.append('x');
+        }
+        //every x starts a run to the end of the input, but none of them match
+        String instr = sb.toString();
+        StringWriter out = new StringWriter();
+        new DfaStreamReplacer<>(matcher, (dest, mr, src, s, e) -> 0, 16).replace(new StringReader(instr), out);
+        Assert.assertEquals(instr, out.toString());
+        Assert.assertTrue("Too many transitions: " + counter[0], counter[0] < instr.length()*10);
+    }
+    
+    private static class OneCharReader extends StringReader
+    {
+        OneCharReader(String s)
+        {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            return super.read(cbuf, off, Math.min(len, 1));
+        }
+    }
     
     static int tokenReplace(SafeAppendable dest, JavaToken mr, CharSequence src, int startPos, int endPos)
     {